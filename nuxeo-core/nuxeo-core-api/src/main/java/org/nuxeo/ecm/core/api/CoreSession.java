@@ -1045,6 +1045,53 @@ public interface CoreSession {
      */
     DocumentModelList query(String query, String queryType, Filter filter, long limit, long offset, long countUpTo);
 
+    /**
+     * Executes the given query and returns the result that matches the filter, prefetching the given schemas of the
+     * returned documents.
+     * <p>
+     * The prefetched schemas are loaded for all the documents at once, which is much faster than loading them document
+     * by document when they are accessed, typically when displaying some columns of a page of results.
+     * <p>
+     * The default implementation doesn't prefetch anything more than
+     * {@link #query(String, String, Filter, long, long, long)}.
+     *
+     * @param query the query to execute
+     * @param queryType the query type, like "NXQL"
+     * @param filter the filter to apply to result
+     * @param limit the maximum number of documents to retrieve, or 0 for all of them
+     * @param offset the offset (starting at 0) into the list of documents
+     * @param countUpTo see {@link #query(String, String, Filter, long, long, long)}
+     * @param schemas the schemas to prefetch, or {@code null} for the default prefetch
+     * @return the query result
+     * @since 10.2
+     */
+    default DocumentModelList query(String query, String queryType, Filter filter, long limit, long offset,
+            long countUpTo, String[] schemas) {
+        return query(query, queryType, filter, limit, offset, countUpTo);
+    }
+
+    /**
+     * Executes the given query and returns the result that matches the filter, prefetching the given schemas of the
+     * returned documents.
+     * <p>
+     * The default implementation doesn't prefetch anything more than
+     * {@link #query(String, String, Filter, long, long, boolean)}.
+     *
+     * @param query the query to execute
+     * @param queryType the query type, like "NXQL"
+     * @param filter the filter to apply to result
+     * @param limit the maximum number of documents to retrieve, or 0 for all of them
+     * @param offset the offset (starting at 0) into the list of documents
+     * @param countTotal see {@link #query(String, String, Filter, long, long, boolean)}
+     * @param schemas the schemas to prefetch, or {@code null} for the default prefetch
+     * @return the query result
+     * @since 10.2
+     */
+    default DocumentModelList query(String query, String queryType, Filter filter, long limit, long offset,
+            boolean countTotal, String[] schemas) {
+        return query(query, queryType, filter, limit, offset, countTotal);
+    }
+
     /**
      * Executes the given query and returns an iterable of maps containing the requested properties (which must be
      * closed when done).
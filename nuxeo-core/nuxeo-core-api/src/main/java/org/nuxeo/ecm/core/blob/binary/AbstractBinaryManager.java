@@ -24,6 +24,9 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Collection;
@@ -129,13 +132,17 @@ public abstract class AbstractBinaryManager implements BinaryManager {
 
     public static final int MAX_BUF_SIZE = 64 * 1024; // 64 kB
 
-    protected String storeAndDigest(InputStream in, OutputStream out) throws IOException {
-        MessageDigest digest;
+    /** @since 10.2 */
+    protected MessageDigest getMessageDigest() throws IOException {
         try {
-            digest = MessageDigest.getInstance(getDigestAlgorithm());
+            return MessageDigest.getInstance(getDigestAlgorithm());
         } catch (NoSuchAlgorithmException e) {
             throw (IOException) new IOException().initCause(e);
         }
+    }
+
+    protected String storeAndDigest(InputStream in, OutputStream out) throws IOException {
+        MessageDigest digest = getMessageDigest();
 
         int size = in.available();
         if (size == 0) {
@@ -160,6 +167,28 @@ public abstract class AbstractBinaryManager implements BinaryManager {
         return toHexString(digest.digest());
     }
 
+    /**
+     * Computes the digest of a file.
+     * <p>
+     * The file is read through a {@link FileChannel} into a direct buffer, so that its content is not copied into heap
+     * buffers. The file is not memory-mapped, as a mapping is only released when garbage-collected, which would prevent
+     * moving the file afterwards on some platforms.
+     *
+     * @since 10.2
+     */
+    protected String digest(File file) throws IOException {
+        MessageDigest digest = getMessageDigest();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocateDirect(MAX_BUF_SIZE);
+            while (channel.read(buf) != -1) {
+                buf.flip();
+                digest.update(buf);
+                buf.clear();
+            }
+        }
+        return toHexString(digest.digest());
+    }
+
     private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
 
     public static String toHexString(byte[] data) {
@@ -33,6 +33,12 @@ public class BinaryManagerStatus {
 
     public long sizeBinariesGC;
 
+    /** @since 10.2 */
+    public long numDirectories;
+
+    /** @since 10.2 */
+    public long numDirectoriesSwept;
+
     /**
      * The GC duration, in milliseconds
      */
@@ -68,6 +74,24 @@ public class BinaryManagerStatus {
         return sizeBinariesGC;
     }
 
+    /**
+     * The number of top-level directories to sweep, if the GC reports its progress.
+     *
+     * @since 10.2
+     */
+    public long getNumDirectories() {
+        return numDirectories;
+    }
+
+    /**
+     * The number of top-level directories swept so far, if the GC reports its progress.
+     *
+     * @since 10.2
+     */
+    public long getNumDirectoriesSwept() {
+        return numDirectoriesSwept;
+    }
+
     @Override
     public String toString() {
         StringBuilder builder = new StringBuilder();
@@ -75,7 +99,9 @@ public class BinaryManagerStatus {
         .append(", numBinaries=").append(numBinaries) //
         .append(", sizeBinaries=").append(sizeBinaries) //
         .append(", numBinariesGC=").append(numBinariesGC) //
-        .append(", sizeBinariesGC=").append(sizeBinariesGC).append("]");
+        .append(", sizeBinariesGC=").append(sizeBinariesGC) //
+        .append(", numDirectories=").append(numDirectories) //
+        .append(", numDirectoriesSwept=").append(numDirectoriesSwept).append("]");
         return builder.toString();
     }
 
@@ -21,9 +21,11 @@ package org.nuxeo.ecm.core.blob.binary;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
 
-import org.apache.commons.io.output.NullOutputStream;
 import org.nuxeo.ecm.core.api.Blob;
 import org.nuxeo.ecm.core.api.impl.blob.FileBlob;
 
@@ -46,10 +48,11 @@ public class DefaultBinaryManager extends LocalBinaryManager {
 
     @Override
     public Binary getBinary(Blob blob) throws IOException {
-        if (!(blob instanceof FileBlob) || !((FileBlob) blob).isTemporary()) {
+        if (!(blob instanceof FileBlob)) {
             return super.getBinary(blob); // just open the stream
         }
-        String digest = storeAndDigest((FileBlob) blob);
+        FileBlob fileBlob = (FileBlob) blob;
+        String digest = fileBlob.isTemporary() ? storeAndDigest(fileBlob) : storeAndDigestCopy(fileBlob);
         File file = getFileForDigest(digest, false);
         /*
          * Now we can build the Binary.
@@ -61,10 +64,7 @@ public class DefaultBinaryManager extends LocalBinaryManager {
      * Stores and digests a temporary FileBlob.
      */
     protected String storeAndDigest(FileBlob blob) throws IOException {
-        String digest;
-        try (InputStream in = blob.getStream()) {
-            digest = storeAndDigest(in, NullOutputStream.NULL_OUTPUT_STREAM);
-        }
+        String digest = digest(blob.getFile());
         File digestFile = getFileForDigest(digest, true);
         if (digestFile.exists()) {
             // The file with the proper digest is already there so don't do anything. This is to avoid
@@ -79,4 +79,49 @@ public class DefaultBinaryManager extends LocalBinaryManager {
         return digest;
     }
 
+    /**
+     * Stores and digests a non-temporary FileBlob, whose file belongs to the caller and must be left in place.
+     * <p>
+     * The file is read only once, the digest being computed on the bytes copied to a temporary file.
+     *
+     * @since 10.2
+     */
+    protected String storeAndDigestCopy(FileBlob blob) throws IOException {
+        File tmp = File.createTempFile("create_", ".tmp", tmpDir);
+        try {
+            String digest = copyAndDigest(blob.getFile(), tmp);
+            File digestFile = getFileForDigest(digest, true);
+            atomicMove(tmp, digestFile);
+            return digest;
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Copies the source file to the destination file through {@link FileChannel}s, computing the digest of the copied
+     * bytes.
+     *
+     * @since 10.2
+     */
+    protected String copyAndDigest(File source, File dest) throws IOException {
+        MessageDigest digest = getMessageDigest();
+        try (FileChannel in = FileChannel.open(source.toPath(), StandardOpenOption.READ);
+                FileChannel out = FileChannel.open(dest.toPath(), StandardOpenOption.WRITE,
+                        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buf = ByteBuffer.allocateDirect(MAX_BUF_SIZE);
+            while (in.read(buf) != -1) {
+                buf.flip();
+                buf.mark();
+                digest.update(buf);
+                buf.reset();
+                while (buf.hasRemaining()) {
+                    out.write(buf);
+                }
+                buf.clear();
+            }
+        }
+        return toHexString(digest.digest());
+    }
+
 }
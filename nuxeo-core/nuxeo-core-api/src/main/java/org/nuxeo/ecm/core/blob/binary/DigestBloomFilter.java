@@ -0,0 +1,133 @@
+/*
+ * (C) Copyright 2018 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.ecm.core.blob.binary;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A Bloom filter of digests, which can be filled concurrently by several threads.
+ * <p>
+ * A digest that was added is always reported as possibly contained. A digest that was not added is reported as
+ * possibly contained with a probability close to the false positive probability requested, as long as the number of
+ * digests added does not exceed the expected number.
+ * <p>
+ * The filter uses about 10 bits per expected digest for a false positive probability of 1%, whatever the digest
+ * length.
+ *
+ * @since 10.2
+ */
+public class DigestBloomFilter {
+
+    protected static final int MAX_HASHES = 16;
+
+    protected final AtomicLongArray bits;
+
+    protected final long numBits;
+
+    protected final int numHashes;
+
+    protected final long seed;
+
+    /**
+     * Constructs a Bloom filter.
+     *
+     * @param expectedDigests the expected number of digests
+     * @param fpp the false positive probability
+     * @param seed the hash seed, which can be changed so that false positives are not the same ones between two filters
+     */
+    public DigestBloomFilter(long expectedDigests, double fpp, long seed) {
+        if (fpp <= 0 || fpp >= 1) {
+            throw new IllegalArgumentException("Invalid false positive probability: " + fpp);
+        }
+        long n = Math.max(1, expectedDigests);
+        long optimalBits = (long) (-n * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (optimalBits + 63) / 64));
+        bits = new AtomicLongArray(words);
+        numBits = 64L * words;
+        numHashes = (int) Math.max(1, Math.min(MAX_HASHES, Math.round((double) numBits / n * Math.log(2))));
+        this.seed = seed;
+    }
+
+    /**
+     * Adds a digest to the filter.
+     */
+    public void add(String digest) {
+        long h1 = hash(digest, seed);
+        long h2 = hash(digest, ~seed) | 1;
+        for (int i = 0; i < numHashes; i++) {
+            set(Math.floorMod(h1 + i * h2, numBits));
+        }
+    }
+
+    /**
+     * Checks if a digest may have been added to the filter.
+     *
+     * @return {@code false} if the digest was definitely not added, {@code true} if it may have been added
+     */
+    public boolean mightContain(String digest) {
+        long h1 = hash(digest, seed);
+        long h2 = hash(digest, ~seed) | 1;
+        for (int i = 0; i < numHashes; i++) {
+            if (!get(Math.floorMod(h1 + i * h2, numBits))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the size of the filter in bits.
+     */
+    public long getNumBits() {
+        return numBits;
+    }
+
+    protected void set(long index) {
+        int word = (int) (index >>> 6);
+        long mask = 1L << index;
+        for (;;) {
+            long old = bits.get(word);
+            if ((old & mask) != 0 || bits.compareAndSet(word, old, old | mask)) {
+                return;
+            }
+        }
+    }
+
+    protected boolean get(long index) {
+        return (bits.get((int) (index >>> 6)) & (1L << index)) != 0;
+    }
+
+    /**
+     * Computes a 64-bit hash of a string (FNV-1a followed by a final mix).
+     */
+    protected static long hash(String string, long seed) {
+        long h = 0xcbf29ce484222325L ^ seed;
+        for (int i = 0; i < string.length(); i++) {
+            h ^= string.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+}
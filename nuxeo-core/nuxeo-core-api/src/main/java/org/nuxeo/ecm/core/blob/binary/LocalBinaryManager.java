@@ -71,6 +71,52 @@ public class LocalBinaryManager extends AbstractBinaryManager {
 
     public static final String CONFIG_FILE = "config.xml";
 
+    /**
+     * In the initialization properties, the garbage collector to use: {@value #GC_DEFAULT} (touches the marked files)
+     * or {@value #GC_PARALLEL} (see {@link ParallelBinaryGarbageCollector}).
+     *
+     * @since 10.2
+     */
+    public static final String PROP_GC = "gc";
+
+    /** @since 10.2 */
+    public static final String GC_DEFAULT = "default";
+
+    /** @since 10.2 */
+    public static final String GC_PARALLEL = "parallel";
+
+    /**
+     * In the initialization properties, the number of threads of the parallel garbage collector sweep.
+     *
+     * @since 10.2
+     */
+    public static final String PROP_GC_THREADS = "gcThreads";
+
+    /**
+     * In the initialization properties, the expected number of binaries, used to size the marks of the parallel
+     * garbage collector.
+     *
+     * @since 10.2
+     */
+    public static final String PROP_GC_EXPECTED_BINARIES = "gcExpectedBinaries";
+
+    /**
+     * In the initialization properties, the maximum number of files per second examined by the parallel garbage
+     * collector sweep, or {@code 0} for no limit.
+     *
+     * @since 10.2
+     */
+    public static final String PROP_GC_MAX_FILES_PER_SECOND = "gcMaxFilesPerSecond";
+
+    /** @since 10.2 */
+    public static final String DEFAULT_GC_THREADS = "4";
+
+    /** @since 10.2 */
+    public static final String DEFAULT_GC_EXPECTED_BINARIES = "10000000";
+
+    /** @since 10.2 */
+    public static final String DEFAULT_GC_MAX_FILES_PER_SECOND = "0";
+
     protected File storageDir;
 
     protected File tmpDir;
@@ -110,7 +156,7 @@ public class LocalBinaryManager extends AbstractBinaryManager {
         storageDir.mkdirs();
         tmpDir.mkdirs();
         descriptor = getDescriptor(new File(base, CONFIG_FILE));
-        createGarbageCollector();
+        createGarbageCollector(properties);
 
         // be sure FileTracker won't steal our files !
         FileEventTracker.registerProtectedPath(storageDir.getAbsolutePath());
@@ -246,6 +292,30 @@ public class LocalBinaryManager extends AbstractBinaryManager {
         }
     }
 
+    /**
+     * Creates the garbage collector according to the initialization properties.
+     *
+     * @since 10.2
+     */
+    protected void createGarbageCollector(Map<String, String> properties) {
+        String gc = properties.get(PROP_GC);
+        if (GC_PARALLEL.equals(StringUtils.trim(gc))) {
+            int threads = Integer.parseInt(getProperty(properties, PROP_GC_THREADS, DEFAULT_GC_THREADS));
+            long expectedBinaries = Long.parseLong(
+                    getProperty(properties, PROP_GC_EXPECTED_BINARIES, DEFAULT_GC_EXPECTED_BINARIES));
+            double maxFilesPerSecond = Double.parseDouble(
+                    getProperty(properties, PROP_GC_MAX_FILES_PER_SECOND, DEFAULT_GC_MAX_FILES_PER_SECOND));
+            garbageCollector = new ParallelBinaryGarbageCollector(this, threads, expectedBinaries, maxFilesPerSecond);
+        } else {
+            createGarbageCollector();
+        }
+    }
+
+    protected static String getProperty(Map<String, String> properties, String name, String defaultValue) {
+        String value = properties.get(name);
+        return StringUtils.isBlank(value) ? defaultValue : value.trim();
+    }
+
     protected void createGarbageCollector() {
         garbageCollector = new DefaultBinaryGarbageCollector(this);
     }
@@ -0,0 +1,235 @@
+/*
+ * (C) Copyright 2018 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.ecm.core.blob.binary;
+
+import java.io.IOException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.ecm.core.api.NuxeoException;
+import org.nuxeo.ecm.core.blob.binary.LocalBinaryManager.DefaultBinaryGarbageCollector;
+
+import com.google.common.util.concurrent.RateLimiter;
+
+/**
+ * A garbage collector for a {@link LocalBinaryManager} that doesn't touch the files when marking them.
+ * <p>
+ * The mark phase only records the marked digests in a {@link DigestBloomFilter}, so it does no filesystem access and
+ * can be called concurrently for several repositories.
+ * <p>
+ * The sweep phase walks the top-level directories of the storage in parallel, and deletes the files whose digest is not
+ * in the filter and which were last modified before the start of the GC. The number of files examined per second can be
+ * throttled to limit the load on the disk. The number of directories swept so far is available in the status during
+ * the sweep.
+ * <p>
+ * Because of false positives of the filter, a small fraction of the unreferenced binaries may be kept. They will be
+ * collected by a later GC, as the filter is seeded differently for each GC.
+ *
+ * @since 10.2
+ */
+public class ParallelBinaryGarbageCollector implements BinaryGarbageCollector {
+
+    private static final Log log = LogFactory.getLog(ParallelBinaryGarbageCollector.class);
+
+    public static final double FALSE_POSITIVE_PROBABILITY = 0.01;
+
+    protected final LocalBinaryManager binaryManager;
+
+    protected final int threads;
+
+    protected final long expectedBinaries;
+
+    protected final double maxFilesPerSecond;
+
+    protected volatile long startTime;
+
+    protected volatile DigestBloomFilter marked;
+
+    protected BinaryManagerStatus status;
+
+    /**
+     * Constructs a garbage collector.
+     *
+     * @param binaryManager the binary manager
+     * @param threads the number of threads used for the sweep
+     * @param expectedBinaries the expected number of binaries marked, used to size the filter
+     * @param maxFilesPerSecond the maximum number of files examined per second during the sweep, or {@code 0} for no
+     *            limit
+     */
+    public ParallelBinaryGarbageCollector(LocalBinaryManager binaryManager, int threads, long expectedBinaries,
+            double maxFilesPerSecond) {
+        this.binaryManager = binaryManager;
+        this.threads = Math.max(1, threads);
+        this.expectedBinaries = expectedBinaries;
+        this.maxFilesPerSecond = maxFilesPerSecond;
+    }
+
+    @Override
+    public String getId() {
+        return binaryManager.getStorageDir().toURI().toString();
+    }
+
+    @Override
+    public BinaryManagerStatus getStatus() {
+        return status;
+    }
+
+    @Override
+    public boolean isInProgress() {
+        // volatile as this is designed to be called from another thread
+        return startTime != 0;
+    }
+
+    @Override
+    public void start() {
+        if (startTime != 0) {
+            throw new RuntimeException("Already started");
+        }
+        marked = new DigestBloomFilter(expectedBinaries, FALSE_POSITIVE_PROBABILITY,
+                ThreadLocalRandom.current().nextLong());
+        status = new BinaryManagerStatus();
+        startTime = System.currentTimeMillis();
+    }
+
+    @Override
+    public void mark(String digest) {
+        marked.add(digest);
+    }
+
+    @Override
+    public void stop(boolean delete) {
+        if (startTime == 0) {
+            throw new RuntimeException("Not started");
+        }
+        try {
+            sweep(startTime - DefaultBinaryGarbageCollector.TIME_RESOLUTION, delete);
+        } finally {
+            status.gcDuration = System.currentTimeMillis() - startTime;
+            marked = null;
+            startTime = 0;
+        }
+    }
+
+    protected void sweep(long minTime, boolean delete) {
+        List<Path> shards = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(binaryManager.getStorageDir().toPath())) {
+            ds.forEach(shards::add);
+        } catch (IOException e) {
+            throw new NuxeoException("Cannot list binaries: " + binaryManager.getStorageDir(), e);
+        }
+        status.numDirectories = shards.size();
+        RateLimiter rateLimiter = maxFilesPerSecond > 0 ? RateLimiter.create(maxFilesPerSecond) : null;
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "Nuxeo-BinaryGC-" + binaryManager.blobProviderId);
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>(shards.size());
+            for (Path shard : shards) {
+                futures.add(executor.submit(() -> sweepShard(shard, minTime, delete, rateLimiter)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NuxeoException(e);
+        } catch (ExecutionException e) {
+            throw new NuxeoException("Failed to sweep binaries", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    protected void sweepShard(Path shard, long minTime, boolean delete, RateLimiter rateLimiter) {
+        BinaryManagerStatus shardStatus = new BinaryManagerStatus();
+        sweep(shard, minTime, delete, rateLimiter, shardStatus);
+        synchronized (status) {
+            status.numBinaries += shardStatus.numBinaries;
+            status.sizeBinaries += shardStatus.sizeBinaries;
+            status.numBinariesGC += shardStatus.numBinariesGC;
+            status.sizeBinariesGC += shardStatus.sizeBinariesGC;
+            status.numDirectoriesSwept++;
+        }
+    }
+
+    protected void sweep(Path path, long minTime, boolean delete, RateLimiter rateLimiter,
+            BinaryManagerStatus shardStatus) {
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException e) {
+            // removed concurrently
+            return;
+        }
+        if (attrs.isDirectory()) {
+            try (DirectoryStream<Path> ds = Files.newDirectoryStream(path)) {
+                for (Path child : ds) {
+                    sweep(child, minTime, delete, rateLimiter, shardStatus);
+                }
+            } catch (IOException e) {
+                log.error("Cannot list binaries: " + path, e);
+                return;
+            }
+            // remove empty directory
+            try {
+                Files.deleteIfExists(path);
+            } catch (DirectoryNotEmptyException e) {
+                // not empty, keep it
+            } catch (IOException e) {
+                log.warn("Cannot delete directory: " + path);
+            }
+        } else if (attrs.isRegularFile()) {
+            if (rateLimiter != null) {
+                rateLimiter.acquire();
+            }
+            long lastModified = attrs.lastModifiedTime().toMillis();
+            long length = attrs.size();
+            if (lastModified >= minTime || marked.mightContain(path.getFileName().toString())) {
+                shardStatus.sizeBinaries += length;
+                shardStatus.numBinaries++;
+            } else if (Files.isWritable(path)) {
+                shardStatus.sizeBinariesGC += length;
+                shardStatus.numBinariesGC++;
+                if (delete) {
+                    try {
+                        Files.delete(path);
+                    } catch (IOException e) {
+                        log.warn("Cannot gc file: " + path);
+                    }
+                }
+            }
+        }
+    }
+
+}
@@ -28,7 +28,11 @@ import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.security.MessageDigest;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
@@ -145,6 +149,80 @@ public class TestDefaultBinaryManager {
         binaryManager.close();
     }
 
+    @Test
+    @Deploy("org.nuxeo.ecm.core.api")
+    @Deploy("org.nuxeo.ecm.core.api.tests:OSGI-INF/test-default-blob-provider.xml")
+    public void testParallelGarbageCollector() throws Exception {
+        Map<String, String> properties = new HashMap<>();
+        properties.put(LocalBinaryManager.PROP_GC, LocalBinaryManager.GC_PARALLEL);
+        properties.put(LocalBinaryManager.PROP_GC_THREADS, "3");
+        properties.put(LocalBinaryManager.PROP_GC_EXPECTED_BINARIES, "1000");
+        DefaultBinaryManager binaryManager = new DefaultBinaryManager();
+        binaryManager.initialize("repo", properties);
+        assertTrue(binaryManager.getGarbageCollector() instanceof ParallelBinaryGarbageCollector);
+
+        byte[] bytes = CONTENT.getBytes("UTF-8");
+        binaryManager.getBinary(Blobs.createBlob(CONTENT));
+        // other binary we'll GC
+        binaryManager.getBinary(Blobs.createBlob("abc"));
+        assertEquals(2, countFiles(binaryManager.getStorageDir()));
+
+        // sleep before GC to pass its time threshold
+        Thread.sleep(3 * 1000);
+
+        // create another binary after time threshold, it won't be GCed
+        binaryManager.getBinary(Blobs.createBlob("defg"));
+        assertEquals(3, countFiles(binaryManager.getStorageDir()));
+
+        // GC in non-delete mode
+        BinaryGarbageCollector gc = binaryManager.getGarbageCollector();
+        assertFalse(gc.isInProgress());
+        gc.start();
+        assertTrue(gc.isInProgress());
+        gc.mark(CONTENT_MD5);
+        gc.stop(false);
+        assertFalse(gc.isInProgress());
+        BinaryManagerStatus status = gc.getStatus();
+        assertEquals(2, status.numBinaries);
+        assertEquals(bytes.length + 4, status.sizeBinaries);
+        assertEquals(1, status.numBinariesGC);
+        assertEquals(3, status.sizeBinariesGC);
+        assertEquals(status.numDirectories, status.numDirectoriesSwept);
+        // still there
+        assertEquals(3, countFiles(binaryManager.getStorageDir()));
+
+        // real GC
+        gc.start();
+        gc.mark(CONTENT_MD5);
+        gc.stop(true);
+        status = gc.getStatus();
+        assertEquals(2, status.numBinaries);
+        assertEquals(1, status.numBinariesGC);
+        // one file gone
+        assertEquals(2, countFiles(binaryManager.getStorageDir()));
+        assertNotNull(binaryManager.getBinary(CONTENT_MD5));
+
+        binaryManager.close();
+    }
+
+    @Test
+    public void testDigestBloomFilter() {
+        DigestBloomFilter filter = new DigestBloomFilter(10_000, 0.01, 1234);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add("marked" + i);
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain("marked" + i));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.mightContain("other" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(String.valueOf(falsePositives), falsePositives < 300);
+    }
+
     @Test
     public void testTemporaryCopies() throws IOException {
         DefaultBinaryManager binaryManager = new DefaultBinaryManager();
@@ -159,6 +237,60 @@ public class TestDefaultBinaryManager {
         binaryManager.close();
     }
 
+    @Test
+    public void testTemporaryFileBlobSeveralBuffers() throws Exception {
+        DefaultBinaryManager binaryManager = new DefaultBinaryManager();
+        binaryManager.initialize("repo", Collections.emptyMap());
+        byte[] bytes = new byte[3 * AbstractBinaryManager.MAX_BUF_SIZE + 17];
+        new Random(123).nextBytes(bytes);
+        String expected = AbstractBinaryManager.toHexString(MessageDigest.getInstance("MD5").digest(bytes));
+        FileBlob source = new FileBlob(new ByteArrayInputStream(bytes));
+        File originalFile = source.getFile();
+        try {
+            assertEquals(expected, binaryManager.getBinary(source).getDigest());
+            // the digested file could be moved into the store
+            assertFalse(originalFile.exists());
+            try (InputStream stream = binaryManager.getBinary(expected).getStream()) {
+                Assert.assertArrayEquals(bytes, IOUtils.toByteArray(stream));
+            }
+        } finally {
+            FileUtils.cleanDirectory(binaryManager.getStorageDir());
+            binaryManager.close();
+        }
+    }
+
+    @Test
+    public void testNonTemporaryFileBlob() throws IOException {
+        DefaultBinaryManager binaryManager = new DefaultBinaryManager();
+        binaryManager.initialize("repo", Collections.emptyMap());
+        File file = File.createTempFile("nuxeo-test-", ".txt");
+        try {
+            FileUtils.writeStringToFile(file, CONTENT, "UTF-8");
+            FileBlob source = new FileBlob(file);
+            assertFalse(source.isTemporary());
+            Binary binary = binaryManager.getBinary(source);
+            assertEquals(CONTENT_MD5, binary.getDigest());
+            // source left in place
+            assertTrue(file.exists());
+            try (InputStream stream = binaryManager.getBinary(CONTENT_MD5).getStream()) {
+                assertEquals(CONTENT, IOUtils.toString(stream, "UTF-8"));
+            }
+            // the stored file is a copy, not a link to the caller's file
+            FileUtils.writeStringToFile(file, "other content", "UTF-8");
+            try (InputStream stream = binaryManager.getBinary(CONTENT_MD5).getStream()) {
+                assertEquals(CONTENT, IOUtils.toString(stream, "UTF-8"));
+            }
+            // storing the same content again is a no-op
+            FileUtils.writeStringToFile(file, CONTENT, "UTF-8");
+            assertEquals(CONTENT_MD5, binaryManager.getBinary(source).getDigest());
+            assertEquals(1, countFiles(binaryManager.getStorageDir()));
+        } finally {
+            file.delete();
+            FileUtils.cleanDirectory(binaryManager.getStorageDir());
+            binaryManager.close();
+        }
+    }
+
     protected static int countFiles(File dir) {
         int n = 0;
         for (File f : dir.listFiles()) {
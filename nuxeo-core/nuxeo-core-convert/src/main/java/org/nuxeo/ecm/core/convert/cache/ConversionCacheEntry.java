@@ -23,6 +23,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.Date;
 
+import org.apache.commons.io.FileUtils;
 import org.nuxeo.ecm.core.api.blobholder.BlobHolder;
 import org.nuxeo.ecm.core.convert.api.ConversionService;
 
@@ -35,7 +36,7 @@ import org.nuxeo.ecm.core.convert.api.ConversionService;
  */
 public class ConversionCacheEntry {
 
-    protected Date lastAccessTime;
+    protected volatile Date lastAccessTime;
 
     protected BlobHolder bh;
 
@@ -45,11 +46,35 @@ public class ConversionCacheEntry {
 
     protected long sizeInKB = 0;
 
+    /** @since 10.2 */
+    protected long size = 0;
+
     public ConversionCacheEntry(BlobHolder bh) {
         this.bh = bh;
         updateAccessTime();
     }
 
+    /**
+     * Constructs an entry for an already persisted result, when reloading the cache.
+     *
+     * @param persistPath the path of the persisted result
+     * @param lastAccessTime the last access time
+     * @since 10.2
+     */
+    protected ConversionCacheEntry(String persistPath, Date lastAccessTime) {
+        this.persistPath = persistPath;
+        this.lastAccessTime = lastAccessTime;
+        persisted = true;
+        computeSize();
+    }
+
+    protected void computeSize() {
+        File file = new File(persistPath);
+        // a multi-blob result is persisted as a directory
+        size = file.exists() ? FileUtils.sizeOf(file) : 0;
+        sizeInKB = size / 1024;
+    }
+
     protected void updateAccessTime() {
         lastAccessTime = new Date();
     }
@@ -59,7 +84,7 @@ public class ConversionCacheEntry {
             CachableBlobHolder cbh = (CachableBlobHolder) bh;
             persistPath = cbh.persist(basePath);
             if (persistPath != null) {
-                sizeInKB = new File(persistPath).length() / 1024;
+                computeSize();
                 persisted = true;
             }
         }
@@ -69,7 +94,7 @@ public class ConversionCacheEntry {
 
     public void remove() {
         if (persisted && persistPath != null) {
-            new File(persistPath).delete();
+            FileUtils.deleteQuietly(new File(persistPath));
         }
     }
 
@@ -92,8 +117,26 @@ public class ConversionCacheEntry {
         return sizeInKB;
     }
 
+    /**
+     * Gets the disk space used by the persisted result, in bytes.
+     *
+     * @since 10.2
+     */
+    public long getDiskSpaceUsage() {
+        return size;
+    }
+
     public Date getLastAccessedTime() {
         return lastAccessTime;
     }
 
+    /**
+     * Gets the path of the persisted result, or {@code null} if not persisted.
+     *
+     * @since 10.2
+     */
+    public String getPersistPath() {
+        return persisted ? persistPath : null;
+    }
+
 }
@@ -21,15 +21,6 @@
  */
 package org.nuxeo.ecm.core.convert.cache;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Date;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Objects;
-import java.util.Set;
-
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.nuxeo.ecm.core.convert.service.ConversionServiceImpl;
@@ -68,16 +59,7 @@ public class ConversionCacheGCManager {
     }
 
     public static long getCacheSizeInKB() {
-        long totalSize = 0;
-        Set<String> cacheKeys = ConversionCacheHolder.getCacheKeys();
-
-        for (String key : cacheKeys) {
-            ConversionCacheEntry cacheEntry = ConversionCacheHolder.getCacheEntry(key);
-            if (cacheEntry != null) {
-                totalSize += cacheEntry.getDiskSpaceUsageInKB();
-            }
-        }
-        return totalSize;
+        return ConversionCacheHolder.getCacheSize() / 1024;
     }
 
     public static boolean gcIfNeeded() {
@@ -96,9 +78,10 @@ public class ConversionCacheGCManager {
         long deltaInKB = totalSize - limit;
         if (limit < 0) {
             // mainly for testing : negative limit means cleanup everything
-            deltaInKB = totalSize;
+            // (entries smaller than 1 KB are not counted in the total)
+            deltaInKB = Long.MAX_VALUE / 1024;
         }
-        log.debug("GC needed to free " + deltaInKB + " KB of data");
+        log.debug("GC needed to free " + Math.min(deltaInKB, totalSize) + " KB of data");
         doGC(deltaInKB);
         log.debug("GC terminated");
         gcCalls += 1;
@@ -106,34 +89,7 @@ public class ConversionCacheGCManager {
     }
 
     public static void doGC(long deltaInKB) {
-
-        Set<String> cacheKeys = ConversionCacheHolder.getCacheKeys();
-
-        Map<Date, String> sortingMap = new HashMap<Date, String>();
-
-        for (String key : cacheKeys) {
-            ConversionCacheEntry cacheEntry = ConversionCacheHolder.getCacheEntry(key);
-            Objects.requireNonNull(cacheEntry, key);
-            sortingMap.put(cacheEntry.getLastAccessedTime(), key);
-        }
-
-        List<Date> accessTimeList = new ArrayList<Date>();
-        accessTimeList.addAll(sortingMap.keySet());
-        Collections.sort(accessTimeList);
-
-        long deletedVolume = 0;
-        for (Date accessDate : accessTimeList) {
-            ConversionCacheEntry cacheEntry = ConversionCacheHolder.getCacheEntry(sortingMap.get(accessDate));
-
-            long deletePotential = cacheEntry.getDiskSpaceUsageInKB();
-
-            deletedVolume += deletePotential;
-            ConversionCacheHolder.removeFromCache(sortingMap.get(accessDate));
-
-            if (deletedVolume > deltaInKB) {
-                break;
-            }
-        }
+        ConversionCacheHolder.evictLeastRecentlyUsed(deltaInKB * 1024, null);
         gcRuns += 1;
     }
 
@@ -22,14 +22,16 @@ package org.nuxeo.ecm.core.convert.cache;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.logging.Log;
@@ -38,17 +40,44 @@ import org.nuxeo.common.utils.Path;
 import org.nuxeo.ecm.core.api.blobholder.BlobHolder;
 import org.nuxeo.ecm.core.convert.api.ConversionService;
 import org.nuxeo.ecm.core.convert.service.ConversionServiceImpl;
+import org.nuxeo.runtime.metrics.MetricsService;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
 
 /**
  * Manager for the cache system of the {@link ConversionService}.
+ * <p>
+ * Lookups don't take any lock. The cache is bounded by the disk space used by the persisted results: when an addition
+ * makes it exceed the configured size, the least recently used entries are evicted. The GC thread (see
+ * {@link ConversionCacheGCManager}) does the same periodically.
+ * <p>
+ * When the cache is configured to be persisted, its index is saved on disk (see {@link ConversionCacheIndex}) so that
+ * it can be reloaded after a restart.
+ * <p>
+ * Hits, misses, evictions and the size of the cache are published as metrics.
  *
  * @author tiry
  */
 public class ConversionCacheHolder {
 
-    protected static final Map<String, ConversionCacheEntry> cache = new HashMap<>();
+    protected static final Map<String, ConversionCacheEntry> cache = new ConcurrentHashMap<>();
+
+    /** Total disk space used by the entries, in bytes. */
+    protected static final AtomicLong cacheSize = new AtomicLong();
 
-    protected static final ReentrantReadWriteLock cacheLock = new ReentrantReadWriteLock();
+    /** Locks serializing the persistence of results having the same key. */
+    protected static final Object[] keyLocks = new Object[64];
+
+    static {
+        for (int i = 0; i < keyLocks.length; i++) {
+            keyLocks[i] = new Object();
+        }
+    }
+
+    protected static final ReentrantLock evictionLock = new ReentrantLock();
 
     private static final Log log = LogFactory.getLog(ConversionCacheHolder.class);
 
@@ -58,6 +87,24 @@ public class ConversionCacheHolder {
 
     public static final AtomicLong CACHE_HITS = new AtomicLong();
 
+    protected static final MetricRegistry registry = SharedMetricRegistries.getOrCreate(
+            MetricsService.class.getName());
+
+    protected static final Counter hits = registry.counter(
+            MetricRegistry.name("nuxeo", "conversion", "cache", "hits"));
+
+    protected static final Counter misses = registry.counter(
+            MetricRegistry.name("nuxeo", "conversion", "cache", "misses"));
+
+    protected static final Counter evictions = registry.counter(
+            MetricRegistry.name("nuxeo", "conversion", "cache", "evictions"));
+
+    static {
+        String gaugeName = MetricRegistry.name("nuxeo", "conversion", "cache", "size");
+        registry.remove(gaugeName);
+        registry.register(gaugeName, (Gauge<Long>) cacheSize::get);
+    }
+
     // Utility class.
     private ConversionCacheHolder() {
     }
@@ -67,7 +114,16 @@ public class ConversionCacheHolder {
     }
 
     public static int getNbCacheEntries() {
-        return cache.keySet().size();
+        return cache.size();
+    }
+
+    /**
+     * Gets the disk space used by the cache, in bytes.
+     *
+     * @since 10.2
+     */
+    public static long getCacheSize() {
+        return cacheSize.get();
     }
 
     protected static List<String> getSubPathFromKey(String key) {
@@ -108,11 +164,19 @@ public class ConversionCacheHolder {
 
     public static void addToCache(String key, BlobHolder result) {
         Objects.requireNonNull(key);
-        cacheLock.writeLock().lock();
-        try {
+        synchronized (keyLocks[Math.floorMod(key.hashCode(), keyLocks.length)]) {
             doAddToCache(key, result);
-        } finally {
-            cacheLock.writeLock().unlock();
+        }
+        long maxSize = ConversionServiceImpl.getMaxCacheSizeInKB() * 1024L;
+        long excess = cacheSize.get() - maxSize;
+        // a negative size is only used by tests to have the GC thread clean everything
+        if (maxSize >= 0 && excess > 0 && evictionLock.tryLock()) {
+            // if another thread is already evicting, let it do the job
+            try {
+                evictLeastRecentlyUsed(excess, key);
+            } finally {
+                evictionLock.unlock();
+            }
         }
     }
 
@@ -127,35 +191,83 @@ public class ConversionCacheHolder {
         }
 
         if (persisted) {
-            cache.put(key, cce);
+            cacheSize.addAndGet(cce.getDiskSpaceUsage());
+            ConversionCacheEntry previous = cache.put(key, cce);
+            if (previous != null) {
+                cacheSize.addAndGet(-previous.getDiskSpaceUsage());
+                if (!Objects.equals(previous.getPersistPath(), cce.getPersistPath())) {
+                    previous.remove();
+                }
+            }
         }
     }
 
     public static void removeFromCache(String key) {
-        cacheLock.writeLock().lock();
-        try {
-            doRemoveFromCache(key);
-        } finally {
-            cacheLock.writeLock().unlock();
+        doRemoveFromCache(key);
+    }
+
+    protected static boolean doRemoveFromCache(String key) {
+        ConversionCacheEntry cce = cache.remove(key);
+        if (cce == null) {
+            return false;
         }
+        cacheSize.addAndGet(-cce.getDiskSpaceUsage());
+        cce.remove();
+        return true;
+    }
 
+    /**
+     * Evicts the least recently used entries until enough disk space is freed.
+     *
+     * @param bytes the disk space to free, in bytes
+     * @param keep the key of an entry that must not be evicted, or {@code null}
+     * @return the number of entries evicted
+     * @since 10.2
+     */
+    public static int evictLeastRecentlyUsed(long bytes, String keep) {
+        // snapshot the access times, as they change concurrently
+        List<AccessedEntry> entries = new ArrayList<>(cache.size());
+        cache.forEach((key, cce) -> entries.add(new AccessedEntry(key, cce)));
+        entries.sort(Comparator.comparingLong(entry -> entry.accessTime));
+        long freed = 0;
+        int evicted = 0;
+        for (AccessedEntry entry : entries) {
+            if (freed >= bytes) {
+                break;
+            }
+            if (entry.key.equals(keep)) {
+                continue;
+            }
+            ConversionCacheEntry cce = entry.cce;
+            // don't evict an entry that was replaced concurrently
+            if (cache.remove(entry.key, cce)) {
+                cacheSize.addAndGet(-cce.getDiskSpaceUsage());
+                cce.remove();
+                freed += cce.getDiskSpaceUsage();
+                evicted++;
+            }
+        }
+        evictions.inc(evicted);
+        return evicted;
     }
 
-    protected static void doRemoveFromCache(String key) {
-        if (cache.containsKey(key)) {
-            ConversionCacheEntry cce = cache.get(key);
-            cce.remove();
-            cache.remove(key);
+    protected static class AccessedEntry {
+
+        protected final String key;
+
+        protected final ConversionCacheEntry cce;
+
+        protected final long accessTime;
+
+        protected AccessedEntry(String key, ConversionCacheEntry cce) {
+            this.key = key;
+            this.cce = cce;
+            accessTime = cce.getLastAccessedTime().getTime();
         }
     }
 
     public static ConversionCacheEntry getCacheEntry(String key) {
-        cacheLock.readLock().lock();
-        try {
-            return doGetCacheEntry(key);
-        } finally {
-            cacheLock.readLock().unlock();
-        }
+        return doGetCacheEntry(key);
     }
 
     protected static ConversionCacheEntry doGetCacheEntry(String key) {
@@ -163,32 +275,64 @@ public class ConversionCacheHolder {
     }
 
     public static BlobHolder getFromCache(String key) {
-        cacheLock.readLock().lock();
-        try {
-            return doGetFromCache(key);
-        } finally {
-            cacheLock.readLock().unlock();
-        }
+        return doGetFromCache(key);
     }
 
     protected static BlobHolder doGetFromCache(String key) {
         ConversionCacheEntry cacheEntry = cache.get(key);
+        if (cacheEntry != null) {
+            String path = cacheEntry.getPersistPath();
+            if (path != null && !new File(path).exists()) {
+                // removed from disk behind our back
+                if (cache.remove(key, cacheEntry)) {
+                    cacheSize.addAndGet(-cacheEntry.getDiskSpaceUsage());
+                }
+                cacheEntry = null;
+            }
+        }
         if (cacheEntry != null) {
             if (CACHE_HITS.incrementAndGet() < 0) {
                 // skip all negative values
                 CACHE_HITS.addAndGet(Long.MIN_VALUE); // back to 0
             }
+            hits.inc();
             return cacheEntry.restore();
         }
+        misses.inc();
         return null;
     }
 
     public static Set<String> getCacheKeys() {
-        cacheLock.readLock().lock();
-        try {
-            return new HashSet<>(cache.keySet());
-        } finally {
-            cacheLock.readLock().unlock();
+        return new HashSet<>(cache.keySet());
+    }
+
+    /**
+     * Saves the index of the cache on disk, so that it can be reloaded after a restart.
+     *
+     * @since 10.2
+     */
+    public static void saveCache() {
+        ConversionCacheIndex.save(new File(ConversionServiceImpl.getCacheBasePath()), cache);
+    }
+
+    /**
+     * Reloads the cache from the index saved on disk, and deletes the persisted results that are not in the index.
+     *
+     * @since 10.2
+     */
+    public static void loadCache() {
+        File baseDir = new File(ConversionServiceImpl.getCacheBasePath());
+        baseDir.mkdirs();
+        Map<String, ConversionCacheEntry> entries = ConversionCacheIndex.load(baseDir);
+        cache.clear();
+        cacheSize.set(0);
+        for (Entry<String, ConversionCacheEntry> entry : entries.entrySet()) {
+            cache.put(entry.getKey(), entry.getValue());
+            cacheSize.addAndGet(entry.getValue().getDiskSpaceUsage());
+        }
+        long excess = cacheSize.get() - ConversionServiceImpl.getMaxCacheSizeInKB() * 1024L;
+        if (excess > 0) {
+            evictLeastRecentlyUsed(excess, null);
         }
     }
 
@@ -196,12 +340,8 @@ public class ConversionCacheHolder {
      * @since 6.0
      */
     public static void deleteCache() {
-        cacheLock.writeLock().lock();
-        try {
-            cache.clear();
-            new File(ConversionServiceImpl.getCacheBasePath()).delete();
-        } finally {
-            cacheLock.writeLock().unlock();
-        }
+        cache.clear();
+        cacheSize.set(0);
+        new File(ConversionServiceImpl.getCacheBasePath()).delete();
     }
 }
@@ -0,0 +1,157 @@
+/*
+ * (C) Copyright 2018 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.ecm.core.convert.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Index of the conversion cache, saved on disk at the root of the cache directory so that the cache survives a
+ * restart.
+ * <p>
+ * For each cache key, the index holds the last access time of the entry and the path of the persisted result relative
+ * to the cache directory.
+ *
+ * @since 10.2
+ */
+public class ConversionCacheIndex {
+
+    private static final Log log = LogFactory.getLog(ConversionCacheIndex.class);
+
+    public static final String INDEX_FILE_NAME = "index.properties";
+
+    // Utility class.
+    private ConversionCacheIndex() {
+    }
+
+    /**
+     * Saves the index of the given entries.
+     *
+     * @param baseDir the cache directory
+     * @param entries the cache entries
+     */
+    public static void save(File baseDir, Map<String, ConversionCacheEntry> entries) {
+        Path base = baseDir.toPath().toAbsolutePath();
+        Properties properties = new Properties();
+        entries.forEach((key, cce) -> {
+            String path = cce.getPersistPath();
+            if (path != null) {
+                String relative = base.relativize(new File(path).toPath().toAbsolutePath()).toString();
+                properties.setProperty(key, cce.getLastAccessedTime().getTime() + " " + relative);
+            }
+        });
+        Path index = base.resolve(INDEX_FILE_NAME);
+        try {
+            Path tmp = Files.createTempFile(base, INDEX_FILE_NAME, ".tmp");
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                properties.store(out, null);
+            }
+            Files.move(tmp, index, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.error("Cannot save conversion cache index: " + index, e);
+        }
+    }
+
+    /**
+     * Loads the entries from the saved index.
+     * <p>
+     * The entries whose persisted result is missing are skipped, and the persisted results that are not referenced by
+     * the index are deleted.
+     *
+     * @param baseDir the cache directory
+     * @return the cache entries
+     */
+    public static Map<String, ConversionCacheEntry> load(File baseDir) {
+        Map<String, ConversionCacheEntry> entries = new HashMap<>();
+        Path base = baseDir.toPath().toAbsolutePath();
+        Path index = base.resolve(INDEX_FILE_NAME);
+        if (!Files.isDirectory(base)) {
+            return entries;
+        }
+        Set<Path> referenced = new HashSet<>();
+        if (Files.exists(index)) {
+            Properties properties = new Properties();
+            try (InputStream in = Files.newInputStream(index)) {
+                properties.load(in);
+            } catch (IOException | IllegalArgumentException e) {
+                log.error("Cannot read conversion cache index: " + index, e);
+            }
+            for (String key : properties.stringPropertyNames()) {
+                String value = properties.getProperty(key);
+                int i = value.indexOf(' ');
+                if (i < 0) {
+                    continue;
+                }
+                Path path = base.resolve(value.substring(i + 1)).normalize();
+                if (!path.startsWith(base) || !Files.exists(path)) {
+                    continue;
+                }
+                long lastAccessTime;
+                try {
+                    lastAccessTime = Long.parseLong(value.substring(0, i));
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                entries.put(key, new ConversionCacheEntry(path.toString(), new Date(lastAccessTime)));
+                referenced.add(path);
+            }
+        }
+        deleteUnreferenced(base, index, referenced);
+        return entries;
+    }
+
+    /**
+     * Deletes the files left by entries that were not saved in the index, for instance after a crash.
+     */
+    protected static void deleteUnreferenced(Path base, Path index, Set<Path> referenced) {
+        try (Stream<Path> stream = Files.walk(base)) {
+            stream.filter(Files::isRegularFile).filter(path -> !path.equals(index)).forEach(path -> {
+                // the result of a multi-blob conversion is a directory
+                for (Path p = path; p != null && p.startsWith(base); p = p.getParent()) {
+                    if (referenced.contains(p)) {
+                        return;
+                    }
+                }
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    log.warn("Cannot delete unreferenced conversion cache file: " + path);
+                }
+            });
+        } catch (IOException e) {
+            log.error("Cannot list conversion cache directory: " + base, e);
+        }
+    }
+
+}
@@ -43,6 +43,9 @@ public class GCTask implements Runnable {
         log.debug("starting GC thread");
         while (GCEnabled) {
             ConversionCacheGCManager.gcIfNeeded();
+            if (ConversionServiceImpl.isCacheEnabled() && ConversionServiceImpl.isCachePersisted()) {
+                ConversionCacheHolder.saveCache();
+            }
             try {
                 long gcInterval = ConversionServiceImpl.getGCIntervalInMinutes();
 
@@ -40,6 +40,9 @@ public class GlobalConfigDescriptor implements Serializable {
 
     public static final boolean DEFAULT_CACHE_ENABLED = true;
 
+    /** @since 10.2 */
+    public static final boolean DEFAULT_CACHE_PERSISTED = false;
+
     public static final long DEFAULT_GC_INTERVAL_IN_MIN = 10;
 
     public static final int DEFAULT_DISK_CACHE_IN_KB = 10 * 1024;
@@ -53,6 +56,19 @@ public class GlobalConfigDescriptor implements Serializable {
         return enableCache == null ? DEFAULT_CACHE_ENABLED : enableCache.booleanValue();
     }
 
+    /** @since 10.2 */
+    @XNode("persistCache")
+    protected Boolean persistCache;
+
+    /**
+     * Checks if the cache is kept on disk across restarts.
+     *
+     * @since 10.2
+     */
+    public boolean isCachePersisted() {
+        return persistCache == null ? DEFAULT_CACHE_PERSISTED : persistCache.booleanValue();
+    }
+
     @XNode("cachingDirectory")
     protected String cachingDirectory;
 
@@ -104,6 +120,9 @@ public class GlobalConfigDescriptor implements Serializable {
         if (other.enableCache != null) {
             enableCache = other.enableCache;
         }
+        if (other.persistCache != null) {
+            persistCache = other.persistCache;
+        }
         if (other.GCInterval != null) {
             GCInterval = other.GCInterval;
         }
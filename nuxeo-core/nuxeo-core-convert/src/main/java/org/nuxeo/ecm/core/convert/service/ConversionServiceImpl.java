@@ -97,12 +97,14 @@ public class ConversionServiceImpl extends DefaultComponent implements Conversio
         converterDescriptors.clear();
         translationHelper.clear();
         self = this;
-        config.clearCachingDirectory();
     }
 
     @Override
     public void deactivate(ComponentContext context) {
         if (config.isCacheEnabled()) {
+            if (config.isCachePersisted()) {
+                ConversionCacheHolder.saveCache();
+            }
             ConversionCacheHolder.deleteCache();
         }
         self = null;
@@ -122,7 +124,6 @@ public class ConversionServiceImpl extends DefaultComponent implements Conversio
         } else if (CONFIG_EP.equals(extensionPoint)) {
             GlobalConfigDescriptor desc = (GlobalConfigDescriptor) contribution;
             config.update(desc);
-            config.clearCachingDirectory();
         } else {
             log.error("Unable to handle unknown extensionPoint " + extensionPoint);
         }
@@ -178,6 +179,11 @@ public class ConversionServiceImpl extends DefaultComponent implements Conversio
         return self.config.isCacheEnabled();
     }
 
+    /** @since 10.2 */
+    public static boolean isCachePersisted() {
+        return self.config.isCachePersisted();
+    }
+
     public static String getCacheBasePath() {
         return self.config.getCachingDirectory();
     }
@@ -314,7 +320,7 @@ public class ConversionServiceImpl extends DefaultComponent implements Conversio
 
         String cacheKey = CacheKeyGenerator.computeKey(converterName, blobHolder, parameters);
 
-        BlobHolder result = ConversionCacheHolder.getFromCache(cacheKey);
+        BlobHolder result = config.isCacheEnabled() ? ConversionCacheHolder.getFromCache(cacheKey) : null;
 
         if (result == null) {
             Converter converter = desc.getConverterInstance();
@@ -518,6 +524,12 @@ public class ConversionServiceImpl extends DefaultComponent implements Conversio
 
     @Override
     public void start(ComponentContext context) {
+        // done once all the configuration contributions are registered
+        if (config.isCacheEnabled() && config.isCachePersisted()) {
+            ConversionCacheHolder.loadCache();
+        } else {
+            config.clearCachingDirectory();
+        }
         startGC();
     }
 
@@ -22,10 +22,12 @@ package org.nuxeo.ecm.core.convert.tests;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 
+import org.apache.commons.lang3.StringUtils;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.nuxeo.common.utils.FileUtils;
@@ -34,6 +36,7 @@ import org.nuxeo.ecm.core.api.Blobs;
 import org.nuxeo.ecm.core.api.blobholder.BlobHolder;
 import org.nuxeo.ecm.core.api.blobholder.SimpleBlobHolder;
 import org.nuxeo.ecm.core.convert.api.ConversionService;
+import org.nuxeo.ecm.core.convert.cache.CacheKeyGenerator;
 import org.nuxeo.ecm.core.convert.cache.ConversionCacheGCManager;
 import org.nuxeo.ecm.core.convert.cache.ConversionCacheHolder;
 import org.nuxeo.ecm.core.convert.extension.Converter;
@@ -94,4 +97,58 @@ public class TestCache {
         assertEquals(0, cacheSize1 - cacheSize3);
     }
 
+    protected static BlobHolder newBlobHolder(int i) {
+        // about 4 KB
+        return new SimpleBlobHolder(Blobs.createBlob(i + StringUtils.repeat("x", 4000)));
+    }
+
+    @Test
+    public void testCacheIsBounded() throws Exception {
+        ConversionService cs = Framework.getService(ConversionService.class);
+        int maxSizeInKB = ConversionServiceImpl.getMaxCacheSizeInKB();
+        ConversionServiceImpl.setMaxCacheSizeInKB(10);
+        try {
+            for (int i = 0; i < 10; i++) {
+                assertNotNull(cs.convert("identity", newBlobHolder(i), null));
+                assertTrue(ConversionCacheHolder.getCacheSize() <= 10 * 1024);
+            }
+            assertTrue(ConversionCacheHolder.getNbCacheEntries() < 10);
+            // least recently used entries were evicted
+            assertNull(ConversionCacheHolder.getCacheEntry(CacheKeyGenerator.computeKey("identity", newBlobHolder(0),
+                    null)));
+            assertNotNull(ConversionCacheHolder.getCacheEntry(CacheKeyGenerator.computeKey("identity",
+                    newBlobHolder(9), null)));
+        } finally {
+            ConversionServiceImpl.setMaxCacheSizeInKB(maxSizeInKB);
+            ConversionCacheGCManager.doGC(Long.MAX_VALUE / 1024);
+        }
+    }
+
+    @Test
+    public void testCacheReload() throws Exception {
+        ConversionService cs = Framework.getService(ConversionService.class);
+        BlobHolder bh = newBlobHolder(0);
+        String key = CacheKeyGenerator.computeKey("identity", bh, null);
+        try {
+            cs.convert("identity", bh, null);
+            assertNotNull(ConversionCacheHolder.getCacheEntry(key));
+            long size = ConversionCacheHolder.getCacheSize();
+
+            // simulate a restart
+            ConversionCacheHolder.saveCache();
+            ConversionCacheHolder.deleteCache();
+            assertNull(ConversionCacheHolder.getCacheEntry(key));
+            ConversionCacheHolder.loadCache();
+
+            assertNotNull(ConversionCacheHolder.getCacheEntry(key));
+            assertEquals(size, ConversionCacheHolder.getCacheSize());
+            long cacheHits = ConversionCacheHolder.getCacheHits();
+            BlobHolder result = cs.convert("identity", bh, null);
+            assertEquals(cacheHits + 1, ConversionCacheHolder.getCacheHits());
+            assertEquals(bh.getBlob().getString(), result.getBlob().getString());
+        } finally {
+            ConversionCacheGCManager.doGC(Long.MAX_VALUE / 1024);
+        }
+    }
+
 }
@@ -37,8 +37,13 @@ import org.nuxeo.ecm.core.event.PostCommitFilteringEventListener;
 import org.nuxeo.ecm.core.event.script.Script;
 import org.nuxeo.ecm.core.event.script.ScriptingEventListener;
 import org.nuxeo.ecm.core.event.script.ScriptingPostCommitEventListener;
+import org.nuxeo.runtime.metrics.MetricsService;
 import org.nuxeo.runtime.model.RuntimeContext;
 
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.codahale.metrics.Timer;
+
 /**
  * XObject descriptor to declare event listeners
  */
@@ -101,6 +106,9 @@ public class EventListenerDescriptor {
 
     protected PostCommitEventListener postCommitEventListener;
 
+    /** @since 10.2 */
+    protected volatile Timer timer;
+
     public int getPriority() {
         return priority == null ? 0 : priority.intValue();
     }
@@ -208,6 +216,20 @@ public class EventListenerDescriptor {
         return name;
     }
 
+    /**
+     * Gets the timer measuring the executions of this listener.
+     *
+     * @since 10.2
+     */
+    public Timer getTimer() {
+        Timer t = timer;
+        if (t == null) {
+            MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+            timer = t = registry.timer(MetricRegistry.name("nuxeo", "events", "listeners", getName()));
+        }
+        return t;
+    }
+
     public Integer getTransactionTimeout() {
         return transactionTimeOut;
     }
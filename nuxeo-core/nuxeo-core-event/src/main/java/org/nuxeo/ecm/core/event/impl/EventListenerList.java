@@ -22,11 +22,16 @@
 package org.nuxeo.ecm.core.event.impl;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+import org.nuxeo.ecm.core.event.EventBundle;
 import org.nuxeo.ecm.core.event.EventListener;
 import org.nuxeo.ecm.core.event.PostCommitEventListener;
 
@@ -49,12 +54,95 @@ public class EventListenerList {
 
     protected volatile List<EventListenerDescriptor> enabledAsyncPostCommitListenersDescriptors = null;
 
+    /** @since 10.2 */
+    protected volatile DispatchTable inlineDispatchTable;
+
+    /** @since 10.2 */
+    protected volatile DispatchTable syncPostCommitDispatchTable;
+
+    /** @since 10.2 */
+    protected volatile DispatchTable asyncPostCommitDispatchTable;
+
     protected final Map<String, EventListenerDescriptor> descriptors = new HashMap<String, EventListenerDescriptor>();
 
+    /**
+     * Immutable table of the enabled listeners of one kind, indexed by the name of the events they accept.
+     * <p>
+     * A new table is built each time the listeners change, so that dispatching an event doesn't have to go through the
+     * listeners not interested in it.
+     *
+     * @since 10.2
+     */
+    protected static class DispatchTable {
+
+        protected static final EventListenerDescriptor[] EMPTY = new EventListenerDescriptor[0];
+
+        /** All the enabled listeners, in order. */
+        protected final EventListenerDescriptor[] listeners;
+
+        /** The listeners accepting all events, in order. */
+        protected final EventListenerDescriptor[] anyEvent;
+
+        /** The listeners accepting each event name, in order, including those accepting all events. */
+        protected final Map<String, EventListenerDescriptor[]> byEvent;
+
+        protected DispatchTable(List<EventListenerDescriptor> enabled) {
+            listeners = enabled.toArray(EMPTY);
+            List<EventListenerDescriptor> any = new ArrayList<>();
+            Set<String> names = new LinkedHashSet<>();
+            for (EventListenerDescriptor desc : listeners) {
+                if (desc.events == null) {
+                    any.add(desc);
+                } else {
+                    names.addAll(desc.events);
+                }
+            }
+            anyEvent = any.toArray(EMPTY);
+            byEvent = new HashMap<>();
+            for (String name : names) {
+                List<EventListenerDescriptor> list = new ArrayList<>();
+                for (EventListenerDescriptor desc : listeners) {
+                    if (desc.acceptEvent(name)) {
+                        list.add(desc);
+                    }
+                }
+                byEvent.put(name, list.toArray(EMPTY));
+            }
+        }
+
+        protected EventListenerDescriptor[] get(String eventName) {
+            return eventName == null ? anyEvent : byEvent.getOrDefault(eventName, anyEvent);
+        }
+
+        protected List<EventListenerDescriptor> get(EventBundle bundle) {
+            if (byEvent.isEmpty()) {
+                return new ArrayList<>(Arrays.asList(anyEvent));
+            }
+            Map<EventListenerDescriptor, Boolean> accepted = new IdentityHashMap<>();
+            for (Map.Entry<String, EventListenerDescriptor[]> es : byEvent.entrySet()) {
+                if (bundle.containsEventName(es.getKey())) {
+                    for (EventListenerDescriptor desc : es.getValue()) {
+                        accepted.put(desc, Boolean.TRUE);
+                    }
+                }
+            }
+            List<EventListenerDescriptor> list = new ArrayList<>(accepted.size() + anyEvent.length);
+            for (EventListenerDescriptor desc : listeners) {
+                if (desc.events == null || accepted.containsKey(desc)) {
+                    list.add(desc);
+                }
+            }
+            return list;
+        }
+    }
+
     protected synchronized void flushCache() {
         enabledAsyncPostCommitListenersDescriptors = null;
         enabledInlineListenersDescriptors = null;
         enabledSyncPostCommitListenersDescriptors = null;
+        inlineDispatchTable = null;
+        syncPostCommitDispatchTable = null;
+        asyncPostCommitDispatchTable = null;
     }
 
     public void add(EventListenerDescriptor descriptor) {
@@ -149,24 +237,31 @@ public class EventListenerList {
     }
 
     public synchronized void recomputeEnabledListeners() {
-        enabledAsyncPostCommitListenersDescriptors = new ArrayList<EventListenerDescriptor>();
+        List<EventListenerDescriptor> enabledAsync = new ArrayList<EventListenerDescriptor>();
         for (EventListenerDescriptor desc : asyncPostCommitListenersDescriptors) {
             if (desc.isEnabled) {
-                enabledAsyncPostCommitListenersDescriptors.add(desc);
+                enabledAsync.add(desc);
             }
         }
-        enabledSyncPostCommitListenersDescriptors = new ArrayList<EventListenerDescriptor>();
+        List<EventListenerDescriptor> enabledSync = new ArrayList<EventListenerDescriptor>();
         for (EventListenerDescriptor desc : syncPostCommitListenersDescriptors) {
             if (desc.isEnabled) {
-                enabledSyncPostCommitListenersDescriptors.add(desc);
+                enabledSync.add(desc);
             }
         }
-        enabledInlineListenersDescriptors = new ArrayList<EventListenerDescriptor>();
+        List<EventListenerDescriptor> enabledInline = new ArrayList<EventListenerDescriptor>();
         for (EventListenerDescriptor desc : inlineListenersDescriptors) {
             if (desc.isEnabled) {
-                enabledInlineListenersDescriptors.add(desc);
+                enabledInline.add(desc);
             }
         }
+        // publish fully built tables and lists
+        asyncPostCommitDispatchTable = new DispatchTable(enabledAsync);
+        syncPostCommitDispatchTable = new DispatchTable(enabledSync);
+        inlineDispatchTable = new DispatchTable(enabledInline);
+        enabledAsyncPostCommitListenersDescriptors = enabledAsync;
+        enabledSyncPostCommitListenersDescriptors = enabledSync;
+        enabledInlineListenersDescriptors = enabledInline;
     }
 
     public List<EventListenerDescriptor> getEnabledInlineListenersDescriptors() {
@@ -190,6 +285,47 @@ public class EventListenerList {
         return new ArrayList<EventListenerDescriptor>(enabledAsyncPostCommitListenersDescriptors);
     }
 
+    /**
+     * Gets the enabled inline listeners accepting an event, in order.
+     * <p>
+     * The returned array is shared and must not be modified.
+     *
+     * @since 10.2
+     */
+    public EventListenerDescriptor[] getEnabledInlineListenersDescriptors(String eventName) {
+        DispatchTable table;
+        while ((table = inlineDispatchTable) == null) {
+            recomputeEnabledListeners();
+        }
+        return table.get(eventName);
+    }
+
+    /**
+     * Gets the enabled synchronous post-commit listeners accepting at least one event name of the bundle, in order.
+     *
+     * @since 10.2
+     */
+    public List<EventListenerDescriptor> getEnabledSyncPostCommitListenersDescriptors(EventBundle bundle) {
+        DispatchTable table;
+        while ((table = syncPostCommitDispatchTable) == null) {
+            recomputeEnabledListeners();
+        }
+        return table.get(bundle);
+    }
+
+    /**
+     * Gets the enabled asynchronous post-commit listeners accepting at least one event name of the bundle, in order.
+     *
+     * @since 10.2
+     */
+    public List<EventListenerDescriptor> getEnabledAsyncPostCommitListenersDescriptors(EventBundle bundle) {
+        DispatchTable table;
+        while ((table = asyncPostCommitDispatchTable) == null) {
+            recomputeEnabledListeners();
+        }
+        return table.get(bundle);
+    }
+
     public List<String> getListenerNames() {
         return new ArrayList<String>(descriptors.keySet());
     }
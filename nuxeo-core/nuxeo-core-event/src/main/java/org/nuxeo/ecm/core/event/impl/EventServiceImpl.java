@@ -28,6 +28,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import javax.naming.NamingException;
@@ -59,6 +60,8 @@ import org.nuxeo.ecm.core.event.pipe.dispatch.EventDispatcherRegistry;
 import org.nuxeo.runtime.api.Framework;
 import org.nuxeo.runtime.transaction.TransactionHelper;
 
+import com.codahale.metrics.Timer;
+
 /**
  * Implementation of the event service.
  */
@@ -231,16 +234,19 @@ public class EventServiceImpl implements EventService, EventServiceAdmin, Synchr
     public void fireEvent(Event event) {
 
         String ename = event.getName();
-        EventStats stats = Framework.getService(EventStats.class);
-        for (EventListenerDescriptor desc : listenerDescriptors.getEnabledInlineListenersDescriptors()) {
-            if (!desc.acceptEvent(ename)) {
-                continue;
-            }
+        EventListenerDescriptor[] listeners = listenerDescriptors.getEnabledInlineListenersDescriptors(ename);
+        EventStats stats = listeners.length == 0 ? null : Framework.getService(EventStats.class);
+        for (EventListenerDescriptor desc : listeners) {
             try {
-                long t0 = System.currentTimeMillis();
-                SequenceTracer.start("Fire sync event " + event.getName());
-                desc.asEventListener().handleEvent(event);
-                long elapsed = System.currentTimeMillis() - t0;
+                Timer.Context timerContext = desc.getTimer().time();
+                long elapsed;
+                try {
+                    SequenceTracer.start("Fire sync event " + event.getName());
+                    desc.asEventListener().handleEvent(event);
+                } finally {
+                    // also record the failed executions
+                    elapsed = TimeUnit.NANOSECONDS.toMillis(timerContext.stop());
+                }
                 SequenceTracer.stop("done in " + elapsed + " ms");
                 if (stats != null) {
                     stats.logSyncExec(desc, elapsed);
@@ -312,8 +318,10 @@ public class EventServiceImpl implements EventService, EventServiceAdmin, Synchr
             }
         }
 
-        List<EventListenerDescriptor> postCommitSync = listenerDescriptors.getEnabledSyncPostCommitListenersDescriptors();
-        List<EventListenerDescriptor> postCommitAsync = listenerDescriptors.getEnabledAsyncPostCommitListenersDescriptors();
+        List<EventListenerDescriptor> postCommitSync = listenerDescriptors.getEnabledSyncPostCommitListenersDescriptors(
+                event);
+        List<EventListenerDescriptor> postCommitAsync = listenerDescriptors.getEnabledAsyncPostCommitListenersDescriptors(
+                event);
 
         if (bulkModeEnabled) {
             // run all listeners synchronously in one transaction
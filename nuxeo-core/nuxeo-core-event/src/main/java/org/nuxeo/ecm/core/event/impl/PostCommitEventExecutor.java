@@ -270,6 +270,7 @@ public class PostCommitEventExecutor {
                             TransactionHelper.commitOrRollbackTransaction();
                         }
                         long elapsed = System.currentTimeMillis() - t1;
+                        listener.getTimer().update(elapsed, TimeUnit.MILLISECONDS);
                         if (stats != null) {
                             stats.logAsyncExec(listener, elapsed);
                         }
@@ -354,6 +355,7 @@ public class PostCommitEventExecutor {
                         return Boolean.FALSE; // report error
                     } finally {
                         long elapsed = System.currentTimeMillis() - t1;
+                        listener.getTimer().update(elapsed, TimeUnit.MILLISECONDS);
                         if (log.isDebugEnabled()) {
                             log.debug("Events postcommit bulk execution end for listener: " + listener.getName()
                                     + " in " + elapsed + "ms");
@@ -18,6 +18,7 @@
  */
 package org.nuxeo.ecm.core.event.test;
 
+import org.nuxeo.ecm.core.api.NuxeoException;
 import org.nuxeo.ecm.core.event.Event;
 import org.nuxeo.ecm.core.event.EventListener;
 
@@ -30,6 +31,9 @@ public class DummyInlineListener implements EventListener {
 
     @Override
     public void handleEvent(Event event) {
+        if (event.getContext().getProperty("throwInline") != null) {
+            throw new NuxeoException("testing error case");
+        }
         event.getContext().setProperty("foo", "bar");
     }
 
@@ -23,7 +23,9 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import javax.inject.Inject;
 
@@ -31,7 +33,11 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.nuxeo.ecm.core.event.EventService;
 import org.nuxeo.ecm.core.event.PostCommitEventListener;
+import org.nuxeo.ecm.core.event.impl.EventBundleImpl;
+import org.nuxeo.ecm.core.event.impl.EventContextImpl;
+import org.nuxeo.ecm.core.event.impl.EventImpl;
 import org.nuxeo.ecm.core.event.impl.EventListenerDescriptor;
+import org.nuxeo.ecm.core.event.impl.EventListenerList;
 import org.nuxeo.ecm.core.event.impl.EventServiceImpl;
 import org.nuxeo.ecm.core.event.script.ScriptingPostCommitEventListener;
 import org.nuxeo.runtime.api.Framework;
@@ -128,6 +134,72 @@ public class TestEventListenerContrib {
                 + "Listener extension must define either a class or a script)", errors.get(2));
     }
 
+    @Test
+    public void testDispatchTable() throws Exception {
+        hotDeployer.deploy("org.nuxeo.ecm.core.event.test:test-listeners.xml");
+        hotDeployer.deploy("org.nuxeo.ecm.core.event.test:test-PostCommitListeners.xml");
+        EventListenerList list = getService().getEventListenerList();
+
+        // same listeners, in the same order, as when filtering all the enabled listeners
+        for (String name : Arrays.asList("test", "test1", "other")) {
+            List<EventListenerDescriptor> expected = list.getEnabledInlineListenersDescriptors()
+                                                         .stream()
+                                                         .filter(desc -> desc.acceptEvent(name))
+                                                         .collect(Collectors.toList());
+            assertEquals(name, expected, Arrays.asList(list.getEnabledInlineListenersDescriptors(name)));
+        }
+        EventListenerDescriptor script = getService().getEventListener("script/listener.groovy");
+        assertTrue(Arrays.asList(list.getEnabledInlineListenersDescriptors("test1")).contains(script));
+        assertFalse(Arrays.asList(list.getEnabledInlineListenersDescriptors("other")).contains(script));
+
+        EventListenerDescriptor postCommit = getService().getEventListener("testPostCommit");
+        assertTrue(list.getEnabledAsyncPostCommitListenersDescriptors(newBundle("other", "test1")).contains(postCommit));
+        assertFalse(list.getEnabledAsyncPostCommitListenersDescriptors(newBundle("other")).contains(postCommit));
+
+        // the table is rebuilt when a listener is disabled
+        getService().setListenerEnabledFlag("testPostCommit", false);
+        assertFalse(list.getEnabledAsyncPostCommitListenersDescriptors(newBundle("test1")).contains(postCommit));
+        getService().setListenerEnabledFlag("testPostCommit", true);
+        assertTrue(list.getEnabledAsyncPostCommitListenersDescriptors(newBundle("test1")).contains(postCommit));
+
+        // and when it is removed
+        hotDeployer.undeploy("org.nuxeo.ecm.core.event.test:test-listeners.xml");
+        assertFalse(Arrays.asList(list.getEnabledInlineListenersDescriptors("test1")).contains(script));
+    }
+
+    @Test
+    public void testListenerTimer() throws Exception {
+        hotDeployer.deploy("org.nuxeo.ecm.core.event.test:test-listeners.xml");
+        EventListenerDescriptor script = getService().getEventListener("script/listener.groovy");
+        long count = script.getTimer().getCount();
+
+        getService().fireEvent("test", new EventContextImpl(null, null));
+        assertEquals(count + 1, script.getTimer().getCount());
+        getService().fireEvent("other", new EventContextImpl(null, null));
+        assertEquals(count + 1, script.getTimer().getCount());
+    }
+
+    @Test
+    public void testListenerTimerOnFailure() throws Exception {
+        hotDeployer.deploy("org.nuxeo.ecm.core.event.test:test-async-listeners.xml");
+        EventListenerDescriptor inline = getService().getEventListener("inlineListener");
+        long count = inline.getTimer().getCount();
+
+        // failed executions are recorded too
+        EventContextImpl context = new EventContextImpl(null, null);
+        context.setProperty("throwInline", Boolean.TRUE);
+        getService().fireEvent("test", context);
+        assertEquals(count + 1, inline.getTimer().getCount());
+    }
+
+    protected static EventBundleImpl newBundle(String... names) {
+        EventBundleImpl bundle = new EventBundleImpl();
+        for (String name : names) {
+            bundle.push(new EventImpl(name, new EventContextImpl(null, null)));
+        }
+        return bundle;
+    }
+
     protected EventServiceImpl getService() {
         return (EventServiceImpl) Framework.getService(EventService.class);
     }
@@ -19,6 +19,7 @@
  */
 package org.nuxeo.ecm.core.io.download;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -94,6 +95,36 @@ public class DownloadServiceImpl extends DefaultComponent implements DownloadSer
 
     protected static final int DOWNLOAD_BUFFER_SIZE = 1024 * 512;
 
+    /**
+     * Request attribute set by Tomcat connectors able to send a file directly from the kernel.
+     *
+     * @since 10.2
+     */
+    public static final String SENDFILE_SUPPORT_ATTR = "org.apache.tomcat.sendfile.support";
+
+    /** @since 10.2 */
+    public static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+
+    /** @since 10.2 */
+    public static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+
+    /** End of the range to send, exclusive. @since 10.2 */
+    public static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    /**
+     * Smaller files are copied, like Tomcat's default servlet does.
+     *
+     * @since 10.2
+     */
+    protected static final long SENDFILE_MIN_SIZE = 48 * 1024;
+
+    /**
+     * Property to set to {@code false} to always copy the blobs to the response.
+     *
+     * @since 10.2
+     */
+    public static final String SENDFILE_ENABLED_PROP = "org.nuxeo.download.sendfile.enabled";
+
     private static final String NUXEO_VIRTUAL_HOST = "nuxeo-virtual-host";
 
     private static final String VH_PARAM = "nuxeo.virtual.host";
@@ -479,7 +510,7 @@ public class DownloadServiceImpl extends DefaultComponent implements DownloadSer
         }
         final Blob fblob = blob;
         downloadBlob(request, response, doc, xpath, blob, filename, reason, extendedInfos, inline,
-                byteRange -> transferBlobWithByteRange(fblob, byteRange, response));
+                byteRange -> transferBlobWithByteRange(fblob, byteRange, request, response));
     }
 
     @Override
@@ -592,6 +623,64 @@ public class DownloadServiceImpl extends DefaultComponent implements DownloadSer
         }
     }
 
+    /**
+     * Transfers the blob, letting the container send it from the kernel when possible, or copying it to the response.
+     *
+     * @since 10.2
+     */
+    protected void transferBlobWithByteRange(Blob blob, ByteRange byteRange, HttpServletRequest request,
+            HttpServletResponse response) throws UncheckedIOException {
+        if (!sendFile(blob, byteRange, request, response)) {
+            transferBlobWithByteRange(blob, byteRange, response);
+        }
+    }
+
+    /**
+     * Asks the container to send the file of a file-backed blob from the kernel (sendfile) once the request is
+     * processed, if it supports it.
+     *
+     * @return {@code true} if the container will send the file, {@code false} if the blob must be copied
+     * @since 10.2
+     */
+    protected boolean sendFile(Blob blob, ByteRange byteRange, HttpServletRequest request,
+            HttpServletResponse response) {
+        if (!"GET".equals(request.getMethod()) || !isSendFileAllowed(request, response)) {
+            return false;
+        }
+        File file = blob.getFile();
+        if (file == null || !file.isFile()) {
+            return false;
+        }
+        long length = file.length();
+        if (length != blob.getLength()) {
+            // the file is not exactly the blob content
+            return false;
+        }
+        long start = byteRange == null ? 0 : byteRange.getStart();
+        long end = byteRange == null ? length : byteRange.getEnd() + 1;
+        if (end - start < SENDFILE_MIN_SIZE) {
+            return false;
+        }
+        request.setAttribute(SENDFILE_FILENAME_ATTR, file.getAbsolutePath());
+        request.setAttribute(SENDFILE_START_ATTR, Long.valueOf(start));
+        request.setAttribute(SENDFILE_END_ATTR, Long.valueOf(end));
+        response.setContentLengthLong(end - start);
+        return true;
+    }
+
+    /**
+     * Checks if the container supports sendfile for this request.
+     * <p>
+     * Request wrappers pass the sendfile attributes to the container. Response wrappers don't see the content, which is
+     * fine for the Nuxeo ones, which only buffer it until the transaction is committed.
+     *
+     * @since 10.2
+     */
+    protected boolean isSendFileAllowed(HttpServletRequest request, HttpServletResponse response) {
+        return Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTR))
+                && !Framework.isBooleanPropertyFalse(SENDFILE_ENABLED_PROP);
+    }
+
     protected void transferBlobWithByteRange(Blob blob, ByteRange byteRange, HttpServletResponse response)
             throws UncheckedIOException {
         transferBlobWithByteRange(blob, byteRange, () -> {
@@ -33,7 +33,8 @@ import org.nuxeo.ecm.core.query.sql.model.SQLQuery;
  * This includes filtering on the BROWSE permission for the given principal, filtering on facets, and applying query
  * transformers.
  * <p>
- * You can also include a limit and offset, to get a subset of the total.
+ * You can also include a limit and offset, to get a subset of the total, and the schemas of the returned documents
+ * that the caller is going to read, so that the storage can prefetch them.
  *
  * @author Florent Guillaume
  */
@@ -59,6 +60,9 @@ public class QueryFilter implements Serializable {
 
     protected final long offset;
 
+    /** @since 10.2 */
+    protected final String[] prefetchSchemas;
+
     /**
      * Constructs a query filter.
      * <p>
@@ -66,6 +70,19 @@ public class QueryFilter implements Serializable {
      */
     public QueryFilter(Principal principal, String[] principals, String[] permissions, FacetFilter facetFilter,
             Collection<SQLQuery.Transformer> queryTransformers, long limit, long offset) {
+        this(principal, principals, permissions, facetFilter, queryTransformers, limit, offset, null);
+    }
+
+    /**
+     * Constructs a query filter.
+     * <p>
+     * Note that the principal MUST be {@link Serializable}.
+     *
+     * @param prefetchSchemas the schemas to prefetch for the returned documents, or {@code null}
+     * @since 10.2
+     */
+    public QueryFilter(Principal principal, String[] principals, String[] permissions, FacetFilter facetFilter,
+            Collection<SQLQuery.Transformer> queryTransformers, long limit, long offset, String[] prefetchSchemas) {
         this.principal = principal;
         this.principals = principals;
         this.permissions = permissions;
@@ -73,6 +90,7 @@ public class QueryFilter implements Serializable {
         this.queryTransformers = queryTransformers;
         this.limit = limit;
         this.offset = offset;
+        this.prefetchSchemas = prefetchSchemas;
     }
 
     public static QueryFilter withoutLimitOffset(QueryFilter other) {
@@ -82,7 +100,8 @@ public class QueryFilter implements Serializable {
                 other.permissions, //
                 other.facetFilter, //
                 other.queryTransformers, //
-                0, 0);
+                0, 0, //
+                other.prefetchSchemas);
     }
 
     public Principal getPrincipal() {
@@ -113,6 +132,16 @@ public class QueryFilter implements Serializable {
         return offset;
     }
 
+    /**
+     * Gets the schemas to prefetch for the returned documents.
+     *
+     * @return the schemas, or {@code null}
+     * @since 10.2
+     */
+    public String[] getPrefetchSchemas() {
+        return prefetchSchemas;
+    }
+
     @Override
     public String toString() {
         return String.format("QueryFilter(principal=%s, limit=%d, offset=%d)", principal, limit, offset);
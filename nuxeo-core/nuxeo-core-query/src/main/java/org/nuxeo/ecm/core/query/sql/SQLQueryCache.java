@@ -0,0 +1,310 @@
+/*
+ * (C) Copyright 2018 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.ecm.core.query.sql;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.nuxeo.ecm.core.query.QueryParseException;
+import org.nuxeo.ecm.core.query.sql.model.DateLiteral;
+import org.nuxeo.ecm.core.query.sql.model.Expression;
+import org.nuxeo.ecm.core.query.sql.model.FromClause;
+import org.nuxeo.ecm.core.query.sql.model.Function;
+import org.nuxeo.ecm.core.query.sql.model.IdentityQueryTransformer;
+import org.nuxeo.ecm.core.query.sql.model.Literal;
+import org.nuxeo.ecm.core.query.sql.model.MultiExpression;
+import org.nuxeo.ecm.core.query.sql.model.Operand;
+import org.nuxeo.ecm.core.query.sql.model.Predicate;
+import org.nuxeo.ecm.core.query.sql.model.Reference;
+import org.nuxeo.ecm.core.query.sql.model.SQLQuery;
+import org.nuxeo.ecm.core.query.sql.model.StringLiteral;
+import org.nuxeo.ecm.core.query.sql.model.WhereClause;
+import org.nuxeo.ecm.core.query.sql.parser.Scanner;
+import org.nuxeo.ecm.core.query.sql.parser.sym;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.metrics.MetricsService;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.codahale.metrics.Timer;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java_cup.runtime.Symbol;
+
+/**
+ * Cache of parsed queries, used by {@link SQLQueryParser#parse(String)}.
+ * <p>
+ * Queries are first scanned, and their string and date literals are replaced by placeholders, so that queries that
+ * differ only by such values (typically ids or dates) share the same cache entry. The cached parse trees are never
+ * returned directly: each call returns a copy in which the placeholders are replaced by the actual literals, which the
+ * caller is free to modify.
+ * <p>
+ * Hits, misses, hit ratio and the time spent in the actual parser are published as metrics.
+ *
+ * @since 10.2
+ */
+public class SQLQueryCache {
+
+    public static final String SIZE_PROP = "org.nuxeo.query.parser.cache.size";
+
+    public static final String DEFAULT_SIZE = "1000";
+
+    /** First character of the placeholders, which cannot appear in a scanned string literal. */
+    protected static final char PLACEHOLDER_CHAR = '\u0000';
+
+    protected final Cache<String, SQLQuery> cache;
+
+    protected final MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+
+    protected final Counter hits;
+
+    protected final Counter misses;
+
+    protected final Timer parseTimer;
+
+    /**
+     * Constructs a cache.
+     *
+     * @param maximumSize the maximum number of parsed queries
+     */
+    public SQLQueryCache(long maximumSize) {
+        cache = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+        hits = registry.counter(MetricRegistry.name("nuxeo", "query", "parser", "cache", "hits"));
+        misses = registry.counter(MetricRegistry.name("nuxeo", "query", "parser", "cache", "misses"));
+        parseTimer = registry.timer(MetricRegistry.name("nuxeo", "query", "parser", "parse"));
+        String gaugeName = MetricRegistry.name("nuxeo", "query", "parser", "cache", "hit-ratio");
+        try {
+            registry.register(gaugeName, new RatioGauge() {
+                @Override
+                protected Ratio getRatio() {
+                    long h = hits.getCount();
+                    return Ratio.of(h, h + misses.getCount());
+                }
+            });
+        } catch (IllegalArgumentException e) {
+            // already registered by another cache, the counters it reads are shared
+        }
+    }
+
+    /**
+     * Creates the cache according to the configuration.
+     *
+     * @return the cache, or {@code null} if disabled
+     */
+    protected static SQLQueryCache create() {
+        String size = DEFAULT_SIZE;
+        if (Framework.getRuntime() != null) {
+            size = Framework.getProperty(SIZE_PROP, DEFAULT_SIZE);
+        }
+        long maximumSize = Long.parseLong(size);
+        return maximumSize > 0 ? new SQLQueryCache(maximumSize) : null;
+    }
+
+    /**
+     * Parses a query, reusing a cached parse if possible.
+     *
+     * @param string the query
+     * @return a new parsed query
+     */
+    public SQLQuery parse(String string) throws QueryParseException {
+        CanonicalQuery canonical = canonicalize(string);
+        if (canonical == null) {
+            misses.inc();
+            return timedParse(new Scanner(new StringReader(string)));
+        }
+        SQLQuery parsed = cache.getIfPresent(canonical.key);
+        if (parsed == null) {
+            misses.inc();
+            try {
+                parsed = timedParse(canonical.newScanner());
+            } catch (QueryParseException e) {
+                // parse the original query to get the proper error message
+                return SQLQueryParser.parse(new StringReader(string));
+            }
+            cache.put(canonical.key, parsed);
+        } else {
+            hits.inc();
+        }
+        return new LiteralSubstitutor(canonical.literals).transform(parsed);
+    }
+
+    protected SQLQuery timedParse(java_cup.runtime.Scanner scanner) {
+        try (Timer.Context context = parseTimer.time()) {
+            return SQLQueryParser.parse(scanner);
+        }
+    }
+
+    /**
+     * Scans a query and replaces its literals by placeholders.
+     *
+     * @return the canonical query, or {@code null} if it cannot be canonicalized
+     */
+    protected static CanonicalQuery canonicalize(String string) {
+        List<Symbol> tokens = new ArrayList<>();
+        List<Literal> literals = new ArrayList<>();
+        StringBuilder key = new StringBuilder(string.length());
+        Scanner scanner = new Scanner(new StringReader(string));
+        try {
+            for (;;) {
+                Symbol token = scanner.next_token();
+                if (token.sym == sym.STRING) {
+                    Literal literal;
+                    Symbol previous = tokens.isEmpty() ? null : tokens.get(tokens.size() - 1);
+                    if (previous != null && (previous.sym == sym.DATE || previous.sym == sym.TIMESTAMP)) {
+                        // DATE 'xxx' is replaced by a single placeholder, which is only valid where a literal is
+                        Symbol beforePrevious = tokens.size() < 2 ? null : tokens.get(tokens.size() - 2);
+                        if (beforePrevious != null && (beforePrevious.sym == sym.LIKE || beforePrevious.sym == sym.ILIKE
+                                || beforePrevious.sym == sym.STARTSWITH)) {
+                            return null;
+                        }
+                        tokens.remove(tokens.size() - 1);
+                        literal = new DateLiteral((String) token.value, previous.sym == sym.DATE);
+                    } else {
+                        literal = new StringLiteral((String) token.value);
+                    }
+                    String placeholder = PLACEHOLDER_CHAR + String.valueOf(literals.size());
+                    literals.add(literal);
+                    token = new Symbol(sym.STRING, token.left, token.right, placeholder);
+                }
+                tokens.add(token);
+                if (token.sym == sym.EOF) {
+                    break;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // invalid query, will be reported by the actual parser
+            return null;
+        }
+        for (Symbol token : tokens) {
+            key.append(token.sym);
+            if (token.value != null) {
+                String value = token.value.toString();
+                key.append(':').append(value.length()).append(':').append(value);
+            }
+            key.append(' ');
+        }
+        return new CanonicalQuery(key.toString(), tokens, literals);
+    }
+
+    /**
+     * Invalidates all the parsed queries.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * A query whose literals are replaced by placeholders.
+     */
+    protected static class CanonicalQuery {
+
+        /** The key, built from the tokens. */
+        protected final String key;
+
+        /** The tokens, with placeholders for the literals. */
+        protected final List<Symbol> tokens;
+
+        /** The actual literals, the placeholder value is the index in this list. */
+        protected final List<Literal> literals;
+
+        protected CanonicalQuery(String key, List<Symbol> tokens, List<Literal> literals) {
+            this.key = key;
+            this.tokens = tokens;
+            this.literals = literals;
+        }
+
+        protected java_cup.runtime.Scanner newScanner() {
+            Iterator<Symbol> it = tokens.iterator();
+            return () -> it.next();
+        }
+    }
+
+    /**
+     * Deep copy of a parsed query, replacing the placeholders by the actual literals.
+     */
+    protected static class LiteralSubstitutor extends IdentityQueryTransformer {
+
+        protected final List<Literal> literals;
+
+        protected LiteralSubstitutor(List<Literal> literals) {
+            this.literals = literals;
+        }
+
+        @Override
+        public FromClause transform(FromClause node) {
+            return new FromClause(node.type, transform(node.elements));
+        }
+
+        @Override
+        public WhereClause transform(WhereClause node) {
+            if (node == null) {
+                return null;
+            }
+            return new WhereClause(node.predicate == null ? null : transform(node.predicate));
+        }
+
+        @Override
+        public Expression transform(Expression node) {
+            if (node instanceof MultiExpression) {
+                return transform((MultiExpression) node);
+            }
+            Operand lvalue = node.lvalue == null ? null : transform(node.lvalue);
+            Operand rvalue = node.rvalue == null ? null : transform(node.rvalue);
+            Expression expr = node instanceof Predicate ? new Predicate(lvalue, node.operator, rvalue)
+                    : new Expression(lvalue, node.operator, rvalue);
+            expr.info = node.info;
+            return expr;
+        }
+
+        @Override
+        public Reference transform(Reference node) {
+            Reference ref = super.transform(node);
+            ref.originalName = node.originalName;
+            return ref;
+        }
+
+        @Override
+        public Operand transform(Function node) {
+            if (node.args == null) {
+                return new Function(node.name);
+            }
+            return super.transform(node);
+        }
+
+        @Override
+        public Literal transform(StringLiteral node) {
+            String value = node.value;
+            if (!value.isEmpty() && value.charAt(0) == PLACEHOLDER_CHAR) {
+                return literals.get(Integer.parseInt(value.substring(1)));
+            }
+            return node;
+        }
+    }
+
+}
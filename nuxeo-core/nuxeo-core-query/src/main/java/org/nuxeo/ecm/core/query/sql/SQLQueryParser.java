@@ -37,8 +37,16 @@ public final class SQLQueryParser {
     }
 
     public static SQLQuery parse(Reader reader) throws QueryParseException {
+        return parse(new Scanner(reader));
+    }
+
+    /**
+     * Parses a query from already scanned tokens.
+     *
+     * @since 10.2
+     */
+    static SQLQuery parse(java_cup.runtime.Scanner scanner) throws QueryParseException {
         try {
-            Scanner scanner = new Scanner(reader);
             parser parser = new parser(scanner);
             return (SQLQuery) parser.parse().value;
         } catch (QueryParseException e) {
@@ -48,10 +56,34 @@ public final class SQLQueryParser {
         }
     }
 
+    /**
+     * Parses a query.
+     * <p>
+     * The parsed queries are cached, see {@link SQLQueryCache}. The returned query is always a new instance that can
+     * be modified by the caller.
+     */
     public static SQLQuery parse(String string) throws QueryParseException {
-        SQLQuery query = parse(new StringReader(string));
+        SQLQueryCache cache = CacheHolder.CACHE;
+        SQLQuery query = cache == null ? parse(new StringReader(string)) : cache.parse(string);
         query.setQueryString(string);
         return query;
     }
 
+    /**
+     * Gets the parsed queries cache.
+     *
+     * @return the cache, or {@code null} if disabled
+     * @since 10.2
+     */
+    public static SQLQueryCache getCache() {
+        return CacheHolder.CACHE;
+    }
+
+    // lazy initialization, to read the configuration on first use
+    private static class CacheHolder {
+
+        private static final SQLQueryCache CACHE = SQLQueryCache.create();
+
+    }
+
 }
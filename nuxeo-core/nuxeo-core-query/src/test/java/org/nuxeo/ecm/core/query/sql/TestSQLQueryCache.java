@@ -0,0 +1,141 @@
+/*
+ * (C) Copyright 2018 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.ecm.core.query.sql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.StringReader;
+
+import org.junit.Test;
+import org.nuxeo.ecm.core.query.QueryParseException;
+import org.nuxeo.ecm.core.query.sql.model.DateLiteral;
+import org.nuxeo.ecm.core.query.sql.model.Expression;
+import org.nuxeo.ecm.core.query.sql.model.FromClause;
+import org.nuxeo.ecm.core.query.sql.model.LiteralList;
+import org.nuxeo.ecm.core.query.sql.model.Predicate;
+import org.nuxeo.ecm.core.query.sql.model.SQLQuery;
+import org.nuxeo.ecm.core.query.sql.model.StringLiteral;
+
+public class TestSQLQueryCache {
+
+    protected static void assertSameParse(String query, SQLQuery parsed) {
+        assertEquals(SQLQueryParser.parse(new StringReader(query)).toString(), parsed.toString());
+    }
+
+    @Test
+    public void testSameShape() {
+        SQLQueryCache cache = new SQLQueryCache(10);
+        String q1 = "SELECT * FROM Document WHERE dc:title = 'foo' AND dc:subjects IN ('a', 'b')";
+        String q2 = "SELECT * FROM Document WHERE dc:title = 'bar' AND dc:subjects IN ('c', 'd')";
+        SQLQuery parsed1 = cache.parse(q1);
+        assertEquals(1, cache.size());
+        SQLQuery parsed2 = cache.parse(q2);
+        assertEquals(1, cache.size());
+        assertSameParse(q1, parsed1);
+        assertSameParse(q2, parsed2);
+        assertTrue(parsed2.where.predicate instanceof Predicate);
+        Expression in = (Expression) parsed2.where.predicate.rvalue;
+        assertEquals(new StringLiteral("c"), ((LiteralList) in.rvalue).get(0));
+
+        // numbers are part of the shape
+        cache.parse("SELECT * FROM Document WHERE dc:title = 'foo' AND dc:subjects IN ('a', 'b') AND dc:count = 1");
+        cache.parse("SELECT * FROM Document WHERE dc:title = 'foo' AND dc:subjects IN ('a', 'b') AND dc:count = 2");
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void testDates() {
+        SQLQueryCache cache = new SQLQueryCache(10);
+        String q1 = "SELECT * FROM Document WHERE dc:created > DATE '2007-01-30'";
+        String q2 = "SELECT * FROM Document WHERE dc:created > TIMESTAMP '2007-01-30T01:02:03.000+04:00'";
+        String q3 = "SELECT * FROM Document WHERE dc:created > '2007-01-30'";
+        SQLQuery parsed1 = cache.parse(q1);
+        SQLQuery parsed2 = cache.parse(q2);
+        SQLQuery parsed3 = cache.parse(q3);
+        assertEquals(1, cache.size());
+        assertSameParse(q1, parsed1);
+        assertSameParse(q2, parsed2);
+        assertSameParse(q3, parsed3);
+        assertTrue(((DateLiteral) parsed1.where.predicate.rvalue).onlyDate);
+        assertTrue(parsed3.where.predicate.rvalue instanceof StringLiteral);
+
+        // a date is not allowed in a LIKE
+        try {
+            cache.parse("SELECT * FROM Document WHERE dc:title LIKE DATE '2007-01-30'");
+            fail();
+        } catch (QueryParseException e) {
+            // ok
+        }
+    }
+
+    @Test
+    public void testCopies() {
+        SQLQueryCache cache = new SQLQueryCache(10);
+        String query = "SELECT dc:title FROM Document WHERE dc:title = 'foo' ORDER BY dc:title";
+        SQLQuery parsed1 = cache.parse(query);
+        SQLQuery parsed2 = cache.parse(query);
+        assertNotSame(parsed1, parsed2);
+        assertNotSame(parsed1.where.predicate, parsed2.where.predicate);
+        // modifications of a returned query don't affect the cache
+        parsed1.orderBy.elements.clear();
+        parsed1.select.elements.clear();
+        assertSameParse(query, cache.parse(query));
+    }
+
+    @Test
+    public void testParser() {
+        assertNotNull(SQLQueryParser.getCache());
+        for (String query : new String[] { //
+                "SELECT p, q, r FROM LOCATION l1", //
+                "SELECT p, q, r FROM TYPE l1, l2,l3", //
+                "SELECT DISTINCT dc:title AS t FROM Document WHERE dc:title = 'foo' ORDER BY dc:title DESC", //
+                "SELECT COUNT(ecm:uuid) FROM Document WHERE dc:created > DATE '2007-01-30' LIMIT 10 OFFSET 5", //
+        }) {
+            SQLQuery expected = SQLQueryParser.parse(new StringReader(query));
+            // parse twice to go through the cache both on a miss and a hit
+            for (int i = 0; i < 2; i++) {
+                SQLQuery parsed = SQLQueryParser.parse(query);
+                assertEquals(query, expected, parsed);
+                assertEquals(query, expected.toString(), parsed.toString());
+                assertEquals(query, expected.from.getType(), parsed.from.getType());
+                assertEquals(query, expected.select.distinct, parsed.select.distinct);
+                assertEquals(query, expected.limit, parsed.limit);
+                assertEquals(query, expected.offset, parsed.offset);
+            }
+        }
+        assertEquals(FromClause.LOCATION, SQLQueryParser.parse("SELECT p, q, r FROM LOCATION l1").from.getType());
+    }
+
+    @Test
+    public void testInvalid() {
+        SQLQueryCache cache = new SQLQueryCache(10);
+        try {
+            cache.parse("SELECT * FROM Document WHERE dc:title = 'foo' AND");
+            fail();
+        } catch (QueryParseException e) {
+            // ok
+        }
+        assertEquals(0, cache.size());
+    }
+
+}
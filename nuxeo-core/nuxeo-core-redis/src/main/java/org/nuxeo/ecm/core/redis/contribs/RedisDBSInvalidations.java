@@ -33,6 +33,9 @@ public class RedisDBSInvalidations {
 
     private static final String ALL_DOCUMENTS = "ALL";
 
+    /** Prefix of an id whose child lookup is invalidated as well. */
+    private static final String CHILD_PREFIX = "+";
+
     private String nodeId;
 
     private DBSInvalidations invalidations;
@@ -63,7 +66,11 @@ public class RedisDBSInvalidations {
         }
         DBSInvalidations invals = new DBSInvalidations();
         for (String id : invalsStr.split(ID_SEPARATOR)) {
-            invals.add(id);
+            if (id.startsWith(CHILD_PREFIX)) {
+                invals.addChild(id.substring(CHILD_PREFIX.length()));
+            } else {
+                invals.add(id);
+            }
         }
         return invals;
     }
@@ -74,7 +81,7 @@ public class RedisDBSInvalidations {
 
     public String serialize() {
         // message:
-        // - nodeId:id1/id2/...
+        // - nodeId:id1/id2/... (child invalidations prefixed with +)
         // - nodeId:ALL
         return nodeId + MESSAGE_SEPARATOR + serializeInvalidations(invalidations);
     }
@@ -83,7 +90,20 @@ public class RedisDBSInvalidations {
         if (invals.all) {
             return ALL_DOCUMENTS;
         }
-        return String.join(ID_SEPARATOR, invals.ids);
+        if (invals.childIds == null) {
+            return String.join(ID_SEPARATOR, invals.ids);
+        }
+        StringBuilder sb = new StringBuilder();
+        for (String id : invals.ids) {
+            if (sb.length() > 0) {
+                sb.append(ID_SEPARATOR);
+            }
+            if (invals.childIds.contains(id)) {
+                sb.append(CHILD_PREFIX);
+            }
+            sb.append(id);
+        }
+        return sb.toString();
     }
 
     @Override
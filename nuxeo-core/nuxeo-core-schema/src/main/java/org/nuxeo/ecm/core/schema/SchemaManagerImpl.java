@@ -29,6 +29,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -118,7 +119,14 @@ public class SchemaManagerImpl implements SchemaManager {
     /** Effective proxy schema names. */
     protected Set<String> proxySchemaNames = new HashSet<>();
 
-    /** Fields computed lazily. */
+    /**
+     * Fields of all the xpaths of the schemas, with list indexes as {@code *}, replaced as a whole when recomputed.
+     *
+     * @since 10.2
+     */
+    protected volatile Map<String, Field> fieldTable = Collections.emptyMap();
+
+    /** Fields computed lazily, for the xpaths not in the field table. */
     private Map<String, Field> fields = new ConcurrentHashMap<>();
 
     private File schemaDir;
@@ -319,6 +327,7 @@ public class SchemaManagerImpl implements SchemaManager {
         recomputeDocumentTypes(); // depend on schemas and facets
         recomputeProxies(); // depend on schemas
         fields.clear(); // re-filled lazily
+        fieldTable = computeFieldTable(); // depend on schemas
     }
 
     /*
@@ -728,40 +737,138 @@ public class SchemaManagerImpl implements SchemaManager {
     @Override
     public Field getField(String xpath) {
         checkDirty();
-        Field field = null;
-        if (xpath != null && xpath.contains("/")) {
+        if (xpath == null) {
+            return null;
+        }
+        Field field = fieldTable.get(xpath);
+        if (field == null) {
+            String path = normalizeXPath(xpath);
+            if (path != xpath) {
+                field = fieldTable.get(path);
+            }
+            if (field == null) {
+                field = fields.get(path);
+                if (field == null) {
+                    field = resolveField(xpath);
+                    if (field != null) {
+                        // map is concurrent so parallelism is ok
+                        fields.put(path, field);
+                    }
+                }
+            }
+        }
+        return field;
+    }
+
+    /**
+     * Replaces the list indexes of an xpath with {@code *}, which resolves to the same field.
+     *
+     * @return the normalized xpath, or the same xpath if there are no list indexes
+     * @since 10.2
+     */
+    protected static String normalizeXPath(String xpath) {
+        if (xpath.indexOf('/') < 0) {
+            return xpath;
+        }
+        String[] segments = xpath.split("/");
+        boolean normalized = false;
+        for (int i = 1; i < segments.length; i++) {
+            if (isListIndex(segments[i])) {
+                segments[i] = "*";
+                normalized = true;
+            }
+        }
+        return normalized ? String.join("/", segments) : xpath;
+    }
+
+    protected static boolean isListIndex(String segment) {
+        if (segment.isEmpty() || !(Character.isDigit(segment.charAt(0)) || segment.length() > 1
+                && (segment.charAt(0) == '-' || segment.charAt(0) == '+') && Character.isDigit(segment.charAt(1)))) {
+            return false;
+        }
+        try {
+            Integer.parseInt(segment);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Resolves the field of an xpath from the effective schemas.
+     *
+     * @since 10.2
+     */
+    protected Field resolveField(String xpath) {
+        if (xpath.contains("/")) {
             // need to resolve subfields
             String[] properties = xpath.split("/");
-            Field resolvedField = getField(properties[0]);
+            Field resolvedField = resolveField(properties[0]);
             for (int x = 1; x < properties.length; x++) {
                 if (resolvedField == null) {
                     break;
                 }
                 resolvedField = getField(resolvedField, properties[x], x == properties.length - 1);
             }
-            if (resolvedField != null) {
-                field = resolvedField;
-            }
-        } else {
-            field = fields.get(xpath);
-            if (field == null) {
-                QName qname = QName.valueOf(xpath);
-                String prefix = qname.getPrefix();
-                Schema schema = getSchemaFromPrefix(prefix);
-                if (schema == null) {
-                    // try using the name
-                    schema = getSchema(prefix);
+            return resolvedField;
+        }
+        QName qname = QName.valueOf(xpath);
+        String prefix = qname.getPrefix();
+        Schema schema = prefixToSchema.get(prefix);
+        if (schema == null) {
+            // try using the name
+            schema = schemas.get(prefix);
+        }
+        return schema == null ? null : schema.getField(qname.getLocalName());
+    }
+
+    /**
+     * Computes the fields of all the xpaths of the effective schemas.
+     * <p>
+     * The table holds the fields prefixed with the schema prefix and with the schema name, and their sub-fields by local
+     * name, with and without {@code *} for the list items. Recursive types are expanded only once per xpath.
+     *
+     * @since 10.2
+     */
+    protected Map<String, Field> computeFieldTable() {
+        Map<String, Field> table = new HashMap<>();
+        Set<Type> expanding = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Schema schema : schemas.values()) {
+            String prefix = schema.getNamespace().prefix;
+            for (Field field : schema.getFields()) {
+                String name = field.getName().getLocalName();
+                if (StringUtils.isNotBlank(prefix)) {
+                    addFieldPaths(table, prefix + ':' + name, expanding);
                 }
-                if (schema != null) {
-                    field = schema.getField(qname.getLocalName());
-                    if (field != null) {
-                        // map is concurrent so parallelism is ok
-                        fields.put(xpath, field);
-                    }
+                addFieldPaths(table, schema.getName() + ':' + name, expanding);
+            }
+        }
+        return Collections.unmodifiableMap(table);
+    }
+
+    protected void addFieldPaths(Map<String, Field> table, String xpath, Set<Type> expanding) {
+        // resolve like a lookup would, for the cases where prefixes and schema names clash
+        Field field = resolveField(xpath);
+        if (field == null || table.putIfAbsent(xpath, field) != null) {
+            return;
+        }
+        Type type = field.getType();
+        if (!expanding.add(type)) {
+            return;
+        }
+        try {
+            if (type.isListType()) {
+                addFieldPaths(table, xpath + "/*", expanding);
+                type = ((ListType) type).getFieldType();
+            }
+            if (type.isComplexType()) {
+                for (Field subField : ((ComplexType) type).getFields()) {
+                    addFieldPaths(table, xpath + '/' + subField.getName().getLocalName(), expanding);
                 }
             }
+        } finally {
+            expanding.remove(field.getType());
         }
-        return field;
     }
 
     @Override
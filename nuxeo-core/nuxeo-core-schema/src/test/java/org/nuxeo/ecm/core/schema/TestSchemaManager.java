@@ -29,6 +29,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -38,6 +39,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.nuxeo.ecm.core.schema.types.ComplexType;
 import org.nuxeo.ecm.core.schema.types.CompositeType;
+import org.nuxeo.ecm.core.schema.types.Field;
 import org.nuxeo.ecm.core.schema.types.Schema;
 import org.nuxeo.ecm.core.schema.types.Type;
 import org.nuxeo.runtime.test.runner.Deploy;
@@ -427,4 +429,31 @@ public class TestSchemaManager {
         assertEquals(t.getAllowedSubtypes(), new HashSet<>(Arrays.asList("myDoc2", "myDoc3", "myDoc4")));
     }
 
+    @Test
+    @Deploy("org.nuxeo.ecm.core.schema:OSGI-INF/test-advanced-schema.xml")
+    public void testFieldTable() throws Exception {
+        SchemaManagerImpl sm = (SchemaManagerImpl) schemaManager;
+        Field title = sm.getField("dc:title");
+        assertNotNull(title);
+        // by prefix or by schema name
+        assertTrue(title == sm.getField("dublincore:title"));
+        Map<String, Field> table = sm.fieldTable;
+        assertTrue(table.get("dc:title") == title);
+        assertTrue(table.containsKey("tp:complexList/*/stringItem"));
+        assertTrue(table.containsKey("tp:listOfLists/*/stringListItem/*"));
+        assertFalse(table.containsKey("tp:foo"));
+        // the table gives the same fields as the resolution from the schemas
+        for (Map.Entry<String, Field> es : table.entrySet()) {
+            assertTrue(es.getKey(), es.getValue() == sm.resolveField(es.getKey()));
+        }
+        // list indexes
+        assertTrue(sm.getField("tp:complexList/*/stringItem") == sm.getField("tp:complexList/12/stringItem"));
+        assertNull(sm.getField("tp:complexChain/foo"));
+
+        // the table is recomputed on hot reload
+        hotDeployer.undeploy("org.nuxeo.ecm.core.schema:OSGI-INF/test-advanced-schema.xml");
+        assertNull(sm.getField("dc:title"));
+        assertTrue(sm.fieldTable.isEmpty());
+    }
+
 }
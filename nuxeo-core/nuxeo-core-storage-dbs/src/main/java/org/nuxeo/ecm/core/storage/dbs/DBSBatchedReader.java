@@ -0,0 +1,197 @@
+/*
+ * (C) Copyright 2018 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.ecm.core.storage.dbs;
+
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_ID;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.nuxeo.ecm.core.api.NuxeoException;
+import org.nuxeo.ecm.core.storage.State;
+
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+
+/**
+ * Helper to read a large number of states as a stream, by batches of bounded size.
+ * <p>
+ * The returned states are in the same order as the requested ids, missing documents are skipped. Only the batches
+ * being read are kept in memory.
+ *
+ * @since 10.2
+ */
+public class DBSBatchedReader {
+
+    /** Default number of ids read at once. */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    /** Default number of batches read concurrently. */
+    public static final int DEFAULT_PARALLELISM = 1;
+
+    private DBSBatchedReader() {
+        // utility class
+    }
+
+    /**
+     * Streams states by batches read sequentially.
+     *
+     * @param ids the document ids
+     * @param batchSize the maximum number of ids read at once
+     * @param reader the function reading a batch of states, in any order
+     * @return a stream of states, in the same order as the ids
+     */
+    public static Stream<State> stream(List<String> ids, int batchSize, Function<List<String>, List<State>> reader) {
+        return stream(ids, batchSize, reader, null, 1);
+    }
+
+    /**
+     * Streams states by batches, several batches being read concurrently.
+     * <p>
+     * The stream should be closed when done, to cancel the batches that may still be read in the background.
+     *
+     * @param ids the document ids
+     * @param batchSize the maximum number of ids read at once
+     * @param reader the function reading a batch of states, in any order
+     * @param executor the executor used to read batches concurrently, or {@code null} to read them in the calling thread
+     * @param parallelism the maximum number of batches being read at the same time
+     * @return a stream of states, in the same order as the ids
+     */
+    public static Stream<State> stream(List<String> ids, int batchSize, Function<List<String>, List<State>> reader,
+            Executor executor, int parallelism) {
+        if (ids.isEmpty()) {
+            return Stream.empty();
+        }
+        List<List<String>> batches = Lists.partition(ids, Math.max(batchSize, 1));
+        Function<List<String>, List<State>> orderedReader = batch -> inOrder(batch, reader.apply(batch));
+        Stream<List<State>> stream;
+        if (executor == null || parallelism <= 1 || batches.size() == 1) {
+            stream = toStream(Iterators.transform(batches.iterator(), orderedReader::apply));
+        } else {
+            PrefetchingIterator it = new PrefetchingIterator(batches.iterator(), orderedReader, executor, parallelism);
+            stream = toStream(it).onClose(it::cancel);
+        }
+        return stream.flatMap(List::stream);
+    }
+
+    protected static <T> Stream<T> toStream(Iterator<T> it) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(it, Spliterator.ORDERED), false);
+    }
+
+    /**
+     * Reorders states according to a list of ids, skipping missing ones.
+     *
+     * @param ids the document ids
+     * @param states the states, in any order
+     * @return the states, in the same order as the ids
+     */
+    public static List<State> inOrder(List<String> ids, Collection<State> states) {
+        Map<String, State> statesById = new HashMap<>(states.size());
+        for (State state : states) {
+            if (state != null) {
+                statesById.put((String) state.get(KEY_ID), state);
+            }
+        }
+        List<State> list = new ArrayList<>(states.size());
+        for (String id : ids) {
+            State state = statesById.get(id);
+            if (state != null) {
+                list.add(state);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Iterator over batches that keeps up to {@code parallelism} batches being read in the background.
+     */
+    protected static class PrefetchingIterator implements Iterator<List<State>> {
+
+        protected final Iterator<List<String>> batches;
+
+        protected final Function<List<String>, List<State>> reader;
+
+        protected final Executor executor;
+
+        protected final int parallelism;
+
+        protected final Deque<CompletableFuture<List<State>>> inFlight = new ArrayDeque<>();
+
+        public PrefetchingIterator(Iterator<List<String>> batches, Function<List<String>, List<State>> reader,
+                Executor executor, int parallelism) {
+            this.batches = batches;
+            this.reader = reader;
+            this.executor = executor;
+            this.parallelism = parallelism;
+        }
+
+        protected void fill() {
+            while (inFlight.size() < parallelism && batches.hasNext()) {
+                List<String> batch = batches.next();
+                inFlight.add(CompletableFuture.supplyAsync(() -> reader.apply(batch), executor));
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            fill();
+            return !inFlight.isEmpty();
+        }
+
+        @Override
+        public List<State> next() {
+            fill();
+            CompletableFuture<List<State>> future = inFlight.poll();
+            if (future == null) {
+                throw new NoSuchElementException();
+            }
+            try {
+                return future.join();
+            } catch (CompletionException e) {
+                cancel();
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new NuxeoException(cause);
+            }
+        }
+
+        public void cancel() {
+            inFlight.forEach(future -> future.cancel(false));
+            inFlight.clear();
+        }
+    }
+
+}
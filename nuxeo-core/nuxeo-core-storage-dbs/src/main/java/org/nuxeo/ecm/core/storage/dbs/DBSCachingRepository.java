@@ -27,12 +27,16 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
@@ -49,14 +53,20 @@ import org.nuxeo.ecm.core.storage.FulltextConfiguration;
 import org.nuxeo.ecm.core.storage.State;
 import org.nuxeo.ecm.core.storage.State.StateDiff;
 import org.nuxeo.ecm.core.storage.dbs.DBSTransactionState.ChangeTokenUpdater;
+import org.nuxeo.ecm.core.storage.dbs.DBSTransactionState.StateUpdate;
+import org.nuxeo.runtime.api.Framework;
 import org.nuxeo.runtime.metrics.MetricsService;
 
+import com.codahale.metrics.Gauge;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.SharedMetricRegistries;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Ordering;
+import com.google.common.collect.PeekingIterator;
 
 /**
  * The DBS Cache layer used to cache some method call of real repository
@@ -69,26 +79,53 @@ public class DBSCachingRepository implements DBSRepository {
 
     private static final Random RANDOM = new Random();
 
+    /**
+     * Framework property enabling the sending of child invalidations (moved, renamed or deleted documents) to the other
+     * cluster nodes. Nodes running previous versions can't read them, so it must only be enabled once all the nodes of
+     * the cluster have been upgraded.
+     *
+     * @since 10.2
+     */
+    public static final String CLUSTER_CHILD_INVALIDATIONS_PROP = "org.nuxeo.dbs.cache.cluster.childInvalidations";
+
     private final DBSRepository repository;
 
     private final Cache<String, State> cache;
 
     private final Cache<String, String> childCache;
 
+    /** Reverse of {@link #childCache}: id -&gt; child cache key, used to invalidate child cache entries by id. */
+    private final Cache<String, String> childKeys;
+
     private DBSClusterInvalidator clusterInvalidator;
 
     private final DBSInvalidations invalidations;
 
+    /**
+     * Whether all child cache invalidations are received: always true without clustering, otherwise only if all the
+     * nodes send them.
+     */
+    private boolean childInvalidations = true;
+
     protected final MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
 
     public DBSCachingRepository(DBSRepository repository, DBSRepositoryDescriptor descriptor) {
         this.repository = repository;
         // Init caches
-        cache = newCache(descriptor);
+        if (descriptor.cacheMaxBytes != null) {
+            DBSSerializedStateCache serializedCache = new DBSSerializedStateCache(descriptor.cacheMaxBytes.longValue(),
+                    descriptor.cacheTTL.longValue(), descriptor.cacheConcurrencyLevel, descriptor.isCacheOffHeap());
+            registry.register(MetricRegistry.name("nuxeo", "repositories", repository.getName(), "cache", "bytes"),
+                    (Gauge<Long>) serializedCache::getBytes);
+            cache = serializedCache;
+        } else {
+            cache = newCache(descriptor);
+        }
         registry.registerAll(GuavaCacheMetric.of(cache, "nuxeo", "repositories", repository.getName(), "cache"));
         childCache = newCache(descriptor);
         registry.registerAll(
                 GuavaCacheMetric.of(childCache, "nuxeo", "repositories", repository.getName(), "childCache"));
+        childKeys = newCache(descriptor);
         if (log.isInfoEnabled()) {
             log.info(String.format("DBS cache activated on '%s' repository", repository.getName()));
         }
@@ -119,6 +156,7 @@ public class DBSCachingRepository implements DBSRepository {
         } else {
             nodeId = nodeId.trim();
         }
+        childInvalidations = Framework.isBooleanPropertyTrue(CLUSTER_CHILD_INVALIDATIONS_PROP);
         clusterInvalidator = createClusterInvalidator(descriptor);
         clusterInvalidator.initialize(nodeId, getName());
     }
@@ -160,6 +198,7 @@ public class DBSCachingRepository implements DBSRepository {
         // Clear caches
         cache.invalidateAll();
         childCache.invalidateAll();
+        childKeys.invalidateAll();
         // Remove metrics
         String cacheName = MetricRegistry.name("nuxeo", "repositories", repository.getName(), "cache");
         String childCacheName = MetricRegistry.name("nuxeo", "repositories", repository.getName(), "childCache");
@@ -208,6 +247,45 @@ public class DBSCachingRepository implements DBSRepository {
         return states;
     }
 
+    @Override
+    public Stream<State> streamStates(List<String> ids) {
+        // serve cache hits directly, and stream the other states from the repository
+        Map<String, State> cached = cache.getAllPresent(ids);
+        if (cached.size() == ids.size()) {
+            return ids.stream().map(cached::get);
+        }
+        List<String> idsToRetrieve = new ArrayList<>(ids.size() - cached.size());
+        for (String id : ids) {
+            if (!cached.containsKey(id)) {
+                idsToRetrieve.add(id);
+            }
+        }
+        Stream<State> retrieved = repository.streamStates(idsToRetrieve).peek(this::putInCache);
+        // merge them in the order of the ids, the retrieved states being in the same order as the ids to retrieve
+        PeekingIterator<State> retrievedIt = Iterators.peekingIterator(retrieved.iterator());
+        Iterator<State> it = new AbstractIterator<State>() {
+            private final Iterator<String> idsIt = ids.iterator();
+
+            @Override
+            protected State computeNext() {
+                while (idsIt.hasNext()) {
+                    String id = idsIt.next();
+                    State state = cached.get(id);
+                    if (state != null) {
+                        return state;
+                    }
+                    if (retrievedIt.hasNext() && id.equals(retrievedIt.peek().get(KEY_ID))) {
+                        return retrievedIt.next();
+                    }
+                    // else missing document
+                }
+                return endOfData();
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(it, Spliterator.ORDERED), false)
+                            .onClose(retrieved::close);
+    }
+
     @Override
     public void createState(State state) {
         repository.createState(state);
@@ -223,13 +301,42 @@ public class DBSCachingRepository implements DBSRepository {
     @Override
     public void updateState(String id, StateDiff diff, ChangeTokenUpdater changeTokenUpdater) {
         repository.updateState(id, diff, changeTokenUpdater);
-        invalidate(id);
+        if (isChildKeyChange(diff)) {
+            invalidateAll(Collections.singleton(id), Collections.singleton(id));
+        } else {
+            invalidate(id);
+        }
+    }
+
+    @Override
+    public void updateStates(List<StateUpdate> updates) {
+        try {
+            repository.updateStates(updates);
+        } finally {
+            // invalidate even on failure, as some of the updates may have been done
+            List<String> ids = new ArrayList<>(updates.size());
+            List<String> childIds = new ArrayList<>();
+            for (StateUpdate update : updates) {
+                ids.add(update.id);
+                if (isChildKeyChange(update.diff)) {
+                    childIds.add(update.id);
+                }
+            }
+            invalidateAll(ids, childIds);
+        }
     }
 
     @Override
     public void deleteStates(Set<String> ids) {
         repository.deleteStates(ids);
-        invalidateAll(ids);
+        invalidateAll(ids, ids);
+    }
+
+    /**
+     * Checks if a diff moves or renames a document, which invalidates its child cache entry.
+     */
+    protected static boolean isChildKeyChange(StateDiff diff) {
+        return diff.containsKey(KEY_PARENT_ID) || diff.containsKey(KEY_NAME);
     }
 
     @Override
@@ -238,17 +345,17 @@ public class DBSCachingRepository implements DBSRepository {
 
         String childCacheKey = computeChildCacheKey(parentId, name);
         String stateId = childCache.getIfPresent(childCacheKey);
-        if (stateId != null) {
-            State state = cache.getIfPresent(stateId);
+        // childCache is invalidated when documents are moved, renamed or deleted, so a hit can be trusted
+        // provided the reverse entry used for invalidation wasn't evicted in the meantime
+        if (stateId != null && !ignored.contains(stateId) && childCacheKey.equals(childKeys.getIfPresent(stateId))) {
+            State state = readState(stateId);
             if (state != null) {
-                // As we don't have invalidation for childCache we need to check if retrieved state is the right one
-                // and not a previous document which was moved or renamed
-                if (parentId.equals(state.get(KEY_PARENT_ID)) && name.equals(state.get(KEY_NAME))) {
+                // without child invalidations from the other nodes, check that the document wasn't moved or renamed
+                if (childInvalidations
+                        || parentId.equals(state.get(KEY_PARENT_ID)) && name.equals(state.get(KEY_NAME))) {
                     return state;
-                } else {
-                    // We can invalidate the entry in cache as the document seemed to be moved or renamed
-                    childCache.invalidate(childCacheKey);
                 }
+                childCache.invalidate(childCacheKey);
             }
         }
         State state = repository.readChildState(parentId, name, ignored);
@@ -262,7 +369,9 @@ public class DBSCachingRepository implements DBSRepository {
             cache.put(stateId, state);
             Object stateParentId = state.get(KEY_PARENT_ID);
             if (stateParentId != null) {
-                childCache.put(computeChildCacheKey(stateParentId.toString(), state.get(KEY_NAME).toString()), stateId);
+                String childCacheKey = computeChildCacheKey(stateParentId.toString(), state.get(KEY_NAME).toString());
+                childCache.put(childCacheKey, stateId);
+                childKeys.put(stateId, childCacheKey);
             }
         }
     }
@@ -276,10 +385,31 @@ public class DBSCachingRepository implements DBSRepository {
     }
 
     private void invalidateAll(Collection<String> ids) {
+        invalidateAll(ids, Collections.emptySet());
+    }
+
+    /**
+     * Invalidates the states for the given ids, and the child cache entries for the given child ids.
+     */
+    private void invalidateAll(Collection<String> ids, Collection<String> childIds) {
         cache.invalidateAll(ids);
+        invalidateChildren(childIds);
         if (clusterInvalidator != null) {
             synchronized (invalidations) {
                 invalidations.addAll(ids);
+                if (childInvalidations && !childIds.isEmpty()) {
+                    invalidations.addAllChildren(childIds);
+                }
+            }
+        }
+    }
+
+    private void invalidateChildren(Collection<String> ids) {
+        for (String id : ids) {
+            String childCacheKey = childKeys.getIfPresent(id);
+            if (childCacheKey != null) {
+                childCache.invalidate(childCacheKey);
+                childKeys.invalidate(id);
             }
         }
     }
@@ -301,8 +431,12 @@ public class DBSCachingRepository implements DBSRepository {
             if (invalidations.all) {
                 cache.invalidateAll();
                 childCache.invalidateAll();
+                childKeys.invalidateAll();
             } else if (invalidations.ids != null) {
                 cache.invalidateAll(invalidations.ids);
+                if (invalidations.childIds != null) {
+                    invalidateChildren(invalidations.childIds);
+                }
             }
         }
     }
@@ -362,6 +496,11 @@ public class DBSCachingRepository implements DBSRepository {
         return repository.getDescendants(id, keys, limit);
     }
 
+    @Override
+    public Stream<State> getDescendants(DBSDescendantsQuery query) {
+        return repository.getDescendants(query);
+    }
+
     @Override
     public boolean queryKeyValuePresence(String key, String value, Set<String> ignored) {
         return repository.queryKeyValuePresence(key, value, ignored);
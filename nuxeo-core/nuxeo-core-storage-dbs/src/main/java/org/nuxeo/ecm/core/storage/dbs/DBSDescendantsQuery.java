@@ -0,0 +1,219 @@
+/*
+ * (C) Copyright 2018 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.ecm.core.storage.dbs;
+
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_ANCESTOR_IDS;
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_ID;
+
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.nuxeo.ecm.core.storage.State;
+
+/**
+ * A query for the descendants of a document, see {@link DBSRepository#getDescendants(DBSDescendantsQuery)}.
+ * <p>
+ * The descendants are returned ordered by id, or by depth then id for a breadth-first traversal. This stable order
+ * allows a long traversal to be resumed from a checkpoint, which is the last descendant processed.
+ * <p>
+ * The depth of a descendant is relative to the root: the children of the root have depth 1.
+ *
+ * @since 10.2
+ */
+public class DBSDescendantsQuery {
+
+    protected final String rootId;
+
+    protected final Set<String> keys;
+
+    protected int limit;
+
+    protected int batchSize;
+
+    protected int maxDepth;
+
+    protected boolean breadthFirst;
+
+    protected String startAfterId;
+
+    protected int startAfterDepth;
+
+    /**
+     * Constructs a query for all the descendants of a document.
+     *
+     * @param rootId the root document id
+     * @param keys what to collect about the descendants in addition to their ids
+     */
+    public DBSDescendantsQuery(String rootId, Set<String> keys) {
+        this.rootId = rootId;
+        this.keys = keys;
+    }
+
+    /**
+     * Sets the maximum number of descendants to return, or {@code 0} for no limit.
+     */
+    public DBSDescendantsQuery limit(int limit) {
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * Sets the number of descendants fetched at once from the database, or {@code 0} for the default.
+     */
+    public DBSDescendantsQuery batchSize(int batchSize) {
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Sets the maximum depth of the descendants to return, or {@code 0} for no limit.
+     */
+    public DBSDescendantsQuery maxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+        return this;
+    }
+
+    /**
+     * Requests a breadth-first traversal, returning all the descendants of a given depth before the deeper ones.
+     */
+    public DBSDescendantsQuery breadthFirst() {
+        breadthFirst = true;
+        return this;
+    }
+
+    /**
+     * Resumes a traversal after the given descendant.
+     *
+     * @param id the id of the last descendant processed
+     * @param depth the depth of the last descendant processed, only used for a breadth-first traversal (it can be
+     *            computed with {@link #getDepth} if {@link DBSDocument#KEY_ANCESTOR_IDS} is part of the keys)
+     */
+    public DBSDescendantsQuery startAfter(String id, int depth) {
+        startAfterId = id;
+        startAfterDepth = depth;
+        return this;
+    }
+
+    public String getRootId() {
+        return rootId;
+    }
+
+    public Set<String> getKeys() {
+        return keys;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public boolean isBreadthFirst() {
+        return breadthFirst;
+    }
+
+    public String getStartAfterId() {
+        return startAfterId;
+    }
+
+    public int getStartAfterDepth() {
+        return startAfterDepth;
+    }
+
+    /**
+     * Checks if the depth of the root is needed to evaluate the query.
+     */
+    public boolean needsRootDepth() {
+        return breadthFirst || maxDepth > 0;
+    }
+
+    /**
+     * Gets the depth of a document relative to the repository root, which is the number of its ancestors.
+     */
+    public static int getAbsoluteDepth(State state) {
+        Object[] ancestorIds = (Object[]) state.get(KEY_ANCESTOR_IDS);
+        return ancestorIds == null ? 0 : ancestorIds.length;
+    }
+
+    /**
+     * Gets the depth of a descendant relative to the root.
+     *
+     * @param state the descendant state, including {@link DBSDocument#KEY_ANCESTOR_IDS}
+     * @param rootState the root state, including {@link DBSDocument#KEY_ANCESTOR_IDS}
+     */
+    public static int getDepth(State state, State rootState) {
+        return getAbsoluteDepth(state) - getAbsoluteDepth(rootState);
+    }
+
+    /**
+     * Evaluates the query on an unordered stream of all the descendants, for repositories that cannot do it natively.
+     * <p>
+     * This keeps all the matching descendants in memory to sort them.
+     *
+     * @param descendants the descendants, including {@link DBSDocument#KEY_ANCESTOR_IDS} if {@link #needsRootDepth}
+     * @param rootDepth the absolute depth of the root
+     * @return the matching descendants, in order
+     */
+    public Stream<State> evaluate(Stream<State> descendants, int rootDepth) {
+        Comparator<State> idComparator = Comparator.comparing(state -> (String) state.get(KEY_ID));
+        Stream<State> stream = descendants;
+        if (maxDepth > 0) {
+            stream = stream.filter(state -> getAbsoluteDepth(state) - rootDepth <= maxDepth);
+        }
+        if (breadthFirst) {
+            Comparator<State> depthComparator = Comparator.comparingInt(DBSDescendantsQuery::getAbsoluteDepth);
+            stream = stream.sorted(depthComparator.thenComparing(idComparator));
+            if (startAfterId != null) {
+                int depth = rootDepth + startAfterDepth;
+                stream = stream.filter(state -> getAbsoluteDepth(state) > depth
+                        || getAbsoluteDepth(state) == depth && startAfterId.compareTo((String) state.get(KEY_ID)) < 0);
+            }
+        } else {
+            stream = stream.sorted(idComparator);
+            if (startAfterId != null) {
+                stream = stream.filter(state -> startAfterId.compareTo((String) state.get(KEY_ID)) < 0);
+            }
+        }
+        if (limit > 0) {
+            stream = stream.limit(limit);
+        }
+        return stream;
+    }
+
+    /**
+     * Gets the keys to fetch for each descendant to be able to {@link #evaluate} the query.
+     */
+    public Set<String> getKeysForEvaluation() {
+        if (!needsRootDepth() || keys.contains(KEY_ANCESTOR_IDS)) {
+            return keys;
+        }
+        Set<String> set = new HashSet<>(keys);
+        set.add(KEY_ANCESTOR_IDS);
+        return set;
+    }
+
+}
@@ -39,6 +39,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -72,6 +73,7 @@ import org.nuxeo.ecm.core.schema.types.primitives.BooleanType;
 import org.nuxeo.ecm.core.schema.types.primitives.DateType;
 import org.nuxeo.ecm.core.storage.ExpressionEvaluator;
 import org.nuxeo.ecm.core.storage.State;
+import org.nuxeo.ecm.core.storage.dbs.DBSSession.OrderByComparator;
 import org.nuxeo.runtime.api.Framework;
 
 /**
@@ -281,6 +283,9 @@ public class DBSExpressionEvaluator extends ExpressionEvaluator {
     // which reference index is being visited, reset / updated during each pass
     protected int refCount;
 
+    // index of the first reference of the WHERE expression, the previous ones are for the projection
+    protected int expressionRefCount;
+
     public DBSExpressionEvaluator(DBSSession session, SQLQuery query, String[] principals,
             boolean fulltextSearchDisabled) {
         super(new DBSPathResolver(session), principals, fulltextSearchDisabled);
@@ -347,6 +352,66 @@ public class DBSExpressionEvaluator extends ExpressionEvaluator {
         Collections.reverse(allIterInfos);
     }
 
+    /**
+     * Gets the toplevel keys of a state needed to evaluate the query and compute its projections, after
+     * {@link #parse}.
+     * <p>
+     * This allows fetching only these keys from the database instead of full states.
+     *
+     * @return the keys, or {@code null} if the full state is needed
+     * @since 10.2
+     */
+    public Set<String> getRequiredKeys() {
+        Set<String> keys = new HashSet<>(Arrays.asList(KEY_ID, KEY_NAME, KEY_PARENT_ID, KEY_PRIMARY_TYPE,
+                KEY_MIXIN_TYPES, KEY_READ_ACL));
+        List<List<Serializable>> stepsList = new ArrayList<>();
+        toplevelValueInfos.forEach(valueInfo -> stepsList.add(valueInfo.steps));
+        toplevelIterInfos.forEach(iterInfo -> stepsList.add(iterInfo.steps));
+        for (List<Serializable> steps : stepsList) {
+            if (steps.isEmpty() || !(steps.get(0) instanceof String)) {
+                return null;
+            }
+            keys.add((String) steps.get(0));
+        }
+        return keys;
+    }
+
+    /**
+     * Creates a collector that keeps, in order, only the projections needed for the requested page of results.
+     *
+     * @param orderByClause the ordering, or {@code null} for none
+     * @param limit the page size, or {@code 0} for all
+     * @param offset the page offset
+     * @since 10.2
+     */
+    public DBSTopKCollector<Map<String, Serializable>> newTopKCollector(OrderByClause orderByClause, int limit,
+            int offset) {
+        Comparator<Map<String, Serializable>> comparator = orderByClause == null ? null
+                : new OrderByComparator(orderByClause);
+        return new DBSTopKCollector<>(comparator, limit == 0 ? 0 : offset + limit);
+    }
+
+    /**
+     * Adds the projection matches for a given state to a collector.
+     *
+     * @param distinctDocuments if {@code true} then at most one match is added
+     * @return {@code true} if the state matched
+     * @since 10.2
+     */
+    public boolean collectMatches(State state, boolean distinctDocuments,
+            DBSTopKCollector<Map<String, Serializable>> collector) {
+        List<Map<String, Serializable>> matches = matches(state);
+        if (matches.isEmpty()) {
+            return false;
+        }
+        if (distinctDocuments) {
+            collector.add(matches.get(0));
+        } else {
+            matches.forEach(collector::add);
+        }
+        return true;
+    }
+
     /**
      * Returns the projection matches for a given state.
      */
@@ -398,12 +463,21 @@ public class DBSExpressionEvaluator extends ExpressionEvaluator {
      * Does one walk of the expression, using the wildcardIndexes currently defined.
      */
     protected Map<String, Serializable> walkAll() {
-        refCount = 0;
-        Map<String, Serializable> projection = walkSelectClauseAndOrderBy(selectClause, orderByClause);
+        if (parsing) {
+            // references are recorded in this order: projection, then expression
+            refCount = 0;
+            Map<String, Serializable> projection = walkSelectClauseAndOrderBy(selectClause, orderByClause);
+            expressionRefCount = refCount;
+            walkExpression(expression);
+            return projection;
+        }
+        // evaluate the expression first, to only compute the projection for a match
+        refCount = expressionRefCount;
         Object res = walkExpression(expression);
         if (TRUE.equals(res)) {
             // returns one match
-            return projection;
+            refCount = 0;
+            return walkSelectClauseAndOrderBy(selectClause, orderByClause);
         } else {
             return null;
         }
@@ -31,7 +31,11 @@ import org.nuxeo.runtime.pubsub.SerializableAccumulableInvalidations;
 /**
  * A set of invalidations for a given repository.
  * <p>
- * Records both modified and deleted fragments, as well as "parents modified" fragments.
+ * Records the ids of modified and deleted documents. Among them, the ids of the documents that were moved, renamed or
+ * deleted are also recorded as "child" ids, as their child lookups (by parent and name) are no longer valid.
+ * <p>
+ * Child ids are always read, but are only sent to other nodes if
+ * {@link DBSCachingRepository#CLUSTER_CHILD_INVALIDATIONS_PROP} is enabled, as previous versions can't read them.
  *
  * @since 8.10
  */
@@ -53,6 +57,14 @@ public class DBSInvalidations implements SerializableAccumulableInvalidations {
     /** null when empty */
     public Set<String> ids;
 
+    /**
+     * The ids whose child lookup is invalidated (moved, renamed or deleted documents), always a subset of
+     * {@link #ids}. null when empty.
+     *
+     * @since 10.2
+     */
+    public Set<String> childIds;
+
     public DBSInvalidations() {
     }
 
@@ -68,11 +80,13 @@ public class DBSInvalidations implements SerializableAccumulableInvalidations {
     public void clear() {
         all = false;
         ids = null;
+        childIds = null;
     }
 
     protected void setAll() {
         all = true;
         ids = null;
+        childIds = null;
     }
 
     protected void checkMaxSize() {
@@ -100,6 +114,12 @@ public class DBSInvalidations implements SerializableAccumulableInvalidations {
             }
             ids.addAll(other.ids);
         }
+        if (other.childIds != null) {
+            if (childIds == null) {
+                childIds = new HashSet<>();
+            }
+            childIds.addAll(other.childIds);
+        }
         checkMaxSize();
     }
 
@@ -126,19 +146,55 @@ public class DBSInvalidations implements SerializableAccumulableInvalidations {
         checkMaxSize();
     }
 
+    /**
+     * Adds an id whose child lookup is invalidated as well.
+     *
+     * @since 10.2
+     */
+    public void addChild(String id) {
+        if (all) {
+            return;
+        }
+        if (childIds == null) {
+            childIds = new HashSet<>();
+        }
+        childIds.add(id);
+        add(id);
+    }
+
+    /**
+     * Adds ids whose child lookup is invalidated as well.
+     *
+     * @since 10.2
+     */
+    public void addAllChildren(Collection<String> idsToAdd) {
+        if (all) {
+            return;
+        }
+        if (childIds == null) {
+            childIds = new HashSet<>(idsToAdd);
+        } else {
+            childIds.addAll(idsToAdd);
+        }
+        addAll(idsToAdd);
+    }
+
     private static final String UTF_8 = "UTF-8";
 
     private static final int ALL_IDS = (byte) 'A';
 
     private static final int ID_SEP = (byte) ',';
 
+    /** Separator used before an id whose child lookup is invalidated as well. */
+    private static final int CHILD_ID_SEP = (byte) ';';
+
     @Override
     public void serialize(OutputStream out) throws IOException {
         if (all) {
             out.write(ALL_IDS);
         } else if (ids != null) {
             for (String id : ids) {
-                out.write(ID_SEP);
+                out.write(childIds != null && childIds.contains(id) ? CHILD_ID_SEP : ID_SEP);
                 out.write(id.getBytes(UTF_8));
             }
         }
@@ -153,18 +209,25 @@ public class DBSInvalidations implements SerializableAccumulableInvalidations {
         DBSInvalidations invalidations = new DBSInvalidations();
         if (first == ALL_IDS) {
             invalidations.setAll();
-        } else if (first != ID_SEP) {
+        } else if (first != ID_SEP && first != CHILD_ID_SEP) {
             // invalid message
             return null;
         } else {
             ByteArrayOutputStream baout = new ByteArrayOutputStream(36); // typical uuid size
+            int sep = first;
             for (;;) {
                 int b = in.read(); // we read from a ByteArrayInputStream so one at a time is ok
-                if (b == ID_SEP || b == -1) {
-                    invalidations.add(baout.toString(UTF_8));
+                if (b == ID_SEP || b == CHILD_ID_SEP || b == -1) {
+                    String id = baout.toString(UTF_8);
+                    if (sep == CHILD_ID_SEP) {
+                        invalidations.addChild(id);
+                    } else {
+                        invalidations.add(id);
+                    }
                     if (b == -1) {
                         break;
                     }
+                    sep = b;
                     baout.reset();
                 } else {
                     baout.write(b);
@@ -184,6 +247,10 @@ public class DBSInvalidations implements SerializableAccumulableInvalidations {
             sb.append("ids=");
             sb.append(ids);
         }
+        if (childIds != null) {
+            sb.append(",childIds=");
+            sb.append(childIds);
+        }
         sb.append(')');
         return sb.toString();
     }
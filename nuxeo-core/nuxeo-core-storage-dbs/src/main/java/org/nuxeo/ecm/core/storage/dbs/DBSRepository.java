@@ -20,6 +20,7 @@ package org.nuxeo.ecm.core.storage.dbs;
 
 import java.io.Serializable;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -35,6 +36,7 @@ import org.nuxeo.ecm.core.storage.FulltextConfiguration;
 import org.nuxeo.ecm.core.storage.State;
 import org.nuxeo.ecm.core.storage.State.StateDiff;
 import org.nuxeo.ecm.core.storage.dbs.DBSTransactionState.ChangeTokenUpdater;
+import org.nuxeo.ecm.core.storage.dbs.DBSTransactionState.StateUpdate;
 
 /**
  * Interface for a {@link Repository} for Document-Based Storage.
@@ -119,6 +121,24 @@ public interface DBSRepository extends Repository, LockManager {
      */
     List<State> readStates(List<String> ids);
 
+    /**
+     * Reads the states of several documents as a stream.
+     * <p>
+     * The returned states are in the same order as the ids, missing documents are skipped. The states are read by
+     * batches of bounded size, so that a large number of ids can be processed without keeping all the states in
+     * memory.
+     * <p>
+     * THE STREAM MUST BE CLOSED WHEN DONE to release resources.
+     *
+     * @param ids the document ids
+     * @return a stream of document states; THE STREAM MUST BE CLOSED WHEN DONE
+     * @since 10.2
+     */
+    default Stream<State> streamStates(List<String> ids) {
+        // overrides may read several batches concurrently
+        return DBSBatchedReader.stream(ids, DBSBatchedReader.DEFAULT_BATCH_SIZE, this::readStates);
+    }
+
     /**
      * Creates a document.
      *
@@ -144,6 +164,21 @@ public interface DBSRepository extends Repository, LockManager {
      */
     void updateState(String id, StateDiff diff, ChangeTokenUpdater changeTokenUpdater);
 
+    /**
+     * Updates several documents.
+     * <p>
+     * If some documents cannot be updated because of a change token mismatch or because they don't exist anymore, a
+     * {@link org.nuxeo.ecm.core.api.ConcurrentUpdateException ConcurrentUpdateException} is thrown mentioning them.
+     * In that case the other updates may or may not have been done, so the transaction must be rolled back.
+     *
+     * @param updates the updates to do
+     * @since 10.2
+     */
+    default void updateStates(List<StateUpdate> updates) {
+        // overrides should optimize to do all the updates in a single round trip
+        updates.forEach(update -> updateState(update.id, update.diff, update.changeTokenUpdater));
+    }
+
     /**
      * Deletes a set of document.
      *
@@ -223,6 +258,30 @@ public interface DBSRepository extends Repository, LockManager {
         return getDescendants(id, keys);
     }
 
+    /**
+     * Returns a stream of descendants from a given root document, in a stable order that allows resuming from a
+     * checkpoint, optionally breadth-first or limited in depth. This does not include information about the root
+     * document itself.
+     * <p>
+     * THE STREAM MUST BE CLOSED WHEN DONE to release resources.
+     *
+     * @param query the descendants query
+     * @return a stream of {@link State}s; THE STREAM MUST BE CLOSED WHEN DONE
+     * @since 10.2
+     */
+    default Stream<State> getDescendants(DBSDescendantsQuery query) {
+        // sorts in memory by default, override for a more efficient implementation
+        int rootDepth = 0;
+        if (query.needsRootDepth()) {
+            State rootState = readPartialState(query.getRootId(), Collections.singleton(DBSDocument.KEY_ANCESTOR_IDS));
+            if (rootState == null) {
+                return Stream.empty();
+            }
+            rootDepth = DBSDescendantsQuery.getAbsoluteDepth(rootState);
+        }
+        return query.evaluate(getDescendants(query.getRootId(), query.getKeysForEvaluation()), rootDepth);
+    }
+
     /**
      * Queries the repository to check if there are documents having key = value.
      *
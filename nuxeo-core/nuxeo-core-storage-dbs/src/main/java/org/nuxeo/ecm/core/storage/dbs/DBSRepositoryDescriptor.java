@@ -121,6 +121,33 @@ public class DBSRepositoryDescriptor implements Cloneable {
     @XNode("cache@concurrencyLevel")
     public Integer cacheConcurrencyLevel;
 
+    /**
+     * If set, states are cached serialized and the cache is bounded by this total size (in bytes) instead of
+     * {@link #cacheMaxSize}.
+     *
+     * @since 10.2
+     */
+    @XNode("cache@maxBytes")
+    public Long cacheMaxBytes;
+
+    /**
+     * If {@code true}, serialized states are cached in direct memory (off-heap). Only used with {@link #cacheMaxBytes}.
+     *
+     * @since 10.2
+     */
+    @XNode("cache@offHeap")
+    private Boolean cacheOffHeap;
+
+    /** @since 10.2 */
+    public boolean isCacheOffHeap() {
+        return defaultFalse(cacheOffHeap);
+    }
+
+    /** @since 10.2 */
+    protected void setCacheOffHeap(boolean offHeap) {
+        cacheOffHeap = Boolean.valueOf(offHeap);
+    }
+
     /** @since 8.10 */
     @XNode("clustering@id")
     public String clusterNodeId;
@@ -157,6 +184,25 @@ public class DBSRepositoryDescriptor implements Cloneable {
         this.changeTokenEnabled = Boolean.valueOf(enabled);
     }
 
+    /** @since 10.2 */
+    @XNode("readStates@batchSize")
+    public Integer readStatesBatchSize;
+
+    /** @since 10.2 */
+    public int getReadStatesBatchSize() {
+        return readStatesBatchSize == null ? DBSBatchedReader.DEFAULT_BATCH_SIZE : readStatesBatchSize.intValue();
+    }
+
+    /** @since 10.2 */
+    @XNode("readStates@parallelism")
+    public Integer readStatesParallelism;
+
+    /** @since 10.2 */
+    public int getReadStatesParallelism() {
+        return readStatesParallelism == null ? DBSBatchedReader.DEFAULT_PARALLELISM
+                : readStatesParallelism.intValue();
+    }
+
     @Override
     public DBSRepositoryDescriptor clone() {
         try {
@@ -194,6 +240,12 @@ public class DBSRepositoryDescriptor implements Cloneable {
         if (other.cacheConcurrencyLevel != null) {
             cacheConcurrencyLevel = other.cacheConcurrencyLevel;
         }
+        if (other.cacheMaxBytes != null) {
+            cacheMaxBytes = other.cacheMaxBytes;
+        }
+        if (other.cacheOffHeap != null) {
+            cacheOffHeap = other.cacheOffHeap;
+        }
         if (other.clusterNodeId != null) {
             clusterNodeId = other.clusterNodeId;
         }
@@ -206,6 +258,12 @@ public class DBSRepositoryDescriptor implements Cloneable {
         if (other.changeTokenEnabled != null) {
             changeTokenEnabled = other.changeTokenEnabled;
         }
+        if (other.readStatesBatchSize != null) {
+            readStatesBatchSize = other.readStatesBatchSize;
+        }
+        if (other.readStatesParallelism != null) {
+            readStatesParallelism = other.readStatesParallelism;
+        }
     }
 
     private static boolean defaultFalse(Boolean bool) {
@@ -0,0 +1,308 @@
+/*
+ * (C) Copyright 2018 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.ecm.core.storage.dbs;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.nuxeo.ecm.core.storage.State;
+
+import com.google.common.cache.AbstractCache;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalNotification;
+
+/**
+ * A cache of {@link State}s that keeps them serialized, bounded by the total size of the serialized states.
+ * <p>
+ * Each state is stored as a single buffer, optionally in direct memory (off-heap), instead of a graph of maps, lists
+ * and strings. This makes the cache much cheaper for the garbage collector, at the expense of a deserialization for
+ * each hit. Each hit returns a new copy of the state, including through the {@link #asMap} view.
+ * <p>
+ * When off-heap storage is used, the JVM maximum direct memory ({@code -XX:MaxDirectMemorySize}) must be large enough
+ * for the configured maximum size.
+ *
+ * @since 10.2
+ */
+public class DBSSerializedStateCache extends AbstractCache<String, State> {
+
+    /** Approximate memory overhead of an entry, in addition to its serialized state. */
+    protected static final int ENTRY_OVERHEAD = 128;
+
+    protected final DBSStateSerializer serializer = new DBSStateSerializer();
+
+    protected final boolean offHeap;
+
+    protected final Cache<String, ByteBuffer> cache;
+
+    /** Total size of the serialized states. */
+    protected final AtomicLong bytes = new AtomicLong();
+
+    /**
+     * Constructs a cache.
+     *
+     * @param maxBytes the maximum total size of the entries
+     * @param ttlMinutes the time to live of the entries, in minutes
+     * @param concurrencyLevel the concurrency level, or {@code null} for the default
+     * @param offHeap whether to store the serialized states in direct memory
+     */
+    public DBSSerializedStateCache(long maxBytes, long ttlMinutes, Integer concurrencyLevel, boolean offHeap) {
+        this.offHeap = offHeap;
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder();
+        builder = builder.expireAfterWrite(ttlMinutes, TimeUnit.MINUTES).recordStats();
+        if (concurrencyLevel != null) {
+            builder = builder.concurrencyLevel(concurrencyLevel.intValue());
+        }
+        cache = builder.maximumWeight(maxBytes)
+                       .weigher((String key, ByteBuffer value) -> value.capacity() + ENTRY_OVERHEAD)
+                       .removalListener((RemovalNotification<String, ByteBuffer> notification) -> bytes.addAndGet(
+                               -notification.getValue().capacity()))
+                       .build();
+    }
+
+    /**
+     * Serializes a state into a buffer, counted in the total size until it is removed from the cache.
+     */
+    protected ByteBuffer toBuffer(State state) {
+        byte[] serialized = serializer.serialize(state);
+        ByteBuffer buf;
+        if (offHeap) {
+            buf = ByteBuffer.allocateDirect(serialized.length);
+            buf.put(serialized);
+            buf.flip();
+        } else {
+            buf = ByteBuffer.wrap(serialized);
+        }
+        bytes.addAndGet(serialized.length);
+        return buf;
+    }
+
+    /**
+     * Uncounts a buffer returned by {@link #toBuffer} that was not stored in the cache.
+     */
+    protected void discard(ByteBuffer buf) {
+        bytes.addAndGet(-buf.capacity());
+    }
+
+    protected State toState(ByteBuffer buf) {
+        if (buf == null) {
+            return null;
+        }
+        // duplicate to have an independent position
+        return serializer.deserialize(buf.duplicate());
+    }
+
+    @Override
+    public State getIfPresent(Object key) {
+        return toState(cache.getIfPresent(key));
+    }
+
+    @Override
+    public State get(String key, Callable<? extends State> loader) throws ExecutionException {
+        return toState(cache.get(key, () -> {
+            State state = loader.call();
+            // null is refused by the underlying cache
+            return state == null ? null : toBuffer(state);
+        }));
+    }
+
+    @Override
+    public void put(String key, State state) {
+        cache.put(key, toBuffer(state));
+    }
+
+    @Override
+    public void invalidate(Object key) {
+        cache.invalidate(key);
+    }
+
+    @Override
+    public void invalidateAll(Iterable<?> keys) {
+        cache.invalidateAll(keys);
+    }
+
+    @Override
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public long size() {
+        return cache.size();
+    }
+
+    @Override
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    @Override
+    public void cleanUp() {
+        cache.cleanUp();
+    }
+
+    @Override
+    public ConcurrentMap<String, State> asMap() {
+        return new StateMap();
+    }
+
+    /**
+     * Gets the total size of the serialized states currently in the cache.
+     */
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    /**
+     * View of the cache as a map of states. Writes go to the cache, and conditional operations compare the
+     * deserialized states.
+     */
+    protected class StateMap extends AbstractMap<String, State> implements ConcurrentMap<String, State> {
+
+        protected final ConcurrentMap<String, ByteBuffer> map = cache.asMap();
+
+        @Override
+        public int size() {
+            return map.size();
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return map.containsKey(key);
+        }
+
+        @Override
+        public State get(Object key) {
+            return toState(map.get(key));
+        }
+
+        @Override
+        public State put(String key, State state) {
+            return toState(map.put(key, toBuffer(state)));
+        }
+
+        @Override
+        public State putIfAbsent(String key, State state) {
+            ByteBuffer buf = toBuffer(state);
+            ByteBuffer existing = map.putIfAbsent(key, buf);
+            if (existing != null) {
+                discard(buf);
+            }
+            return toState(existing);
+        }
+
+        @Override
+        public State remove(Object key) {
+            return toState(map.remove(key));
+        }
+
+        @Override
+        public boolean remove(Object key, Object value) {
+            if (!(value instanceof State)) {
+                return false;
+            }
+            for (;;) {
+                ByteBuffer existing = map.get(key);
+                if (existing == null || !value.equals(toState(existing))) {
+                    return false;
+                }
+                if (map.remove(key, existing)) {
+                    return true;
+                }
+                // changed concurrently, retry
+            }
+        }
+
+        @Override
+        public State replace(String key, State state) {
+            ByteBuffer buf = toBuffer(state);
+            ByteBuffer old = map.replace(key, buf);
+            if (old == null) {
+                discard(buf);
+            }
+            return toState(old);
+        }
+
+        @Override
+        public boolean replace(String key, State oldState, State newState) {
+            ByteBuffer buf = toBuffer(newState);
+            for (;;) {
+                ByteBuffer existing = map.get(key);
+                if (existing == null || !oldState.equals(toState(existing))) {
+                    discard(buf);
+                    return false;
+                }
+                if (map.replace(key, existing, buf)) {
+                    return true;
+                }
+                // changed concurrently, retry
+            }
+        }
+
+        @Override
+        public void clear() {
+            map.clear();
+        }
+
+        @Override
+        public Set<Entry<String, State>> entrySet() {
+            return new AbstractSet<Entry<String, State>>() {
+
+                @Override
+                public int size() {
+                    return map.size();
+                }
+
+                @Override
+                public Iterator<Entry<String, State>> iterator() {
+                    Iterator<Entry<String, ByteBuffer>> it = map.entrySet().iterator();
+                    return new Iterator<Entry<String, State>>() {
+
+                        @Override
+                        public boolean hasNext() {
+                            return it.hasNext();
+                        }
+
+                        @Override
+                        public Entry<String, State> next() {
+                            Entry<String, ByteBuffer> entry = it.next();
+                            return new SimpleImmutableEntry<>(entry.getKey(), toState(entry.getValue()));
+                        }
+
+                        @Override
+                        public void remove() {
+                            it.remove();
+                        }
+                    };
+                }
+            };
+        }
+    }
+
+}
@@ -86,7 +86,9 @@ import java.util.Map.Entry;
 import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
@@ -1204,6 +1206,17 @@ public class DBSSession implements Session {
         transaction.updateReadACLs(docIds);
     }
 
+    /**
+     * Updates the Read ACLs of a document and all its descendants, top-down.
+     *
+     * @see DBSTransactionState#updateTreeReadAclsTopDown
+     * @since 10.2
+     */
+    public void updateTreeReadAclsTopDown(String id, String[] parentReadAcl,
+            BiConsumer<String, String[]> subtreeProcessor, LongConsumer progress) {
+        transaction.updateTreeReadAclsTopDown(id, parentReadAcl, subtreeProcessor, progress);
+    }
+
     @Override
     public boolean isNegativeAclAllowed() {
         return false;
@@ -1569,17 +1582,21 @@ public class DBSSession implements Session {
         }
 
         if (postFilter) {
-            // ORDER BY
-            if (orderByClause != null) {
-                doOrderBy(projections, orderByClause);
+            // ORDER BY, only keeping the projections needed for the requested page
+            DBSTopKCollector<Map<String, Serializable>> collector = evaluator.newTopKCollector(orderByClause, limit,
+                    offset);
+            for (Map<String, Serializable> projection : projections) {
+                // add path info to do the sort
+                projection.put(ExpressionEvaluator.NXQL_ECM_PATH, getPath(projection));
+                collector.add(projection);
             }
+            List<Map<String, Serializable>> list = collector.getResult();
             // LIMIT / OFFSET
             if (limit != 0) {
-                int size = projections.size();
-                int fromIndex = offset > size ? size : offset;
-                int toIndex = fromIndex + limit > size ? size : fromIndex + limit;
-                projections = projections.subList(fromIndex, toIndex);
+                int size = list.size();
+                list = list.subList(offset > size ? size : offset, size);
             }
+            projections = new PartialList<>(list, projections.totalSize());
         }
 
         return projections;
@@ -1621,16 +1638,6 @@ public class DBSSession implements Session {
         }
     }
 
-    protected void doOrderBy(List<Map<String, Serializable>> projections, OrderByClause orderByClause) {
-        if (isOrderByPath(orderByClause)) {
-            // add path info to do the sort
-            for (Map<String, Serializable> projection : projections) {
-                projection.put(ExpressionEvaluator.NXQL_ECM_PATH, getPath(projection));
-            }
-        }
-        projections.sort(new OrderByComparator(orderByClause));
-    }
-
     public static class OrderByComparator implements Comparator<Map<String, Serializable>> {
 
         protected final OrderByClause orderByClause;
@@ -0,0 +1,313 @@
+/*
+ * (C) Copyright 2018 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.ecm.core.storage.dbs;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.nuxeo.ecm.core.api.NuxeoException;
+import org.nuxeo.ecm.core.storage.State;
+
+/**
+ * Compact binary serialization of {@link State}s, used to keep states in a cache without keeping their object graph.
+ * <p>
+ * Scalars, arrays, lists and sub-states are written with a one-byte tag followed by their value. Keys are written
+ * through a dictionary local to the serializer instance, so the serialized form is only meaningful to the instance
+ * that produced it. Values of unexpected types fall back to Java serialization.
+ *
+ * @since 10.2
+ */
+public class DBSStateSerializer {
+
+    /** Maximum number of keys in the dictionary, after which new keys are written inline. */
+    public static final int MAX_KEYS = 10000;
+
+    protected static final byte NULL = 0;
+
+    protected static final byte STRING = 1;
+
+    protected static final byte LONG = 2;
+
+    protected static final byte DOUBLE = 3;
+
+    protected static final byte TRUE = 4;
+
+    protected static final byte FALSE = 5;
+
+    protected static final byte CALENDAR = 6;
+
+    protected static final byte STATE = 7;
+
+    protected static final byte LIST = 8;
+
+    protected static final byte ARRAY = 9;
+
+    protected static final byte JAVA = 10;
+
+    /** Array component types, the index in this array is the code written. */
+    protected static final Class<?>[] ARRAY_TYPES = { Object.class, String.class, Long.class, Double.class,
+            Boolean.class, Calendar.class };
+
+    protected final Map<String, Integer> keyIndexes = new ConcurrentHashMap<>();
+
+    protected final List<String> keys = new CopyOnWriteArrayList<>();
+
+    /**
+     * Serializes a state.
+     */
+    public byte[] serialize(State state) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        writeState(out, state);
+        return out.toByteArray();
+    }
+
+    /**
+     * Deserializes a state from the remaining bytes of a buffer. The buffer position is moved past the state.
+     */
+    public State deserialize(ByteBuffer buf) {
+        return readState(buf);
+    }
+
+    protected int getKeyIndex(String key) {
+        Integer index = keyIndexes.get(key);
+        if (index != null) {
+            return index.intValue();
+        }
+        synchronized (keys) {
+            index = keyIndexes.get(key);
+            if (index != null) {
+                return index.intValue();
+            }
+            if (keys.size() >= MAX_KEYS) {
+                return -1;
+            }
+            // add to the list first, so that the index is always valid when seen by readers
+            keys.add(key);
+            int i = keys.size() - 1;
+            keyIndexes.put(key, Integer.valueOf(i));
+            return i;
+        }
+    }
+
+    protected void writeState(ByteArrayOutputStream out, State state) {
+        writeVarInt(out, state.size());
+        for (Entry<String, Serializable> en : state.entrySet()) {
+            String key = en.getKey();
+            int index = getKeyIndex(key);
+            // 0 means an inline key, otherwise index + 1
+            writeVarInt(out, index + 1);
+            if (index < 0) {
+                writeString(out, key);
+            }
+            writeValue(out, en.getValue());
+        }
+    }
+
+    protected void writeValue(ByteArrayOutputStream out, Object value) {
+        if (value == null) {
+            out.write(NULL);
+        } else if (value instanceof String) {
+            out.write(STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Long) {
+            out.write(LONG);
+            writeLong(out, ((Long) value).longValue());
+        } else if (value instanceof Double) {
+            out.write(DOUBLE);
+            writeLong(out, Double.doubleToRawLongBits(((Double) value).doubleValue()));
+        } else if (value instanceof Boolean) {
+            out.write(((Boolean) value).booleanValue() ? TRUE : FALSE);
+        } else if (value.getClass() == GregorianCalendar.class) {
+            Calendar cal = (Calendar) value;
+            out.write(CALENDAR);
+            writeLong(out, cal.getTimeInMillis());
+            writeString(out, cal.getTimeZone().getID());
+        } else if (value.getClass() == State.class) {
+            out.write(STATE);
+            writeState(out, (State) value);
+        } else if (value instanceof ArrayList) {
+            List<?> list = (List<?>) value;
+            out.write(LIST);
+            writeVarInt(out, list.size());
+            for (Object v : list) {
+                writeValue(out, v);
+            }
+        } else if (value instanceof Object[] && getArrayType(value.getClass().getComponentType()) >= 0) {
+            Object[] array = (Object[]) value;
+            out.write(ARRAY);
+            out.write(getArrayType(value.getClass().getComponentType()));
+            writeVarInt(out, array.length);
+            for (Object v : array) {
+                writeValue(out, v);
+            }
+        } else {
+            out.write(JAVA);
+            byte[] bytes = javaSerialize(value);
+            writeVarInt(out, bytes.length);
+            out.write(bytes, 0, bytes.length);
+        }
+    }
+
+    protected static int getArrayType(Class<?> klass) {
+        for (int i = 0; i < ARRAY_TYPES.length; i++) {
+            if (ARRAY_TYPES[i] == klass) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    protected static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    protected static void writeLong(ByteArrayOutputStream out, long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            out.write((int) (value >>> shift));
+        }
+    }
+
+    protected static void writeString(ByteArrayOutputStream out, String string) {
+        byte[] bytes = string.getBytes(UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    protected static byte[] javaSerialize(Object value) {
+        ByteArrayOutputStream baout = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(baout)) {
+            oos.writeObject(value);
+        } catch (IOException e) {
+            throw new NuxeoException("Cannot serialize value of class: " + value.getClass().getName(), e);
+        }
+        return baout.toByteArray();
+    }
+
+    protected State readState(ByteBuffer buf) {
+        int size = readVarInt(buf);
+        State state = new State(size);
+        for (int i = 0; i < size; i++) {
+            int index = readVarInt(buf);
+            String key = index == 0 ? readString(buf) : keys.get(index - 1);
+            state.put(key, readValue(buf));
+        }
+        return state;
+    }
+
+    protected Serializable readValue(ByteBuffer buf) {
+        byte tag = buf.get();
+        switch (tag) {
+        case NULL:
+            return null;
+        case STRING:
+            return readString(buf);
+        case LONG:
+            return Long.valueOf(buf.getLong());
+        case DOUBLE:
+            return Double.valueOf(Double.longBitsToDouble(buf.getLong()));
+        case TRUE:
+            return Boolean.TRUE;
+        case FALSE:
+            return Boolean.FALSE;
+        case CALENDAR:
+            long millis = buf.getLong();
+            Calendar cal = new GregorianCalendar(TimeZone.getTimeZone(readString(buf)));
+            cal.setTimeInMillis(millis);
+            return cal;
+        case STATE:
+            return readState(buf);
+        case LIST:
+            int listSize = readVarInt(buf);
+            ArrayList<Serializable> list = new ArrayList<>(listSize);
+            for (int i = 0; i < listSize; i++) {
+                list.add(readValue(buf));
+            }
+            return list;
+        case ARRAY:
+            Class<?> klass = ARRAY_TYPES[buf.get()];
+            int length = readVarInt(buf);
+            Object[] array = (Object[]) Array.newInstance(klass, length);
+            for (int i = 0; i < length; i++) {
+                array[i] = readValue(buf);
+            }
+            return array;
+        case JAVA:
+            byte[] bytes = new byte[readVarInt(buf)];
+            buf.get(bytes);
+            return javaDeserialize(bytes);
+        default:
+            throw new NuxeoException("Invalid serialized state, unknown tag: " + tag);
+        }
+    }
+
+    protected static int readVarInt(ByteBuffer buf) {
+        int value = 0;
+        for (int shift = 0;; shift += 7) {
+            byte b = buf.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    protected static String readString(ByteBuffer buf) {
+        int length = readVarInt(buf);
+        String string;
+        if (buf.hasArray()) {
+            string = new String(buf.array(), buf.arrayOffset() + buf.position(), length, UTF_8);
+            buf.position(buf.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            buf.get(bytes);
+            string = new String(bytes, UTF_8);
+        }
+        return string;
+    }
+
+    protected static Serializable javaDeserialize(byte[] bytes) {
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (Serializable) ois.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new NuxeoException("Cannot deserialize value", e);
+        }
+    }
+
+}
@@ -0,0 +1,113 @@
+/*
+ * (C) Copyright 2018 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.ecm.core.storage.dbs;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Collects the first K elements of a stream of elements, according to an optional ordering.
+ * <p>
+ * If there is an ordering, a bounded heap is used so that at most K elements are kept in memory. If there is no
+ * ordering, the first K elements are kept. If K is 0, all elements are kept.
+ *
+ * @since 10.2
+ */
+public class DBSTopKCollector<T> {
+
+    protected final Comparator<? super T> comparator;
+
+    protected final int k;
+
+    protected final List<T> list;
+
+    /** Max-heap of the K best elements, the worst one at the head. */
+    protected final PriorityQueue<T> heap;
+
+    protected long count;
+
+    /**
+     * Constructs a collector.
+     *
+     * @param comparator the ordering, or {@code null} for none
+     * @param k the maximum number of elements to keep, or {@code 0} for all
+     */
+    public DBSTopKCollector(Comparator<? super T> comparator, int k) {
+        this.comparator = comparator;
+        this.k = k;
+        if (comparator != null && k > 0) {
+            list = null;
+            heap = new PriorityQueue<>(k, comparator.reversed());
+        } else {
+            list = new ArrayList<>();
+            heap = null;
+        }
+    }
+
+    /**
+     * Adds an element.
+     */
+    public void add(T element) {
+        count++;
+        if (heap == null) {
+            if (k == 0 || list.size() < k) {
+                list.add(element);
+            }
+        } else if (heap.size() < k) {
+            heap.add(element);
+        } else if (comparator.compare(element, heap.peek()) < 0) {
+            heap.poll();
+            heap.add(element);
+        }
+    }
+
+    /**
+     * Checks if all the elements that will be returned have been collected, which is only possible if there is no
+     * ordering.
+     */
+    public boolean isFull() {
+        return heap == null && k > 0 && list.size() >= k;
+    }
+
+    /**
+     * Gets the number of elements that were added, including those that were not kept.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the kept elements, ordered.
+     */
+    public List<T> getResult() {
+        List<T> result;
+        if (heap == null) {
+            result = list;
+        } else {
+            result = new ArrayList<>(heap);
+        }
+        if (comparator != null) {
+            result.sort(comparator);
+        }
+        return result;
+    }
+
+}
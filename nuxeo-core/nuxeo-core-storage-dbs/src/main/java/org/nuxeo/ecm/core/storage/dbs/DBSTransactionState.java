@@ -64,6 +64,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.LongConsumer;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.apache.commons.lang3.StringUtils;
@@ -71,7 +74,9 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.nuxeo.ecm.core.BatchFinderWork;
 import org.nuxeo.ecm.core.BatchProcessorWork;
+import org.nuxeo.ecm.core.api.AbstractSession;
 import org.nuxeo.ecm.core.api.ConcurrentUpdateException;
+import org.nuxeo.ecm.core.api.NuxeoException;
 import org.nuxeo.ecm.core.api.PartialList;
 import org.nuxeo.ecm.core.api.SystemPrincipal;
 import org.nuxeo.ecm.core.api.model.DeltaLong;
@@ -91,10 +96,12 @@ import org.nuxeo.ecm.core.storage.State;
 import org.nuxeo.ecm.core.storage.State.ListDiff;
 import org.nuxeo.ecm.core.storage.State.StateDiff;
 import org.nuxeo.ecm.core.storage.StateHelper;
+import org.nuxeo.ecm.core.work.AbstractWork;
 import org.nuxeo.ecm.core.work.api.Work;
 import org.nuxeo.ecm.core.work.api.WorkManager;
 import org.nuxeo.ecm.core.work.api.WorkManager.Scheduling;
 import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.transaction.TransactionHelper;
 
 /**
  * Transactional state for a session.
@@ -126,6 +133,15 @@ public class DBSTransactionState {
 
     public static final String READ_ACL_ASYNC_THRESHOLD_DEFAULT = "500";
 
+    /** @since 10.2 */
+    public static final String READ_ACL_ASYNC_TOPDOWN_PROPERTY = "nuxeo.core.readacl.async.topdown.enabled";
+
+    /** @since 10.2 */
+    public static final String READ_ACL_ASYNC_TOPDOWN_DEFAULT = "false";
+
+    /** Number of documents processed between two batches of Read ACL updates, for top-down propagation. */
+    protected static final int READ_ACL_TOPDOWN_BATCH_SIZE = 500;
+
     protected final DBSRepository repository;
 
     protected final DBSSession session;
@@ -227,9 +243,9 @@ public class DBSTransactionState {
             idsToFetch.add(id);
         }
         if (!idsToFetch.isEmpty()) {
-            List<State> states = repository.readStates(idsToFetch);
-            for (State state : states) {
-                newTransientState(state);
+            // read by batches, to avoid huge queries
+            try (Stream<State> states = repository.streamStates(idsToFetch)) {
+                states.forEach(this::newTransientState);
             }
         }
         // everything now fetched in transient
@@ -489,12 +505,23 @@ public class DBSTransactionState {
             }
 
             // asynchronous work to do the whole tree
-            nxql = String.format("SELECT ecm:uuid FROM Document WHERE ecm:ancestorId = '%s'", id);
-            Work work = new FindReadAclsWork(repository.getName(), nxql, null);
+            Work work;
+            if (isReadAclsTopDownEnabled()) {
+                work = new UpdateTreeReadAclsWork(repository.getName(), id, null, true);
+            } else {
+                nxql = String.format("SELECT ecm:uuid FROM Document WHERE ecm:ancestorId = '%s'", id);
+                work = new FindReadAclsWork(repository.getName(), nxql, null);
+            }
             Framework.getService(WorkManager.class).schedule(work);
         }
     }
 
+    /** @since 10.2 */
+    protected boolean isReadAclsTopDownEnabled() {
+        return Boolean.parseBoolean(
+                Framework.getProperty(READ_ACL_ASYNC_TOPDOWN_PROPERTY, READ_ACL_ASYNC_TOPDOWN_DEFAULT));
+    }
+
     /**
      * Work to find the ids of documents for which Read ACLs must be recomputed, and launch the needed update works.
      *
@@ -563,6 +590,241 @@ public class DBSTransactionState {
         }
     }
 
+    /**
+     * Work to update the Read ACLs of a document and all its descendants, top-down: the Read ACL of each folder is
+     * computed only once and propagated to its children.
+     * <p>
+     * When splitting, the work only processes the document and its direct children, and schedules a new work for the
+     * subtree of each child, so that subtrees are processed in parallel.
+     *
+     * @since 10.2
+     */
+    public static class UpdateTreeReadAclsWork extends AbstractWork {
+
+        private static final long serialVersionUID = 1L;
+
+        protected final String[] parentReadAcl;
+
+        protected final boolean split;
+
+        /**
+         * @param parentReadAcl the Read ACL of the parent of the document, or {@code null} to compute it
+         * @param split whether to schedule a new work for the subtree of each child
+         */
+        public UpdateTreeReadAclsWork(String repositoryName, String docId, String[] parentReadAcl, boolean split) {
+            setDocument(repositoryName, docId, true);
+            this.parentReadAcl = parentReadAcl;
+            this.split = split;
+        }
+
+        @Override
+        public String getTitle() {
+            return "Update Read ACLs top-down";
+        }
+
+        @Override
+        public String getCategory() {
+            return "security";
+        }
+
+        @Override
+        public void work() {
+            openSystemSession();
+            setProgress(new Progress(0, -1));
+            setStatus("Updating");
+            DBSSession dbsSession = (DBSSession) ((AbstractSession) session).getSession();
+            dbsSession.updateTreeReadAclsTopDown(docId, parentReadAcl, split ? this::scheduleSubtree : null,
+                    this::batchDone);
+            setStatus("Done");
+        }
+
+        protected void scheduleSubtree(String id, String[] parentReadAcl) {
+            Work work = new UpdateTreeReadAclsWork(repositoryName, id, parentReadAcl, false);
+            Framework.getService(WorkManager.class).schedule(work);
+        }
+
+        /**
+         * Commits the Read ACLs written so far. This is only called between batches, when no cursor is open on the
+         * repository.
+         */
+        protected void batchDone(long count) {
+            setProgress(new Progress(count, -1));
+            TransactionHelper.commitOrRollbackTransaction();
+            TransactionHelper.startTransaction();
+        }
+    }
+
+    /**
+     * Updates the Read ACLs of a document and all its descendants, top-down: the Read ACL of each folder is computed
+     * only once and propagated to its children, instead of walking up the ancestors for each document.
+     * <p>
+     * Writes go directly to the repository by batches, bypassing transient space. The progress callback is only called
+     * between batches, when no cursor is open on the repository, so it may commit the transaction.
+     *
+     * @param id the document id
+     * @param parentReadAcl the Read ACL of the parent of the document, or {@code null} to compute it
+     * @param subtreeProcessor if not {@code null}, only the document and its direct children are processed, and the
+     *            processor is called with each child having children and the Read ACL of its parent, to process the
+     *            subtree of the child
+     * @param progress called after each batch with the number of documents processed so far
+     * @since 10.2
+     */
+    public void updateTreeReadAclsTopDown(String id, String[] parentReadAcl,
+            BiConsumer<String, String[]> subtreeProcessor, LongConsumer progress) {
+        State state = repository.readPartialState(id, READ_ACL_RECURSION_KEYS);
+        if (state == null) {
+            // deleted in the meantime
+            return;
+        }
+        String[] readAcl = parentReadAcl == null ? getReadACL(state) : getReadACL(state, parentReadAcl);
+        ReadAclsUpdater updater = new ReadAclsUpdater(progress);
+        updater.update(id, state, readAcl);
+        if (subtreeProcessor != null) {
+            for (State child : repository.queryKeyValue(KEY_PARENT_ID, id, Collections.emptySet())) {
+                String childId = (String) child.get(KEY_ID);
+                updater.update(childId, child, getReadACL(child, readAcl));
+                if (updater.isBatchFull()) {
+                    updater.flush();
+                }
+                if (repository.queryKeyValuePresence(KEY_PARENT_ID, childId, Collections.emptySet())) {
+                    subtreeProcessor.accept(childId, readAcl);
+                }
+            }
+            updater.flush();
+        } else {
+            updater.flush();
+            updateDescendantsReadAcls(id, readAcl, updater);
+        }
+    }
+
+    /**
+     * Updates the Read ACLs of all the descendants of a document whose Read ACL is known.
+     * <p>
+     * A first pass finds the descendants having an ACP, which are the only ones changing the Read ACL of their
+     * subtree. A second pass computes the Read ACL of each descendant from the one of its parent, which is computed
+     * once per parent from its ancestors.
+     * <p>
+     * The second pass reads the descendants by pages in id order, resuming after the last one of the previous page,
+     * and writes the updates of a page once the page is fully read, so that the transaction can be committed between
+     * pages without a cursor being open.
+     */
+    protected void updateDescendantsReadAcls(String id, String[] readAcl, ReadAclsUpdater updater) {
+        Map<String, State> acpStates = new HashMap<>();
+        DBSDescendantsQuery query = new DBSDescendantsQuery(id, Collections.singleton(KEY_ACP));
+        try (Stream<State> states = getDescendants(query.batchSize(READ_ACL_TOPDOWN_BATCH_SIZE))) {
+            states.filter(state -> state.get(KEY_ACP) != null)
+                  .forEach(state -> acpStates.put((String) state.get(KEY_ID), state));
+        }
+        Map<String, String[]> folderReadAcls = new HashMap<>();
+        folderReadAcls.put(id, readAcl);
+        Set<String> keys = new HashSet<>(Arrays.asList(KEY_ANCESTOR_IDS, KEY_READ_ACL));
+        String lastId = null;
+        for (;;) {
+            query = new DBSDescendantsQuery(id, keys).limit(READ_ACL_TOPDOWN_BATCH_SIZE)
+                                                     .batchSize(READ_ACL_TOPDOWN_BATCH_SIZE);
+            if (lastId != null) {
+                query.startAfter(lastId, 0);
+            }
+            List<State> page;
+            try (Stream<State> states = getDescendants(query)) {
+                page = states.collect(Collectors.toList());
+            }
+            for (State state : page) {
+                String docId = (String) state.get(KEY_ID);
+                String[] parentReadAcl = getParentReadAcl(state, folderReadAcls, acpStates);
+                State acpState = acpStates.get(docId);
+                String[] docReadAcl = acpState == null ? parentReadAcl : getReadACL(acpState, parentReadAcl);
+                updater.update(docId, state, docReadAcl);
+            }
+            // the cursor is closed, the progress callback may commit
+            updater.flush();
+            if (page.size() < READ_ACL_TOPDOWN_BATCH_SIZE) {
+                break;
+            }
+            lastId = (String) page.get(page.size() - 1).get(KEY_ID);
+        }
+    }
+
+    /**
+     * Gets the Read ACL of the parent of a document, computing it from the deepest ancestor whose Read ACL is known.
+     * The Read ACLs computed for the intermediate ancestors are remembered.
+     */
+    protected String[] getParentReadAcl(State state, Map<String, String[]> folderReadAcls,
+            Map<String, State> acpStates) {
+        Object[] ancestorIds = (Object[]) state.get(KEY_ANCESTOR_IDS);
+        int i = ancestorIds.length - 1;
+        String[] readAcl = folderReadAcls.get(ancestorIds[i]);
+        if (readAcl != null) {
+            return readAcl;
+        }
+        while (i >= 0 && !folderReadAcls.containsKey(ancestorIds[i])) {
+            i--;
+        }
+        if (i < 0) {
+            throw new NuxeoException("Document: " + state.get(KEY_ID) + " is not a descendant of the updated tree");
+        }
+        readAcl = folderReadAcls.get(ancestorIds[i]);
+        for (i++; i < ancestorIds.length; i++) {
+            String ancestorId = (String) ancestorIds[i];
+            State acpState = acpStates.get(ancestorId);
+            if (acpState != null) {
+                readAcl = getReadACL(acpState, readAcl);
+            }
+            folderReadAcls.put(ancestorId, readAcl);
+        }
+        return readAcl;
+    }
+
+    /**
+     * Accumulates Read ACL updates, sent to the repository when flushed.
+     *
+     * @since 10.2
+     */
+    protected class ReadAclsUpdater {
+
+        protected final LongConsumer progress;
+
+        protected final List<StateUpdate> updates = new ArrayList<>();
+
+        protected long count;
+
+        protected ReadAclsUpdater(LongConsumer progress) {
+            this.progress = progress;
+        }
+
+        /**
+         * Updates the Read ACL of a document, if the one in its state is different.
+         */
+        protected void update(String id, State state, String[] readAcl) {
+            Object[] oldReadAcl = (Object[]) state.get(KEY_READ_ACL);
+            if (oldReadAcl == null) {
+                // an empty array is read back as null
+                oldReadAcl = new Object[0];
+            }
+            if (!Arrays.equals(oldReadAcl, readAcl)) {
+                StateDiff diff = new StateDiff();
+                diff.put(KEY_READ_ACL, readAcl);
+                updates.add(new StateUpdate(id, diff, null));
+            }
+            count++;
+        }
+
+        protected boolean isBatchFull() {
+            return updates.size() >= READ_ACL_TOPDOWN_BATCH_SIZE;
+        }
+
+        /**
+         * Writes the accumulated updates and reports the progress. Must not be called while a cursor is open.
+         */
+        protected void flush() {
+            if (!updates.isEmpty()) {
+                repository.updateStates(new ArrayList<>(updates));
+                updates.clear();
+            }
+            progress.accept(count);
+        }
+    }
+
     /**
      * Updates the Read ACLs on a document (not recursively), bypassing transient space and caches for the document
      * itself (not the ancestors, needed for ACL inheritance and for which caching is useful).
@@ -606,40 +868,71 @@ public class DBSTransactionState {
      */
     protected String[] getReadACL(State state) {
         Set<String> racls = new HashSet<>();
-        LOOP: do {
-            @SuppressWarnings("unchecked")
-            List<Serializable> aclList = (List<Serializable>) state.get(KEY_ACP);
-            if (aclList != null) {
-                for (Serializable aclSer : aclList) {
-                    State aclMap = (State) aclSer;
-                    @SuppressWarnings("unchecked")
-                    List<Serializable> aceList = (List<Serializable>) aclMap.get(KEY_ACL);
-                    for (Serializable aceSer : aceList) {
-                        State aceMap = (State) aceSer;
-                        String username = (String) aceMap.get(KEY_ACE_USER);
-                        String permission = (String) aceMap.get(KEY_ACE_PERMISSION);
-                        Boolean granted = (Boolean) aceMap.get(KEY_ACE_GRANT);
-                        Long status = (Long) aceMap.get(KEY_ACE_STATUS);
-                        if (TRUE.equals(granted) && browsePermissions.contains(permission)
-                                && (status == null || status == 1)) {
-                            racls.add(username);
-                        }
-                        if (FALSE.equals(granted)) {
-                            if (!EVERYONE.equals(username)) {
-                                // TODO log
-                                racls.add(UNSUPPORTED_ACL);
-                            }
-                            break LOOP;
-                        }
-                    }
-                }
+        do {
+            if (addLocalReadACL(state, racls)) {
+                // inheritance blocked
+                break;
             }
             // get the parent; for a version the parent is the live document
             String parentKey = TRUE.equals(state.get(KEY_IS_VERSION)) ? KEY_VERSION_SERIES_ID : KEY_PARENT_ID;
             String parentId = (String) state.get(parentKey);
             state = parentId == null ? null : getStateForRead(parentId);
         } while (state != null);
+        return toSortedReadACL(racls);
+    }
+
+    /**
+     * Gets the Read ACL on a document, given the Read ACL of its parent.
+     *
+     * @since 10.2
+     */
+    protected String[] getReadACL(State state, String[] parentReadAcl) {
+        Set<String> racls = new HashSet<>();
+        if (!addLocalReadACL(state, racls)) {
+            Collections.addAll(racls, parentReadAcl);
+        }
+        return toSortedReadACL(racls);
+    }
+
+    /**
+     * Adds the users having browse permission from the ACP of the document itself.
+     *
+     * @return {@code true} if the ACP blocks inheritance from the parent
+     * @since 10.2
+     */
+    protected boolean addLocalReadACL(State state, Set<String> racls) {
+        @SuppressWarnings("unchecked")
+        List<Serializable> aclList = (List<Serializable>) state.get(KEY_ACP);
+        if (aclList == null) {
+            return false;
+        }
+        for (Serializable aclSer : aclList) {
+            State aclMap = (State) aclSer;
+            @SuppressWarnings("unchecked")
+            List<Serializable> aceList = (List<Serializable>) aclMap.get(KEY_ACL);
+            for (Serializable aceSer : aceList) {
+                State aceMap = (State) aceSer;
+                String username = (String) aceMap.get(KEY_ACE_USER);
+                String permission = (String) aceMap.get(KEY_ACE_PERMISSION);
+                Boolean granted = (Boolean) aceMap.get(KEY_ACE_GRANT);
+                Long status = (Long) aceMap.get(KEY_ACE_STATUS);
+                if (TRUE.equals(granted) && browsePermissions.contains(permission)
+                        && (status == null || status == 1)) {
+                    racls.add(username);
+                }
+                if (FALSE.equals(granted)) {
+                    if (!EVERYONE.equals(username)) {
+                        // TODO log
+                        racls.add(UNSUPPORTED_ACL);
+                    }
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
 
+    protected static String[] toSortedReadACL(Set<String> racls) {
         // sort to have canonical order
         List<String> racl = new ArrayList<>(racls);
         Collections.sort(racl);
@@ -650,6 +943,11 @@ public class DBSTransactionState {
         return repository.getDescendants(id, keys, limit);
     }
 
+    /** @since 10.2 */
+    protected Stream<State> getDescendants(DBSDescendantsQuery query) {
+        return repository.getDescendants(query);
+    }
+
     public List<DBSDocumentState> getKeyValuedStates(String key, Object value) {
         List<DBSDocumentState> docStates = new LinkedList<>();
         Set<String> seen = new HashSet<>();
@@ -752,6 +1050,7 @@ public class DBSTransactionState {
         if (!statesToCreate.isEmpty()) {
             repository.createStates(statesToCreate);
         }
+        List<StateUpdate> statesToUpdate = new ArrayList<>();
         for (DBSDocumentState docState : transientStates.values()) {
             String id = docState.getId();
             if (transientCreated.contains(id)) {
@@ -780,10 +1079,13 @@ public class DBSTransactionState {
                 } else {
                     changeTokenUpdater = null;
                 }
-                repository.updateState(id, diff, changeTokenUpdater);
+                statesToUpdate.add(new StateUpdate(id, diff, changeTokenUpdater));
             }
             docState.setNotDirty();
         }
+        if (!statesToUpdate.isEmpty()) {
+            repository.updateStates(statesToUpdate);
+        }
         transientCreated.clear();
         userChangeIds.clear();
         scheduleWork(works);
@@ -833,6 +1135,33 @@ public class DBSTransactionState {
         }
     }
 
+    /**
+     * A document update to be done by the repository: the document id, the diff to apply, and how to get and update
+     * the change token.
+     *
+     * @since 10.2
+     */
+    public static class StateUpdate {
+
+        public final String id;
+
+        public final StateDiff diff;
+
+        /** May be {@code null}. */
+        public final ChangeTokenUpdater changeTokenUpdater;
+
+        public StateUpdate(String id, StateDiff diff, ChangeTokenUpdater changeTokenUpdater) {
+            this.id = id;
+            this.diff = diff;
+            this.changeTokenUpdater = changeTokenUpdater;
+        }
+
+        @Override
+        public String toString() {
+            return getClass().getSimpleName() + '(' + id + ',' + diff + ')';
+        }
+    }
+
     protected void applyUndoLog() {
         Set<String> deletes = new HashSet<>();
         for (Entry<String, State> es : undoLog.entrySet()) {
@@ -0,0 +1,113 @@
+/*
+ * (C) Copyright 2016 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Kevin Leturc
+ */
+package org.nuxeo.ecm.core.storage.dbs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_ID;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+import org.nuxeo.ecm.core.storage.State;
+
+public class TestDBSBatchedReader {
+
+    private static State newState(String id) {
+        State state = new State();
+        state.put(KEY_ID, id);
+        return state;
+    }
+
+    private static List<String> ids(int n) {
+        return IntStream.range(0, n).mapToObj(i -> "id" + i).collect(Collectors.toList());
+    }
+
+    private static List<String> ids(Stream<State> stream) {
+        try (Stream<State> s = stream) {
+            return s.map(state -> (String) state.get(KEY_ID)).collect(Collectors.toList());
+        }
+    }
+
+    /** Reader returning the states in reverse order, skipping ids ending with 3. */
+    private static Function<List<String>, List<State>> reader(List<Integer> batchSizes) {
+        return batch -> {
+            synchronized (batchSizes) {
+                batchSizes.add(batch.size());
+            }
+            List<State> states = batch.stream()
+                                      .filter(id -> !id.endsWith("3"))
+                                      .map(TestDBSBatchedReader::newState)
+                                      .collect(Collectors.toList());
+            Collections.reverse(states);
+            return states;
+        };
+    }
+
+    private static List<String> expected(List<String> ids) {
+        return ids.stream().filter(id -> !id.endsWith("3")).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testInOrder() {
+        List<State> states = Arrays.asList(newState("c"), null, newState("a"));
+        List<State> ordered = DBSBatchedReader.inOrder(Arrays.asList("a", "b", "c"), states);
+        assertEquals(Arrays.asList("a", "c"), ids(ordered.stream()));
+    }
+
+    @Test
+    public void testStream() {
+        List<String> ids = ids(25);
+        List<Integer> batchSizes = new ArrayList<>();
+        assertEquals(expected(ids), ids(DBSBatchedReader.stream(ids, 10, reader(batchSizes))));
+        assertEquals(Arrays.asList(10, 10, 5), batchSizes);
+    }
+
+    @Test
+    public void testStreamEmpty() {
+        List<Integer> batchSizes = new ArrayList<>();
+        assertEquals(Collections.emptyList(),
+                ids(DBSBatchedReader.stream(Collections.emptyList(), 10, reader(batchSizes))));
+        assertTrue(batchSizes.isEmpty());
+    }
+
+    @Test
+    public void testStreamParallel() {
+        List<String> ids = ids(1000);
+        List<Integer> batchSizes = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            assertEquals(expected(ids),
+                    ids(DBSBatchedReader.stream(ids, 7, reader(batchSizes), executor, 4)));
+            assertEquals(143, batchSizes.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
@@ -19,9 +19,11 @@
 package org.nuxeo.ecm.core.storage.dbs;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyListOf;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -36,12 +38,15 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.nuxeo.ecm.core.api.ConcurrentUpdateException;
 import org.nuxeo.ecm.core.storage.State;
 import org.nuxeo.ecm.core.storage.State.StateDiff;
+import org.nuxeo.ecm.core.storage.dbs.DBSTransactionState.StateUpdate;
 
 public class TestDBSCachingRepository {
 
@@ -113,6 +118,38 @@ public class TestDBSCachingRepository {
         assertEquals(states, cachedStates);
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testStreamStates() {
+        when(subRepository.streamStates(anyListOf(String.class))).then(
+                invocation -> ((List<String>) invocation.getArguments()[0]).stream()
+                                                                          .filter(id -> !"MISSING".equals(id))
+                                                                          .map(this::newState));
+        String id1 = "ID1";
+        String id2 = "ID2";
+        String id3 = "ID3";
+
+        // put id2 in cache
+        repository.readState(id2);
+
+        // cached state is not read again, order is kept, missing document is skipped
+        List<State> states;
+        try (Stream<State> stream = repository.streamStates(Arrays.asList(id1, id2, "MISSING", id3))) {
+            states = stream.collect(Collectors.toList());
+        }
+        verify(subRepository, times(1)).streamStates(eq(Arrays.asList(id1, "MISSING", id3)));
+        assertEquals(Arrays.asList(id1, id2, id3),
+                states.stream().map(state -> state.get(KEY_ID)).collect(Collectors.toList()));
+
+        // all states now in cache
+        try (Stream<State> stream = repository.streamStates(Arrays.asList(id3, id1))) {
+            states = stream.collect(Collectors.toList());
+        }
+        verify(subRepository, times(1)).streamStates(anyListOf(String.class));
+        assertEquals(Arrays.asList(id3, id1),
+                states.stream().map(state -> state.get(KEY_ID)).collect(Collectors.toList()));
+    }
+
     @Test
     public void testUpdateState() {
         String id = "ID";
@@ -131,6 +168,42 @@ public class TestDBSCachingRepository {
         verify(subRepository, times(2)).readState(eq(id));
     }
 
+    @Test
+    public void testUpdateStates() {
+        String id1 = "ID1";
+        String id2 = "ID2";
+        List<StateUpdate> updates = Arrays.asList(new StateUpdate(id1, new StateDiff(), null),
+                new StateUpdate(id2, new StateDiff(), null));
+
+        // First add the states in cache
+        repository.readState(id1);
+        repository.readState(id2);
+
+        // Second update these states, delegated in one call
+        repository.updateStates(updates);
+        verify(subRepository, times(1)).updateStates(eq(updates));
+        verify(subRepository, never()).updateState(any(), any(), any());
+
+        // Check states are no longer in cache
+        repository.readState(id1);
+        repository.readState(id2);
+        verify(subRepository, times(2)).readState(eq(id1));
+        verify(subRepository, times(2)).readState(eq(id2));
+
+        // Failed update also invalidates, as some of the updates may have been done
+        doThrow(new ConcurrentUpdateException(id2)).when(subRepository).updateStates(eq(updates));
+        try {
+            repository.updateStates(updates);
+            fail("should fail");
+        } catch (ConcurrentUpdateException e) {
+            assertEquals(id2, e.getMessage());
+        }
+        repository.readState(id1);
+        repository.readState(id2);
+        verify(subRepository, times(3)).readState(eq(id1));
+        verify(subRepository, times(3)).readState(eq(id2));
+    }
+
     @Test
     public void testDeleteStates() {
         String id = "ID";
@@ -170,6 +243,39 @@ public class TestDBSCachingRepository {
         assertEquals(dbState, cachedState);
     }
 
+    @Test
+    public void testReadChildStateAfterMove() {
+        String parentId = "PARENT-ID";
+        String name = "NAME";
+        String id = parentId + "_" + name;
+
+        // First read - call sub repository
+        repository.readChildState(parentId, name, Collections.emptySet());
+        verify(subRepository, times(1)).readChildState(eq(parentId), eq(name), any());
+
+        // Update not touching parent or name - child cache is kept, state is read again
+        repository.updateState(id, new StateDiff(), null);
+        repository.readChildState(parentId, name, Collections.emptySet());
+        verify(subRepository, times(1)).readChildState(eq(parentId), eq(name), any());
+        verify(subRepository, times(1)).readState(eq(id));
+
+        // Ignored child - call sub repository
+        repository.readChildState(parentId, name, Collections.singleton(id));
+        verify(subRepository, times(2)).readChildState(eq(parentId), eq(name), any());
+
+        // Move - child cache is invalidated
+        StateDiff diff = new StateDiff();
+        diff.put(KEY_PARENT_ID, "OTHER-PARENT-ID");
+        repository.updateState(id, diff, null);
+        repository.readChildState(parentId, name, Collections.emptySet());
+        verify(subRepository, times(3)).readChildState(eq(parentId), eq(name), any());
+
+        // Delete - child cache is invalidated
+        repository.deleteStates(Collections.singleton(id));
+        repository.readChildState(parentId, name, Collections.emptySet());
+        verify(subRepository, times(4)).readChildState(eq(parentId), eq(name), any());
+    }
+
     private State newState(String id) {
         State state = new State();
         state.setSingle(KEY_ID, id);
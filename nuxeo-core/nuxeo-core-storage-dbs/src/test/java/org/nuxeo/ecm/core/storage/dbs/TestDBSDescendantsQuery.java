@@ -0,0 +1,110 @@
+/*
+ * (C) Copyright 2018 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.ecm.core.storage.dbs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_ANCESTOR_IDS;
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_ID;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+import org.nuxeo.ecm.core.storage.State;
+
+public class TestDBSDescendantsQuery {
+
+    private static State newState(String id, String... ancestorIds) {
+        State state = new State();
+        state.put(KEY_ID, id);
+        state.put(KEY_ANCESTOR_IDS, ancestorIds);
+        return state;
+    }
+
+    /**
+     * Tree under root "r" (itself under "top"): r/{c, a}, r/c/{f, b}, r/a/e, r/c/f/d.
+     */
+    private static Stream<State> descendants() {
+        return Stream.of( //
+                newState("f", "top", "r", "c"), //
+                newState("c", "top", "r"), //
+                newState("d", "top", "r", "c", "f"), //
+                newState("a", "top", "r"), //
+                newState("e", "top", "r", "a"), //
+                newState("b", "top", "r", "c"));
+    }
+
+    private static List<String> evaluate(DBSDescendantsQuery query) {
+        try (Stream<State> stream = query.evaluate(descendants(), 1)) {
+            return stream.map(state -> (String) state.get(KEY_ID)).collect(Collectors.toList());
+        }
+    }
+
+    private static DBSDescendantsQuery query() {
+        return new DBSDescendantsQuery("r", Collections.emptySet());
+    }
+
+    @Test
+    public void testOrderedById() {
+        assertEquals(Arrays.asList("a", "b", "c", "d", "e", "f"), evaluate(query()));
+        assertEquals(Arrays.asList("a", "b", "c"), evaluate(query().limit(3)));
+        assertEquals(Arrays.asList("d", "e", "f"), evaluate(query().startAfter("c", 0)));
+    }
+
+    @Test
+    public void testMaxDepth() {
+        assertEquals(Arrays.asList("a", "c"), evaluate(query().maxDepth(1)));
+        assertEquals(Arrays.asList("a", "b", "c", "e", "f"), evaluate(query().maxDepth(2)));
+    }
+
+    @Test
+    public void testBreadthFirst() {
+        assertEquals(Arrays.asList("a", "c", "b", "e", "f", "d"), evaluate(query().breadthFirst()));
+        assertEquals(Arrays.asList("a", "c", "b", "e", "f"), evaluate(query().breadthFirst().maxDepth(2)));
+        // resume from a checkpoint
+        assertEquals(Arrays.asList("e", "f", "d"), evaluate(query().breadthFirst().startAfter("b", 2)));
+        assertEquals(Arrays.asList("b", "e"), evaluate(query().breadthFirst().startAfter("c", 1).limit(2)));
+    }
+
+    @Test
+    public void testDepth() {
+        State root = newState("r", "top");
+        assertEquals(1, DBSDescendantsQuery.getAbsoluteDepth(root));
+        assertEquals(0, DBSDescendantsQuery.getAbsoluteDepth(new State()));
+        assertEquals(3, DBSDescendantsQuery.getDepth(newState("d", "top", "r", "c", "f"), root));
+    }
+
+    @Test
+    public void testKeysForEvaluation() {
+        Set<String> keys = Collections.singleton("foo");
+        assertFalse(new DBSDescendantsQuery("r", keys).needsRootDepth());
+        assertSame(keys, new DBSDescendantsQuery("r", keys).getKeysForEvaluation());
+        Set<String> bfsKeys = new DBSDescendantsQuery("r", keys).breadthFirst().getKeysForEvaluation();
+        assertEquals(2, bfsKeys.size());
+        assertTrue(bfsKeys.contains(KEY_ANCESTOR_IDS));
+    }
+
+}
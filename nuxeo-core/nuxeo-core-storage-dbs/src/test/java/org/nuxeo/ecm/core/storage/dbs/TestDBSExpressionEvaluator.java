@@ -19,6 +19,7 @@
 package org.nuxeo.ecm.core.storage.dbs;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.Serializable;
@@ -27,10 +28,12 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.nuxeo.ecm.core.query.sql.SQLQueryParser;
+import org.nuxeo.ecm.core.query.sql.model.OrderByClause;
 import org.nuxeo.ecm.core.query.sql.model.SQLQuery;
 import org.nuxeo.ecm.core.storage.State;
 import org.nuxeo.ecm.core.storage.State.StateDiff;
@@ -93,6 +96,38 @@ public class TestDBSExpressionEvaluator {
                 projections);
     }
 
+    @Test
+    public void testRequiredKeys() throws Exception {
+        SQLQuery query = SQLQueryParser.parse("SELECT ecm:uuid, cmp:addresses/*1/street FROM D WHERE " //
+                + "cmp:addresses/*1/city = 'Paris' ORDER BY cmp:friends/0/name");
+        DBSExpressionEvaluator evaluator = new DBSExpressionEvaluator(null, query, null, false);
+        evaluator.parse();
+        Set<String> keys = evaluator.getRequiredKeys();
+        assertTrue(keys.contains("ecm:id"));
+        assertTrue(keys.contains("cmp:addresses"));
+        assertTrue(keys.contains("cmp:friends"));
+        assertFalse(keys.contains("ecm:ancestorIds"));
+    }
+
+    @Test
+    public void testCollectMatches() throws Exception {
+        SQLQuery query = SQLQueryParser.parse("SELECT ecm:uuid FROM D WHERE cmp:addresses/*1/city = 'Paris'");
+        DBSExpressionEvaluator evaluator = new DBSExpressionEvaluator(null, query, null, false);
+        evaluator.parse();
+        OrderByClause orderByClause = SQLQueryParser.parse("SELECT * FROM D ORDER BY ecm:uuid DESC").orderBy;
+        DBSTopKCollector<Map<String, Serializable>> collector = evaluator.newTopKCollector(orderByClause, 1, 1);
+        for (String id : Arrays.asList("id2", "id4", "id1", "id3")) {
+            // id4 doesn't match, the others match twice
+            ArrayList<Object> addresses = "id4".equals(id) ? list(state("city", "London"))
+                    : list(state("city", "Paris"), state("city", "Paris"));
+            State state = state("ecm:id", id, "cmp:addresses", addresses);
+            assertEquals(!"id4".equals(id), evaluator.collectMatches(state, true, collector));
+        }
+        // offset + limit projections are kept, ordered
+        assertEquals(list(map("ecm:uuid", "id3"), map("ecm:uuid", "id2")), collector.getResult());
+        assertEquals(3, collector.getCount());
+    }
+
     @Test
     public void testMatch2() throws Exception {
         SQLQuery query = SQLQueryParser.parse("SELECT ecm:uuid, cmp:addresses/*1/street FROM D WHERE "
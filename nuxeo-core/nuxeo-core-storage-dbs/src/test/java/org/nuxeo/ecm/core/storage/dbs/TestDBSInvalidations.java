@@ -58,6 +58,19 @@ public class TestDBSInvalidations {
         ser = new String(baout.toByteArray());
         assertTrue(ser, Arrays.asList(",foo,bar", ",bar,foo").contains(ser)); // non-deterministic order
 
+        invals = new DBSInvalidations();
+        invals.addChild("foo");
+        baout.reset();
+        invals.serialize(baout);
+        ser = new String(baout.toByteArray());
+        assertEquals(";foo", ser);
+
+        invals.add("bar");
+        baout.reset();
+        invals.serialize(baout);
+        ser = new String(baout.toByteArray());
+        assertTrue(ser, Arrays.asList(";foo,bar", ",bar;foo").contains(ser)); // non-deterministic order
+
         invals = new DBSInvalidations();
         invals.setAll();
         baout.reset();
@@ -90,6 +103,28 @@ public class TestDBSInvalidations {
         bain = new ByteArrayInputStream(",foo,bar".getBytes());
         invals = DBSInvalidations.deserialize(bain);
         assertEquals(new HashSet<>(Arrays.asList("foo", "bar")), invals.ids);
+        assertNull(invals.childIds);
+
+        bain = new ByteArrayInputStream(";foo,bar;baz".getBytes());
+        invals = DBSInvalidations.deserialize(bain);
+        assertEquals(new HashSet<>(Arrays.asList("foo", "bar", "baz")), invals.ids);
+        assertEquals(new HashSet<>(Arrays.asList("foo", "baz")), invals.childIds);
+    }
+
+    @Test
+    public void testAddChildren() {
+        DBSInvalidations invals = new DBSInvalidations();
+        invals.add("foo");
+        DBSInvalidations other = new DBSInvalidations();
+        other.addAllChildren(Arrays.asList("bar", "baz"));
+        invals.add(other);
+        assertEquals(new HashSet<>(Arrays.asList("foo", "bar", "baz")), invals.ids);
+        assertEquals(new HashSet<>(Arrays.asList("bar", "baz")), invals.childIds);
+
+        invals.add(new DBSInvalidations(true));
+        assertTrue(invals.all);
+        assertNull(invals.ids);
+        assertNull(invals.childIds);
     }
 
 }
@@ -0,0 +1,190 @@
+/*
+ * (C) Copyright 2016 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Kevin Leturc
+ */
+package org.nuxeo.ecm.core.storage.dbs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.Map.Entry;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentMap;
+
+import org.junit.Test;
+import org.nuxeo.ecm.core.storage.State;
+import org.nuxeo.ecm.core.storage.StateHelper;
+
+import com.google.common.cache.CacheLoader.InvalidCacheLoadException;
+
+public class TestDBSStateSerializer {
+
+    protected static State newState() {
+        State state = new State();
+        state.put("ecm:id", "123");
+        state.put("long", Long.valueOf(-42));
+        state.put("double", Double.valueOf(3.14));
+        state.put("bool", Boolean.TRUE);
+        state.put("false", Boolean.FALSE);
+        Calendar cal = new GregorianCalendar(TimeZone.getTimeZone("Europe/Paris"));
+        cal.setTimeInMillis(1234567890123L);
+        state.put("date", cal);
+        state.put("strings", new String[] { "a", null, "é中" });
+        state.put("longs", new Long[] { Long.valueOf(1), Long.valueOf(Long.MAX_VALUE) });
+        State sub = new State();
+        sub.put("name", "foo");
+        state.put("complex", sub);
+        ArrayList<Serializable> list = new ArrayList<>();
+        list.add(sub);
+        State sub2 = new State();
+        sub2.put("name", "bar");
+        list.add(sub2);
+        state.put("list", list);
+        // more than 128 bytes to test var ints
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            sb.append("xyz");
+        }
+        state.put("long string", sb.toString());
+        return state;
+    }
+
+    @Test
+    public void testRoundTrip() {
+        DBSStateSerializer serializer = new DBSStateSerializer();
+        State state = newState();
+        byte[] bytes = serializer.serialize(state);
+        State state2 = serializer.deserialize(ByteBuffer.wrap(bytes));
+        assertNotSame(state, state2);
+        assertTrue(StateHelper.equalsStrict(state, state2));
+        assertEquals(String[].class, state2.get("strings").getClass());
+        assertEquals(TimeZone.getTimeZone("Europe/Paris"), ((Calendar) state2.get("date")).getTimeZone());
+
+        // keys are in the dictionary, so a second serialization has the same size
+        assertEquals(bytes.length, serializer.serialize(state2).length);
+    }
+
+    @Test
+    public void testJavaSerializationFallback() {
+        DBSStateSerializer serializer = new DBSStateSerializer();
+        State state = new State();
+        state.put("other", new BigDecimal("1.5"));
+        State state2 = serializer.deserialize(ByteBuffer.wrap(serializer.serialize(state)));
+        assertEquals(new BigDecimal("1.5"), state2.get("other"));
+    }
+
+    @Test
+    public void testDirectBuffer() {
+        DBSStateSerializer serializer = new DBSStateSerializer();
+        State state = newState();
+        byte[] bytes = serializer.serialize(state);
+        ByteBuffer buf = ByteBuffer.allocateDirect(bytes.length);
+        buf.put(bytes);
+        buf.flip();
+        assertTrue(StateHelper.equalsStrict(state, serializer.deserialize(buf)));
+    }
+
+    @Test
+    public void testSerializedStateCache() {
+        DBSSerializedStateCache cache = new DBSSerializedStateCache(1024 * 1024, 10, null, true);
+        State state = newState();
+        cache.put("123", state);
+        assertEquals(1, cache.size());
+        assertTrue(cache.getBytes() > 0);
+
+        State cached = cache.getIfPresent("123");
+        assertNotSame(state, cached);
+        assertTrue(StateHelper.equalsStrict(state, cached));
+        assertEquals(1, cache.getAllPresent(Arrays.asList("123", "456")).size());
+
+        cache.invalidate("123");
+        assertNull(cache.getIfPresent("123"));
+        assertEquals(0, cache.getBytes());
+    }
+
+    @Test
+    public void testSerializedStateCacheLoader() throws Exception {
+        DBSSerializedStateCache cache = new DBSSerializedStateCache(1024 * 1024, 10, null, false);
+        State state = newState();
+        State loaded = cache.get("123", () -> state);
+        assertTrue(StateHelper.equalsStrict(state, loaded));
+        assertEquals(1, cache.size());
+        // already present, the loader is not called
+        loaded = cache.get("123", () -> {
+            throw new AssertionError();
+        });
+        assertTrue(StateHelper.equalsStrict(state, loaded));
+        try {
+            cache.get("456", () -> null);
+            fail();
+        } catch (InvalidCacheLoadException e) {
+            // ok
+        }
+        assertEquals(1, cache.size());
+        assertEquals(new DBSStateSerializer().serialize(state).length, cache.getBytes());
+    }
+
+    @Test
+    public void testSerializedStateCacheAsMap() {
+        DBSSerializedStateCache cache = new DBSSerializedStateCache(1024 * 1024, 10, null, true);
+        ConcurrentMap<String, State> map = cache.asMap();
+        State state = newState();
+        State other = new State();
+        other.put("ecm:id", "456");
+        assertNull(map.put("123", state));
+        assertTrue(StateHelper.equalsStrict(state, map.get("123")));
+        assertTrue(StateHelper.equalsStrict(state, map.putIfAbsent("123", other)));
+        assertNull(map.replace("456", other));
+        assertFalse(map.containsKey("456"));
+        assertFalse(map.replace("123", other, other));
+        assertTrue(map.replace("123", state, other));
+        assertTrue(StateHelper.equalsStrict(other, cache.getIfPresent("123")));
+        assertFalse(map.remove("123", state));
+        assertEquals(new DBSStateSerializer().serialize(other).length, cache.getBytes());
+        for (Entry<String, State> entry : map.entrySet()) {
+            assertEquals("123", entry.getKey());
+            assertTrue(StateHelper.equalsStrict(other, entry.getValue()));
+        }
+        assertTrue(map.remove("123", other));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getBytes());
+    }
+
+    @Test
+    public void testSerializedStateCacheMaxBytes() {
+        State state = newState();
+        int size = new DBSStateSerializer().serialize(state).length + DBSSerializedStateCache.ENTRY_OVERHEAD;
+        DBSSerializedStateCache cache = new DBSSerializedStateCache(10 * size, 10, Integer.valueOf(1), false);
+        for (int i = 0; i < 100; i++) {
+            cache.put(String.valueOf(i), state);
+        }
+        assertTrue(String.valueOf(cache.size()), cache.size() <= 10);
+        assertTrue(cache.stats().evictionCount() >= 90);
+    }
+
+}
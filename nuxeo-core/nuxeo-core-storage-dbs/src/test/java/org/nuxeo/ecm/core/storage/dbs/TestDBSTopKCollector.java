@@ -0,0 +1,64 @@
+/*
+ * (C) Copyright 2018 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.ecm.core.storage.dbs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TestDBSTopKCollector {
+
+    @Test
+    public void testTopKCollector() {
+        List<Integer> values = Arrays.asList(5, 3, 9, 1, 7, 2, 8);
+        DBSTopKCollector<Integer> collector = new DBSTopKCollector<>(Integer::compare, 3);
+        values.forEach(collector::add);
+        assertEquals(Arrays.asList(1, 2, 3), collector.getResult());
+        assertEquals(7, collector.getCount());
+
+        collector = new DBSTopKCollector<>(Collections.reverseOrder(), 0);
+        values.forEach(collector::add);
+        assertEquals(Arrays.asList(9, 8, 7, 5, 3, 2, 1), collector.getResult());
+
+        collector = new DBSTopKCollector<>(null, 2);
+        values.forEach(collector::add);
+        assertEquals(Arrays.asList(5, 3), collector.getResult());
+        assertEquals(7, collector.getCount());
+    }
+
+    @Test
+    public void testFull() {
+        DBSTopKCollector<Integer> collector = new DBSTopKCollector<>(null, 2);
+        collector.add(1);
+        assertFalse(collector.isFull());
+        collector.add(2);
+        assertTrue(collector.isFull());
+        // with an ordering all elements must be seen
+        collector = new DBSTopKCollector<>(Integer::compare, 1);
+        collector.add(1);
+        assertFalse(collector.isFull());
+    }
+
+}
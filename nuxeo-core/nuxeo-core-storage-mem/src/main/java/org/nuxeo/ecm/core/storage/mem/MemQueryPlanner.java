@@ -0,0 +1,180 @@
+/*
+ * (C) Copyright 2018 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.ecm.core.storage.mem;
+
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_ID;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.nuxeo.ecm.core.query.QueryParseException;
+import org.nuxeo.ecm.core.query.sql.NXQL;
+import org.nuxeo.ecm.core.query.sql.model.Expression;
+import org.nuxeo.ecm.core.query.sql.model.Literal;
+import org.nuxeo.ecm.core.query.sql.model.LiteralList;
+import org.nuxeo.ecm.core.query.sql.model.MultiExpression;
+import org.nuxeo.ecm.core.query.sql.model.Operand;
+import org.nuxeo.ecm.core.query.sql.model.Operator;
+import org.nuxeo.ecm.core.query.sql.model.Reference;
+import org.nuxeo.ecm.core.query.sql.model.StringLiteral;
+import org.nuxeo.ecm.core.storage.ExpressionEvaluator.PathResolver;
+import org.nuxeo.ecm.core.storage.dbs.DBSSession;
+
+/**
+ * Query planner for a {@link MemRepository}.
+ * <p>
+ * Looks at the toplevel AND-ed predicates of a NXQL expression and uses the {@link MemRepositoryIndexes} to compute a
+ * restricted set of candidate documents. The following predicates are recognized:
+ * <ul>
+ * <li>{@code ecm:uuid = 'id'} and {@code ecm:uuid IN ('id1', 'id2')},</li>
+ * <li>{@code ecm:path = '/path'} and {@code ecm:path STARTSWITH '/path'},</li>
+ * <li>{@code ecm:ancestorId = 'id'},</li>
+ * <li>{@code key = 'value'} and {@code key IN ('value1', 'value2')} for a key having a key/value index.</li>
+ * </ul>
+ * The candidates must still be checked against the full expression, as the evaluator needs to walk all references
+ * anyway to compute projections.
+ *
+ * @since 10.2
+ */
+public class MemQueryPlanner {
+
+    protected final MemRepositoryIndexes indexes;
+
+    protected final PathResolver pathResolver;
+
+    public MemQueryPlanner(MemRepositoryIndexes indexes, PathResolver pathResolver) {
+        this.indexes = indexes;
+        this.pathResolver = pathResolver;
+    }
+
+    /**
+     * Computes the ids of the candidate documents for an expression.
+     *
+     * @param expression the expression, may be {@code null}
+     * @return the candidate ids, or {@code null} if all documents have to be scanned
+     */
+    public Set<String> getCandidateIds(Expression expression) {
+        if (expression == null) {
+            return null;
+        }
+        if (expression.operator == Operator.AND) {
+            Set<String> best = null;
+            if (expression instanceof MultiExpression) {
+                for (Operand operand : ((MultiExpression) expression).values) {
+                    best = smallest(best, getCandidateIds(operand));
+                }
+            } else {
+                best = smallest(getCandidateIds(expression.lvalue), getCandidateIds(expression.rvalue));
+            }
+            return best;
+        }
+        if (!(expression.lvalue instanceof Reference)) {
+            return null;
+        }
+        Reference ref = (Reference) expression.lvalue;
+        if (ref.cast != null) {
+            return null;
+        }
+        String name = ref.name;
+        Operand rvalue = expression.rvalue;
+        if (NXQL.ECM_PATH.equals(name) && rvalue instanceof StringLiteral) {
+            String id = pathResolver.getIdForPath(normalizePath(((StringLiteral) rvalue).value));
+            if (expression.operator == Operator.STARTSWITH) {
+                return id == null ? Collections.emptySet() : indexes.getDescendants(id);
+            } else if (expression.operator == Operator.EQ) {
+                return id == null ? Collections.emptySet() : Collections.singleton(id);
+            }
+            return null;
+        }
+        if (NXQL.ECM_ANCESTORID.equals(name) && expression.operator == Operator.EQ
+                && rvalue instanceof StringLiteral) {
+            return indexes.getDescendants(((StringLiteral) rvalue).value);
+        }
+        String key = getIndexableKey(name);
+        if (key == null) {
+            return null;
+        }
+        if (expression.operator == Operator.EQ && rvalue instanceof StringLiteral) {
+            return getIds(key, ((StringLiteral) rvalue).value);
+        } else if (expression.operator == Operator.IN && rvalue instanceof LiteralList) {
+            Set<String> ids = new HashSet<>();
+            for (Literal literal : (LiteralList) rvalue) {
+                if (!(literal instanceof StringLiteral)) {
+                    return null;
+                }
+                ids.addAll(getIds(key, ((StringLiteral) literal).value));
+            }
+            return ids;
+        }
+        return null;
+    }
+
+    protected Set<String> getCandidateIds(Operand operand) {
+        return operand instanceof Expression ? getCandidateIds((Expression) operand) : null;
+    }
+
+    protected static Set<String> smallest(Set<String> a, Set<String> b) {
+        if (a == null) {
+            return b;
+        } else if (b == null) {
+            return a;
+        } else {
+            return a.size() <= b.size() ? a : b;
+        }
+    }
+
+    protected static String normalizePath(String path) {
+        if (path.length() > 1 && path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        return path;
+    }
+
+    /**
+     * Gets the internal key for a NXQL property name, if it's a key that can be looked up through an index.
+     */
+    protected String getIndexableKey(String name) {
+        String key;
+        if (name.startsWith(NXQL.ECM_PREFIX)) {
+            try {
+                key = DBSSession.convToInternal(name);
+            } catch (QueryParseException | UnsupportedOperationException e) {
+                return null;
+            }
+        } else if (name.indexOf('/') >= 0) {
+            // complex property
+            return null;
+        } else {
+            key = name;
+        }
+        if (KEY_ID.equals(key) || indexes.isIndexed(key)) {
+            return key;
+        }
+        return null;
+    }
+
+    protected Set<String> getIds(String key, String value) {
+        if (KEY_ID.equals(key)) {
+            return Collections.singleton(value);
+        }
+        return indexes.getIds(key, value);
+    }
+
+}
@@ -69,8 +69,9 @@ import org.nuxeo.ecm.core.storage.StateHelper;
 import org.nuxeo.ecm.core.storage.dbs.DBSDocument;
 import org.nuxeo.ecm.core.storage.dbs.DBSExpressionEvaluator;
 import org.nuxeo.ecm.core.storage.dbs.DBSRepositoryBase;
-import org.nuxeo.ecm.core.storage.dbs.DBSSession.OrderByComparator;
+import org.nuxeo.ecm.core.storage.dbs.DBSTopKCollector;
 import org.nuxeo.ecm.core.storage.dbs.DBSTransactionState.ChangeTokenUpdater;
+import org.nuxeo.ecm.core.storage.mem.MemRepositoryIndexes.IndexedValues;
 import org.nuxeo.runtime.api.Framework;
 
 /**
@@ -97,8 +98,23 @@ public class MemRepository extends DBSRepositoryBase {
      */
     protected Map<String, State> states;
 
+    /**
+     * The keys for which a key/value index is maintained.
+     *
+     * @since 10.2
+     */
+    protected final List<String> indexedKeys;
+
+    /**
+     * The secondary indexes on {@link #states}.
+     *
+     * @since 10.2
+     */
+    protected MemRepositoryIndexes indexes;
+
     public MemRepository(ConnectionManager cm, MemRepositoryDescriptor descriptor) {
         super(cm, descriptor.name, descriptor);
+        indexedKeys = descriptor.getIndexedKeys();
         initRepository();
     }
 
@@ -111,10 +127,12 @@ public class MemRepository extends DBSRepositoryBase {
     public void shutdown() {
         super.shutdown();
         states = null;
+        indexes = null;
     }
 
     protected void initRepository() {
         states = new ConcurrentHashMap<>();
+        indexes = new MemRepositoryIndexes(indexedKeys);
         initRoot();
     }
 
@@ -177,6 +195,7 @@ public class MemRepository extends DBSRepositoryBase {
         state = StateHelper.deepCopy(state, true); // thread-safe
         StateHelper.resetDeltas(state);
         states.put(id, state);
+        indexes.add(state);
     }
 
     @Override
@@ -196,11 +215,19 @@ public class MemRepository extends DBSRepositoryBase {
                         throw new ConcurrentUpdateException((String) state.get(KEY_ID));
                     }
                 }
+            }
+            boolean reindex = indexes.isWatched(diff.keySet())
+                    || changeTokenUpdater != null && indexes.isWatched(changeTokenUpdater.getUpdates().keySet());
+            IndexedValues before = reindex ? indexes.extract(state) : null;
+            if (changeTokenUpdater != null) {
                 for (Entry<String, Serializable> en : changeTokenUpdater.getUpdates().entrySet()) {
                     applyDiff(state, en.getKey(), en.getValue());
                 }
             }
             applyDiff(state, diff);
+            if (reindex) {
+                indexes.update(id, before, state);
+            }
         }
     }
 
@@ -210,16 +237,21 @@ public class MemRepository extends DBSRepositoryBase {
             log.trace("Mem: REMOVE " + ids);
         }
         for (String id : ids) {
-            if (states.remove(id) == null) {
+            State state = states.remove(id);
+            if (state == null) {
                 log.debug("Missing on remove: " + id);
+            } else {
+                synchronized (state) {
+                    indexes.remove(state);
+                }
             }
         }
     }
 
     @Override
     public State readChildState(String parentId, String name, Set<String> ignored) {
-        // TODO optimize by maintaining a parent/child index
-        for (State state : states.values()) {
+        // the index only provides candidates, check them against the actual state
+        for (State state : getCandidates(indexes.getChildren(parentId, name))) {
             if (ignored.contains(state.get(KEY_ID))) {
                 continue;
             }
@@ -245,7 +277,7 @@ public class MemRepository extends DBSRepositoryBase {
             log.trace("Mem: QUERY " + key + " = " + value);
         }
         List<State> list = new ArrayList<>();
-        for (State state : states.values()) {
+        for (State state : getCandidates(key, value)) {
             String id = (String) state.get(KEY_ID);
             if (ignored.contains(id)) {
                 continue;
@@ -266,8 +298,18 @@ public class MemRepository extends DBSRepositoryBase {
         if (log.isTraceEnabled()) {
             log.trace("Mem: QUERY " + key1 + " = " + value1 + " AND " + key2 + " = " + value2);
         }
+        Iterable<State> candidates;
+        Set<String> ids1 = indexes.getIds(key1, value1);
+        Set<String> ids2 = indexes.getIds(key2, value2);
+        if (ids1 != null && (ids2 == null || ids1.size() <= ids2.size())) {
+            candidates = getCandidates(ids1);
+        } else if (ids2 != null) {
+            candidates = getCandidates(ids2);
+        } else {
+            candidates = states.values();
+        }
         List<State> list = new ArrayList<>();
-        for (State state : states.values()) {
+        for (State state : candidates) {
             String id = (String) state.get(KEY_ID);
             if (ignored.contains(id)) {
                 continue;
@@ -283,6 +325,34 @@ public class MemRepository extends DBSRepositoryBase {
         return list;
     }
 
+    /**
+     * Gets the states that may have key = value, using an index if available.
+     *
+     * @since 10.2
+     */
+    protected Iterable<State> getCandidates(String key, Object value) {
+        Set<String> ids = indexes.getIds(key, value);
+        return ids == null ? states.values() : getCandidates(ids);
+    }
+
+    /**
+     * Gets the existing states for the given candidate ids.
+     *
+     * @since 10.2
+     */
+    protected Iterable<State> getCandidates(Set<String> ids) {
+        return () -> streamCandidates(ids).iterator();
+    }
+
+    /**
+     * Streams the existing states for the given candidate ids.
+     *
+     * @since 10.2
+     */
+    protected Stream<State> streamCandidates(Set<String> ids) {
+        return ids.stream().map(states::get).filter(Objects::nonNull);
+    }
+
     @Override
     public Stream<State> getDescendants(String rootId, Set<String> keys) {
         return getDescendants(rootId, keys, 0);
@@ -293,9 +363,8 @@ public class MemRepository extends DBSRepositoryBase {
         if (log.isTraceEnabled()) {
             log.trace("Mem: QUERY " + KEY_ANCESTOR_IDS + " = " + rootId);
         }
-        Stream<State> stream = states.values() //
-                                     .stream()
-                                     .filter(state -> hasAncestor(state, rootId));
+        Set<String> ids = indexes.getDescendants(rootId);
+        Stream<State> stream = streamCandidates(ids).filter(state -> hasAncestor(state, rootId));
         if (limit != 0) {
             stream = stream.limit(limit);
         }
@@ -312,7 +381,7 @@ public class MemRepository extends DBSRepositoryBase {
         if (log.isTraceEnabled()) {
             log.trace("Mem: QUERY " + key + " = " + value);
         }
-        for (State state : states.values()) {
+        for (State state : getCandidates(key, value)) {
             String id = (String) state.get(KEY_ID);
             if (ignored.contains(id)) {
                 continue;
@@ -337,24 +406,21 @@ public class MemRepository extends DBSRepositoryBase {
             log.trace("Mem: QUERY " + evaluator + " OFFSET " + offset + " LIMIT " + limit);
         }
         evaluator.parse();
-        List<Map<String, Serializable>> projections = new ArrayList<>();
-        for (State state : states.values()) {
-            List<Map<String, Serializable>> matches = evaluator.matches(state);
-            if (!matches.isEmpty()) {
-                if (distinctDocuments) {
-                    projections.add(matches.get(0));
-                } else {
-                    projections.addAll(matches);
-                }
-            }
-        }
         // ORDER BY
         // orderByClause may be null and different from evaluator.getOrderByClause() in case we want to post-filter
-        if (orderByClause != null) {
-            Collections.sort(projections, new OrderByComparator(orderByClause));
+        // only keep the projections needed for the requested page
+        DBSTopKCollector<Map<String, Serializable>> collector = evaluator.newTopKCollector(orderByClause, limit,
+                offset);
+        for (State state : getCandidates(evaluator)) {
+            if (evaluator.collectMatches(state, distinctDocuments, collector) && collector.isFull()
+                    && (countUpTo == 0 || countUpTo > 0 && collector.getCount() > countUpTo)) {
+                // no need to look further
+                break;
+            }
         }
+        List<Map<String, Serializable>> projections = collector.getResult();
         // LIMIT / OFFSET
-        int totalSize = projections.size();
+        int totalSize = (int) collector.getCount();
         if (countUpTo == -1) {
             // count full size
         } else if (countUpTo == 0) {
@@ -389,7 +455,7 @@ public class MemRepository extends DBSRepositoryBase {
         }
         evaluator.parse();
         List<String> ids = new ArrayList<>();
-        for (State state : states.values()) {
+        for (State state : getCandidates(evaluator)) {
             List<Map<String, Serializable>> matches = evaluator.matches(state);
             if (!matches.isEmpty()) {
                 String id = matches.get(0).get(ECM_UUID).toString();
@@ -399,6 +465,23 @@ public class MemRepository extends DBSRepositoryBase {
         return new ScrollResultImpl<>(NOSCROLL_ID, ids);
     }
 
+    /**
+     * Gets the states that may match the query, using the indexes if possible.
+     *
+     * @since 10.2
+     */
+    protected Iterable<State> getCandidates(DBSExpressionEvaluator evaluator) {
+        MemQueryPlanner planner = new MemQueryPlanner(indexes, evaluator.pathResolver);
+        Set<String> ids = planner.getCandidateIds(evaluator.getExpression());
+        if (ids == null) {
+            return states.values();
+        }
+        if (log.isTraceEnabled()) {
+            log.trace("Mem:    candidates: " + ids.size());
+        }
+        return getCandidates(ids);
+    }
+
     @Override
     public ScrollResult<String> scroll(String scrollId) {
         if (NOSCROLL_ID.equals(scrollId)) {
@@ -539,8 +622,7 @@ public class MemRepository extends DBSRepositoryBase {
             Calendar created = (Calendar) state.get(KEY_LOCK_CREATED);
             return new Lock(owner, created);
         }
-        state.put(KEY_LOCK_OWNER, lock.getOwner());
-        state.put(KEY_LOCK_CREATED, lock.getCreated());
+        putLock(id, state, lock.getOwner(), lock.getCreated());
         return null;
     }
 
@@ -563,12 +645,20 @@ public class MemRepository extends DBSRepositoryBase {
             return new Lock(oldOwner, oldCreated, true);
         }
         // remove lock
-        state.put(KEY_LOCK_OWNER, null);
-        state.put(KEY_LOCK_CREATED, null);
+        putLock(id, state, null, null);
         // return old lock
         return new Lock(oldOwner, oldCreated);
     }
 
+    protected void putLock(String id, State state, String owner, Calendar created) {
+        synchronized (state) {
+            IndexedValues before = indexes.extract(state);
+            state.put(KEY_LOCK_OWNER, owner);
+            state.put(KEY_LOCK_CREATED, created);
+            indexes.update(id, before, state);
+        }
+    }
+
     @Override
     public void closeLockManager() {
     }
@@ -18,6 +18,10 @@
  */
 package org.nuxeo.ecm.core.storage.mem;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import org.nuxeo.common.xmap.annotation.XNodeList;
 import org.nuxeo.common.xmap.annotation.XObject;
 import org.nuxeo.ecm.core.storage.dbs.DBSRepositoryDescriptor;
 
@@ -32,13 +36,33 @@ public class MemRepositoryDescriptor extends DBSRepositoryDescriptor {
     public MemRepositoryDescriptor() {
     }
 
+    /**
+     * The keys for which a key/value index is maintained.
+     *
+     * @since 10.2
+     */
+    @XNodeList(value = "indexes/index", type = ArrayList.class, componentType = String.class, nullByDefault = true)
+    public List<String> indexedKeys;
+
+    /** @since 10.2 */
+    public List<String> getIndexedKeys() {
+        return indexedKeys == null ? MemRepositoryIndexes.DEFAULT_INDEXED_KEYS : indexedKeys;
+    }
+
     @Override
     public MemRepositoryDescriptor clone() {
-        return (MemRepositoryDescriptor) super.clone();
+        MemRepositoryDescriptor clone = (MemRepositoryDescriptor) super.clone();
+        if (indexedKeys != null) {
+            clone.indexedKeys = new ArrayList<>(indexedKeys);
+        }
+        return clone;
     }
 
     public void merge(MemRepositoryDescriptor other) {
         super.merge(other);
+        if (other.indexedKeys != null) {
+            indexedKeys = new ArrayList<>(other.indexedKeys);
+        }
     }
 
 }
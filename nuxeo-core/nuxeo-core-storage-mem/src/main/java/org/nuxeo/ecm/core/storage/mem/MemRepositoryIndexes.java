@@ -0,0 +1,289 @@
+/*
+ * (C) Copyright 2018 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.ecm.core.storage.mem;
+
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_ANCESTOR_IDS;
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_ID;
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_NAME;
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_PARENT_ID;
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_PROXY_TARGET_ID;
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_PROXY_VERSION_SERIES_ID;
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_VERSION_SERIES_ID;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.nuxeo.ecm.core.storage.State;
+
+/**
+ * Secondary indexes for a {@link MemRepository}, maintained incrementally when states are created, updated and
+ * deleted.
+ * <p>
+ * Three kinds of indexes are maintained:
+ * <ul>
+ * <li>(parent id, name) -&gt; ids, for child lookups,</li>
+ * <li>ancestor id -&gt; descendant ids, for descendants lookups,</li>
+ * <li>key -&gt; value -&gt; ids, for a configurable set of top-level keys.</li>
+ * </ul>
+ * Indexes are only hints: a lookup returns candidate ids, and the caller must re-check the actual state, which makes
+ * them safe to use while concurrent updates are in progress.
+ *
+ * @since 10.2
+ */
+public class MemRepositoryIndexes {
+
+    /** The keys indexed by default if the repository configuration doesn't specify any. */
+    public static final List<String> DEFAULT_INDEXED_KEYS = Arrays.asList(KEY_PARENT_ID, KEY_VERSION_SERIES_ID,
+            KEY_PROXY_TARGET_ID, KEY_PROXY_VERSION_SERIES_ID);
+
+    /** Separator between parent id and name in child keys. Cannot appear in a document id. */
+    protected static final char CHILD_KEY_SEP = '\0';
+
+    /** (parent id, name) -&gt; ids. */
+    protected final Map<String, Set<String>> children = new ConcurrentHashMap<>();
+
+    /** ancestor id -&gt; descendant ids. */
+    protected final Map<String, Set<String>> descendants = new ConcurrentHashMap<>();
+
+    /** key -&gt; value -&gt; ids. */
+    protected final Map<String, Map<Object, Set<String>>> keyValues = new ConcurrentHashMap<>();
+
+    /** All the top-level keys whose change requires an index update. */
+    protected final Set<String> watchedKeys = new HashSet<>();
+
+    public MemRepositoryIndexes(Collection<String> indexedKeys) {
+        for (String key : indexedKeys) {
+            keyValues.put(key, new ConcurrentHashMap<>());
+        }
+        watchedKeys.add(KEY_PARENT_ID);
+        watchedKeys.add(KEY_NAME);
+        watchedKeys.add(KEY_ANCESTOR_IDS);
+        watchedKeys.addAll(indexedKeys);
+    }
+
+    /**
+     * The values of a state that are relevant to the indexes.
+     */
+    public static class IndexedValues {
+
+        protected String parentId;
+
+        protected String name;
+
+        protected Object[] ancestorIds;
+
+        protected Map<String, Object> values;
+    }
+
+    /**
+     * Checks if the given key has a key/value index.
+     */
+    public boolean isIndexed(String key) {
+        return keyValues.containsKey(key);
+    }
+
+    /**
+     * Checks if a change to the given top-level keys may require an index update.
+     */
+    public boolean isWatched(Collection<String> keys) {
+        for (String key : keys) {
+            if (watchedKeys.contains(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Extracts the indexed values from a state, to be used later by {@link #update}.
+     */
+    public IndexedValues extract(State state) {
+        IndexedValues iv = new IndexedValues();
+        iv.parentId = (String) state.get(KEY_PARENT_ID);
+        iv.name = (String) state.get(KEY_NAME);
+        Object[] ancestorIds = (Object[]) state.get(KEY_ANCESTOR_IDS);
+        // copy to be safe against in-place modifications
+        iv.ancestorIds = ancestorIds == null ? null : ancestorIds.clone();
+        iv.values = new HashMap<>();
+        for (String key : keyValues.keySet()) {
+            Serializable value = state.get(key);
+            if (isIndexableValue(value)) {
+                iv.values.put(key, value);
+            }
+        }
+        return iv;
+    }
+
+    /**
+     * Only scalar values are indexed, as queries compare values with {@link Object#equals}.
+     */
+    protected static boolean isIndexableValue(Object value) {
+        return value != null && !(value instanceof Object[]) && !(value instanceof List) && !(value instanceof State);
+    }
+
+    protected static String childKey(String parentId, String name) {
+        return parentId + CHILD_KEY_SEP + name;
+    }
+
+    /**
+     * Adds a new state to the indexes.
+     */
+    public void add(State state) {
+        String id = (String) state.get(KEY_ID);
+        update(id, new IndexedValues(), extract(state));
+    }
+
+    /**
+     * Removes a state from the indexes.
+     */
+    public void remove(State state) {
+        String id = (String) state.get(KEY_ID);
+        update(id, extract(state), new IndexedValues());
+    }
+
+    /**
+     * Updates the indexes for a state whose indexed values were {@code before} and are now the ones of {@code state}.
+     */
+    public void update(String id, IndexedValues before, State state) {
+        update(id, before, extract(state));
+    }
+
+    /**
+     * Updates the indexes for a document. New entries are added before stale ones are removed, so that a concurrent
+     * lookup never misses the document.
+     */
+    protected void update(String id, IndexedValues before, IndexedValues after) {
+        // children
+        if (!Objects.equals(before.parentId, after.parentId) || !Objects.equals(before.name, after.name)) {
+            if (after.parentId != null && after.name != null) {
+                addId(children, childKey(after.parentId, after.name), id);
+            }
+            if (before.parentId != null && before.name != null) {
+                removeId(children, childKey(before.parentId, before.name), id);
+            }
+        }
+        // descendants
+        if (!Arrays.equals(before.ancestorIds, after.ancestorIds)) {
+            Set<String> oldAncestorIds = toSet(before.ancestorIds);
+            Set<String> newAncestorIds = toSet(after.ancestorIds);
+            for (String ancestorId : newAncestorIds) {
+                if (!oldAncestorIds.contains(ancestorId)) {
+                    addId(descendants, ancestorId, id);
+                }
+            }
+            for (String ancestorId : oldAncestorIds) {
+                if (!newAncestorIds.contains(ancestorId)) {
+                    removeId(descendants, ancestorId, id);
+                }
+            }
+        }
+        // key/values
+        Map<String, Object> oldValues = before.values == null ? Collections.emptyMap() : before.values;
+        Map<String, Object> newValues = after.values == null ? Collections.emptyMap() : after.values;
+        for (Entry<String, Object> en : newValues.entrySet()) {
+            String key = en.getKey();
+            Object value = en.getValue();
+            if (!value.equals(oldValues.get(key))) {
+                addId(keyValues.get(key), value, id);
+            }
+        }
+        for (Entry<String, Object> en : oldValues.entrySet()) {
+            String key = en.getKey();
+            Object value = en.getValue();
+            if (!value.equals(newValues.get(key))) {
+                removeId(keyValues.get(key), value, id);
+            }
+        }
+    }
+
+    protected static Set<String> toSet(Object[] array) {
+        if (array == null) {
+            return Collections.emptySet();
+        }
+        Set<String> set = new HashSet<>();
+        for (Object o : array) {
+            set.add((String) o);
+        }
+        return set;
+    }
+
+    protected static <K> void addId(Map<K, Set<String>> index, K key, String id) {
+        index.compute(key, (k, ids) -> {
+            if (ids == null) {
+                ids = ConcurrentHashMap.newKeySet();
+            }
+            ids.add(id);
+            return ids;
+        });
+    }
+
+    protected static <K> void removeId(Map<K, Set<String>> index, K key, String id) {
+        index.computeIfPresent(key, (k, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    /**
+     * Gets the candidate ids of the children of a document with a given name.
+     */
+    public Set<String> getChildren(String parentId, String name) {
+        return children.getOrDefault(childKey(parentId, name), Collections.emptySet());
+    }
+
+    /**
+     * Gets the candidate ids of the descendants of a document.
+     */
+    public Set<String> getDescendants(String ancestorId) {
+        return descendants.getOrDefault(ancestorId, Collections.emptySet());
+    }
+
+    /**
+     * Gets the candidate ids of the documents having key = value.
+     *
+     * @return the candidate ids, or {@code null} if the key is not indexed
+     */
+    public Set<String> getIds(String key, Object value) {
+        Map<Object, Set<String>> index = keyValues.get(key);
+        if (index == null) {
+            return null;
+        }
+        return index.getOrDefault(value, Collections.emptySet());
+    }
+
+    /**
+     * Clears all the indexes.
+     */
+    public void clear() {
+        children.clear();
+        descendants.clear();
+        keyValues.values().forEach(Map::clear);
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * (C) Copyright 2018 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.ecm.core.storage.mem;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_ANCESTOR_IDS;
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_ID;
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_NAME;
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_PARENT_ID;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.nuxeo.ecm.core.query.sql.SQLQueryParser;
+import org.nuxeo.ecm.core.storage.State;
+
+public class TestMemQueryPlanner {
+
+    protected MemQueryPlanner planner;
+
+    private static State doc(String id, String parentId, String name, String... ancestorIds) {
+        State state = new State();
+        state.put(KEY_ID, id);
+        state.put(KEY_PARENT_ID, parentId);
+        state.put(KEY_NAME, name);
+        state.put(KEY_ANCESTOR_IDS, ancestorIds.length == 0 ? null : ancestorIds);
+        return state;
+    }
+
+    private static Set<String> set(String... ids) {
+        return new HashSet<>(Arrays.asList(ids));
+    }
+
+    @Before
+    public void setUp() {
+        MemRepositoryIndexes indexes = new MemRepositoryIndexes(MemRepositoryIndexes.DEFAULT_INDEXED_KEYS);
+        indexes.add(doc("root", null, ""));
+        indexes.add(doc("a", "root", "a", "root"));
+        indexes.add(doc("b", "a", "b", "root", "a"));
+        indexes.add(doc("c", "a", "c", "root", "a"));
+        indexes.add(doc("d", "root", "d", "root"));
+        planner = new MemQueryPlanner(indexes, path -> "/a".equals(path) ? "a" : null);
+    }
+
+    protected Set<String> plan(String where) {
+        String query = "SELECT * FROM Document WHERE " + where;
+        return planner.getCandidateIds(SQLQueryParser.parse(query).where.predicate);
+    }
+
+    @Test
+    public void testCandidates() {
+        assertNull(plan("dc:title = 'foo'"));
+        assertNull(plan("ecm:parentId = 'a' OR dc:title = 'foo'"));
+        assertEquals(set("x"), plan("ecm:uuid = 'x'"));
+        assertEquals(set("x", "y"), plan("ecm:uuid IN ('x', 'y')"));
+        assertEquals(set("b", "c"), plan("ecm:parentId = 'a'"));
+        assertEquals(set("b", "c"), plan("ecm:ancestorId = 'a'"));
+        assertEquals(set("b", "c"), plan("ecm:path STARTSWITH '/a/'"));
+        assertEquals(set("a"), plan("ecm:path = '/a'"));
+        assertEquals(set(), plan("ecm:path STARTSWITH '/nosuchpath'"));
+        // smallest candidate set is used
+        assertEquals(set("b"), plan("ecm:ancestorId = 'root' AND ecm:uuid = 'b' AND dc:title = 'foo'"));
+        assertEquals(set("b", "c"), plan("ecm:ancestorId = 'root' AND ecm:parentId = 'a'"));
+    }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * (C) Copyright 2018 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.ecm.core.storage.mem;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_ANCESTOR_IDS;
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_ID;
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_NAME;
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_PARENT_ID;
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_PRIMARY_TYPE;
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_PROXY_TARGET_ID;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+import org.nuxeo.ecm.core.storage.State;
+import org.nuxeo.ecm.core.storage.mem.MemRepositoryIndexes.IndexedValues;
+
+public class TestMemRepositoryIndexes {
+
+    private static State doc(String id, String parentId, String name, String... ancestorIds) {
+        State state = new State();
+        state.put(KEY_ID, id);
+        state.put(KEY_PARENT_ID, parentId);
+        state.put(KEY_NAME, name);
+        state.put(KEY_ANCESTOR_IDS, ancestorIds.length == 0 ? null : ancestorIds);
+        return state;
+    }
+
+    private static Set<String> set(String... ids) {
+        Set<String> set = new HashSet<>();
+        Collections.addAll(set, ids);
+        return set;
+    }
+
+    @Test
+    public void testChildrenAndDescendants() {
+        MemRepositoryIndexes indexes = new MemRepositoryIndexes(MemRepositoryIndexes.DEFAULT_INDEXED_KEYS);
+        indexes.add(doc("root", null, ""));
+        indexes.add(doc("a", "root", "a", "root"));
+        indexes.add(doc("b", "a", "b", "root", "a"));
+        indexes.add(doc("c", "a", "c", "root", "a"));
+
+        assertEquals(set("a"), indexes.getChildren("root", "a"));
+        assertEquals(set("b"), indexes.getChildren("a", "b"));
+        assertEquals(set(), indexes.getChildren("a", "x"));
+        assertEquals(set("a", "b", "c"), indexes.getDescendants("root"));
+        assertEquals(set("b", "c"), indexes.getDescendants("a"));
+        assertEquals(set("b", "c"), indexes.getIds(KEY_PARENT_ID, "a"));
+
+        // move c under root and rename it
+        State c = doc("c", "a", "c", "root", "a");
+        IndexedValues before = indexes.extract(c);
+        c.put(KEY_PARENT_ID, "root");
+        c.put(KEY_NAME, "cc");
+        c.put(KEY_ANCESTOR_IDS, new Object[] { "root" });
+        indexes.update("c", before, c);
+
+        assertEquals(set(), indexes.getChildren("a", "c"));
+        assertEquals(set("c"), indexes.getChildren("root", "cc"));
+        assertEquals(set("b"), indexes.getDescendants("a"));
+        assertEquals(set("a", "b", "c"), indexes.getDescendants("root"));
+        assertEquals(set("a", "c"), indexes.getIds(KEY_PARENT_ID, "root"));
+
+        // delete b
+        indexes.remove(doc("b", "a", "b", "root", "a"));
+        assertEquals(set(), indexes.getChildren("a", "b"));
+        assertEquals(set(), indexes.getDescendants("a"));
+        assertEquals(set("a", "c"), indexes.getDescendants("root"));
+        assertEquals(set(), indexes.getIds(KEY_PARENT_ID, "a"));
+    }
+
+    @Test
+    public void testKeyValue() {
+        MemRepositoryIndexes indexes = new MemRepositoryIndexes(MemRepositoryIndexes.DEFAULT_INDEXED_KEYS);
+        assertTrue(indexes.isIndexed(KEY_PROXY_TARGET_ID));
+        assertFalse(indexes.isIndexed(KEY_PRIMARY_TYPE));
+        assertNull(indexes.getIds(KEY_PRIMARY_TYPE, "File"));
+        assertTrue(indexes.isWatched(Collections.singleton(KEY_PROXY_TARGET_ID)));
+        assertFalse(indexes.isWatched(Collections.singleton(KEY_PRIMARY_TYPE)));
+
+        State proxy = doc("p", "root", "p", "root");
+        proxy.put(KEY_PROXY_TARGET_ID, "t1");
+        indexes.add(proxy);
+        assertEquals(set("p"), indexes.getIds(KEY_PROXY_TARGET_ID, "t1"));
+
+        IndexedValues before = indexes.extract(proxy);
+        proxy.put(KEY_PROXY_TARGET_ID, "t2");
+        indexes.update("p", before, proxy);
+        assertEquals(set(), indexes.getIds(KEY_PROXY_TARGET_ID, "t1"));
+        assertEquals(set("p"), indexes.getIds(KEY_PROXY_TARGET_ID, "t2"));
+
+        indexes.clear();
+        assertEquals(set(), indexes.getIds(KEY_PROXY_TARGET_ID, "t2"));
+        assertEquals(set(), indexes.getDescendants("root"));
+    }
+
+}
@@ -47,11 +47,18 @@ import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.Spliterator;
 import java.util.Spliterators;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
@@ -77,21 +84,27 @@ import org.nuxeo.ecm.core.query.QueryParseException;
 import org.nuxeo.ecm.core.query.sql.model.OrderByClause;
 import org.nuxeo.ecm.core.storage.State;
 import org.nuxeo.ecm.core.storage.State.StateDiff;
+import org.nuxeo.ecm.core.storage.dbs.DBSBatchedReader;
+import org.nuxeo.ecm.core.storage.dbs.DBSDescendantsQuery;
 import org.nuxeo.ecm.core.storage.dbs.DBSDocument;
 import org.nuxeo.ecm.core.storage.dbs.DBSExpressionEvaluator;
 import org.nuxeo.ecm.core.storage.dbs.DBSRepositoryBase;
 import org.nuxeo.ecm.core.storage.dbs.DBSStateFlattener;
 import org.nuxeo.ecm.core.storage.dbs.DBSTransactionState.ChangeTokenUpdater;
+import org.nuxeo.ecm.core.storage.dbs.DBSTransactionState.StateUpdate;
 import org.nuxeo.runtime.api.Framework;
 import org.nuxeo.runtime.mongodb.MongoDBConnectionService;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.mongodb.Block;
 import com.mongodb.QueryOperators;
+import com.mongodb.bulk.BulkWriteResult;
 import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoCursor;
 import com.mongodb.client.MongoDatabase;
 import com.mongodb.client.MongoIterable;
+import com.mongodb.client.model.BulkWriteOptions;
 import com.mongodb.client.model.CountOptions;
 import com.mongodb.client.model.Filters;
 import com.mongodb.client.model.FindOneAndUpdateOptions;
@@ -99,7 +112,10 @@ import com.mongodb.client.model.IndexOptions;
 import com.mongodb.client.model.Indexes;
 import com.mongodb.client.model.Projections;
 import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
 import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
 import com.mongodb.client.result.DeleteResult;
 import com.mongodb.client.result.UpdateResult;
 
@@ -172,6 +188,15 @@ public class MongoDBRepository extends DBSRepositoryBase {
 
     protected final CursorService<MongoCursor<Document>, Document, String> cursorService;
 
+    /** @since 10.2 */
+    protected final int readStatesBatchSize;
+
+    /** @since 10.2 */
+    protected final int readStatesParallelism;
+
+    /** Executor used to read batches of states concurrently, if parallelism is enabled. */
+    protected ExecutorService readStatesExecutor;
+
     public MongoDBRepository(ConnectionManager cm, MongoDBRepositoryDescriptor descriptor) {
         super(cm, descriptor.name, descriptor);
         MongoDBConnectionService mongoService = Framework.getService(MongoDBConnectionService.class);
@@ -192,6 +217,13 @@ public class MongoDBRepository extends DBSRepositoryBase {
         }
         converter = new MongoDBConverter(idKey);
         cursorService = new CursorService<>(ob -> (String) ob.get(converter.keyToBson(KEY_ID)));
+        readStatesBatchSize = descriptor.getReadStatesBatchSize();
+        readStatesParallelism = descriptor.getReadStatesParallelism();
+        if (readStatesParallelism > 1) {
+            ThreadFactory threadFactory = new ThreadFactoryBuilder().setNameFormat(
+                    "Nuxeo-MongoDB-ReadStates-" + descriptor.name + "-%d").setDaemon(true).build();
+            readStatesExecutor = Executors.newFixedThreadPool(readStatesParallelism, threadFactory);
+        }
         initRepository();
     }
 
@@ -204,6 +236,10 @@ public class MongoDBRepository extends DBSRepositoryBase {
     public void shutdown() {
         super.shutdown();
         cursorService.clear();
+        if (readStatesExecutor != null) {
+            readStatesExecutor.shutdownNow();
+            readStatesExecutor = null;
+        }
     }
 
     protected void initRepository() {
@@ -213,7 +249,10 @@ public class MongoDBRepository extends DBSRepositoryBase {
             coll.createIndex(Indexes.ascending(idKey));
         }
         coll.createIndex(Indexes.ascending(KEY_PARENT_ID));
-        coll.createIndex(Indexes.ascending(KEY_ANCESTOR_IDS));
+        // compound with the id so that descendants can be streamed ordered by id without an in-memory sort
+        coll.createIndex(Indexes.ascending(KEY_ANCESTOR_IDS, idKey));
+        // the compound index also serves queries on the ancestors alone, drop the index created by previous versions
+        dropAscendingIndex(KEY_ANCESTOR_IDS);
         coll.createIndex(Indexes.ascending(KEY_VERSION_SERIES_ID));
         coll.createIndex(Indexes.ascending(KEY_PROXY_TARGET_ID));
         coll.createIndex(Indexes.ascending(KEY_PROXY_VERSION_SERIES_ID));
@@ -255,6 +294,26 @@ public class MongoDBRepository extends DBSRepositoryBase {
         initRoot();
     }
 
+    /**
+     * Drops the ascending index on the given key alone, if it exists.
+     *
+     * @since 10.2
+     */
+    protected void dropAscendingIndex(String key) {
+        List<String> names = new ArrayList<>();
+        for (Document index : coll.listIndexes()) {
+            Document keys = (Document) index.get("key");
+            Object order = keys.get(key);
+            if (keys.size() == 1 && order instanceof Number && ((Number) order).intValue() == 1) {
+                names.add(index.getString("name"));
+            }
+        }
+        for (String name : names) {
+            log.info("Dropping index: " + name + " from collection: " + coll.getNamespace());
+            coll.dropIndex(name);
+        }
+    }
+
     protected synchronized Long getNextSequenceId() {
         if (sequenceLeft == 0) {
             // allocate a new sequence block
@@ -326,32 +385,18 @@ public class MongoDBRepository extends DBSRepositoryBase {
         return findAll(Filters.in(idKey, ids));
     }
 
+    @Override
+    public Stream<State> streamStates(List<String> ids) {
+        // read by batches to avoid huge $in queries, several batches being read concurrently if configured
+        return DBSBatchedReader.stream(ids, readStatesBatchSize, this::readStates, readStatesExecutor,
+                readStatesParallelism);
+    }
+
     @Override
     public void updateState(String id, StateDiff diff, ChangeTokenUpdater changeTokenUpdater) {
         List<Document> updates = converter.diffToBson(diff);
         for (Document update : updates) {
-            Document filter = new Document(idKey, id);
-            if (changeTokenUpdater == null) {
-                if (log.isTraceEnabled()) {
-                    log.trace("MongoDB: UPDATE " + id + ": " + update);
-                }
-            } else {
-                // assume bson is identical to dbs internals
-                // condition works even if value is null
-                Map<String, Serializable> conditions = changeTokenUpdater.getConditions();
-                Map<String, Serializable> tokenUpdates = changeTokenUpdater.getUpdates();
-                if (update.containsKey(MONGODB_SET)) {
-                    ((Document) update.get(MONGODB_SET)).putAll(tokenUpdates);
-                } else {
-                    Document set = new Document();
-                    set.putAll(tokenUpdates);
-                    update.put(MONGODB_SET, set);
-                }
-                if (log.isTraceEnabled()) {
-                    log.trace("MongoDB: UPDATE " + id + ": IF " + conditions + " THEN " + update);
-                }
-                filter.putAll(conditions);
-            }
+            Document filter = prepareUpdate(id, update, changeTokenUpdater);
             UpdateResult w = coll.updateMany(filter, update);
             if (w.getModifiedCount() != 1) {
                 log.trace("MongoDB:    -> CONCURRENT UPDATE: " + id);
@@ -362,6 +407,117 @@ public class MongoDBRepository extends DBSRepositoryBase {
         }
     }
 
+    /**
+     * Prepares a single MongoDB update for a document, adding the change token updates if needed.
+     *
+     * @return the filter to use for the update
+     * @since 10.2
+     */
+    protected Document prepareUpdate(String id, Document update, ChangeTokenUpdater changeTokenUpdater) {
+        Document filter = new Document(idKey, id);
+        if (changeTokenUpdater == null) {
+            if (log.isTraceEnabled()) {
+                log.trace("MongoDB: UPDATE " + id + ": " + update);
+            }
+        } else {
+            // assume bson is identical to dbs internals
+            // condition works even if value is null
+            Map<String, Serializable> conditions = changeTokenUpdater.getConditions();
+            Map<String, Serializable> tokenUpdates = changeTokenUpdater.getUpdates();
+            if (update.containsKey(MONGODB_SET)) {
+                ((Document) update.get(MONGODB_SET)).putAll(tokenUpdates);
+            } else {
+                Document set = new Document();
+                set.putAll(tokenUpdates);
+                update.put(MONGODB_SET, set);
+            }
+            if (log.isTraceEnabled()) {
+                log.trace("MongoDB: UPDATE " + id + ": IF " + conditions + " THEN " + update);
+            }
+            filter.putAll(conditions);
+        }
+        return filter;
+    }
+
+    @Override
+    public void updateStates(List<StateUpdate> stateUpdates) {
+        Set<String> failed = new LinkedHashSet<>();
+        // a bulk write doesn't tell which updates didn't match, and for a change token condition a concurrent update
+        // may have written the same change token as us, so these updates are done one by one
+        List<StateUpdate> bulkUpdates = new ArrayList<>(stateUpdates.size());
+        for (StateUpdate stateUpdate : stateUpdates) {
+            if (stateUpdate.changeTokenUpdater == null && stateUpdates.size() > 1) {
+                bulkUpdates.add(stateUpdate);
+            } else {
+                try {
+                    updateState(stateUpdate.id, stateUpdate.diff, stateUpdate.changeTokenUpdater);
+                } catch (ConcurrentUpdateException e) {
+                    failed.add(stateUpdate.id);
+                }
+            }
+        }
+        // a diff may need several successive MongoDB updates for the same document,
+        // so send all the first updates in one bulk write, then all the second ones, etc.
+        List<List<Document>> allUpdates = new ArrayList<>(bulkUpdates.size());
+        int rounds = 0;
+        for (StateUpdate stateUpdate : bulkUpdates) {
+            List<Document> updates = converter.diffToBson(stateUpdate.diff);
+            allUpdates.add(updates);
+            rounds = Math.max(rounds, updates.size());
+        }
+        for (int round = 0; round < rounds; round++) {
+            List<WriteModel<Document>> models = new ArrayList<>();
+            List<String> ids = new ArrayList<>();
+            for (int i = 0; i < bulkUpdates.size(); i++) {
+                String id = bulkUpdates.get(i).id;
+                List<Document> updates = allUpdates.get(i);
+                if (round >= updates.size() || failed.contains(id)) {
+                    continue;
+                }
+                Document update = updates.get(round);
+                Document filter = prepareUpdate(id, update, null);
+                ids.add(id);
+                models.add(new UpdateOneModel<>(filter, update));
+            }
+            if (models.isEmpty()) {
+                continue;
+            }
+            BulkWriteResult w = coll.bulkWrite(models, new BulkWriteOptions().ordered(false));
+            int notMatched = models.size() - w.getMatchedCount();
+            if (notMatched > 0) {
+                Set<String> missing = findMissingIds(ids);
+                if (missing.size() != notMatched) {
+                    log.warn("MongoDB: " + notMatched + " updates did not match but " + missing.size()
+                            + " documents are missing: " + missing);
+                }
+                failed.addAll(missing);
+            }
+        }
+        if (!failed.isEmpty()) {
+            log.trace("MongoDB:    -> CONCURRENT UPDATE: " + failed);
+            throw new ConcurrentUpdateException(String.join(", ", failed));
+        }
+    }
+
+    /**
+     * Finds which documents don't exist anymore, as the only reason for an update without change token condition not
+     * to match.
+     *
+     * @param ids the document ids
+     * @return the ids of the documents that don't exist
+     * @since 10.2
+     */
+    protected Set<String> findMissingIds(List<String> ids) {
+        Set<String> existing = new HashSet<>();
+        Bson filter = Filters.in(idKey, ids);
+        Bson projection = Projections.include(idKey);
+        Block<Document> block = doc -> existing.add((String) doc.get(idKey));
+        coll.find(filter).projection(projection).forEach(block);
+        Set<String> missing = new LinkedHashSet<>(ids);
+        missing.removeAll(existing);
+        return missing;
+    }
+
     @Override
     public void deleteStates(Set<String> ids) {
         Bson filter = Filters.in(idKey, ids);
@@ -443,13 +599,137 @@ public class MongoDBRepository extends DBSRepositoryBase {
     @Override
     public Stream<State> getDescendants(String rootId, Set<String> keys, int limit) {
         Bson filter = Filters.eq(KEY_ANCESTOR_IDS, rootId);
+        return streamOrderedById(filter, getProjection(keys), limit, 0);
+    }
+
+    @Override
+    public Stream<State> getDescendants(DBSDescendantsQuery query) {
+        int rootDepth = 0;
+        if (query.needsRootDepth()) {
+            State rootState = readPartialState(query.getRootId(), Collections.singleton(KEY_ANCESTOR_IDS));
+            if (rootState == null) {
+                return Stream.empty();
+            }
+            rootDepth = DBSDescendantsQuery.getAbsoluteDepth(rootState);
+        }
+        Document fields = getProjection(query.getKeys());
+        if (!query.isBreadthFirst()) {
+            List<Bson> filters = new ArrayList<>();
+            filters.add(Filters.eq(KEY_ANCESTOR_IDS, query.getRootId()));
+            if (query.getMaxDepth() > 0) {
+                // no ancestor at the position of the root of a too deep document
+                String key = KEY_ANCESTOR_IDS + "." + (rootDepth + query.getMaxDepth());
+                filters.add(Filters.exists(key, false));
+            }
+            if (query.getStartAfterId() != null) {
+                filters.add(Filters.gt(idKey, query.getStartAfterId()));
+            }
+            return streamOrderedById(Filters.and(filters), fields, query.getLimit(), query.getBatchSize());
+        }
+        DescendantsLevelIterator it = new DescendantsLevelIterator(query, rootDepth, fields);
+        Stream<State> stream = StreamSupport.stream(Spliterators.spliteratorUnknownSize(it, Spliterator.ORDERED), false)
+                                            .onClose(it::close);
+        if (query.getLimit() > 0) {
+            stream = stream.limit(query.getLimit());
+        }
+        return stream;
+    }
+
+    protected Document getProjection(Set<String> keys) {
         Document fields = new Document();
         if (useCustomId) {
             fields.put(MONGODB_ID, ZERO);
         }
         fields.put(idKey, ONE);
         keys.forEach(key -> fields.put(converter.keyToBson(key), ONE));
-        return stream(filter, fields, limit);
+        return fields;
+    }
+
+    /**
+     * Iterates on the descendants of a document level by level, each level being read through its own cursor ordered
+     * by id. The iteration stops at the first empty level.
+     */
+    protected class DescendantsLevelIterator implements Iterator<State> {
+
+        protected final DBSDescendantsQuery query;
+
+        protected final int rootDepth;
+
+        protected final Bson fields;
+
+        protected int depth;
+
+        protected boolean resumed;
+
+        protected boolean levelEmpty;
+
+        protected Stream<State> levelStream;
+
+        protected Iterator<State> levelIterator;
+
+        protected boolean done;
+
+        public DescendantsLevelIterator(DBSDescendantsQuery query, int rootDepth, Bson fields) {
+            this.query = query;
+            this.rootDepth = rootDepth;
+            this.fields = fields;
+            resumed = query.getStartAfterId() != null;
+            depth = resumed ? query.getStartAfterDepth() : 1;
+            openLevel();
+        }
+
+        protected void openLevel() {
+            if (query.getMaxDepth() > 0 && depth > query.getMaxDepth()) {
+                done = true;
+                return;
+            }
+            List<Bson> filters = new ArrayList<>();
+            filters.add(Filters.eq(KEY_ANCESTOR_IDS, query.getRootId()));
+            filters.add(Filters.size(KEY_ANCESTOR_IDS, rootDepth + depth));
+            if (resumed) {
+                filters.add(Filters.gt(idKey, query.getStartAfterId()));
+            }
+            levelStream = streamOrderedById(Filters.and(filters), fields, 0, query.getBatchSize());
+            levelIterator = levelStream.iterator();
+            levelEmpty = true;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!done) {
+                if (levelIterator.hasNext()) {
+                    return true;
+                }
+                levelStream.close();
+                levelStream = null;
+                // a resumed level may be empty even though there are deeper levels
+                if (levelEmpty && !resumed) {
+                    done = true;
+                } else {
+                    resumed = false;
+                    depth++;
+                    openLevel();
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public State next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            levelEmpty = false;
+            return levelIterator.next();
+        }
+
+        public void close() {
+            done = true;
+            if (levelStream != null) {
+                levelStream.close();
+                levelStream = null;
+            }
+        }
     }
 
     @Override
@@ -534,6 +814,49 @@ public class MongoDBRepository extends DBSRepositoryBase {
         }
     }
 
+    /**
+     * Runs a request whose results are ordered by id, and constructs a closeable {@link Stream} on top of
+     * {@link MongoCursor}.
+     * <p />
+     * Unlike {@link #stream(Bson, Bson, int)}, this does not keep track of all the ids returned, as duplicates can only
+     * be consecutive. This keeps memory bounded when streaming many documents.
+     *
+     * @param batchSize the cursor batch size, or {@code 0} for the default
+     * @return a closeable {@link Stream} instance linked to {@link MongoCursor}
+     * @since 10.2
+     */
+    protected Stream<State> streamOrderedById(Bson filter, Bson projection, int limit, int batchSize) {
+        if (log.isTraceEnabled()) {
+            logQuery(filter, projection);
+        }
+        FindIterable<Document> found = coll.find(filter)
+                                           .projection(projection)
+                                           .sort(Sorts.ascending(idKey))
+                                           .limit(limit)
+                                           .batchSize(batchSize);
+        boolean completedAbruptly = true;
+        MongoCursor<Document> cursor = found.iterator();
+        try {
+            String[] previousId = new String[1];
+            Stream<State> stream = StreamSupport.stream(Spliterators.spliteratorUnknownSize(cursor, 0), false) //
+                                                .onClose(cursor::close)
+                                                .filter(doc -> {
+                                                    String id = doc.getString(idKey);
+                                                    boolean seen = id.equals(previousId[0]);
+                                                    previousId[0] = id;
+                                                    return !seen;
+                                                })
+                                                .map(converter::bsonToState);
+            // the stream takes responsibility for closing the session
+            completedAbruptly = false;
+            return stream;
+        } finally {
+            if (completedAbruptly) {
+                cursor.close();
+            }
+        }
+    }
+
     protected Document justPresenceField() {
         return new Document(MONGODB_ID, ONE);
     }
@@ -557,9 +880,10 @@ public class MongoDBRepository extends DBSRepositoryBase {
         boolean manualProjection = !distinctDocuments && builder.hasProjectionWildcard();
         if (manualProjection) {
             // we'll do post-treatment to re-evaluate the query to get proper wildcard projections
-            // so we need the full state from the database
-            keys = null;
+            // so we need from the database all the keys used by the query
             evaluator.parse();
+            Set<String> requiredKeys = evaluator.getRequiredKeys();
+            keys = requiredKeys == null ? null : getProjection(requiredKeys);
         }
 
         if (log.isTraceEnabled()) {
@@ -74,6 +74,7 @@ import org.nuxeo.ecm.core.api.IterableQueryResult;
 import org.nuxeo.ecm.core.api.Lock;
 import org.nuxeo.ecm.core.api.NuxeoException;
 import org.nuxeo.ecm.core.api.PartialList;
+import org.nuxeo.ecm.core.api.ScrollResult;
 import org.nuxeo.ecm.core.api.model.PropertyNotFoundException;
 import org.nuxeo.ecm.core.blob.BlobManager;
 import org.nuxeo.ecm.core.blob.BlobProvider;
@@ -106,9 +107,12 @@ public class TestSQLBackend extends SQLBackendTestCase {
 
     protected boolean pathOptimizationsEnabled;
 
+    protected boolean keysetScrollEnabled;
+
     @Override
     public void setUp() throws Exception {
         pathOptimizationsEnabled = true; // changed in a few tests
+        keysetScrollEnabled = false;
         super.setUp();
     }
 
@@ -116,6 +120,7 @@ public class TestSQLBackend extends SQLBackendTestCase {
     protected RepositoryDescriptor newDescriptor(String name, long clusteringDelay) {
         RepositoryDescriptor descriptor = super.newDescriptor(name, clusteringDelay);
         descriptor.setPathOptimizationsEnabled(pathOptimizationsEnabled);
+        descriptor.setKeysetScrollEnabled(keysetScrollEnabled);
         return descriptor;
     }
 
@@ -4237,6 +4242,48 @@ public class TestSQLBackend extends SQLBackendTestCase {
         assertEquals(0, jdbc.executeCount);
     }
 
+    @Test
+    public void testGetNodesByIdsPrefetchSchemas() throws Exception {
+        Session session = repository.getConnection();
+        Node root = session.getRootNode();
+        List<Serializable> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Node node = session.addChildNode(root, "doc" + i, null, "TestDoc2", false);
+            node.setCollectionProperty("tst2:subjects", new String[] { "a" + i, "b" + i });
+            ids.add(node.getId());
+        }
+        session.save();
+        session.close();
+
+        // tst2:subjects is not in the type prefetch, it's fetched for each document
+        session = repository.getConnection();
+        JDBCConnection jdbc = (JDBCConnection) JDBCMapperConnector.unwrap(
+                ((SoftRefCachingMapper) ((SessionImpl) session).getMapper()).mapper);
+        ((SessionImpl) session).getMapper().clearCache();
+        List<Node> nodes = session.getNodesByIds(ids);
+        jdbc.countExecutes = true;
+        jdbc.executeCount = 0;
+        for (int i = 0; i < 5; i++) {
+            assertEquals("a" + i, nodes.get(i).getCollectionProperty("tst2:subjects").getStrings()[0]);
+        }
+        assertEquals(5, jdbc.executeCount);
+        session.close();
+
+        // prefetch the schema, no more fetch needed
+        session = repository.getConnection();
+        jdbc = (JDBCConnection) JDBCMapperConnector.unwrap(
+                ((SoftRefCachingMapper) ((SessionImpl) session).getMapper()).mapper);
+        ((SessionImpl) session).getMapper().clearCache();
+        nodes = session.getNodesByIds(ids, Collections.singleton("testschema2"));
+        jdbc.countExecutes = true;
+        jdbc.executeCount = 0;
+        for (int i = 0; i < 5; i++) {
+            assertEquals("a" + i, nodes.get(i).getCollectionProperty("tst2:subjects").getStrings()[0]);
+        }
+        assertEquals(0, jdbc.executeCount);
+        session.close();
+    }
+
     @Test
     public void testPathDeep() throws Exception {
         Session session = repository.getConnection();
@@ -4260,6 +4307,39 @@ public class TestSQLBackend extends SQLBackendTestCase {
         assertEquals("/r2/node0/node1/node2/node3/node4" + "/node5/node6/node7/node8/node9", nodes.get(1).getPath());
     }
 
+    @Test
+    public void testKeysetScroll() throws Exception {
+        repository.close();
+        keysetScrollEnabled = true;
+        repository = newRepository(-1);
+        Session session = repository.getConnection();
+        Node root = session.getRootNode();
+        Set<String> expected = new HashSet<>();
+        for (int i = 0; i < 10; i++) {
+            Node node = session.addChildNode(root, "foo" + i, null, "TestDoc", false);
+            expected.add(node.getId().toString());
+        }
+        session.addChildNode(root, "bar", null, "Folder", false);
+        session.save();
+        session.close();
+
+        String query = "SELECT * FROM TestDoc";
+        session = repository.getConnection();
+        ScrollResult<String> ret = session.scroll(query, 3, 10);
+        session.close();
+        List<String> ids = new ArrayList<>();
+        while (ret.hasResults()) {
+            assertTrue(ret.getResults().size() <= 3);
+            ids.addAll(ret.getResults());
+            // each batch can be fetched from a different connection, without a cursor kept open
+            session = repository.getConnection();
+            ret = session.scroll(ret.getScrollId());
+            session.close();
+        }
+        assertEquals(10, ids.size());
+        assertEquals(expected, new HashSet<>(ids));
+    }
+
     @Test
     public void testPathOptimizationsActivation() throws Exception {
         repository.close();
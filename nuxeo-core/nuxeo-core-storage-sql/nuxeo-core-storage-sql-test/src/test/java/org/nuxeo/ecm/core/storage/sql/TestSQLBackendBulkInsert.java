@@ -0,0 +1,122 @@
+/*
+ * (C) Copyright 2018 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.ecm.core.storage.sql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.Serializable;
+import java.sql.DatabaseMetaData;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.nuxeo.ecm.core.storage.sql.jdbc.dialect.Dialect;
+import org.nuxeo.ecm.core.storage.sql.jdbc.dialect.DialectH2;
+import org.nuxeo.runtime.api.Framework;
+
+/**
+ * All the tests of TestSQLBackend with multi-row inserts activated.
+ * <p>
+ * The dialect allows few parameters per statement, so that the inserts of most tests are split into several
+ * statements.
+ */
+public class TestSQLBackendBulkInsert extends TestSQLBackend {
+
+    protected static final String DIALECT_CLASS_H2 = Dialect.DIALECT_CLASS + ".H2";
+
+    /**
+     * H2 dialect with a small number of parameters per multi-row insert.
+     */
+    public static class DialectH2SmallMultiRowInsert extends DialectH2 {
+
+        public static final int MAX_PARAMETERS = 100;
+
+        public DialectH2SmallMultiRowInsert(DatabaseMetaData metadata, RepositoryDescriptor repositoryDescriptor) {
+            super(metadata, repositoryDescriptor);
+        }
+
+        @Override
+        public int getMaximumParametersForMultiRowInsert() {
+            return MAX_PARAMETERS;
+        }
+    }
+
+    /**
+     * Only run for H2, whose dialect can be replaced.
+     */
+    @BeforeClass
+    public static void assumeH2() {
+        assumeTrue(DatabaseHelper.DATABASE instanceof DatabaseH2);
+    }
+
+    @Override
+    protected RepositoryDescriptor newDescriptor(String name, long clusteringDelay) {
+        RepositoryDescriptor descriptor = super.newDescriptor(name, clusteringDelay);
+        descriptor.setBulkInsertEnabled(true);
+        Framework.getProperties().put(DIALECT_CLASS_H2, DialectH2SmallMultiRowInsert.class.getName());
+        return descriptor;
+    }
+
+    @After
+    public void removeDialectClass() {
+        Framework.getProperties().remove(DIALECT_CLASS_H2);
+    }
+
+    @Test
+    public void testBulkInsertSplit() throws Exception {
+        // enough rows to need several statements of each size in every table
+        int n = 3 * DialectH2SmallMultiRowInsert.MAX_PARAMETERS + 7;
+        Session session = repository.getConnection();
+        Node root = session.getRootNode();
+        List<Serializable> ids = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            Node node = session.addChildNode(root, "doc" + i, null, "TestDoc2", false);
+            node.setSimpleProperty("tst2:title", "title" + i);
+            node.setCollectionProperty("tst2:subjects", new String[] { "a" + i, "b" + i, "c" + i });
+            ACLRow acl1 = new ACLRow(0, "test", true, "Read", null, "group" + i);
+            ACLRow acl2 = new ACLRow(1, "test", true, "Write", "user" + i, null);
+            node.getCollectionProperty(Model.ACL_PROP).setValue(new ACLRow[] { acl1, acl2 });
+            ids.add(node.getId());
+        }
+        session.save();
+        session.close();
+
+        session = repository.getConnection();
+        ((SessionImpl) session).getMapper().clearCache();
+        List<Node> nodes = session.getNodesByIds(ids);
+        assertEquals(n, nodes.size());
+        for (int i = 0; i < n; i++) {
+            Node node = nodes.get(i);
+            assertEquals("doc" + i, node.getName());
+            assertEquals("title" + i, node.getSimpleProperty("tst2:title").getString());
+            assertEquals(Arrays.asList("a" + i, "b" + i, "c" + i),
+                    Arrays.asList(node.getCollectionProperty("tst2:subjects").getStrings()));
+            ACLRow[] acls = (ACLRow[]) node.getCollectionProperty(Model.ACL_PROP).getValue();
+            assertEquals(2, acls.length);
+            assertEquals("group" + i, acls[0].group);
+            assertEquals("user" + i, acls[1].user);
+        }
+        session.close();
+    }
+
+}
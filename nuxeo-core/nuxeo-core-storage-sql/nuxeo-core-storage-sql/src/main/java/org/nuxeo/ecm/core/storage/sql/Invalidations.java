@@ -18,14 +18,26 @@
  */
 package org.nuxeo.ecm.core.storage.sql;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
+import java.io.SequenceInputStream;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.UUID;
 
 import org.nuxeo.runtime.pubsub.SerializableAccumulableInvalidations;
 
@@ -177,8 +189,31 @@ public class Invalidations implements SerializableAccumulableInvalidations {
         checkMaxSize();
     }
 
-    // TODO do a more fine-grained serialization than using ObjectOutputStream
+    /**
+     * First byte of the compact serialization format.
+     *
+     * @since 10.2
+     */
+    protected static final int COMPACT_FORMAT = 'I';
+
+    /** First byte of a Java serialization stream, used by previous versions. */
+    protected static final int JAVA_SERIALIZATION_FORMAT = 0xAC;
+
+    protected static final int FLAG_ALL = 1;
+
+    protected static final int ID_STRING = 1;
+
+    protected static final int ID_UUID = 2;
+
+    protected static final int ID_LONG = 3;
+
+    protected static final int ID_SERIALIZED = 4;
 
+    /**
+     * Serializes these invalidations using Java serialization, the format understood by all versions.
+     *
+     * @see #serializeCompact
+     */
     @Override
     public void serialize(OutputStream out) throws IOException {
         try (ObjectOutputStream oout = new ObjectOutputStream(out)) {
@@ -186,11 +221,196 @@ public class Invalidations implements SerializableAccumulableInvalidations {
         }
     }
 
+    /**
+     * Serializes these invalidations in a compact binary format.
+     * <p>
+     * Table names are written once, ids are written once for all the tables in which they appear, and UUID ids are
+     * written as 16 bytes.
+     * <p>
+     * This format can only be read by {@link #deserialize} since 10.2.
+     *
+     * @since 10.2
+     */
+    public void serializeCompact(OutputStream out) throws IOException {
+        DataOutputStream dout = new DataOutputStream(out);
+        dout.writeByte(COMPACT_FORMAT);
+        dout.writeByte(all ? FLAG_ALL : 0);
+        if (!all) {
+            Map<String, Integer> tableIndexes = new LinkedHashMap<>();
+            Map<Serializable, List<String>> modifiedById = groupById(modified, tableIndexes);
+            Map<Serializable, List<String>> deletedById = groupById(deleted, tableIndexes);
+            writeVarInt(dout, tableIndexes.size());
+            for (String tableName : tableIndexes.keySet()) {
+                dout.writeUTF(tableName);
+            }
+            writeRowIds(dout, modifiedById, tableIndexes);
+            writeRowIds(dout, deletedById, tableIndexes);
+        }
+        dout.flush();
+    }
+
+    protected static Map<Serializable, List<String>> groupById(Set<RowId> rowIds, Map<String, Integer> tableIndexes) {
+        Map<Serializable, List<String>> byId = new LinkedHashMap<>();
+        if (rowIds != null) {
+            for (RowId rowId : rowIds) {
+                tableIndexes.putIfAbsent(rowId.tableName, Integer.valueOf(tableIndexes.size()));
+                byId.computeIfAbsent(rowId.id, k -> new ArrayList<>(2)).add(rowId.tableName);
+            }
+        }
+        return byId;
+    }
+
+    protected static void writeRowIds(DataOutputStream dout, Map<Serializable, List<String>> byId,
+            Map<String, Integer> tableIndexes) throws IOException {
+        writeVarInt(dout, byId.size());
+        for (Entry<Serializable, List<String>> en : byId.entrySet()) {
+            writeId(dout, en.getKey());
+            List<String> tableNames = en.getValue();
+            writeVarInt(dout, tableNames.size());
+            for (String tableName : tableNames) {
+                writeVarInt(dout, tableIndexes.get(tableName).intValue());
+            }
+        }
+    }
+
+    protected static void writeId(DataOutputStream dout, Serializable id) throws IOException {
+        if (id instanceof String) {
+            String string = (String) id;
+            if (isUUID(string)) {
+                UUID uuid = UUID.fromString(string);
+                dout.writeByte(ID_UUID);
+                dout.writeLong(uuid.getMostSignificantBits());
+                dout.writeLong(uuid.getLeastSignificantBits());
+            } else {
+                dout.writeByte(ID_STRING);
+                dout.writeUTF(string);
+            }
+        } else if (id instanceof Long) {
+            dout.writeByte(ID_LONG);
+            dout.writeLong(((Long) id).longValue());
+        } else {
+            ByteArrayOutputStream baout = new ByteArrayOutputStream();
+            try (ObjectOutputStream oout = new ObjectOutputStream(baout)) {
+                oout.writeObject(id);
+            }
+            dout.writeByte(ID_SERIALIZED);
+            writeVarInt(dout, baout.size());
+            baout.writeTo(dout);
+        }
+    }
+
+    /** Checks if a string is a UUID in canonical lowercase form, which is the form that round-trips exactly. */
+    protected static boolean isUUID(String string) {
+        if (string.length() != 36) {
+            return false;
+        }
+        for (int i = 0; i < 36; i++) {
+            char c = string.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') {
+                    return false;
+                }
+            } else if (!(c >= '0' && c <= '9' || c >= 'a' && c <= 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    protected static void writeVarInt(DataOutputStream dout, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            dout.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        dout.writeByte(value);
+    }
+
+    protected static int readVarInt(DataInputStream din) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = din.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Invalid varint");
+    }
+
+    /**
+     * Deserializes invalidations written by {@link #serialize} or by {@link #serializeCompact}.
+     */
     public static Invalidations deserialize(InputStream in) throws IOException {
-        try (ObjectInputStream oin = new ObjectInputStream(in)) {
-            return (Invalidations) oin.readObject();
-        } catch (ClassNotFoundException | ClassCastException e) {
-            throw new IOException(e);
+        int format = in.read();
+        if (format == JAVA_SERIALIZATION_FORMAT) {
+            InputStream jin = new SequenceInputStream(new ByteArrayInputStream(new byte[] { (byte) format }), in);
+            try (ObjectInputStream oin = new ObjectInputStream(jin)) {
+                return (Invalidations) oin.readObject();
+            } catch (ClassNotFoundException | ClassCastException e) {
+                throw new IOException(e);
+            }
+        }
+        if (format == -1) {
+            throw new EOFException();
+        }
+        if (format != COMPACT_FORMAT) {
+            throw new IOException("Unknown invalidations format: " + format);
+        }
+        DataInputStream din = new DataInputStream(in);
+        Invalidations invalidations = new Invalidations();
+        if ((din.readUnsignedByte() & FLAG_ALL) != 0) {
+            invalidations.setAll();
+            return invalidations;
+        }
+        int n = readVarInt(din);
+        String[] tableNames = new String[n];
+        for (int i = 0; i < n; i++) {
+            tableNames[i] = din.readUTF().intern();
+        }
+        readRowIds(din, tableNames, invalidations, MODIFIED);
+        readRowIds(din, tableNames, invalidations, DELETED);
+        return invalidations;
+    }
+
+    protected static void readRowIds(DataInputStream din, String[] tableNames, Invalidations invalidations, int kind)
+            throws IOException {
+        int n = readVarInt(din);
+        if (n == 0) {
+            return;
+        }
+        Set<RowId> set = invalidations.getKindSet(kind);
+        for (int i = 0; i < n; i++) {
+            Serializable id = readId(din);
+            int ntables = readVarInt(din);
+            for (int j = 0; j < ntables; j++) {
+                int index = readVarInt(din);
+                if (index >= tableNames.length) {
+                    throw new IOException("Invalid table index: " + index);
+                }
+                set.add(new RowId(tableNames[index], id));
+            }
+        }
+    }
+
+    protected static Serializable readId(DataInputStream din) throws IOException {
+        int type = din.readUnsignedByte();
+        switch (type) {
+        case ID_STRING:
+            return din.readUTF();
+        case ID_UUID:
+            return new UUID(din.readLong(), din.readLong()).toString();
+        case ID_LONG:
+            return Long.valueOf(din.readLong());
+        case ID_SERIALIZED:
+            byte[] bytes = new byte[readVarInt(din)];
+            din.readFully(bytes);
+            try (ObjectInputStream oin = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                return (Serializable) oin.readObject();
+            } catch (ClassNotFoundException | ClassCastException e) {
+                throw new IOException(e);
+            }
+        default:
+            throw new IOException("Invalid id type: " + type);
         }
     }
 
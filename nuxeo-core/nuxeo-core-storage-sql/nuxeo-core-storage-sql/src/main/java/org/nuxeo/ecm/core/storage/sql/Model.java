@@ -1022,6 +1022,16 @@ public class Model {
         return docTypePrefetchedFragments.get(typeName);
     }
 
+    /**
+     * Gets the simple and collection fragments for a schema.
+     *
+     * @return the fragment names, or {@code null} if the schema is unknown
+     * @since 10.2
+     */
+    public Set<String> getSchemaFragments(String schemaName) {
+        return schemaFragments.get(schemaName);
+    }
+
     /**
      * Checks if we have a type (doctype or complex type).
      */
@@ -0,0 +1,126 @@
+/*
+ * (C) Copyright 2018 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.ecm.core.storage.sql;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.nuxeo.ecm.core.storage.sql.RowMapper.IdWithTypes;
+
+/**
+ * Plans the fragments to fetch in bulk when loading a batch of documents.
+ * <p>
+ * For each document, the fragments are the ones prefetched for its type (see {@link Model#getTypePrefetchedFragments}),
+ * and the simple and collection fragments of the requested schemas that the document actually has. The resulting row
+ * ids are meant to be read with a single {@link PersistenceContext#getMulti} call, which reads each table only once for
+ * all the documents.
+ * <p>
+ * The fragments computed for a given primary type and mixins are reused for all the documents of the batch.
+ *
+ * @since 10.2
+ */
+public class PrefetchPlanner {
+
+    protected final Model model;
+
+    protected final Set<String> schemas;
+
+    /** Fragments to fetch, keyed by primary type and mixins. */
+    protected final Map<String, Set<String>> typeFragments = new HashMap<>();
+
+    /**
+     * Constructs a planner.
+     *
+     * @param model the model
+     * @param schemas the schemas to prefetch in addition to the prefetch configuration of the types, or {@code null}
+     */
+    public PrefetchPlanner(Model model, Collection<String> schemas) {
+        this.model = model;
+        this.schemas = schemas == null ? Collections.emptySet() : new LinkedHashSet<>(schemas);
+    }
+
+    /**
+     * Adds the row ids to fetch for a document.
+     *
+     * @param hierFragment the hierarchy fragment of the document, which is not a proxy
+     * @param rowIds the collection to which row ids are added
+     */
+    public void addRowIds(SimpleFragment hierFragment, Collection<RowId> rowIds) {
+        IdWithTypes typeInfo = new IdWithTypes(hierFragment);
+        Set<String> tableNames = getFragments(typeInfo);
+        if (tableNames == null) {
+            return; // unknown (obsolete) type
+        }
+        Serializable id = typeInfo.id;
+        Serializable parentId = hierFragment.get(Model.HIER_PARENT_KEY);
+        for (String tableName : tableNames) {
+            if (Model.HIER_TABLE_NAME.equals(tableName)) {
+                continue; // already fetched
+            }
+            if (parentId != null && Model.VERSION_TABLE_NAME.equals(tableName)) {
+                continue; // not a version, don't fetch this table
+                // TODO incorrect if we have filed versions
+            }
+            rowIds.add(new RowId(tableName, id));
+        }
+    }
+
+    /**
+     * Gets the fragments to fetch for a document with the given types.
+     *
+     * @return the fragment names, or {@code null} if the type is unknown
+     */
+    protected Set<String> getFragments(IdWithTypes typeInfo) {
+        String key = typeInfo.mixinTypes == null || typeInfo.mixinTypes.length == 0 ? typeInfo.primaryType
+                : typeInfo.primaryType + Arrays.toString(typeInfo.mixinTypes);
+        return typeFragments.computeIfAbsent(key, k -> computeFragments(typeInfo));
+    }
+
+    protected Set<String> computeFragments(IdWithTypes typeInfo) {
+        Set<String> prefetched = model.getTypePrefetchedFragments(typeInfo.primaryType);
+        if (prefetched == null) {
+            return null;
+        }
+        if (schemas.isEmpty()) {
+            return prefetched;
+        }
+        Set<String> fragments = new LinkedHashSet<>(prefetched);
+        Set<String> docFragments = model.getTypeFragments(typeInfo);
+        for (String schema : schemas) {
+            Set<String> schemaFragments = model.getSchemaFragments(schema);
+            if (schemaFragments == null) {
+                continue; // unknown schema, or without fragments
+            }
+            for (String fragment : schemaFragments) {
+                // only fragments of a schema the document has
+                if (docFragments.contains(fragment)) {
+                    fragments.add(fragment);
+                }
+            }
+        }
+        return fragments;
+    }
+
+}
@@ -262,6 +262,45 @@ public class RepositoryDescriptor {
         clusteringDelay = Long.valueOf(delay);
     }
 
+    /** @since 10.2 */
+    @XNode("bulkInsert@enabled")
+    private Boolean bulkInsertEnabled;
+
+    /**
+     * Checks if rows created in the same save are inserted using multi-row statements, when the database supports it.
+     * This reduces the number of round trips for imports.
+     *
+     * @since 10.2
+     */
+    public boolean getBulkInsertEnabled() {
+        return defaultFalse(bulkInsertEnabled);
+    }
+
+    /** @since 10.2 */
+    public void setBulkInsertEnabled(boolean enabled) {
+        bulkInsertEnabled = Boolean.valueOf(enabled);
+    }
+
+    /** @since 10.2 */
+    @XNode("keysetScroll@enabled")
+    private Boolean keysetScrollEnabled;
+
+    /**
+     * Checks if scrolls are done by keyset pagination on the document id, instead of keeping a database cursor open
+     * between batches. The scroll id then holds the last id returned, so that the next batch can be fetched from any
+     * node or connection.
+     *
+     * @since 10.2
+     */
+    public boolean getKeysetScrollEnabled() {
+        return defaultFalse(keysetScrollEnabled);
+    }
+
+    /** @since 10.2 */
+    public void setKeysetScrollEnabled(boolean enabled) {
+        keysetScrollEnabled = Boolean.valueOf(enabled);
+    }
+
     @XNodeList(value = "schema/field", type = ArrayList.class, componentType = FieldDescriptor.class)
     public List<FieldDescriptor> schemaFields = new ArrayList<>(0);
 
@@ -445,6 +484,8 @@ public class RepositoryDescriptor {
         clusterNodeId = other.clusterNodeId;
         clusteringEnabled = other.clusteringEnabled;
         clusteringDelay = other.clusteringDelay;
+        bulkInsertEnabled = other.bulkInsertEnabled;
+        keysetScrollEnabled = other.keysetScrollEnabled;
         fulltextAnalyzer = other.fulltextAnalyzer;
         fulltextCatalog = other.fulltextCatalog;
         fulltextDescriptor = new FulltextDescriptor(other.fulltextDescriptor);
@@ -512,6 +553,12 @@ public class RepositoryDescriptor {
         if (other.clusteringDelay != null) {
             clusteringDelay = other.clusteringDelay;
         }
+        if (other.bulkInsertEnabled != null) {
+            bulkInsertEnabled = other.bulkInsertEnabled;
+        }
+        if (other.keysetScrollEnabled != null) {
+            keysetScrollEnabled = other.keysetScrollEnabled;
+        }
         for (FieldDescriptor of : other.schemaFields) {
             boolean append = true;
             for (FieldDescriptor f : schemaFields) {
@@ -19,6 +19,7 @@
 package org.nuxeo.ecm.core.storage.sql;
 
 import java.io.Serializable;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -95,6 +96,17 @@ public interface Session extends Connection {
      */
     List<Node> getNodesByIds(List<Serializable> ids);
 
+    /**
+     * Gets several nodes given their ids, prefetching in bulk the fragments of the given schemas in addition to the
+     * ones configured for their types.
+     *
+     * @param ids the ids
+     * @param schemas the schemas to prefetch, or {@code null}
+     * @return the nodes, in the same order as the ids, with elements being {@code null} if not found
+     * @since 10.2
+     */
+    List<Node> getNodesByIds(List<Serializable> ids, Collection<String> schemas);
+
     /**
      * Gets a node given its absolute path, or given an existing node and a relative path.
      *
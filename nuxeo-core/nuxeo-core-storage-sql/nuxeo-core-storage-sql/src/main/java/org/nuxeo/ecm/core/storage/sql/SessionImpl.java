@@ -620,6 +620,17 @@ public class SessionImpl implements Session, XAResource {
     }
 
     public List<Node> getNodesByIds(List<Serializable> ids, boolean prefetch) {
+        return getNodesByIds(ids, prefetch ? new PrefetchPlanner(model, null) : null);
+    }
+
+    /**
+     * Gets several nodes, prefetching the fragments planned by the given planner.
+     *
+     * @param ids the ids
+     * @param planner the prefetch planner, or {@code null} for no prefetch
+     * @since 10.2
+     */
+    protected List<Node> getNodesByIds(List<Serializable> ids, PrefetchPlanner planner) {
         // get hier fragments
         List<RowId> hierRowIds = new ArrayList<>(ids.size());
         for (Serializable id : ids) {
@@ -663,13 +674,13 @@ public class SessionImpl implements Session, XAResource {
             fragmentGroups.put(id, new FragmentGroup((SimpleFragment) fragment, new FragmentsMap()));
         }
 
-        if (prefetch) {
+        if (planner != null) {
             List<RowId> bulkRowIds = new ArrayList<>();
             Set<Serializable> proxyIds = new HashSet<>();
 
             // get rows to prefetch for hier fragments
             for (Fragment fragment : hierFragments) {
-                findPrefetchedFragments((SimpleFragment) fragment, bulkRowIds, proxyIds);
+                findPrefetchedFragments(planner, (SimpleFragment) fragment, bulkRowIds, proxyIds);
             }
 
             // proxies
@@ -694,7 +705,7 @@ public class SessionImpl implements Session, XAResource {
             }
             hierFragments = context.getMulti(hierRowIds, true);
             for (Fragment fragment : hierFragments) {
-                findPrefetchedFragments((SimpleFragment) fragment, bulkRowIds, null);
+                findPrefetchedFragments(planner, (SimpleFragment) fragment, bulkRowIds, null);
             }
 
             // we have everything to be prefetched
@@ -726,37 +737,17 @@ public class SessionImpl implements Session, XAResource {
     /**
      * Finds prefetched fragments for a hierarchy fragment, takes note of the ones that are proxies.
      */
-    protected void findPrefetchedFragments(SimpleFragment hierFragment, List<RowId> bulkRowIds,
-            Set<Serializable> proxyIds) {
-        Serializable id = hierFragment.row.id;
-
+    protected void findPrefetchedFragments(PrefetchPlanner planner, SimpleFragment hierFragment,
+            List<RowId> bulkRowIds, Set<Serializable> proxyIds) {
         // find type
         String typeName = (String) hierFragment.get(Model.MAIN_PRIMARY_TYPE_KEY);
         if (Model.PROXY_TYPE.equals(typeName)) {
             if (proxyIds != null) {
-                proxyIds.add(id);
+                proxyIds.add(hierFragment.row.id);
             }
             return;
         }
-
-        // find table names
-        Set<String> tableNames = model.getTypePrefetchedFragments(typeName);
-        if (tableNames == null) {
-            return; // unknown (obsolete) type
-        }
-
-        // add row id for each table name
-        Serializable parentId = hierFragment.get(Model.HIER_PARENT_KEY);
-        for (String tableName : tableNames) {
-            if (Model.HIER_TABLE_NAME.equals(tableName)) {
-                continue; // already fetched
-            }
-            if (parentId != null && Model.VERSION_TABLE_NAME.equals(tableName)) {
-                continue; // not a version, don't fetch this table
-                // TODO incorrect if we have filed versions
-            }
-            bulkRowIds.add(new RowId(tableName, id));
-        }
+        planner.addRowIds(hierFragment, bulkRowIds);
     }
 
     @Override
@@ -765,6 +756,12 @@ public class SessionImpl implements Session, XAResource {
         return getNodesByIds(ids, true);
     }
 
+    @Override
+    public List<Node> getNodesByIds(List<Serializable> ids, Collection<String> schemas) {
+        checkLive();
+        return getNodesByIds(ids, new PrefetchPlanner(model, schemas));
+    }
+
     @Override
     public Node getParentNode(Node node) {
         checkLive();
@@ -58,11 +58,11 @@ public class SoftRefCachingRowMapper implements RowMapper {
      * to denote a fragment known to be absent from the database.
      * <p>
      * This cache is memory-sensitive (all values are soft-referenced), a fragment can always be refetched if the GC
-     * collects it.
+     * collects it. Subclasses may use another implementation, see {@link #newCache}.
      */
     // we use a new Row instance for the absent case to avoid keeping other
     // references to it which would prevent its GCing
-    private final Map<RowId, Row> cache;
+    protected Map<RowId, Row> cache;
 
     private Model model;
 
@@ -104,9 +104,7 @@ public class SoftRefCachingRowMapper implements RowMapper {
 
     protected Timer sorGetTimer;
 
-    @SuppressWarnings("unchecked")
     public SoftRefCachingRowMapper() {
-        cache = new ReferenceMap(AbstractReferenceMap.HARD, AbstractReferenceMap.SOFT);
         localInvalidations = new Invalidations();
         cacheQueue = new InvalidationsQueue("mapper-" + this);
     }
@@ -118,6 +116,17 @@ public class SoftRefCachingRowMapper implements RowMapper {
         this.cachePropagator = cachePropagator;
         cachePropagator.addQueue(cacheQueue);
         setMetrics(repositoryName);
+        cache = newCache(repositoryName, properties);
+    }
+
+    /**
+     * Creates the map holding the cached rows.
+     *
+     * @since 10.2
+     */
+    @SuppressWarnings("unchecked")
+    protected Map<RowId, Row> newCache(String repositoryName, Map<String, String> properties) {
+        return new ReferenceMap(AbstractReferenceMap.HARD, AbstractReferenceMap.SOFT);
     }
 
     protected void setMetrics(String repositoryName) {
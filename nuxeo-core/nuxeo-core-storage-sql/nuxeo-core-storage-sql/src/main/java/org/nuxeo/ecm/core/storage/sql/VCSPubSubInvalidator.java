@@ -18,31 +18,380 @@
  */
 package org.nuxeo.ecm.core.storage.sql;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.metrics.MetricsService;
 import org.nuxeo.runtime.pubsub.AbstractPubSubInvalidationsAccumulator;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.codahale.metrics.Timer;
+import com.google.common.io.CountingOutputStream;
+
 /**
  * PubSub implementation of the VCS {@link ClusterInvalidator}.
+ * <p>
+ * Invalidations are pushed to the other nodes as soon as they are sent, and accumulated on reception until the next
+ * transaction asks for them, so there is no database round trip involved.
+ * <p>
+ * Optionally, the invalidations sent during a short time window can be coalesced into a single message (see
+ * {@link #DELAY_PROP}), the invalidations can be sent in the compact format of {@link Invalidations#serializeCompact}
+ * (see {@link #COMPACT_PROP}), and the invalidations of a repository can be sharded over several topics according to
+ * the document ids (see {@link #SHARDS_PROP}). These properties can be suffixed by {@code .<repositoryName>} to
+ * configure a single repository.
+ * <p>
+ * Nodes running previous versions can only read the Java serialization format on the unsharded topic, so the compact
+ * format and sharding must only be enabled once all the nodes of the cluster have been upgraded.
  *
  * @since 9.1
  */
-public class VCSPubSubInvalidator extends AbstractPubSubInvalidationsAccumulator<Invalidations> implements ClusterInvalidator {
+public class VCSPubSubInvalidator implements ClusterInvalidator {
+
+    private static final Log log = LogFactory.getLog(VCSPubSubInvalidator.class);
+
+    /**
+     * Time window in milliseconds during which sent invalidations are coalesced into a single message, or {@code 0} to
+     * send each of them immediately.
+     *
+     * @since 10.2
+     */
+    public static final String DELAY_PROP = "org.nuxeo.vcs.pubsub.invalidations.delay";
+
+    /**
+     * Number of topics on which the invalidations of a repository are sharded.
+     *
+     * @since 10.2
+     */
+    public static final String SHARDS_PROP = "org.nuxeo.vcs.pubsub.invalidations.shards";
+
+    /**
+     * Whether invalidations are sent in the compact format, which is always the case when they are sharded.
+     *
+     * @since 10.2
+     */
+    public static final String COMPACT_PROP = "org.nuxeo.vcs.pubsub.invalidations.compact";
+
+    public static final String DEFAULT_DELAY = "0";
+
+    public static final String DEFAULT_SHARDS = "1";
+
+    public static final String DEFAULT_COMPACT = "false";
+
+    /**
+     * Marker of a message holding the number of shards of its sender followed by compact invalidations. Messages in the
+     * Java serialization format, sent by previous versions or when the compact format is disabled, come from unsharded
+     * senders.
+     */
+    protected static final int SHARDED_FORMAT = 'S';
+
+    protected final MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+
+    protected List<InvalidationsBroker> brokers;
+
+    protected long delay;
+
+    protected boolean compact;
+
+    protected boolean shardsMismatchLogged;
+
+    protected ScheduledExecutorService scheduler;
+
+    /** The invalidations waiting for the end of the coalescing time window. Used synchronized. */
+    protected Invalidations pending;
+
+    protected Timer sendTimer;
+
+    protected Counter coalescedCount;
+
+    protected Counter receivedCount;
+
+    protected Histogram sentBytes;
+
+    @Override
+    public void initialize(String nodeId, RepositoryImpl repository) {
+        initialize(nodeId, repository.getName());
+    }
+
+    /**
+     * Initializes the cluster invalidator for the given repository name.
+     *
+     * @since 10.2
+     */
+    public void initialize(String nodeId, String repositoryName) {
+        delay = Long.parseLong(getProperty(DELAY_PROP, repositoryName, DEFAULT_DELAY));
+        int shards = Integer.parseInt(getProperty(SHARDS_PROP, repositoryName, DEFAULT_SHARDS));
+        compact = Boolean.parseBoolean(getProperty(COMPACT_PROP, repositoryName, DEFAULT_COMPACT));
+        if (shards > 1 && !compact) {
+            log.warn("Using compact invalidations for repository: " + repositoryName
+                    + " as they are sharded, all the nodes of the cluster must be upgraded");
+            compact = true;
+        }
+        String prefix = MetricRegistry.name("nuxeo", "repositories", repositoryName, "cluster-invalidations", "pubsub");
+        sendTimer = registry.timer(MetricRegistry.name(prefix, "send"));
+        coalescedCount = registry.counter(MetricRegistry.name(prefix, "coalesced"));
+        receivedCount = registry.counter(MetricRegistry.name(prefix, "received"));
+        sentBytes = registry.histogram(MetricRegistry.name(prefix, "sent-bytes"));
+        brokers = new ArrayList<>(shards);
+        for (int i = 0; i < shards; i++) {
+            // first topic is the same as in previous versions, so that all nodes can check the sender shards
+            String topic = "vcs:" + repositoryName + (i == 0 ? "" : ":" + i);
+            InvalidationsBroker broker = new InvalidationsBroker(shards);
+            broker.initialize(topic, nodeId);
+            brokers.add(broker);
+        }
+        if (delay > 0) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "Nuxeo-VCS-Invalidations-" + repositoryName);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        log.info("Clustering enabled for repository: " + repositoryName + " using PubSub with " + shards
+                + " shards, " + delay + " ms delay and " + (compact ? "compact" : "Java serialization") + " format");
+    }
+
+    protected static String getProperty(String name, String repositoryName, String defaultValue) {
+        return Framework.getProperty(name + '.' + repositoryName, Framework.getProperty(name, defaultValue));
+    }
 
     @Override
-    public Invalidations newInvalidations() {
-        return new Invalidations();
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        // don't lose the invalidations still in the time window
+        flush();
+        brokers.forEach(InvalidationsBroker::close);
     }
 
     @Override
-    public void initialize(String nodeId, RepositoryImpl repository) {
-        initialize("vcs:" + repository.getName(), nodeId);
+    public Invalidations receiveInvalidations() {
+        Invalidations invalidations = brokers.get(0).receiveInvalidations();
+        for (int i = 1; i < brokers.size(); i++) {
+            invalidations.add(brokers.get(i).receiveInvalidations());
+        }
+        return invalidations;
     }
 
     @Override
-    public Invalidations deserialize(InputStream in) throws IOException {
-        return Invalidations.deserialize(in);
+    public void sendInvalidations(Invalidations invalidations) {
+        if (invalidations == null || invalidations.isEmpty()) {
+            return;
+        }
+        if (scheduler == null) {
+            publish(invalidations);
+            return;
+        }
+        boolean first;
+        synchronized (this) {
+            first = pending == null;
+            if (first) {
+                pending = new Invalidations();
+            } else {
+                coalescedCount.inc();
+            }
+            pending.add(invalidations);
+        }
+        if (first) {
+            scheduler.schedule(this::flush, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Publishes the invalidations coalesced so far.
+     *
+     * @since 10.2
+     */
+    protected void flush() {
+        Invalidations invalidations;
+        synchronized (this) {
+            invalidations = pending;
+            pending = null;
+        }
+        if (invalidations == null) {
+            return;
+        }
+        try {
+            publish(invalidations);
+        } catch (RuntimeException e) {
+            log.error("Failed to send invalidations", e);
+        }
+    }
+
+    /**
+     * Publishes invalidations to the other nodes, split by shard.
+     * <p>
+     * The first shard is always published, even if empty, so that nodes configured with a different number of shards
+     * notice it.
+     *
+     * @since 10.2
+     */
+    protected void publish(Invalidations invalidations) {
+        try (Timer.Context context = sendTimer.time()) {
+            int shards = brokers.size();
+            if (shards == 1 || invalidations.all) {
+                brokers.get(0).sendInvalidations(invalidations);
+                return;
+            }
+            Invalidations[] sharded = new Invalidations[shards];
+            split(invalidations.modified, Invalidations.MODIFIED, sharded);
+            split(invalidations.deleted, Invalidations.DELETED, sharded);
+            if (sharded[0] == null) {
+                sharded[0] = new Invalidations();
+            }
+            for (int i = 0; i < shards; i++) {
+                if (sharded[i] != null) {
+                    brokers.get(i).sendInvalidations(sharded[i]);
+                }
+            }
+        }
+    }
+
+    protected void split(Set<RowId> rowIds, int kind, Invalidations[] sharded) {
+        if (rowIds == null) {
+            return;
+        }
+        for (RowId rowId : rowIds) {
+            int shard = getShard(rowId.id, sharded.length);
+            if (sharded[shard] == null) {
+                sharded[shard] = new Invalidations();
+            }
+            sharded[shard].getKindSet(kind).add(rowId);
+        }
+    }
+
+    protected static int getShard(Serializable id, int shards) {
+        return id == null ? 0 : Math.floorMod(id.hashCode(), shards);
+    }
+
+    /**
+     * Serializes invalidations in the configured format, measuring their size.
+     *
+     * @since 10.2
+     */
+    protected void serialize(Invalidations invalidations, int shards, OutputStream out) throws IOException {
+        CountingOutputStream cout = new CountingOutputStream(out);
+        if (compact) {
+            DataOutputStream dout = new DataOutputStream(cout);
+            dout.writeByte(SHARDED_FORMAT);
+            Invalidations.writeVarInt(dout, shards);
+            dout.flush();
+            invalidations.serializeCompact(cout);
+        } else {
+            try (ObjectOutputStream oout = new ObjectOutputStream(cout)) {
+                oout.writeObject(invalidations);
+            }
+        }
+        sentBytes.update(cout.getCount());
+    }
+
+    /**
+     * Deserializes invalidations sent in any format, checking that the sender uses the same number of shards.
+     *
+     * @since 10.2
+     */
+    protected Invalidations deserialize(InputStream in, int shards) throws IOException {
+        in.mark(1);
+        int senderShards;
+        if (in.read() == SHARDED_FORMAT) {
+            senderShards = Invalidations.readVarInt(new DataInputStream(in));
+        } else {
+            in.reset();
+            senderShards = 1;
+        }
+        Invalidations invalidations = Invalidations.deserialize(in);
+        if (senderShards != shards) {
+            if (!shardsMismatchLogged) {
+                shardsMismatchLogged = true;
+                log.error("Received invalidations from a node using " + senderShards + " shards instead of " + shards
+                        + ", check the configuration of " + SHARDS_PROP + "; invalidating everything");
+            }
+            // some invalidations of the sender are sent on topics we don't listen to
+            return new Invalidations(true);
+        }
+        return invalidations;
+    }
+
+    /**
+     * Broker for the invalidations of one topic.
+     *
+     * @since 10.2
+     */
+    protected class InvalidationsBroker extends AbstractPubSubInvalidationsAccumulator<Invalidations> {
+
+        protected final int shards;
+
+        public InvalidationsBroker(int shards) {
+            this.shards = shards;
+        }
+
+        @Override
+        public Invalidations newInvalidations() {
+            return new Invalidations();
+        }
+
+        @Override
+        public Invalidations deserialize(InputStream in) throws IOException {
+            return VCSPubSubInvalidator.this.deserialize(in, shards);
+        }
+
+        @Override
+        public void sendInvalidations(Invalidations invalidations) {
+            super.sendInvalidations(new OutgoingInvalidations(invalidations, shards));
+        }
+
+        @Override
+        public void receivedMessage(Invalidations invalidations) {
+            receivedCount.inc();
+            super.receivedMessage(invalidations);
+        }
+    }
+
+    /**
+     * Invalidations to send, serialized in the configured format.
+     *
+     * @since 10.2
+     */
+    protected class OutgoingInvalidations extends Invalidations {
+
+        private static final long serialVersionUID = 1L;
+
+        protected final Invalidations invalidations;
+
+        protected final int shards;
+
+        public OutgoingInvalidations(Invalidations invalidations, int shards) {
+            this.invalidations = invalidations;
+            this.shards = shards;
+        }
+
+        @Override
+        public void serialize(OutputStream out) throws IOException {
+            VCSPubSubInvalidator.this.serialize(invalidations, shards, out);
+        }
+
+        @Override
+        public String toString() {
+            return invalidations.toString();
+        }
     }
 
 }
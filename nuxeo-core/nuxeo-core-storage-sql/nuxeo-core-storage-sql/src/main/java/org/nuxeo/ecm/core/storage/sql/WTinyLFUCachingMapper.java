@@ -0,0 +1,87 @@
+/*
+ * (C) Copyright 2018 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.ecm.core.storage.sql;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.nuxeo.ecm.core.storage.sql.WTinyLFURowCache.Budget;
+
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * A {@link CachingMapper} whose row cache is bounded by the estimated size of the rows in bytes, and uses the W-TinyLFU
+ * policy (see {@link WTinyLFURowCache}) instead of soft references.
+ * <p>
+ * Invalidations are processed as for the {@link SoftRefCachingMapper}. It is enabled with:
+ *
+ * <pre>
+ * &lt;cachingMapper class="org.nuxeo.ecm.core.storage.sql.WTinyLFUCachingMapper"&gt;
+ *   &lt;property name="maxBytes"&gt;10485760&lt;/property&gt;
+ *   &lt;property name="windowPercent"&gt;1&lt;/property&gt;
+ * &lt;/cachingMapper&gt;
+ * </pre>
+ *
+ * The maximum size applies to the caches of all the sessions of the repository together, which also share the
+ * frequency sketch. Each session keeps its own rows, as they may contain its uncommitted changes; when the maximum size
+ * is exceeded, the session adding a row evicts rows from its own cache if it holds more than its equal share of the
+ * maximum size, so that new sessions still get a cache when long-lived ones have filled it.
+ *
+ * @since 10.2
+ */
+public class WTinyLFUCachingMapper extends SoftRefCachingMapper {
+
+    public static final String MAX_BYTES_PROP = "maxBytes";
+
+    public static final String WINDOW_PERCENT_PROP = "windowPercent";
+
+    public static final String DEFAULT_MAX_BYTES = "10485760";
+
+    public static final String DEFAULT_WINDOW_PERCENT = "1";
+
+    protected static final String CACHE_NAME = "wtinylfu";
+
+    /** The budget shared by the caches of each repository. */
+    protected static final Map<String, Budget> BUDGETS = new ConcurrentHashMap<>();
+
+    @Override
+    protected void setMetrics(String repositoryName) {
+        cacheHitCount = registry.counter(
+                MetricRegistry.name("nuxeo", "repositories", repositoryName, "caches", CACHE_NAME, "hits"));
+        cacheGetTimer = registry.timer(
+                MetricRegistry.name("nuxeo", "repositories", repositoryName, "caches", CACHE_NAME, "get"));
+        sorRows = registry.counter(
+                MetricRegistry.name("nuxeo", "repositories", repositoryName, "caches", CACHE_NAME, "sor", "rows"));
+        sorGetTimer = registry.timer(
+                MetricRegistry.name("nuxeo", "repositories", repositoryName, "caches", CACHE_NAME, "sor", "get"));
+    }
+
+    @Override
+    protected Map<RowId, Row> newCache(String repositoryName, Map<String, String> properties) {
+        long maxBytes = Long.parseLong(properties.getOrDefault(MAX_BYTES_PROP, DEFAULT_MAX_BYTES).trim());
+        int windowPercent = Integer.parseInt(
+                properties.getOrDefault(WINDOW_PERCENT_PROP, DEFAULT_WINDOW_PERCENT).trim());
+        String metricsPrefix = MetricRegistry.name("nuxeo", "repositories", repositoryName, "caches", CACHE_NAME);
+        // a new budget is needed if the repository was reconfigured
+        Budget budget = BUDGETS.compute(repositoryName,
+                (k, b) -> b != null && b.getMaximumWeight() == maxBytes ? b : new Budget(maxBytes));
+        return new WTinyLFURowCache(budget, windowPercent, metricsPrefix);
+    }
+
+}
@@ -0,0 +1,651 @@
+/*
+ * (C) Copyright 2018 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.ecm.core.storage.sql;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.nuxeo.runtime.metrics.MetricsService;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+
+/**
+ * A cache of {@link Row}s bounded by their estimated size in bytes, using the W-TinyLFU admission and eviction policy.
+ * <p>
+ * New rows enter a small LRU window. Rows leaving the window are candidates for the main space, a segmented LRU made
+ * of a probation and a protected segment. When the cache is full, a candidate is only admitted if its estimated access
+ * frequency is higher than the one of the probation victim it would replace, so that rows read once (for instance
+ * during a bulk traversal) don't evict the rows that are read over and over. Frequencies are estimated by a count-min
+ * sketch of 4-bit counters, which are periodically halved so that old accesses are forgotten.
+ * <p>
+ * Several caches may share a {@link Budget}, which bounds their total size and holds the frequency sketch, so that the
+ * memory used by the caches of all the sessions of a repository is bounded. Each non-empty cache is guaranteed an equal
+ * share of the budget: when the budget is exceeded, a cache evicts its own rows, but only while it holds more than its
+ * share. A new cache therefore keeps the rows it adds even when older caches have used up the budget, and the older
+ * caches give the space back on their next writes.
+ * <p>
+ * Hits, misses, evictions and estimated bytes are published as metrics for each table.
+ * <p>
+ * This class is not thread-safe, like the mappers using it. The {@link Budget} is thread-safe.
+ *
+ * @since 10.2
+ */
+public class WTinyLFURowCache extends AbstractMap<RowId, Row> {
+
+    /** Average row size used to size the frequency sketch. */
+    protected static final int AVERAGE_ROW_SIZE = 512;
+
+    /** Percentage of the main space used by the protected segment. */
+    protected static final int PROTECTED_PERCENT = 80;
+
+    protected static final int WINDOW = 0;
+
+    protected static final int PROBATION = 1;
+
+    protected static final int PROTECTED = 2;
+
+    protected final MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+
+    protected final String metricsPrefix;
+
+    protected final Budget budget;
+
+    protected final long maximumWeight;
+
+    protected final long maximumWindowWeight;
+
+    protected final long maximumProtectedWeight;
+
+    protected final Map<RowId, Node> data = new HashMap<>();
+
+    protected final AccessOrderDeque window = new AccessOrderDeque();
+
+    protected final AccessOrderDeque probation = new AccessOrderDeque();
+
+    protected final AccessOrderDeque protectedDeque = new AccessOrderDeque();
+
+    protected final Map<String, TableStats> tableStats = new HashMap<>();
+
+    /**
+     * Constructs a cache with its own budget.
+     *
+     * @param maximumWeight the maximum estimated size of the cached rows, in bytes
+     * @param windowPercent the percentage of the size dedicated to the admission window
+     * @param metricsPrefix the prefix of the metrics names
+     */
+    public WTinyLFURowCache(long maximumWeight, int windowPercent, String metricsPrefix) {
+        this(new Budget(maximumWeight), windowPercent, metricsPrefix);
+    }
+
+    /**
+     * Constructs a cache using a budget that may be shared with other caches.
+     *
+     * @param budget the budget bounding the estimated size of the rows of all the caches sharing it
+     * @param windowPercent the percentage of the size dedicated to the admission window
+     * @param metricsPrefix the prefix of the metrics names
+     */
+    public WTinyLFURowCache(Budget budget, int windowPercent, String metricsPrefix) {
+        if (windowPercent < 0 || windowPercent > 100) {
+            throw new IllegalArgumentException("Invalid window percentage: " + windowPercent);
+        }
+        this.budget = budget;
+        maximumWeight = budget.maximumWeight;
+        maximumWindowWeight = maximumWeight * windowPercent / 100;
+        maximumProtectedWeight = (maximumWeight - maximumWindowWeight) * PROTECTED_PERCENT / 100;
+        this.metricsPrefix = metricsPrefix;
+    }
+
+    /**
+     * Gets the estimated size of the rows of this cache, in bytes.
+     */
+    public long weight() {
+        return window.weight + probation.weight + protectedDeque.weight;
+    }
+
+    /**
+     * Gets the budget of this cache.
+     */
+    public Budget getBudget() {
+        return budget;
+    }
+
+    @Override
+    public int size() {
+        return data.size();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return data.containsKey(key);
+    }
+
+    @Override
+    public Row get(Object key) {
+        if (!(key instanceof RowId)) {
+            return null;
+        }
+        RowId rowId = (RowId) key;
+        Node node = data.get(rowId);
+        budget.increment(rowId.hashCode());
+        TableStats stats = getTableStats(rowId.tableName);
+        if (node == null) {
+            stats.misses.inc();
+            return null;
+        }
+        stats.hits.inc();
+        onAccess(node);
+        return node.value;
+    }
+
+    @Override
+    public Row put(RowId key, Row value) {
+        long weight = estimateSize(key, value);
+        Node node = data.get(key);
+        Row old = node == null ? null : node.value;
+        if (weight > maximumWeight) {
+            // would evict everything else, don't cache it
+            if (node != null) {
+                removeNode(node);
+            }
+            return old;
+        }
+        TableStats stats = getTableStats(key.tableName);
+        if (node == null) {
+            if (data.isEmpty()) {
+                budget.caches.incrementAndGet();
+            }
+            node = new Node(key, value, weight, stats);
+            data.put(key, node);
+            window.addLast(node);
+            stats.bytes.inc(weight);
+            budget.weight.addAndGet(weight);
+        } else {
+            node.value = value;
+            getDeque(node).weight += weight - node.weight;
+            stats.bytes.inc(weight - node.weight);
+            budget.weight.addAndGet(weight - node.weight);
+            node.weight = weight;
+            onAccess(node);
+        }
+        budget.increment(key.hashCode());
+        evict();
+        return old;
+    }
+
+    @Override
+    public Row remove(Object key) {
+        Node node = data.get(key);
+        if (node == null) {
+            return null;
+        }
+        removeNode(node);
+        return node.value;
+    }
+
+    @Override
+    public void clear() {
+        if (!data.isEmpty()) {
+            budget.caches.decrementAndGet();
+        }
+        for (Node node : data.values()) {
+            node.stats.bytes.dec(node.weight);
+        }
+        budget.weight.addAndGet(-weight());
+        data.clear();
+        window.clear();
+        probation.clear();
+        protectedDeque.clear();
+    }
+
+    @Override
+    public Set<Entry<RowId, Row>> entrySet() {
+        // snapshot, iterating must not change the access order
+        Set<Entry<RowId, Row>> entries = new LinkedHashSet<>();
+        for (Node node : data.values()) {
+            entries.add(new SimpleImmutableEntry<>(node.key, node.value));
+        }
+        return Collections.unmodifiableSet(entries);
+    }
+
+    protected TableStats getTableStats(String tableName) {
+        return tableStats.computeIfAbsent(tableName, TableStats::new);
+    }
+
+    protected AccessOrderDeque getDeque(Node node) {
+        switch (node.queue) {
+        case WINDOW:
+            return window;
+        case PROBATION:
+            return probation;
+        default:
+            return protectedDeque;
+        }
+    }
+
+    protected void onAccess(Node node) {
+        switch (node.queue) {
+        case WINDOW:
+            window.moveToLast(node);
+            break;
+        case PROBATION:
+            // promote, and demote the least recently used protected rows if needed
+            probation.remove(node);
+            node.queue = PROTECTED;
+            protectedDeque.addLast(node);
+            while (protectedDeque.weight > maximumProtectedWeight && protectedDeque.head != node) {
+                Node demoted = protectedDeque.head;
+                protectedDeque.remove(demoted);
+                demoted.queue = PROBATION;
+                probation.addLast(demoted);
+            }
+            break;
+        default:
+            protectedDeque.moveToLast(node);
+        }
+    }
+
+    /**
+     * Moves the rows overflowing the window to the probation segment, then evicts rows until the caches sharing the
+     * budget fit in its maximum size, or this cache is within its share of the budget. While there are candidates
+     * coming from the window, each of them is compared to the least recently used row of the probation segment, and the
+     * least frequently used of the two is evicted.
+     */
+    protected void evict() {
+        Node candidate = null;
+        while (window.weight > maximumWindowWeight && window.head != null) {
+            Node node = window.head;
+            window.remove(node);
+            node.queue = PROBATION;
+            probation.addLast(node);
+            if (candidate == null) {
+                candidate = node;
+            }
+        }
+        while (budget.isExceeded() && weight() > budget.share() && !data.isEmpty()) {
+            Node victim = probation.head;
+            if (candidate != null && victim != null && victim != candidate) {
+                if (admit(candidate, victim)) {
+                    candidate = candidate.next;
+                    evictNode(victim);
+                } else {
+                    Node next = candidate.next;
+                    evictNode(candidate);
+                    candidate = next;
+                }
+            } else {
+                // no more admission decision to make, plain LRU
+                Node node = victim != null ? victim : protectedDeque.head != null ? protectedDeque.head : window.head;
+                if (node == candidate) {
+                    candidate = node.next;
+                }
+                evictNode(node);
+            }
+        }
+    }
+
+    protected boolean admit(Node candidate, Node victim) {
+        return budget.frequency(candidate.key.hashCode()) > budget.frequency(victim.key.hashCode());
+    }
+
+    protected void evictNode(Node node) {
+        node.stats.evictions.inc();
+        removeNode(node);
+    }
+
+    protected void removeNode(Node node) {
+        data.remove(node.key);
+        getDeque(node).remove(node);
+        node.stats.bytes.dec(node.weight);
+        budget.weight.addAndGet(-node.weight);
+        if (data.isEmpty()) {
+            budget.caches.decrementAndGet();
+        }
+    }
+
+    /**
+     * Estimates the memory used by a cache entry, in bytes.
+     * <p>
+     * The estimate assumes a 64-bit JVM with compressed references, and is only meant to be accurate enough to bound the
+     * cache memory.
+     */
+    protected static long estimateSize(RowId key, Row row) {
+        // map entry, node and key
+        long size = 32 + 48 + 24 + estimateValueSize(key.id);
+        // row header: tableName, id, keys, values, size
+        size += 32;
+        if (row.id != key.id) {
+            size += estimateValueSize(row.id);
+        }
+        if (row.keys != null) {
+            // key strings are shared with the model
+            size += estimateArraySize(row.keys.length);
+        }
+        if (row.values != null) {
+            size += estimateValueSize(row.values);
+        }
+        return size;
+    }
+
+    protected static long estimateArraySize(int length) {
+        return align(16 + 4L * length);
+    }
+
+    protected static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+
+    protected static long estimateValueSize(Object value) {
+        if (value == null) {
+            return 0;
+        } else if (value instanceof String) {
+            // String object and its char array
+            return 24 + align(16 + 2L * ((String) value).length());
+        } else if (value instanceof Long || value instanceof Double || value instanceof Integer
+                || value instanceof Boolean) {
+            return 16;
+        } else if (value instanceof Calendar) {
+            // GregorianCalendar with its fields arrays and time zone reference
+            return 448;
+        } else if (value instanceof Date) {
+            return 24;
+        } else if (value instanceof ACLRow) {
+            ACLRow acl = (ACLRow) value;
+            return 48 + estimateValueSize(acl.name) + estimateValueSize(acl.permission)
+                    + estimateValueSize(acl.user) + estimateValueSize(acl.group) + estimateValueSize(acl.begin)
+                    + estimateValueSize(acl.end) + estimateValueSize(acl.creator) + estimateValueSize(acl.status);
+        } else if (value instanceof Object[]) {
+            Object[] array = (Object[]) value;
+            long size = estimateArraySize(array.length);
+            for (Object v : array) {
+                size += estimateValueSize(v);
+            }
+            return size;
+        } else if (value instanceof long[]) {
+            return align(16 + 8L * ((long[]) value).length);
+        } else if (value instanceof Serializable) {
+            // unknown value type
+            return 64;
+        } else {
+            return 16;
+        }
+    }
+
+    /**
+     * The maximum estimated size of the rows of a set of caches, and the frequency sketch they share.
+     * <p>
+     * Frequencies are shared because the rows read often by a session are likely to be read often by the others.
+     * <p>
+     * The size is split in equal shares between the non-empty caches. As a cache under its share doesn't evict to make
+     * room, the total may exceed the maximum until the caches over their share write again.
+     */
+    public static class Budget {
+
+        protected final long maximumWeight;
+
+        protected final AtomicLong weight = new AtomicLong();
+
+        /** The number of non-empty caches. */
+        protected final AtomicInteger caches = new AtomicInteger();
+
+        protected final FrequencySketch sketch;
+
+        /**
+         * Constructs a budget.
+         *
+         * @param maximumWeight the maximum estimated size of the cached rows, in bytes
+         */
+        public Budget(long maximumWeight) {
+            if (maximumWeight <= 0) {
+                throw new IllegalArgumentException("Invalid maximum size: " + maximumWeight);
+            }
+            this.maximumWeight = maximumWeight;
+            sketch = new FrequencySketch((int) Math.min(maximumWeight / AVERAGE_ROW_SIZE, 1 << 24));
+        }
+
+        public long getMaximumWeight() {
+            return maximumWeight;
+        }
+
+        /**
+         * Gets the estimated size of the rows of all the caches using this budget, in bytes.
+         */
+        public long weight() {
+            return weight.get();
+        }
+
+        protected boolean isExceeded() {
+            return weight.get() > maximumWeight;
+        }
+
+        /**
+         * Gets the estimated size guaranteed to each non-empty cache, in bytes.
+         */
+        protected long share() {
+            return maximumWeight / Math.max(1, caches.get());
+        }
+
+        protected int frequency(int hashCode) {
+            synchronized (sketch) {
+                return sketch.frequency(hashCode);
+            }
+        }
+
+        protected void increment(int hashCode) {
+            synchronized (sketch) {
+                sketch.increment(hashCode);
+            }
+        }
+    }
+
+    /**
+     * Metrics for the rows of a table.
+     */
+    protected class TableStats {
+
+        protected final Counter hits;
+
+        protected final Counter misses;
+
+        protected final Counter evictions;
+
+        protected final Counter bytes;
+
+        protected TableStats(String tableName) {
+            hits = registry.counter(MetricRegistry.name(metricsPrefix, "tables", tableName, "hits"));
+            misses = registry.counter(MetricRegistry.name(metricsPrefix, "tables", tableName, "misses"));
+            evictions = registry.counter(MetricRegistry.name(metricsPrefix, "tables", tableName, "evictions"));
+            bytes = registry.counter(MetricRegistry.name(metricsPrefix, "tables", tableName, "bytes"));
+        }
+    }
+
+    protected static final class Node {
+
+        protected final RowId key;
+
+        protected final TableStats stats;
+
+        protected Row value;
+
+        protected long weight;
+
+        protected int queue;
+
+        protected Node prev;
+
+        protected Node next;
+
+        protected Node(RowId key, Row value, long weight, TableStats stats) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.stats = stats;
+            queue = WINDOW;
+        }
+    }
+
+    /**
+     * Doubly-linked list of nodes, from least to most recently used, with their total weight.
+     */
+    protected static final class AccessOrderDeque {
+
+        protected Node head;
+
+        protected Node tail;
+
+        protected long weight;
+
+        protected void addLast(Node node) {
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+            weight += node.weight;
+        }
+
+        protected void remove(Node node) {
+            if (node.prev == null) {
+                head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+            weight -= node.weight;
+        }
+
+        protected void moveToLast(Node node) {
+            if (node != tail) {
+                remove(node);
+                addLast(node);
+            }
+        }
+
+        protected void clear() {
+            head = null;
+            tail = null;
+            weight = 0;
+        }
+    }
+
+    /**
+     * Count-min sketch of 4-bit counters estimating the access frequency of keys, from their hash code.
+     * <p>
+     * Each {@code long} of the table holds 16 counters. A key uses 4 counters, in 4 different longs, and its frequency is
+     * the minimum of them. When the number of increments reaches the sample size, all the counters are halved.
+     * <p>
+     * Callers synchronize on the sketch.
+     */
+    protected static final class FrequencySketch {
+
+        protected static final long[] SEEDS = { 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL,
+                0xcbf29ce484222325L };
+
+        protected static final long RESET_MASK = 0x7777777777777777L;
+
+        protected final long[] table;
+
+        protected final int tableMask;
+
+        protected final int sampleSize;
+
+        protected int additions;
+
+        protected FrequencySketch(int capacity) {
+            int length = Integer.highestOneBit(Math.max(capacity, 16) - 1) << 1;
+            table = new long[length];
+            tableMask = length - 1;
+            sampleSize = 10 * length;
+        }
+
+        protected int frequency(int hashCode) {
+            int hash = spread(hashCode);
+            int start = (hash & 3) << 2;
+            int frequency = Integer.MAX_VALUE;
+            for (int i = 0; i < 4; i++) {
+                int index = indexOf(hash, i);
+                int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+                frequency = Math.min(frequency, count);
+            }
+            return frequency;
+        }
+
+        protected void increment(int hashCode) {
+            int hash = spread(hashCode);
+            int start = (hash & 3) << 2;
+            boolean added = false;
+            for (int i = 0; i < 4; i++) {
+                added |= incrementAt(indexOf(hash, i), start + i);
+            }
+            if (added && ++additions == sampleSize) {
+                reset();
+            }
+        }
+
+        protected boolean incrementAt(int index, int counter) {
+            int offset = counter << 2;
+            long mask = 0xfL << offset;
+            if ((table[index] & mask) != mask) {
+                table[index] += 1L << offset;
+                return true;
+            }
+            return false;
+        }
+
+        /** Halves all the counters, to age the frequencies. */
+        protected void reset() {
+            for (int i = 0; i < table.length; i++) {
+                table[i] = (table[i] >>> 1) & RESET_MASK;
+            }
+            additions >>>= 1;
+        }
+
+        protected int indexOf(int hash, int i) {
+            long h = (hash + SEEDS[i]) * SEEDS[i];
+            h += h >>> 32;
+            return ((int) h) & tableMask;
+        }
+
+        protected static int spread(int x) {
+            x = ((x >>> 16) ^ x) * 0x45d9f3b;
+            x = ((x >>> 16) ^ x) * 0x45d9f3b;
+            return (x >>> 16) ^ x;
+        }
+    }
+
+}
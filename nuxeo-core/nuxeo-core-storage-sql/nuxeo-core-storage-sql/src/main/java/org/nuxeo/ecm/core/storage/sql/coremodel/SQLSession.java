@@ -382,7 +382,8 @@ public class SQLSession implements Session {
         PartialList<Serializable> pl = session.query(query, queryType, queryFilter, countUpTo);
 
         // get Documents in bulk, returns a newly-allocated ArrayList
-        List<Document> list = getDocumentsById(pl);
+        String[] prefetchSchemas = queryFilter.getPrefetchSchemas();
+        List<Document> list = getDocumentsById(pl, prefetchSchemas == null ? null : Arrays.asList(prefetchSchemas));
 
         // order / limit
         if (orderByPath != null) {
@@ -486,8 +487,18 @@ public class SQLSession implements Session {
 
     // called by SQLQueryResult iterator
     protected List<Document> getDocumentsById(List<Serializable> ids) {
+        return getDocumentsById(ids, null);
+    }
+
+    /**
+     * Gets documents, prefetching in bulk the given schemas.
+     *
+     * @since 10.2
+     */
+    protected List<Document> getDocumentsById(List<Serializable> ids, Collection<String> prefetchSchemas) {
         List<Document> docs = new ArrayList<>(ids.size());
-        List<Node> nodes = session.getNodesByIds(ids);
+        List<Node> nodes = prefetchSchemas == null ? session.getNodesByIds(ids)
+                : session.getNodesByIds(ids, prefetchSchemas);
         for (int index = 0; index < ids.size(); ++index) {
             Node eachNode = nodes.get(index);
             if (eachNode == null) {
@@ -129,45 +129,7 @@ public class ACLCollectionIO implements CollectionIO {
                 int n = 0;
                 for (Column column : columns) {
                     n++;
-                    String key = column.getKey();
-                    Serializable v;
-                    switch (key) {
-                    case Model.MAIN_KEY:
-                        v = id;
-                        break;
-                    case Model.ACL_POS_KEY:
-                        v = (long) acl.pos;
-                        break;
-                    case Model.ACL_NAME_KEY:
-                        v = acl.name;
-                        break;
-                    case Model.ACL_GRANT_KEY:
-                        v = acl.grant;
-                        break;
-                    case Model.ACL_PERMISSION_KEY:
-                        v = acl.permission;
-                        break;
-                    case Model.ACL_CREATOR_KEY:
-                        v = acl.creator;
-                        break;
-                    case Model.ACL_BEGIN_KEY:
-                        v = acl.begin;
-                        break;
-                    case Model.ACL_END_KEY:
-                        v = acl.end;
-                        break;
-                    case Model.ACL_STATUS_KEY:
-                        v = acl.status;
-                        break;
-                    case Model.ACL_USER_KEY:
-                        v = acl.user;
-                        break;
-                    case Model.ACL_GROUP_KEY:
-                        v = acl.group;
-                        break;
-                    default:
-                        throw new RuntimeException(key);
-                    }
+                    Serializable v = getValue(column.getKey(), id, acl);
                     column.setToPreparedStatement(ps, n, v);
                     if (debugValues != null) {
                         debugValues.add(v);
@@ -192,4 +154,63 @@ public class ACLCollectionIO implements CollectionIO {
         }
     }
 
+    @Override
+    public List<Serializable[]> getInsertValues(List<RowUpdate> rowus, List<Column> columns) {
+        List<Serializable[]> values = new ArrayList<>();
+        for (RowUpdate rowu : rowus) {
+            int start;
+            if (rowu.pos == -1 || insertAll) {
+                start = 0;
+            } else {
+                start = rowu.pos;
+            }
+            Serializable id = rowu.row.id;
+            Serializable[] array = rowu.row.values;
+            for (int i = start; i < array.length; i++) {
+                ACLRow acl = (ACLRow) array[i];
+                Serializable[] vals = new Serializable[columns.size()];
+                int n = 0;
+                for (Column column : columns) {
+                    vals[n++] = getValue(column.getKey(), id, acl);
+                }
+                values.add(vals);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Gets the value of a column for an ACL.
+     *
+     * @since 10.2
+     */
+    protected Serializable getValue(String key, Serializable id, ACLRow acl) {
+        switch (key) {
+        case Model.MAIN_KEY:
+            return id;
+        case Model.ACL_POS_KEY:
+            return (long) acl.pos;
+        case Model.ACL_NAME_KEY:
+            return acl.name;
+        case Model.ACL_GRANT_KEY:
+            return acl.grant;
+        case Model.ACL_PERMISSION_KEY:
+            return acl.permission;
+        case Model.ACL_CREATOR_KEY:
+            return acl.creator;
+        case Model.ACL_BEGIN_KEY:
+            return acl.begin;
+        case Model.ACL_END_KEY:
+            return acl.end;
+        case Model.ACL_STATUS_KEY:
+            return acl.status;
+        case Model.ACL_USER_KEY:
+            return acl.user;
+        case Model.ACL_GROUP_KEY:
+            return acl.group;
+        default:
+            throw new RuntimeException(key);
+        }
+    }
+
 }
@@ -47,4 +47,12 @@ public interface CollectionIO {
     void executeInserts(PreparedStatement ps, List<RowUpdate> rowus, List<Column> columns, boolean supportsBatchUpdates,
             String sql, JDBCConnection connection) throws SQLException;
 
+    /**
+     * Gets the values to insert for the given fragments, as one array per inserted row holding the values of the
+     * columns.
+     *
+     * @since 10.2
+     */
+    List<Serializable[]> getInsertValues(List<RowUpdate> rowus, List<Column> columns);
+
 }
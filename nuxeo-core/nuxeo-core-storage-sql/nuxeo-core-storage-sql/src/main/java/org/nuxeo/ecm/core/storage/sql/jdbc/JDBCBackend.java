@@ -28,6 +28,8 @@ import javax.sql.DataSource;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.nuxeo.ecm.core.api.NuxeoException;
+import org.nuxeo.ecm.core.schema.SchemaManager;
+import org.nuxeo.ecm.core.schema.SchemaManagerImpl;
 import org.nuxeo.ecm.core.storage.FulltextDescriptor;
 import org.nuxeo.ecm.core.storage.sql.ClusterInvalidator;
 import org.nuxeo.ecm.core.storage.sql.Mapper;
@@ -39,6 +41,7 @@ import org.nuxeo.ecm.core.storage.sql.RepositoryDescriptor;
 import org.nuxeo.ecm.core.storage.sql.RepositoryImpl;
 import org.nuxeo.ecm.core.storage.sql.Session.PathResolver;
 import org.nuxeo.ecm.core.storage.sql.jdbc.dialect.Dialect;
+import org.nuxeo.runtime.api.Framework;
 import org.nuxeo.runtime.datasource.ConnectionHelper;
 import org.nuxeo.runtime.datasource.DataSourceHelper;
 import org.nuxeo.runtime.datasource.PooledDataSourceRegistry.PooledDataSource;
@@ -60,6 +63,10 @@ public class JDBCBackend implements RepositoryBackend {
 
     private boolean isPooledDataSource;
 
+    private QueryPlanCache queryPlanCache;
+
+    private Runnable schemaRecomputeCallback;
+
     @Override
     public Model initialize(RepositoryImpl repository) {
         this.repository = repository;
@@ -105,6 +112,19 @@ public class JDBCBackend implements RepositoryBackend {
         model = new Model(modelSetup);
         sqlInfo = new SQLInfo(model, dialect);
 
+        // query plan cache, depending on the model
+        long queryPlanCacheSize = Long.parseLong(
+                Framework.getProperty(QueryPlanCache.SIZE_PROP, QueryPlanCache.DEFAULT_SIZE));
+        if (queryPlanCacheSize > 0) {
+            queryPlanCache = new QueryPlanCache(repositoryDescriptor.name, dialect, queryPlanCacheSize);
+            // invalidate when the schemas are hot-reloaded
+            SchemaManagerImpl schemaManager = getSchemaManager();
+            if (schemaManager != null) {
+                schemaRecomputeCallback = queryPlanCache::invalidateAll;
+                schemaManager.registerRecomputeCallback(schemaRecomputeCallback);
+            }
+        }
+
         // DDL mode
         String ddlMode = repositoryDescriptor.getDDLMode();
         if (ddlMode == null) {
@@ -142,7 +162,7 @@ public class JDBCBackend implements RepositoryBackend {
     public Mapper newMapper(PathResolver pathResolver, boolean useInvalidations) {
         boolean noSharing = !useInvalidations;
         ClusterInvalidator cnh = useInvalidations ? clusterInvalidator : null;
-        Mapper mapper = new JDBCMapper(model, pathResolver, sqlInfo, cnh, repository);
+        Mapper mapper = new JDBCMapper(model, pathResolver, sqlInfo, cnh, repository, queryPlanCache);
         if (isPooledDataSource) {
             mapper = JDBCMapperConnector.newConnector(mapper, noSharing);
         } else {
@@ -156,6 +176,17 @@ public class JDBCBackend implements RepositoryBackend {
         if (clusterInvalidator != null) {
             clusterInvalidator.close();
         }
+        if (schemaRecomputeCallback != null) {
+            SchemaManagerImpl schemaManager = getSchemaManager();
+            if (schemaManager != null) {
+                schemaManager.unregisterRecomputeCallback(schemaRecomputeCallback);
+            }
+            schemaRecomputeCallback = null;
+        }
+    }
+
+    protected static SchemaManagerImpl getSchemaManager() {
+        return (SchemaManagerImpl) Framework.getService(SchemaManager.class);
     }
 
 }
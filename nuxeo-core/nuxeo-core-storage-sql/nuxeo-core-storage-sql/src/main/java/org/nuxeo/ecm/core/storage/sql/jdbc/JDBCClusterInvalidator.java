@@ -31,6 +31,11 @@ import org.nuxeo.ecm.core.storage.sql.Invalidations;
 import org.nuxeo.ecm.core.storage.sql.Mapper;
 import org.nuxeo.ecm.core.storage.sql.RepositoryDescriptor;
 import org.nuxeo.ecm.core.storage.sql.RepositoryImpl;
+import org.nuxeo.runtime.metrics.MetricsService;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.codahale.metrics.Timer;
 
 /**
  * Implementation of {@link ClusterInvalidator} that uses the JDBC Mapper to read/write invalidations.
@@ -50,10 +55,21 @@ public class JDBCClusterInvalidator implements ClusterInvalidator {
     // modified only under clusterMapper synchronization
     private long clusterNodeLastInvalidationTimeMillis;
 
+    /** @since 10.2 */
+    protected Timer sendTimer;
+
+    /** @since 10.2 */
+    protected Timer receiveTimer;
+
     @Override
     public void initialize(String nodeId, RepositoryImpl repository) {
         RepositoryDescriptor repositoryDescriptor = repository.getRepositoryDescriptor();
         clusteringDelay = repositoryDescriptor.getClusteringDelay();
+        MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+        String prefix = MetricRegistry.name("nuxeo", "repositories", repository.getName(), "cluster-invalidations",
+                "jdbc");
+        sendTimer = registry.timer(MetricRegistry.name(prefix, "send"));
+        receiveTimer = registry.timer(MetricRegistry.name(prefix, "receive"));
         processClusterInvalidationsNext();
         // create mapper
         mapper = repository.newMapper(null, false);
@@ -100,7 +116,10 @@ public class JDBCClusterInvalidator implements ClusterInvalidator {
                 log.trace("Not fetching invalidations, remaining time: " + remaining + "ms");
                 return null;
             }
-            Invalidations invalidations = mapper.getClusterInvalidations(nodeId);
+            Invalidations invalidations;
+            try (Timer.Context context = receiveTimer.time()) {
+                invalidations = mapper.getClusterInvalidations(nodeId);
+            }
             clusterNodeLastInvalidationTimeMillis = System.currentTimeMillis();
             return invalidations;
         }
@@ -112,7 +131,9 @@ public class JDBCClusterInvalidator implements ClusterInvalidator {
             return;
         }
         synchronized (mapper) {
-            mapper.insertClusterInvalidations(nodeId, invalidations);
+            try (Timer.Context context = sendTimer.time()) {
+                mapper.insertClusterInvalidations(nodeId, invalidations);
+            }
         }
     }
 
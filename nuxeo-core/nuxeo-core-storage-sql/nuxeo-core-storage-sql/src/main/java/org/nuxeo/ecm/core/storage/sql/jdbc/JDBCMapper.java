@@ -27,6 +27,7 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.sql.Array;
@@ -39,6 +40,7 @@ import java.sql.Statement;
 import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
@@ -69,6 +71,16 @@ import org.nuxeo.ecm.core.api.ScrollResultImpl;
 import org.nuxeo.ecm.core.blob.DocumentBlobManager;
 import org.nuxeo.ecm.core.model.LockManager;
 import org.nuxeo.ecm.core.query.QueryFilter;
+import org.nuxeo.ecm.core.query.sql.NXQL;
+import org.nuxeo.ecm.core.query.sql.model.Expression;
+import org.nuxeo.ecm.core.query.sql.model.Operator;
+import org.nuxeo.ecm.core.query.sql.model.OrderByClause;
+import org.nuxeo.ecm.core.query.sql.model.OrderByExpr;
+import org.nuxeo.ecm.core.query.sql.model.OrderByList;
+import org.nuxeo.ecm.core.query.sql.model.Reference;
+import org.nuxeo.ecm.core.query.sql.model.SQLQuery;
+import org.nuxeo.ecm.core.query.sql.model.SelectClause;
+import org.nuxeo.ecm.core.query.sql.model.StringLiteral;
 import org.nuxeo.ecm.core.storage.sql.ClusterInvalidator;
 import org.nuxeo.ecm.core.storage.sql.ColumnType;
 import org.nuxeo.ecm.core.storage.sql.ColumnType.WrappedId;
@@ -123,10 +135,18 @@ public class JDBCMapper extends JDBCRowMapper implements Mapper {
 
     private final RepositoryImpl repository;
 
+    protected final QueryPlanCache queryPlanCache;
+
     protected boolean clusteringEnabled;
 
     protected static final String NOSCROLL_ID = "noscroll";
 
+    /** @since 10.2 */
+    protected static final String KEYSET_SCROLL_PREFIX = "keyset:";
+
+    /** @since 10.2 */
+    protected final boolean keysetScroll;
+
     /**
      * Creates a new Mapper.
      *
@@ -138,10 +158,28 @@ public class JDBCMapper extends JDBCRowMapper implements Mapper {
      */
     public JDBCMapper(Model model, PathResolver pathResolver, SQLInfo sqlInfo, ClusterInvalidator clusterInvalidator,
             RepositoryImpl repository) {
+        this(model, pathResolver, sqlInfo, clusterInvalidator, repository, null);
+    }
+
+    /**
+     * Creates a new Mapper.
+     *
+     * @param model the model
+     * @param pathResolver the path resolver (used for startswith queries)
+     * @param sqlInfo the sql info
+     * @param clusterInvalidator the cluster invalidator
+     * @param repository the repository
+     * @param queryPlanCache the query plan cache, or {@code null}
+     * @since 10.2
+     */
+    public JDBCMapper(Model model, PathResolver pathResolver, SQLInfo sqlInfo, ClusterInvalidator clusterInvalidator,
+            RepositoryImpl repository, QueryPlanCache queryPlanCache) {
         super(model, sqlInfo, clusterInvalidator, repository.getInvalidationsPropagator());
         this.pathResolver = pathResolver;
         this.repository = repository;
+        this.queryPlanCache = queryPlanCache;
         clusteringEnabled = clusterInvalidator != null;
+        keysetScroll = model.getRepositoryDescriptor().getKeysetScrollEnabled();
         queryMakerService = Framework.getService(QueryMakerService.class);
 
         tableUpgrader = new TableUpgrader(this);
@@ -683,6 +721,20 @@ public class JDBCMapper extends JDBCRowMapper implements Mapper {
         return null;
     }
 
+    /**
+     * Builds a query, reusing a cached plan for NXQL queries if possible.
+     *
+     * @since 10.2
+     */
+    protected QueryMaker.Query buildQuery(QueryMaker queryMaker, PathResolver pathResolver, String query,
+            QueryFilter queryFilter, Object... params) {
+        if (queryPlanCache != null && queryMaker instanceof NXQLQueryMaker && (params == null || params.length == 0)) {
+            return queryPlanCache.buildQuery((NXQLQueryMaker) queryMaker, sqlInfo, model, pathResolver, query,
+                    queryFilter);
+        }
+        return queryMaker.buildQuery(sqlInfo, model, pathResolver, query, queryFilter, params);
+    }
+
     protected void prepareUserReadAcls(QueryFilter queryFilter) {
         String sql = dialect.getPrepareUserReadAclsSql();
         Serializable principals = queryFilter.getPrincipals();
@@ -775,7 +827,7 @@ public class JDBCMapper extends JDBCRowMapper implements Mapper {
         if (queryMaker == null) {
             throw new NuxeoException("No QueryMaker accepts query: " + queryType + ": " + query);
         }
-        QueryMaker.Query q = queryMaker.buildQuery(sqlInfo, model, pathResolver, query, queryFilter, params);
+        QueryMaker.Query q = buildQuery(queryMaker, pathResolver, query, queryFilter, params);
 
         if (q == null) {
             logger.log("Query cannot return anything due to conflicting clauses");
@@ -911,6 +963,9 @@ public class JDBCMapper extends JDBCRowMapper implements Mapper {
 
     @Override
     public ScrollResult<String> scroll(String query, int batchSize, int keepAliveSeconds) {
+        if (keysetScroll) {
+            return keysetScroll(query, batchSize, null);
+        }
         if (!dialect.supportsScroll()) {
             return defaultScroll(query);
         }
@@ -925,7 +980,7 @@ public class JDBCMapper extends JDBCRowMapper implements Mapper {
     protected ScrollResult<String> scrollSearch(String query, int batchSize, int keepAliveSeconds) {
         QueryMaker queryMaker = findQueryMaker("NXQL");
         QueryFilter queryFilter = new QueryFilter(null, null, null, null, Collections.emptyList(), 0, 0);
-        QueryMaker.Query q = queryMaker.buildQuery(sqlInfo, model, pathResolver, query, queryFilter);
+        QueryMaker.Query q = buildQuery(queryMaker, pathResolver, query, queryFilter);
         if (q == null) {
             logger.log("Query cannot return anything due to conflicting clauses");
             throw new NuxeoException("Query cannot return anything due to conflicting clauses");
@@ -1034,8 +1089,117 @@ public class JDBCMapper extends JDBCRowMapper implements Mapper {
         return new ScrollResultImpl<>(NOSCROLL_ID, ids);
     }
 
+    /**
+     * Returns the next batch of a scroll done by keyset pagination.
+     * <p>
+     * Instead of keeping a cursor open between batches, each batch is a separate query ordered by document id and
+     * restricted to the ids following the last one returned. The scroll id holds the query, the batch size and the last
+     * id, so the next batch can be fetched on any node or connection, inside or outside a transaction, and there is
+     * nothing to clean up if the scroll is abandoned.
+     *
+     * @param query the NXQL query
+     * @param batchSize the batch size
+     * @param lastId the last id returned by the previous batch, or {@code null} for the first batch
+     * @since 10.2
+     */
+    protected ScrollResult<String> keysetScroll(String query, int batchSize, String lastId) {
+        QueryFilter queryFilter = new QueryFilter(null, null, null, null, Collections.emptyList(), 0, 0);
+        SQLQuery sqlQuery = NXQLQueryMaker.transformQuery(query, queryFilter);
+        if (lastId != null) {
+            Expression after = new Expression(new Reference(NXQL.ECM_UUID), Operator.GT, new StringLiteral(lastId));
+            Expression predicate = sqlQuery.where == null ? null : sqlQuery.where.predicate;
+            sqlQuery = sqlQuery.withWhereExpression(
+                    predicate == null ? after : new Expression(predicate, Operator.AND, after));
+        }
+        SelectClause select = new SelectClause();
+        select.add(new Reference(NXQL.ECM_UUID));
+        sqlQuery = new SQLQuery(select, sqlQuery.from, sqlQuery.where, sqlQuery.groupBy, sqlQuery.having,
+                new OrderByClause(new OrderByList(new OrderByExpr(new Reference(NXQL.ECM_UUID), false))));
+        // not going through the query plan cache, as the last id is part of the query
+        NXQLQueryMaker queryMaker = (NXQLQueryMaker) findQueryMaker("NXQL");
+        QueryMaker.Query q = queryMaker.buildQuery(sqlInfo, model, pathResolver, sqlQuery, queryFilter);
+        if (q == null) {
+            logger.log("Query cannot return anything due to conflicting clauses");
+            return emptyResult();
+        }
+        String sql = q.selectInfo.sql;
+        boolean paging = dialect.supportsPaging();
+        if (paging) {
+            sql = dialect.addPagingClause(sql, batchSize, 0);
+        }
+        if (logger.isLogEnabled()) {
+            logger.logSQL(sql, q.selectParams);
+        }
+        List<String> ids = new ArrayList<>(batchSize);
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            if (!paging) {
+                ps.setMaxRows(batchSize);
+            }
+            ps.setFetchSize(batchSize);
+            int i = 1;
+            for (Serializable object : q.selectParams) {
+                setToPreparedStatement(ps, i++, object);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                countExecute();
+                Column column = q.selectInfo.whatColumns.get(0);
+                while (ids.size() < batchSize && rs.next()) {
+                    ids.add(String.valueOf(column.getFromResultSet(rs, 1)));
+                }
+            }
+        } catch (SQLException e) {
+            throw new NuxeoException("Error during scroll", e);
+        }
+        if (ids.isEmpty()) {
+            return emptyResult();
+        }
+        String scrollId = ids.size() < batchSize ? NOSCROLL_ID
+                : encodeKeysetScrollId(query, batchSize, ids.get(ids.size() - 1));
+        return new ScrollResultImpl<>(scrollId, ids);
+    }
+
+    /**
+     * Encodes the state of a keyset scroll into a scroll id.
+     *
+     * @since 10.2
+     */
+    protected static String encodeKeysetScrollId(String query, int batchSize, String lastId) {
+        String state = batchSize + "\n" + lastId + "\n" + query;
+        return KEYSET_SCROLL_PREFIX
+                + Base64.getUrlEncoder().withoutPadding().encodeToString(state.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes the state of a keyset scroll from a scroll id: the batch size, the last id and the query.
+     *
+     * @since 10.2
+     */
+    protected static String[] decodeKeysetScrollId(String scrollId) {
+        String[] state;
+        try {
+            byte[] bytes = Base64.getUrlDecoder().decode(scrollId.substring(KEYSET_SCROLL_PREFIX.length()));
+            state = new String(bytes, StandardCharsets.UTF_8).split("\n", 3);
+        } catch (IllegalArgumentException e) {
+            state = null;
+        }
+        if (state == null || state.length != 3) {
+            throw new NuxeoException("Invalid scrollId: " + scrollId);
+        }
+        return state;
+    }
+
     @Override
     public ScrollResult<String> scroll(String scrollId) {
+        if (scrollId.startsWith(KEYSET_SCROLL_PREFIX)) {
+            String[] state = decodeKeysetScrollId(scrollId);
+            int batchSize;
+            try {
+                batchSize = Integer.parseInt(state[0]);
+            } catch (NumberFormatException e) {
+                throw new NuxeoException("Invalid scrollId: " + scrollId, e);
+            }
+            return keysetScroll(state[2], batchSize, state[1]);
+        }
         if (NOSCROLL_ID.equals(scrollId) || !dialect.supportsScroll()) {
             // there is only one batch in this case
             return emptyResult();
@@ -74,6 +74,13 @@ public class JDBCRowMapper extends JDBCConnection implements RowMapper {
 
     public static final int UPDATE_BATCH_SIZE = 100; // also insert/delete
 
+    /**
+     * Maximum number of rows in a multi-row insert.
+     *
+     * @since 10.2
+     */
+    public static final int BULK_INSERT_SIZE = 1000;
+
     public static final int DEBUG_MAX_TREE = 50;
 
     /** Property to determine whether collection appends delete all then re-insert, or are optimized for append. */
@@ -93,6 +100,13 @@ public class JDBCRowMapper extends JDBCConnection implements RowMapper {
 
     private final CollectionIO scalarCollectionIO;
 
+    /**
+     * Whether multi-row inserts are used.
+     *
+     * @since 10.2
+     */
+    protected final boolean bulkInsert;
+
     public JDBCRowMapper(Model model, SQLInfo sqlInfo, ClusterInvalidator clusterInvalidator,
             InvalidationsPropagator invalidationsPropagator) {
         super(model, sqlInfo);
@@ -102,6 +116,7 @@ public class JDBCRowMapper extends JDBCConnection implements RowMapper {
         collectionDeleteBeforeAppend = configurationService.isBooleanPropertyTrue(COLLECTION_DELETE_BEFORE_APPEND_PROP);
         aclCollectionIO = new ACLCollectionIO(collectionDeleteBeforeAppend);
         scalarCollectionIO = new ScalarCollectionIO(collectionDeleteBeforeAppend);
+        bulkInsert = model.getRepositoryDescriptor().getBulkInsertEnabled() && dialect.supportsMultiRowInsert();
     }
 
     @Override
@@ -505,9 +520,22 @@ public class JDBCRowMapper extends JDBCConnection implements RowMapper {
         if (sql == null) {
             throw new NuxeoException("Unknown table: " + tableName);
         }
+        List<Column> columns = sqlInfo.getInsertColumns(tableName);
+        if (bulkInsert && rows.size() > 1 && !columns.isEmpty()) {
+            List<Serializable[]> values = new ArrayList<>(rows.size());
+            for (Row row : rows) {
+                Serializable[] vals = new Serializable[columns.size()];
+                int i = 0;
+                for (Column column : columns) {
+                    vals[i++] = row.get(column.getKey());
+                }
+                values.add(vals);
+            }
+            insertMultiRows(tableName, columns, values);
+            return;
+        }
         boolean batched = supportsBatchUpdates && rows.size() > 1;
         String loggedSql = batched ? sql + " -- BATCHED" : sql;
-        List<Column> columns = sqlInfo.getInsertColumns(tableName);
         try (PreparedStatement ps = connection.prepareStatement(sql)) {
             int batch = 0;
             for (Iterator<Row> rowIt = rows.iterator(); rowIt.hasNext();) {
@@ -554,6 +582,13 @@ public class JDBCRowMapper extends JDBCConnection implements RowMapper {
         String sql = sqlInfo.getInsertSql(tableName);
         List<Column> columns = sqlInfo.getInsertColumns(tableName);
         CollectionIO io = getCollectionIO(tableName);
+        if (bulkInsert) {
+            List<Serializable[]> values = io.getInsertValues(rowus, columns);
+            if (values.size() > 1) {
+                insertMultiRows(tableName, columns, values);
+                return;
+            }
+        }
         try (PreparedStatement ps = connection.prepareStatement(sql)) {
             io.executeInserts(ps, rowus, columns, supportsBatchUpdates, sql, this);
         } catch (SQLException e) {
@@ -562,6 +597,67 @@ public class JDBCRowMapper extends JDBCConnection implements RowMapper {
         }
     }
 
+    /**
+     * Inserts multiple rows, all for the same table, using multi-row {@code INSERT} statements.
+     * <p>
+     * The rows are inserted in chunks of identical statements, the last chunk being smaller.
+     *
+     * @param tableName the table name
+     * @param columns the insert columns
+     * @param values the values of the columns, for each row
+     * @since 10.2
+     */
+    protected void insertMultiRows(String tableName, List<Column> columns, List<Serializable[]> values) {
+        int size = values.size();
+        int chunkSize = Math.min(BULK_INSERT_SIZE, dialect.getMaximumParametersForMultiRowInsert() / columns.size());
+        chunkSize = Math.max(1, Math.min(chunkSize, size));
+        Iterator<Serializable[]> it = values.iterator();
+        String sql = null;
+        try {
+            int chunks = size / chunkSize;
+            if (chunks > 0) {
+                sql = sqlInfo.getMultiRowInsertSql(tableName, chunkSize);
+                try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                    for (int k = 0; k < chunks; k++) {
+                        executeMultiRowInsert(ps, sql, columns, it, chunkSize);
+                    }
+                }
+            }
+            int rest = size % chunkSize;
+            if (rest > 0) {
+                sql = sqlInfo.getMultiRowInsertSql(tableName, rest);
+                try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                    executeMultiRowInsert(ps, sql, columns, it, rest);
+                }
+            }
+        } catch (SQLException e) {
+            checkConcurrentUpdate(e);
+            throw new NuxeoException("Could not insert: " + sql, e);
+        }
+    }
+
+    protected void executeMultiRowInsert(PreparedStatement ps, String sql, List<Column> columns,
+            Iterator<Serializable[]> it, int rows) throws SQLException {
+        List<Serializable> debugValues = logger.isLogEnabled() ? new ArrayList<>() : null;
+        int i = 1;
+        for (int r = 0; r < rows; r++) {
+            Serializable[] vals = it.next();
+            int c = 0;
+            for (Column column : columns) {
+                Serializable v = vals[c++];
+                column.setToPreparedStatement(ps, i++, v);
+                if (debugValues != null) {
+                    debugValues.add(v);
+                }
+            }
+        }
+        if (debugValues != null) {
+            logger.logSQL(sql, debugValues);
+        }
+        ps.execute();
+        countExecute();
+    }
+
     /**
      * Updates multiple simple rows, all for the same table.
      */
@@ -277,6 +277,14 @@ public class NXQLQueryMaker implements QueryMaker {
 
     protected int fragJoinCount = 0;
 
+    /**
+     * Whether the built query only depends on the NXQL query and the model, and not on the repository content or on the
+     * state of other services. Such a query can be reused, see {@link QueryPlanCache}.
+     *
+     * @since 10.2
+     */
+    protected boolean cacheable = true;
+
     @Override
     public String getName() {
         return NXQL.NXQL;
@@ -294,6 +302,31 @@ public class NXQLQueryMaker implements QueryMaker {
     @Override
     public Query buildQuery(SQLInfo sqlInfo, Model model, PathResolver pathResolver, String query,
             QueryFilter queryFilter, Object... params) {
+        return buildQuery(sqlInfo, model, pathResolver, transformQuery(query, queryFilter), queryFilter);
+    }
+
+    /**
+     * Parses a query and transforms it according to the transformers defined by the security policies.
+     *
+     * @since 10.2
+     */
+    public static SQLQuery transformQuery(String query, QueryFilter queryFilter) {
+        SQLQuery sqlQuery = SQLQueryParser.parse(query);
+        for (SQLQuery.Transformer transformer : queryFilter.getQueryTransformers()) {
+            sqlQuery = transformer.transform(queryFilter.getPrincipal(), sqlQuery);
+        }
+        return sqlQuery;
+    }
+
+    /**
+     * Builds the query from an already parsed and transformed query.
+     * <p>
+     * The parsed query may be modified.
+     *
+     * @since 10.2
+     */
+    public Query buildQuery(SQLInfo sqlInfo, Model model, PathResolver pathResolver, SQLQuery sqlQuery,
+            QueryFilter queryFilter) {
         this.sqlInfo = sqlInfo;
         database = sqlInfo.database;
         dialect = sqlInfo.dialect;
@@ -306,13 +339,6 @@ public class NXQLQueryMaker implements QueryMaker {
             neverPerInstanceMixins.addAll(npim);
         }
 
-        // transform the query according to the transformers defined by the
-        // security policies
-        SQLQuery sqlQuery = SQLQueryParser.parse(query);
-        for (SQLQuery.Transformer transformer : queryFilter.getQueryTransformers()) {
-            sqlQuery = transformer.transform(queryFilter.getPrincipal(), sqlQuery);
-        }
-
         // SELECT * -> SELECT ecm:uuid
         SelectClause selectClause = sqlQuery.select;
         if (selectClause.isEmpty()) {
@@ -761,6 +787,15 @@ public class NXQLQueryMaker implements QueryMaker {
         return q;
     }
 
+    /**
+     * Checks if the last built query can be reused for the same NXQL query, see {@link #cacheable}.
+     *
+     * @since 10.2
+     */
+    public boolean isCacheable() {
+        return cacheable;
+    }
+
     // overridden by specialized query makers that need to tweak some joins
     protected void addJoin(int kind, String alias, Table table, String column, Table contextTable, String contextColumn,
             String name, int index, String primaryType) {
@@ -1352,6 +1387,7 @@ public class NXQLQueryMaker implements QueryMaker {
                     NXQL.ECM_FULLTEXT_JOBID.equals(name)) {
                 // ok
             } else if (NXQL.ECM_ISTRASHED.equals(name)) {
+                cacheable = false;
                 TrashService trashService = Framework.getService(TrashService.class);
                 if (trashService.hasFeature(TRASHED_STATE_IS_DEDICATED_PROPERTY)
                         || trashService.hasFeature(TRASHED_STATE_IN_MIGRATION)) {
@@ -1637,6 +1673,7 @@ public class NXQLQueryMaker implements QueryMaker {
                 throw new QueryParseException(NXQL.ECM_FULLTEXT + " must be used as left-hand operand");
             } else if (NXQL.ECM_TAG.equals(name) || name.startsWith(ECM_TAG_STAR)) {
                 // checking the migration service is a hack but we can't really do better here without refactoring
+                cacheable = false;
                 MigrationStatus status = Framework.getService(MigrationService.class).getStatus("tag-storage");
                 boolean facetedTag = "facets".equals(status.getState());
                 if (facetedTag) {
@@ -2021,6 +2058,8 @@ public class NXQLQueryMaker implements QueryMaker {
 
         protected void visitExpressionStartsWithPath(String path) {
             // find the id from the path
+            // the id depends on the repository content
+            cacheable = false;
             Serializable id = pathResolver.getIdForPath(path);
             if (id == null) {
                 // no such path, always return a false
@@ -2063,6 +2102,8 @@ public class NXQLQueryMaker implements QueryMaker {
             if (path.length() > 1 && path.endsWith(PATH_SEP)) {
                 path = path.substring(0, path.length() - PATH_SEP.length());
             }
+            // the id depends on the repository content
+            cacheable = false;
             Serializable id = pathResolver.getIdForPath(path);
             if (id == null) {
                 // no such path, always return a false
@@ -2136,6 +2177,7 @@ public class NXQLQueryMaker implements QueryMaker {
         }
 
         protected void visitExpressionIsTrashed(Expression node) {
+            cacheable = false;
             TrashService trashService = Framework.getService(TrashService.class);
             if (trashService.hasFeature(TRASHED_STATE_IS_DEDUCED_FROM_LIFECYCLE)) {
                 visitExpressionIsTrashedOnLifeCycle(node);
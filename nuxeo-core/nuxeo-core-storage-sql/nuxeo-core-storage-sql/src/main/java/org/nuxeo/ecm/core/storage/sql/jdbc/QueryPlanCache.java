@@ -0,0 +1,436 @@
+/*
+ * (C) Copyright 2018 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.ecm.core.storage.sql.jdbc;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.nuxeo.ecm.core.api.NuxeoException;
+import org.nuxeo.ecm.core.api.impl.FacetFilter;
+import org.nuxeo.ecm.core.query.QueryFilter;
+import org.nuxeo.ecm.core.query.sql.NXQL;
+import org.nuxeo.ecm.core.query.sql.model.Expression;
+import org.nuxeo.ecm.core.query.sql.model.Function;
+import org.nuxeo.ecm.core.query.sql.model.Literal;
+import org.nuxeo.ecm.core.query.sql.model.LiteralList;
+import org.nuxeo.ecm.core.query.sql.model.MultiExpression;
+import org.nuxeo.ecm.core.query.sql.model.Operand;
+import org.nuxeo.ecm.core.query.sql.model.Operator;
+import org.nuxeo.ecm.core.query.sql.model.Predicate;
+import org.nuxeo.ecm.core.query.sql.model.Reference;
+import org.nuxeo.ecm.core.query.sql.model.SQLQuery;
+import org.nuxeo.ecm.core.query.sql.model.StringLiteral;
+import org.nuxeo.ecm.core.storage.sql.ColumnType.WrappedId;
+import org.nuxeo.ecm.core.storage.sql.Model;
+import org.nuxeo.ecm.core.storage.sql.Session.PathResolver;
+import org.nuxeo.ecm.core.storage.sql.jdbc.QueryMaker.Query;
+import org.nuxeo.ecm.core.storage.sql.jdbc.SQLInfo.SQLInfoSelect;
+import org.nuxeo.ecm.core.storage.sql.jdbc.dialect.Dialect;
+import org.nuxeo.runtime.metrics.MetricsService;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Cache of the SQL generated by the {@link NXQLQueryMaker} for NXQL queries.
+ * <p>
+ * The cache is keyed by the shape of the query once transformed by the security policies: the string literals compared
+ * to non-{@code ecm:} properties are lifted out as parameters, so that queries differing only by such values share the
+ * same plan. The key also includes the facet filter and whether a security check is needed. The principals and
+ * permissions are parameters of the plan as well.
+ * <p>
+ * To find the parameter slots, the plan is built with unique markers instead of the actual values. If a marker does not
+ * end up verbatim in the parameters, the query is not cached. The queries that depend on the repository content (path
+ * resolution) or on the state of other services (trash, tags) are not cached either.
+ * <p>
+ * The cache depends on the {@link Model}, and must be invalidated when the schemas change.
+ *
+ * @since 10.2
+ */
+public class QueryPlanCache {
+
+    public static final String SIZE_PROP = "org.nuxeo.vcs.query-plan-cache.size";
+
+    public static final String DEFAULT_SIZE = "1000";
+
+    protected static final String MARKER_PREFIX = "\u0000NxqlParam";
+
+    protected static final String MARKER_SUFFIX = "\u0000";
+
+    protected static final String PRINCIPALS_MARKER = "\u0000NxqlPrincipals\u0000";
+
+    protected static final String PERMISSIONS_MARKER = "\u0000NxqlPermissions\u0000";
+
+    protected static final char MARKER_CHAR = '\u0000';
+
+    protected static final int SLOT_CONSTANT = -1;
+
+    protected static final int SLOT_PRINCIPALS = -2;
+
+    protected static final int SLOT_PERMISSIONS = -3;
+
+    /** The operators whose string literal right operand is passed as-is to the database. */
+    protected static final List<Operator> LIFTED_OPERATORS = Arrays.asList(Operator.EQ, Operator.NOTEQ, Operator.IN,
+            Operator.NOTIN, Operator.LIKE, Operator.NOTLIKE, Operator.ILIKE, Operator.NOTILIKE, Operator.LT,
+            Operator.GT, Operator.LTEQ, Operator.GTEQ, Operator.BETWEEN, Operator.NOTBETWEEN);
+
+    /** Placeholder for the queries that cannot be cached, to avoid trying again. */
+    protected static final Plan UNCACHEABLE = new Plan(null, null, null);
+
+    protected final Dialect dialect;
+
+    protected final Cache<String, Plan> cache;
+
+    protected final Counter hits;
+
+    protected final Counter misses;
+
+    /**
+     * Constructs a cache.
+     *
+     * @param repositoryName the repository name, used for metrics
+     * @param dialect the dialect
+     * @param maximumSize the maximum number of plans
+     */
+    public QueryPlanCache(String repositoryName, Dialect dialect, long maximumSize) {
+        this.dialect = dialect;
+        cache = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+        MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+        String prefix = MetricRegistry.name("nuxeo", "repositories", repositoryName, "query-plan-cache");
+        hits = registry.counter(MetricRegistry.name(prefix, "hits"));
+        misses = registry.counter(MetricRegistry.name(prefix, "misses"));
+    }
+
+    /**
+     * Builds a query, reusing a cached plan if possible.
+     *
+     * @return the query, or {@code null} if the query cannot match
+     */
+    public Query buildQuery(NXQLQueryMaker queryMaker, SQLInfo sqlInfo, Model model, PathResolver pathResolver,
+            String query, QueryFilter queryFilter) {
+        SQLQuery sqlQuery = NXQLQueryMaker.transformQuery(query, queryFilter);
+        LiteralLifter lifter = new LiteralLifter();
+        SQLQuery liftedQuery = lifter.lift(sqlQuery);
+        String key = getKey(queryMaker, queryFilter, lifter.getShape());
+        boolean security = queryFilter.getPrincipals() != null;
+
+        Plan plan = cache.getIfPresent(key);
+        if (plan == UNCACHEABLE) {
+            misses.inc();
+            return queryMaker.buildQuery(sqlInfo, model, pathResolver, sqlQuery, queryFilter);
+        } else if (plan != null) {
+            hits.inc();
+            return plan.newQuery(lifter.getValues(), queryFilter, dialect);
+        }
+        misses.inc();
+
+        // build with markers to find the parameter slots
+        QueryFilter markersFilter = security ? new QueryFilter(queryFilter.getPrincipal(),
+                new String[] { PRINCIPALS_MARKER }, new String[] { PERMISSIONS_MARKER }, queryFilter.getFacetFilter(),
+                queryFilter.getQueryTransformers(), queryFilter.getLimit(), queryFilter.getOffset()) : queryFilter;
+        Query q = queryMaker.buildQuery(sqlInfo, model, pathResolver, liftedQuery, markersFilter);
+        if (q != null && queryMaker.isCacheable()) {
+            plan = Plan.create(q, lifter.getValues().size());
+        }
+        if (plan == null) {
+            cache.put(key, UNCACHEABLE);
+            // the lifted query shares some clauses with the original one, parse again
+            return newQueryMaker(queryMaker).buildQuery(sqlInfo, model, pathResolver, query, queryFilter);
+        }
+        cache.put(key, plan);
+        return plan.newQuery(lifter.getValues(), queryFilter, dialect);
+    }
+
+    protected static NXQLQueryMaker newQueryMaker(NXQLQueryMaker queryMaker) {
+        try {
+            return queryMaker.getClass().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new NuxeoException(e);
+        }
+    }
+
+    protected static String getKey(NXQLQueryMaker queryMaker, QueryFilter queryFilter, String shape) {
+        StringBuilder buf = new StringBuilder(shape.length() + 100);
+        buf.append(queryMaker.getClass().getName());
+        buf.append('\n');
+        FacetFilter facetFilter = queryFilter.getFacetFilter();
+        if (facetFilter != null) {
+            buf.append(new TreeSet<>(facetFilter.required));
+            buf.append(new TreeSet<>(facetFilter.excluded));
+        }
+        buf.append('\n');
+        buf.append(queryFilter.getPrincipals() != null);
+        buf.append('\n');
+        buf.append(shape);
+        return buf.toString();
+    }
+
+    protected static String getMarker(int i) {
+        return MARKER_PREFIX + i + MARKER_SUFFIX;
+    }
+
+    /**
+     * Invalidates all the plans, to be called when the model changes.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * A cached plan: the SQL and the parameter slots.
+     */
+    protected static class Plan {
+
+        protected final SQLInfoSelect selectInfo;
+
+        /** The parameters, with markers in the slots. */
+        protected final Serializable[] params;
+
+        /** For each parameter, the index of the lifted value, or one of the special slots. */
+        protected final int[] slots;
+
+        protected Plan(SQLInfoSelect selectInfo, Serializable[] params, int[] slots) {
+            this.selectInfo = selectInfo;
+            this.params = params;
+            this.slots = slots;
+        }
+
+        /**
+         * Creates a plan from a query built with markers.
+         *
+         * @return the plan, or {@code null} if the markers were not all found verbatim in the parameters
+         */
+        protected static Plan create(Query q, int count) {
+            if (q.selectInfo.sql.indexOf(MARKER_CHAR) >= 0) {
+                return null;
+            }
+            Map<String, Integer> markers = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                markers.put(getMarker(i), Integer.valueOf(i));
+            }
+            boolean[] found = new boolean[count];
+            Serializable[] params = q.selectParams.toArray(new Serializable[q.selectParams.size()]);
+            int[] slots = new int[params.length];
+            for (int i = 0; i < params.length; i++) {
+                Serializable param = params[i];
+                String string;
+                if (param instanceof String) {
+                    string = (String) param;
+                } else if (param instanceof WrappedId) {
+                    string = ((WrappedId) param).string;
+                } else if (param instanceof String[] && ((String[]) param).length == 1) {
+                    string = ((String[]) param)[0];
+                } else {
+                    slots[i] = SLOT_CONSTANT;
+                    continue;
+                }
+                int slot;
+                Integer index = markers.get(string);
+                if (index != null && !(param instanceof String[])) {
+                    slot = index.intValue();
+                    found[slot] = true;
+                } else if (PRINCIPALS_MARKER.equals(string)) {
+                    slot = SLOT_PRINCIPALS;
+                } else if (PERMISSIONS_MARKER.equals(string)) {
+                    slot = SLOT_PERMISSIONS;
+                } else if (string != null && string.indexOf(MARKER_CHAR) >= 0) {
+                    // a marker was transformed, the value is not passed as-is
+                    return null;
+                } else {
+                    slot = SLOT_CONSTANT;
+                }
+                slots[i] = slot;
+            }
+            for (boolean f : found) {
+                if (!f) {
+                    // a value was used without being passed as a parameter
+                    return null;
+                }
+            }
+            return new Plan(q.selectInfo, params, slots);
+        }
+
+        /**
+         * Creates a query from this plan.
+         */
+        protected Query newQuery(List<String> values, QueryFilter queryFilter, Dialect dialect) {
+            Serializable principals = queryFilter.getPrincipals();
+            Serializable permissions = queryFilter.getPermissions();
+            if (principals != null && !dialect.supportsArrays()) {
+                principals = String.join(Dialect.ARRAY_SEP, (String[]) principals);
+                permissions = String.join(Dialect.ARRAY_SEP, (String[]) permissions);
+            }
+            List<Serializable> selectParams = new ArrayList<>(params.length);
+            for (int i = 0; i < params.length; i++) {
+                int slot = slots[i];
+                Serializable param;
+                if (slot == SLOT_CONSTANT) {
+                    param = params[i];
+                } else if (slot == SLOT_PRINCIPALS) {
+                    param = principals;
+                } else if (slot == SLOT_PERMISSIONS) {
+                    param = permissions;
+                } else if (params[i] instanceof WrappedId) {
+                    param = new WrappedId(values.get(slot));
+                } else {
+                    param = values.get(slot);
+                }
+                selectParams.add(param);
+            }
+            Query q = new Query();
+            q.selectInfo = selectInfo;
+            q.selectParams = selectParams;
+            return q;
+        }
+    }
+
+    /**
+     * Copies a query, replacing the lifted string literals with markers, and computes its shape.
+     * <p>
+     * The shape is an unambiguous representation of the query where the lifted literals are replaced by {@code ?}.
+     */
+    protected static class LiteralLifter {
+
+        protected final StringBuilder shape = new StringBuilder();
+
+        protected final List<String> values = new ArrayList<>();
+
+        public SQLQuery lift(SQLQuery sqlQuery) {
+            shape.append("SELECT ").append(sqlQuery.select);
+            shape.append(" FROM ").append(sqlQuery.from);
+            SQLQuery liftedQuery = sqlQuery;
+            if (sqlQuery.where != null && sqlQuery.where.predicate != null) {
+                shape.append(" WHERE ");
+                liftedQuery = sqlQuery.withWhereExpression(liftExpression(sqlQuery.where.predicate));
+            }
+            if (sqlQuery.orderBy != null) {
+                shape.append(" ORDER BY ").append(sqlQuery.orderBy);
+            }
+            return liftedQuery;
+        }
+
+        public String getShape() {
+            return shape.toString();
+        }
+
+        public List<String> getValues() {
+            return values;
+        }
+
+        protected Expression liftExpression(Expression expr) {
+            if (expr instanceof MultiExpression) {
+                MultiExpression multi = (MultiExpression) expr;
+                shape.append(multi.operator).append('(');
+                List<Operand> list = new ArrayList<>(multi.values.size());
+                for (Operand operand : multi.values) {
+                    if (!list.isEmpty()) {
+                        shape.append(", ");
+                    }
+                    list.add(lift(operand, false));
+                }
+                shape.append(')');
+                MultiExpression copy = new MultiExpression(multi.operator, list);
+                copy.info = multi.info;
+                return copy;
+            }
+            boolean liftRvalue = LIFTED_OPERATORS.contains(expr.operator) && expr.lvalue instanceof Reference
+                    && !((Reference) expr.lvalue).name.startsWith(NXQL.ECM_PREFIX);
+            shape.append('(');
+            Operand lvalue = null;
+            if (expr.lvalue != null) {
+                lvalue = lift(expr.lvalue, false);
+                shape.append(' ');
+            }
+            shape.append(expr.operator);
+            Operand rvalue = null;
+            if (expr.rvalue != null) {
+                shape.append(' ');
+                rvalue = lift(expr.rvalue, liftRvalue);
+            }
+            shape.append(')');
+            if (lvalue == expr.lvalue && rvalue == expr.rvalue) {
+                return expr;
+            }
+            Expression copy = expr instanceof Predicate ? new Predicate(lvalue, expr.operator, rvalue)
+                    : new Expression(lvalue, expr.operator, rvalue);
+            copy.info = expr.info;
+            return copy;
+        }
+
+        protected Operand lift(Operand operand, boolean liftLiteral) {
+            if (operand instanceof Expression) {
+                return liftExpression((Expression) operand);
+            } else if (operand instanceof StringLiteral) {
+                String value = ((StringLiteral) operand).value;
+                if (liftLiteral) {
+                    shape.append('?');
+                    StringLiteral marker = new StringLiteral(getMarker(values.size()));
+                    values.add(value);
+                    return marker;
+                }
+                // escape quotes to keep the shape unambiguous
+                shape.append('\'').append(value.replace("'", "''")).append('\'');
+                return operand;
+            } else if (operand instanceof LiteralList) {
+                LiteralList list = (LiteralList) operand;
+                LiteralList copy = new LiteralList();
+                shape.append('(');
+                for (Literal literal : list) {
+                    if (!copy.isEmpty()) {
+                        shape.append(", ");
+                    }
+                    copy.add((Literal) lift(literal, liftLiteral));
+                }
+                shape.append(')');
+                return liftLiteral ? copy : list;
+            } else if (operand instanceof Function) {
+                Function function = (Function) operand;
+                shape.append(function.name).append('(');
+                if (function.args != null) {
+                    boolean first = true;
+                    for (Operand arg : function.args) {
+                        if (!first) {
+                            shape.append(", ");
+                        }
+                        first = false;
+                        lift(arg, false);
+                    }
+                }
+                shape.append(')');
+                return operand;
+            } else {
+                shape.append(operand);
+                return operand;
+            }
+        }
+    }
+
+}
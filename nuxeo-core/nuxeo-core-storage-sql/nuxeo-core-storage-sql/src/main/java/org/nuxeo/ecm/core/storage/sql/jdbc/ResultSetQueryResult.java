@@ -54,7 +54,7 @@ public class ResultSetQueryResult implements IterableQueryResult, Iterator<Map<S
     public ResultSetQueryResult(QueryMaker queryMaker, String query, QueryFilter queryFilter, PathResolver pathResolver,
             JDBCMapper mapper, Object... params) throws SQLException {
         logger = mapper.logger;
-        q = queryMaker.buildQuery(mapper.sqlInfo, mapper.model, pathResolver, query, queryFilter, params);
+        q = mapper.buildQuery(queryMaker, pathResolver, query, queryFilter, params);
         if (q == null) {
             // no result
             size = 0;
@@ -91,6 +91,8 @@ public class SQLInfo {
 
     private final Map<String, List<Column>> insertColumnsMap;
 
+    private final Map<String, Insert> insertMap;
+
     private final Map<String, String> deleteSqlMap; // statement
 
     private Map<SelectionType, SQLInfoSelection> selections;
@@ -161,6 +163,7 @@ public class SQLInfo {
 
         insertSqlMap = new HashMap<>();
         insertColumnsMap = new HashMap<>();
+        insertMap = new HashMap<>();
 
         deleteSqlMap = new HashMap<>();
 
@@ -280,6 +283,19 @@ public class SQLInfo {
         return insertColumnsMap.get(tableName);
     }
 
+    /**
+     * Returns the SQL {@code INSERT} to add several rows at once, see {@link Dialect#supportsMultiRowInsert}. The
+     * parameters are the {@link #getInsertColumns} of each row in turn.
+     *
+     * @param tableName the table name
+     * @param rows the number of rows
+     * @return the SQL multi-row {@code INSERT} statement
+     * @since 10.2
+     */
+    public String getMultiRowInsertSql(String tableName, int rows) {
+        return insertMap.get(tableName).getMultiRowStatement(rows);
+    }
+
     // -----
 
     /**
@@ -1012,7 +1028,6 @@ public class SQLInfo {
             selectComplexChildrenIdsAndTypesSql = select.getStatement();
         }
 
-        // TODO optimize multiple inserts into one statement for collections
         protected void postProcessInsert() {
             // insert (implicitly auto-generated sequences not included)
             Collection<Column> columns = table.getColumns();
@@ -1028,6 +1043,7 @@ public class SQLInfo {
             }
             insertSqlMap.put(tableName, insert.getStatement());
             insertColumnsMap.put(tableName, insertColumns);
+            insertMap.put(tableName, insert);
         }
 
         protected void postProcessDelete() {
@@ -91,17 +91,7 @@ public class ScalarCollectionIO implements CollectionIO {
                 int n = 0;
                 for (Column column : columns) {
                     n++;
-                    String key = column.getKey();
-                    Serializable v;
-                    if (key.equals(Model.MAIN_KEY)) {
-                        v = id;
-                    } else if (key.equals(Model.COLL_TABLE_POS_KEY)) {
-                        v = Long.valueOf((long) i);
-                    } else if (key.equals(Model.COLL_TABLE_VALUE_KEY)) {
-                        v = array[i];
-                    } else {
-                        throw new RuntimeException(key);
-                    }
+                    Serializable v = getValue(column.getKey(), id, array, i);
                     column.setToPreparedStatement(ps, n, v);
                     if (debugValues != null) {
                         debugValues.add(v);
@@ -126,4 +116,45 @@ public class ScalarCollectionIO implements CollectionIO {
         }
     }
 
+    @Override
+    public List<Serializable[]> getInsertValues(List<RowUpdate> rowus, List<Column> columns) {
+        List<Serializable[]> values = new ArrayList<>();
+        for (RowUpdate rowu : rowus) {
+            int start;
+            if (rowu.pos == -1 || insertAll) {
+                start = 0;
+            } else {
+                start = rowu.pos;
+            }
+            Serializable id = rowu.row.id;
+            Serializable[] array = rowu.row.values;
+            for (int i = start; i < array.length; i++) {
+                Serializable[] vals = new Serializable[columns.size()];
+                int n = 0;
+                for (Column column : columns) {
+                    vals[n++] = getValue(column.getKey(), id, array, i);
+                }
+                values.add(vals);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Gets the value of a column for the element at position {@code i} of a collection.
+     *
+     * @since 10.2
+     */
+    protected Serializable getValue(String key, Serializable id, Serializable[] array, int i) {
+        if (key.equals(Model.MAIN_KEY)) {
+            return id;
+        } else if (key.equals(Model.COLL_TABLE_POS_KEY)) {
+            return Long.valueOf((long) i);
+        } else if (key.equals(Model.COLL_TABLE_VALUE_KEY)) {
+            return array[i];
+        } else {
+            throw new RuntimeException(key);
+        }
+    }
+
 }
@@ -99,4 +99,39 @@ public class Insert implements Serializable {
         }
         return buf.toString();
     }
+
+    /**
+     * Gets the statement to insert several rows at once.
+     * <p>
+     * Example: {@code INSERT INTO foo (a, b) VALUES (?, ?), (?, ?), (?, ?)}
+     *
+     * @param rows the number of rows
+     * @return the SQL multi-row insert statement
+     * @since 10.2
+     */
+    public String getMultiRowStatement(int rows) {
+        if (columns.isEmpty() || insertValues != null) {
+            throw new IllegalStateException("Cannot do multi-row insert into " + table.getQuotedName());
+        }
+        List<String> columnNames = new LinkedList<>();
+        List<String> values = new LinkedList<>();
+        for (Column column : columns) {
+            columnNames.add(column.getQuotedName());
+            values.add(column.getFreeVariableSetter());
+        }
+        String row = '(' + String.join(", ", values) + ')';
+        StringBuilder buf = new StringBuilder(128 + rows * (row.length() + 2));
+        buf.append("INSERT INTO ");
+        buf.append(table.getQuotedName());
+        buf.append(" (");
+        buf.append(String.join(", ", columnNames));
+        buf.append(") VALUES ");
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                buf.append(", ");
+            }
+            buf.append(row);
+        }
+        return buf.toString();
+    }
 }
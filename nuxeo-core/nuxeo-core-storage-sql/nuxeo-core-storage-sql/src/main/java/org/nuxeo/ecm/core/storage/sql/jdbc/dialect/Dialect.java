@@ -1074,6 +1074,31 @@ public abstract class Dialect {
         return 400;
     }
 
+    /**
+     * Indicates if the dialect supports inserting several rows in one statement:
+     * {@code INSERT INTO foo (a, b) VALUES (?, ?), (?, ?)}.
+     *
+     * @since 10.2
+     */
+    public boolean supportsMultiRowInsert() {
+        return false;
+    }
+
+    /**
+     * Maximum number of parameters in a multi-row insert statement.
+     * <p>
+     * Beyond this size we'll do the insert in several statements.
+     * <p>
+     * PostgreSQL is limited to 32767 parameters in a prepared statement.
+     * <p>
+     * SQL Server is limited to 2100 parameters.
+     *
+     * @since 10.2
+     */
+    public int getMaximumParametersForMultiRowInsert() {
+        return Short.MAX_VALUE;
+    }
+
     /**
      * Gets the statement to update the read acls
      */
@@ -418,6 +418,11 @@ public class DialectMySQL extends Dialect {
         return true;
     }
 
+    @Override
+    public boolean supportsMultiRowInsert() {
+        return true;
+    }
+
     @Override
     public String addPagingClause(String sql, long limit, long offset) {
         return sql + String.format(" LIMIT %d OFFSET %d", limit, offset);
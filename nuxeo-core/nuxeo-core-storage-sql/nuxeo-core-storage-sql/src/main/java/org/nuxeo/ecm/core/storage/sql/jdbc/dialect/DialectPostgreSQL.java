@@ -1208,6 +1208,11 @@ public class DialectPostgreSQL extends Dialect {
         return true;
     }
 
+    @Override
+    public boolean supportsMultiRowInsert() {
+        return true;
+    }
+
     @Override
     public String addPagingClause(String sql, long limit, long offset) {
         return sql + String.format(" LIMIT %d OFFSET %d", limit, offset);
@@ -145,6 +145,18 @@ public class DialectSQLServer extends Dialect {
         return (majorVersion >= 11);
     }
 
+    @Override
+    public boolean supportsMultiRowInsert() {
+        // available since SQL Server 2008
+        return (majorVersion >= 10);
+    }
+
+    @Override
+    public int getMaximumParametersForMultiRowInsert() {
+        // limited to 2100 parameters
+        return 2000;
+    }
+
     @Override
     public String addPagingClause(String sql, long limit, long offset) {
         if (!sql.contains("ORDER")) {
@@ -19,6 +19,7 @@
 package org.nuxeo.ecm.core.storage.sql.ra;
 
 import java.io.Serializable;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -188,6 +189,11 @@ public class ConnectionImpl implements Session {
         return getSession().getNodesByIds(ids);
     }
 
+    @Override
+    public List<Node> getNodesByIds(List<Serializable> ids, Collection<String> schemas) {
+        return getSession().getNodesByIds(ids, schemas);
+    }
+
     @Override
     public Node getNodeByPath(String path, Node node) {
         return getSession().getNodeByPath(path, node);
@@ -0,0 +1,111 @@
+/*
+ * (C) Copyright 2018 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.ecm.core.storage.sql;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+
+import org.junit.Test;
+
+public class TestInvalidations {
+
+    protected static byte[] serialize(Invalidations invalidations, boolean compact) throws IOException {
+        ByteArrayOutputStream baout = new ByteArrayOutputStream();
+        if (compact) {
+            invalidations.serializeCompact(baout);
+        } else {
+            invalidations.serialize(baout);
+        }
+        return baout.toByteArray();
+    }
+
+    protected static Invalidations roundTrip(Invalidations invalidations, boolean compact) throws IOException {
+        return Invalidations.deserialize(new ByteArrayInputStream(serialize(invalidations, compact)));
+    }
+
+    protected static Invalidations newInvalidations() {
+        Invalidations invalidations = new Invalidations();
+        String uuid = "0b7fd9b2-1c3c-4e3b-9a6f-8b3f2c6d1e00";
+        invalidations.addModified(new RowId("hierarchy", uuid));
+        invalidations.addModified(new RowId("dublincore", uuid));
+        invalidations.addModified(new RowId("hierarchy", "not-a-uuid"));
+        invalidations.addModified(new RowId("hierarchy", "0B7FD9B2-1C3C-4E3B-9A6F-8B3F2C6D1E00"));
+        invalidations.addModified(new RowId(Invalidations.PARENT, Long.valueOf(123)));
+        invalidations.addDeleted(new RowId("hierarchy", "deleted"));
+        return invalidations;
+    }
+
+    @Test
+    public void testSerialization() throws IOException {
+        doTestSerialization(false);
+    }
+
+    @Test
+    public void testSerializationCompactRoundTrip() throws IOException {
+        doTestSerialization(true);
+    }
+
+    protected void doTestSerialization(boolean compact) throws IOException {
+        Invalidations invalidations = newInvalidations();
+        Invalidations read = roundTrip(invalidations, compact);
+        assertEquals(invalidations.modified, read.modified);
+        assertEquals(invalidations.deleted, read.deleted);
+
+        read = roundTrip(new Invalidations(true), compact);
+        assertTrue(read.all);
+
+        read = roundTrip(new Invalidations(), compact);
+        assertTrue(read.isEmpty());
+        assertNull(read.modified);
+    }
+
+    @Test
+    public void testSerializationCompact() throws IOException {
+        Invalidations invalidations = newInvalidations();
+        ByteArrayOutputStream baout = new ByteArrayOutputStream();
+        try (ObjectOutputStream oout = new ObjectOutputStream(baout)) {
+            oout.writeObject(invalidations);
+        }
+        // the default is still the format understood by previous versions
+        assertArrayEquals(baout.toByteArray(), serialize(invalidations, false));
+        int compactSize = serialize(invalidations, true).length;
+        assertTrue(compactSize + " vs " + baout.size(), compactSize * 3 < baout.size());
+    }
+
+    @Test
+    public void testDeserializeJavaSerialization() throws IOException {
+        // format used by previous versions
+        Invalidations invalidations = newInvalidations();
+        ByteArrayOutputStream baout = new ByteArrayOutputStream();
+        try (ObjectOutputStream oout = new ObjectOutputStream(baout)) {
+            oout.writeObject(invalidations);
+        }
+        Invalidations read = Invalidations.deserialize(new ByteArrayInputStream(baout.toByteArray()));
+        assertEquals(invalidations.modified, read.modified);
+        assertEquals(invalidations.deleted, read.deleted);
+    }
+
+}
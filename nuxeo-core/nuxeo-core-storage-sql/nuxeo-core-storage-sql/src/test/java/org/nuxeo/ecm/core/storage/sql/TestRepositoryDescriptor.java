@@ -61,6 +61,8 @@ public class TestRepositoryDescriptor {
         assertEquals("foo", desc.name);
         assertTrue(desc.getClusteringEnabled());
         assertEquals(1234, desc.getClusteringDelay());
+        assertTrue(desc.getBulkInsertEnabled());
+        assertTrue(desc.getKeysetScrollEnabled());
     }
 
     @Test
@@ -149,6 +151,7 @@ public class TestRepositoryDescriptor {
         RepositoryDescriptor desc2 = (RepositoryDescriptor) xmap.load(getResource("test-repository-descriptor2.xml"));
         desc.merge(desc2);
         assertFalse(desc.getClusteringEnabled());
+        assertTrue(desc.getBulkInsertEnabled());
         assertEquals(Arrays.asList("file1", "file2", "file3"), desc.sqlInitFiles);
         assertTrue(desc.getPathOptimizationsEnabled());
         assertEquals(2, desc.getPathOptimizationsVersion());
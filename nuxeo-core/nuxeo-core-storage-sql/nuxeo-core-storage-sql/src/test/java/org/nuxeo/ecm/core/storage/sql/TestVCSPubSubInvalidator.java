@@ -0,0 +1,171 @@
+/*
+ * (C) Copyright 2018 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.ecm.core.storage.sql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.test.runner.Deploy;
+import org.nuxeo.runtime.test.runner.Features;
+import org.nuxeo.runtime.test.runner.FeaturesRunner;
+import org.nuxeo.runtime.test.runner.RuntimeFeature;
+
+/**
+ * Tests the PubSub invalidations between two nodes, using the default in-memory PubSub provider.
+ */
+@RunWith(FeaturesRunner.class)
+@Features(RuntimeFeature.class)
+@Deploy("org.nuxeo.runtime.pubsub")
+public class TestVCSPubSubInvalidator {
+
+    protected VCSPubSubInvalidator node1;
+
+    protected VCSPubSubInvalidator node2;
+
+    protected void initialize(String repositoryName) {
+        node1 = new VCSPubSubInvalidator();
+        node1.initialize("1", repositoryName);
+        node2 = new VCSPubSubInvalidator();
+        node2.initialize("2", repositoryName);
+    }
+
+    @After
+    public void tearDown() {
+        if (node1 != null) {
+            node1.close();
+            node2.close();
+        }
+    }
+
+    protected static Invalidations newInvalidations(int n) {
+        Invalidations invalidations = new Invalidations();
+        for (int i = 0; i < n; i++) {
+            invalidations.addModified(new RowId("hierarchy", "id" + i));
+        }
+        invalidations.addDeleted(new RowId("hierarchy", "deleted"));
+        return invalidations;
+    }
+
+    @Test
+    public void testSendReceive() {
+        initialize("repo1");
+        Invalidations invalidations = newInvalidations(3);
+        node1.sendInvalidations(invalidations);
+        // not received by the sender
+        assertTrue(node1.receiveInvalidations().isEmpty());
+        Invalidations received = node2.receiveInvalidations();
+        assertEquals(invalidations.modified, received.modified);
+        assertEquals(invalidations.deleted, received.deleted);
+        // only received once
+        assertTrue(node2.receiveInvalidations().isEmpty());
+    }
+
+    @Test
+    public void testCompact() {
+        Framework.getProperties().put(VCSPubSubInvalidator.COMPACT_PROP + ".repo4", "true");
+        try {
+            initialize("repo4");
+        } finally {
+            Framework.getProperties().remove(VCSPubSubInvalidator.COMPACT_PROP + ".repo4");
+        }
+        assertTrue(node1.compact);
+        Invalidations invalidations = newInvalidations(3);
+        node1.sendInvalidations(invalidations);
+        Invalidations received = node2.receiveInvalidations();
+        assertFalse(received.all);
+        assertEquals(invalidations.modified, received.modified);
+        assertEquals(invalidations.deleted, received.deleted);
+    }
+
+    @Test
+    public void testShardsMismatch() {
+        Framework.getProperties().put(VCSPubSubInvalidator.SHARDS_PROP + ".repo5", "3");
+        try {
+            node1 = new VCSPubSubInvalidator();
+            node1.initialize("1", "repo5");
+        } finally {
+            Framework.getProperties().remove(VCSPubSubInvalidator.SHARDS_PROP + ".repo5");
+        }
+        node2 = new VCSPubSubInvalidator();
+        node2.initialize("2", "repo5");
+        assertTrue(node1.compact);
+        assertFalse(node2.compact);
+
+        // node2 doesn't listen to all the shards of node1, so invalidates everything
+        node1.sendInvalidations(newInvalidations(1));
+        assertTrue(node2.receiveInvalidations().all);
+        node2.sendInvalidations(newInvalidations(1));
+        assertTrue(node1.receiveInvalidations().all);
+    }
+
+    @Test
+    public void testSharding() {
+        Framework.getProperties().put(VCSPubSubInvalidator.SHARDS_PROP + ".repo2", "3");
+        try {
+            initialize("repo2");
+        } finally {
+            Framework.getProperties().remove(VCSPubSubInvalidator.SHARDS_PROP + ".repo2");
+        }
+        assertEquals(3, node1.brokers.size());
+        assertTrue(node1.compact);
+        Invalidations invalidations = newInvalidations(20);
+        node1.sendInvalidations(invalidations);
+        Invalidations received = node2.receiveInvalidations();
+        assertEquals(invalidations.modified, received.modified);
+        assertEquals(invalidations.deleted, received.deleted);
+
+        node1.sendInvalidations(new Invalidations(true));
+        assertTrue(node2.receiveInvalidations().all);
+    }
+
+    @Test
+    public void testCoalescing() {
+        // long delay, flushed explicitly
+        Framework.getProperties().put(VCSPubSubInvalidator.DELAY_PROP + ".repo3", "600000");
+        try {
+            initialize("repo3");
+        } finally {
+            Framework.getProperties().remove(VCSPubSubInvalidator.DELAY_PROP + ".repo3");
+        }
+        long coalesced = node1.coalescedCount.getCount();
+        Invalidations invalidations1 = newInvalidations(2);
+        Invalidations invalidations2 = new Invalidations();
+        invalidations2.addModified(new RowId("dublincore", "id0"));
+        node1.sendInvalidations(invalidations1);
+        node1.sendInvalidations(invalidations2);
+        assertEquals(coalesced + 1, node1.coalescedCount.getCount());
+        // still in the time window
+        assertTrue(node2.receiveInvalidations().isEmpty());
+
+        node1.flush();
+        Invalidations received = node2.receiveInvalidations();
+        Set<RowId> expected = new HashSet<>(invalidations1.modified);
+        expected.addAll(invalidations2.modified);
+        assertEquals(expected, received.modified);
+    }
+
+}
@@ -0,0 +1,200 @@
+/*
+ * (C) Copyright 2018 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.ecm.core.storage.sql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.nuxeo.ecm.core.storage.sql.WTinyLFURowCache.Budget;
+import org.nuxeo.runtime.metrics.MetricsService;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+
+public class TestWTinyLFURowCache {
+
+    protected static final String PREFIX = "test.wtinylfu";
+
+    protected static Row newRow(String tableName, String id, int valueLength) {
+        Row row = new Row(tableName, id);
+        row.put("value", new String(new char[valueLength]));
+        return row;
+    }
+
+    protected static Counter getCounter(String tableName, String name) {
+        MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+        return registry.counter(MetricRegistry.name(PREFIX, tableName, "tables", tableName, name));
+    }
+
+    protected static WTinyLFURowCache newCache(String tableName, long maxBytes) {
+        return new WTinyLFURowCache(maxBytes, 1, MetricRegistry.name(PREFIX, tableName));
+    }
+
+    @Test
+    public void testEstimateSize() {
+        Row small = newRow("t", "id", 12);
+        Row big = newRow("t", "id", 1012);
+        long smallSize = WTinyLFURowCache.estimateSize(small, small);
+        long bigSize = WTinyLFURowCache.estimateSize(big, big);
+        assertTrue(smallSize > 0);
+        assertEquals(2 * 1000, bigSize - smallSize);
+    }
+
+    @Test
+    public void testBoundedBySize() {
+        WTinyLFURowCache cache = newCache("bounded", 100_000);
+        for (int i = 0; i < 1000; i++) {
+            Row row = newRow("bounded", "id" + i, 500);
+            cache.put(new RowId(row), row);
+            assertTrue(cache.weight() <= 100_000);
+        }
+        assertTrue(cache.size() < 1000);
+        assertEquals(cache.weight(), getCounter("bounded", "bytes").getCount());
+        assertEquals(1000 - cache.size(), getCounter("bounded", "evictions").getCount());
+
+        // a row bigger than the cache is not cached
+        Row huge = newRow("bounded", "huge", 100_000);
+        cache.put(new RowId(huge), huge);
+        assertFalse(cache.containsKey(new RowId(huge)));
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.weight());
+        assertEquals(0, getCounter("bounded", "bytes").getCount());
+    }
+
+    @Test
+    public void testSharedBudget() {
+        Budget budget = new Budget(100_000);
+        WTinyLFURowCache cache1 = new WTinyLFURowCache(budget, 1, MetricRegistry.name(PREFIX, "shared1"));
+        WTinyLFURowCache cache2 = new WTinyLFURowCache(budget, 1, MetricRegistry.name(PREFIX, "shared2"));
+        for (int i = 0; i < 1000; i++) {
+            Row row1 = newRow("shared1", "id" + i, 500);
+            cache1.put(new RowId(row1), row1);
+            Row row2 = newRow("shared2", "id" + i, 500);
+            cache2.put(new RowId(row2), row2);
+            assertEquals(cache1.weight() + cache2.weight(), budget.weight());
+            // a cache within its share doesn't evict, the total may exceed the budget by a row
+            assertTrue(budget.weight() <= 100_000 + WTinyLFURowCache.estimateSize(row1, row1));
+        }
+        assertTrue(cache1.size() > 0);
+        assertTrue(cache2.size() > 0);
+
+        // the space freed by one cache is available to the other
+        cache1.clear();
+        assertEquals(cache2.weight(), budget.weight());
+        for (int i = 1000; i < 2000; i++) {
+            Row row2 = newRow("shared2", "id" + i, 500);
+            cache2.put(new RowId(row2), row2);
+        }
+        assertTrue(cache2.weight() > 90_000);
+        assertTrue(budget.weight() <= 100_000);
+        cache2.clear();
+        assertEquals(0, budget.weight());
+    }
+
+    @Test
+    public void testNewCacheGetsItsShare() {
+        Budget budget = new Budget(100_000);
+        WTinyLFURowCache cache1 = new WTinyLFURowCache(budget, 1, MetricRegistry.name(PREFIX, "share1"));
+        for (int i = 0; i < 1000; i++) {
+            Row row1 = newRow("share1", "id" + i, 500);
+            cache1.put(new RowId(row1), row1);
+        }
+        assertTrue(cache1.weight() > 90_000);
+
+        // a new cache keeps the rows it adds even though the budget is used up
+        WTinyLFURowCache cache2 = new WTinyLFURowCache(budget, 1, MetricRegistry.name(PREFIX, "share2"));
+        Row first = newRow("share2", "id0", 500);
+        cache2.put(new RowId(first), first);
+        assertTrue(cache2.containsKey(new RowId(first)));
+        for (int i = 1; i < 1000; i++) {
+            Row row2 = newRow("share2", "id" + i, 500);
+            cache2.put(new RowId(row2), row2);
+        }
+        long rowWeight = WTinyLFURowCache.estimateSize(first, first);
+        assertTrue(cache2.weight() <= 50_000);
+        assertTrue(cache2.weight() > 50_000 - 2 * rowWeight);
+
+        // the first cache gives back the space on its next write
+        Row row1 = newRow("share1", "more", 500);
+        cache1.put(new RowId(row1), row1);
+        assertTrue(budget.weight() <= 100_000);
+        cache1.clear();
+        cache2.clear();
+        assertEquals(0, budget.weight());
+    }
+
+    @Test
+    public void testFrequentRowsSurviveScan() {
+        WTinyLFURowCache cache = newCache("scan", 200_000);
+        // hot rows, read many times
+        for (int i = 0; i < 50; i++) {
+            Row row = newRow("scan", "hot" + i, 500);
+            cache.put(new RowId(row), row);
+        }
+        for (int n = 0; n < 10; n++) {
+            for (int i = 0; i < 50; i++) {
+                assertNotNull(cache.get(new RowId("scan", "hot" + i)));
+            }
+        }
+        // a scan of rows read only once
+        for (int i = 0; i < 5000; i++) {
+            RowId rowId = new RowId("scan", "cold" + i);
+            assertNull(cache.get(rowId));
+            Row row = newRow("scan", "cold" + i, 500);
+            cache.put(rowId, row);
+        }
+        // with an LRU policy none would be left
+        int hot = 0;
+        for (int i = 0; i < 50; i++) {
+            if (cache.get(new RowId("scan", "hot" + i)) != null) {
+                hot++;
+            }
+        }
+        assertTrue(String.valueOf(hot), hot >= 45);
+        assertTrue(cache.weight() <= 200_000);
+        assertEquals(50 * 10 + hot, getCounter("scan", "hits").getCount());
+        assertEquals(5000 + 50 - hot, getCounter("scan", "misses").getCount());
+    }
+
+    @Test
+    public void testRemoveAndReplace() {
+        WTinyLFURowCache cache = newCache("replace", 100_000);
+        Row row = newRow("replace", "id", 10);
+        RowId rowId = new RowId(row);
+        cache.put(rowId, row);
+        long weight = cache.weight();
+        Row bigger = newRow("replace", "id", 110);
+        assertEquals(row, cache.put(new RowId(bigger), bigger));
+        assertEquals(1, cache.size());
+        assertEquals(weight + 200, cache.weight());
+        assertEquals(cache.weight(), getCounter("replace", "bytes").getCount());
+        assertEquals(bigger, cache.remove(rowId));
+        assertNull(cache.remove(rowId));
+        assertEquals(0, cache.weight());
+        assertEquals(0, getCounter("replace", "bytes").getCount());
+    }
+
+}
@@ -0,0 +1,147 @@
+/*
+ * (C) Copyright 2018 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.ecm.core.storage.sql.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.nuxeo.ecm.core.storage.sql.jdbc.QueryPlanCache.PRINCIPALS_MARKER;
+import static org.nuxeo.ecm.core.storage.sql.jdbc.QueryPlanCache.SLOT_CONSTANT;
+import static org.nuxeo.ecm.core.storage.sql.jdbc.QueryPlanCache.SLOT_PRINCIPALS;
+import static org.nuxeo.ecm.core.storage.sql.jdbc.QueryPlanCache.getMarker;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.nuxeo.ecm.core.query.QueryFilter;
+import org.nuxeo.ecm.core.query.sql.SQLQueryParser;
+import org.nuxeo.ecm.core.query.sql.model.Expression;
+import org.nuxeo.ecm.core.query.sql.model.Operator;
+import org.nuxeo.ecm.core.query.sql.model.Reference;
+import org.nuxeo.ecm.core.query.sql.model.SQLQuery;
+import org.nuxeo.ecm.core.query.sql.model.StringLiteral;
+import org.nuxeo.ecm.core.storage.sql.ColumnType.WrappedId;
+import org.nuxeo.ecm.core.storage.sql.jdbc.QueryMaker.Query;
+import org.nuxeo.ecm.core.storage.sql.jdbc.QueryPlanCache.LiteralLifter;
+import org.nuxeo.ecm.core.storage.sql.jdbc.QueryPlanCache.Plan;
+import org.nuxeo.ecm.core.storage.sql.jdbc.SQLInfo.SQLInfoSelect;
+
+public class TestQueryPlanCache {
+
+    protected static LiteralLifter lift(String query) {
+        LiteralLifter lifter = new LiteralLifter();
+        lifter.lift(SQLQueryParser.parse(query));
+        return lifter;
+    }
+
+    protected static String shape(String query) {
+        return lift(query).getShape();
+    }
+
+    @Test
+    public void testLiftLiterals() {
+        String query = "SELECT * FROM Document WHERE dc:title = 'foo' AND ecm:path = '/bar'"
+                + " AND dc:subjects IN ('a', 'b') AND dc:title <> 'gee'";
+        LiteralLifter lifter = new LiteralLifter();
+        SQLQuery lifted = lifter.lift(SQLQueryParser.parse(query));
+        assertEquals(Arrays.asList("foo", "a", "b", "gee"), lifter.getValues());
+        String shape = lifter.getShape();
+        assertFalse(shape, shape.contains("foo"));
+        assertTrue(shape, shape.contains("'/bar'"));
+        String where = lifted.where.toString();
+        assertTrue(where, where.contains(getMarker(0)));
+        assertTrue(where, where.contains(getMarker(3)));
+        assertTrue(where, where.contains("/bar"));
+    }
+
+    @Test
+    public void testShape() {
+        // same shape for different values
+        assertEquals(shape("SELECT * FROM Document WHERE dc:title = 'foo'"),
+                shape("SELECT * FROM Document WHERE dc:title = 'bar'"));
+        // ecm: values are part of the shape
+        assertNotEquals(shape("SELECT * FROM Document WHERE ecm:path = '/foo'"),
+                shape("SELECT * FROM Document WHERE ecm:path = '/bar'"));
+        // non-string values are part of the shape
+        assertNotEquals(shape("SELECT * FROM Document WHERE dc:count = 1"),
+                shape("SELECT * FROM Document WHERE dc:count = 2"));
+        // number of values is part of the shape
+        assertNotEquals(shape("SELECT * FROM Document WHERE dc:title IN ('a', 'b')"),
+                shape("SELECT * FROM Document WHERE dc:title IN ('a')"));
+        // operator precedence is part of the shape
+        assertNotEquals(shape("SELECT * FROM Document WHERE dc:a = 'a' OR dc:b = 'b' AND dc:c = 'c'"),
+                shape("SELECT * FROM Document WHERE (dc:a = 'a' OR dc:b = 'b') AND dc:c = 'c'"));
+        // order by is part of the shape
+        assertNotEquals(shape("SELECT * FROM Document WHERE dc:title = 'a' ORDER BY dc:title"),
+                shape("SELECT * FROM Document WHERE dc:title = 'a' ORDER BY dc:title DESC"));
+    }
+
+    @Test
+    public void testShapeEscaping() {
+        SQLQuery sqlQuery = SQLQueryParser.parse("SELECT * FROM Document");
+        sqlQuery = sqlQuery.withWhereExpression(
+                new Expression(new Reference("ecm:path"), Operator.EQ, new StringLiteral("a'b")));
+        LiteralLifter lifter = new LiteralLifter();
+        lifter.lift(sqlQuery);
+        String shape = lifter.getShape();
+        assertTrue(shape, shape.contains("'a''b'"));
+    }
+
+    protected static Query newQuery(String sql, Serializable... params) {
+        Query q = new Query();
+        q.selectInfo = new SQLInfoSelect(sql, null, null, null);
+        q.selectParams = Arrays.asList(params);
+        return q;
+    }
+
+    @Test
+    public void testPlan() {
+        Query q = newQuery("SELECT id FROM t WHERE a = ? AND b = ? AND c = ? AND d = ?", getMarker(0), "const",
+                new WrappedId(getMarker(1)), new String[] { PRINCIPALS_MARKER });
+        Plan plan = Plan.create(q, 2);
+        assertNotNull(plan);
+        assertEquals(Arrays.toString(new int[] { 0, SLOT_CONSTANT, 1, SLOT_PRINCIPALS }),
+                Arrays.toString(plan.slots));
+
+        Query query = plan.newQuery(Arrays.asList("foo", "bar"), QueryFilter.EMPTY, null);
+        assertEquals(q.selectInfo.sql, query.selectInfo.sql);
+        List<Serializable> params = query.selectParams;
+        assertEquals(4, params.size());
+        assertEquals("foo", params.get(0));
+        assertEquals("const", params.get(1));
+        assertEquals("bar", ((WrappedId) params.get(2)).string);
+        assertNull(params.get(3));
+    }
+
+    @Test
+    public void testPlanNotCacheable() {
+        // value not passed as a parameter
+        assertNull(Plan.create(newQuery("SELECT id FROM t WHERE a = ?", getMarker(0)), 2));
+        // value transformed
+        assertNull(Plan.create(newQuery("SELECT id FROM t WHERE a = ?", getMarker(0).toLowerCase()), 1));
+        // value inlined in the SQL
+        assertNull(Plan.create(newQuery("SELECT id FROM t WHERE a = '" + getMarker(0) + "'"), 1));
+    }
+
+}
@@ -20,6 +20,7 @@ package org.nuxeo.ecm.core.storage.sql.jdbc.dialect;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
@@ -38,7 +39,12 @@ import org.junit.runner.RunWith;
 import org.nuxeo.ecm.core.storage.FulltextQueryAnalyzer;
 import org.nuxeo.ecm.core.storage.FulltextQueryAnalyzer.FulltextQuery;
 import org.nuxeo.ecm.core.storage.FulltextQueryAnalyzer.Op;
+import org.nuxeo.ecm.core.storage.sql.ColumnType;
 import org.nuxeo.ecm.core.storage.sql.RepositoryDescriptor;
+import org.nuxeo.ecm.core.storage.sql.jdbc.db.Column;
+import org.nuxeo.ecm.core.storage.sql.jdbc.db.Database;
+import org.nuxeo.ecm.core.storage.sql.jdbc.db.Insert;
+import org.nuxeo.ecm.core.storage.sql.jdbc.db.Table;
 
 @RunWith(JMock.class)
 public class TestDialectQuerySyntax {
@@ -386,4 +392,17 @@ public class TestDialectQuerySyntax {
         assertDialectFT("\"foo bar*\"", "\"foo bar*\"");
     }
 
+    @Test
+    public void testMultiRowInsert() throws Exception {
+        dialect = new DialectH2(metadata, repositoryDescriptor);
+        assertTrue(dialect.supportsMultiRowInsert());
+        Table table = new Database(dialect).addTable("foo");
+        Insert insert = new Insert(table);
+        insert.addColumn(new Column(table, "a", ColumnType.STRING, "a"));
+        insert.addColumn(new Column(table, "b", ColumnType.STRING, "b"));
+        String sql = insert.getMultiRowStatement(3);
+        assertTrue(sql, sql.startsWith("INSERT INTO "));
+        assertTrue(sql, sql.endsWith(" VALUES (?, ?), (?, ?), (?, ?)"));
+    }
+
 }
@@ -19,7 +19,7 @@
 package org.nuxeo.ecm.core.storage;
 
 import java.io.Serializable;
-import java.util.ArrayList;
+import java.util.AbstractSet;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
@@ -30,24 +30,25 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
-import com.google.common.collect.ImmutableSet;
-
 /**
  * Abstraction for a Map<String, Serializable> that is Serializable.
  * <p>
- * Internal storage is optimized to avoid a full {@link HashMap} when there is a small number of keys.
+ * Internal storage is optimized to avoid a {@link HashMap} and its per-entry objects: keys and values are kept in two
+ * arrays in insertion order, with an open-addressing hash index on the keys when there are more than
+ * {@link #ARRAY_MAX} of them. Keys are interned, so that the many states having the same keys share the key strings.
  *
  * @since 5.9.5
  */
 public class State implements StateAccessor, Serializable {
 
-    private static final long serialVersionUID = 1L;
+    private static final long serialVersionUID = 2L;
 
     protected static final Log log = LogFactory.getLog(State.class);
 
@@ -55,7 +56,7 @@ public class State implements StateAccessor, Serializable {
 
     private static final float HASHMAP_DEFAULT_LOAD_FACTOR = 0.75f;
 
-    // maximum size to use an array after which we switch to a full HashMap
+    // maximum size to use a linear search in the arrays, after which a hash index is used
     public static final int ARRAY_MAX = 5;
 
     private static final int DEBUG_MAX_STRING = 100;
@@ -66,6 +67,14 @@ public class State implements StateAccessor, Serializable {
 
     private static final String[] EMPTY_STRING_ARRAY = new String[0];
 
+    private static final Serializable[] EMPTY_VALUES = new Serializable[0];
+
+    /** Maximum number of interned keys, after which new keys are not interned anymore. */
+    private static final int INTERNED_KEYS_MAX = 100_000;
+
+    /** Interned keys. */
+    private static final Map<String, String> INTERNED_KEYS = new ConcurrentHashMap<>();
+
     /** Initial key order for the {@link #toString} method. */
     private static final Set<String> TO_STRING_KEY_ORDER = new LinkedHashSet<>(Arrays.asList(
             new String[] { "ecm:id", "ecm:primaryType", "ecm:name", "ecm:parentId", "ecm:isVersion", "ecm:isProxy" }));
@@ -148,13 +157,24 @@ public class State implements StateAccessor, Serializable {
         }
     }
 
-    // if map != null then use it
+    // if map != null then use it (thread-safe state, or EMPTY)
     protected Map<String, Serializable> map;
 
-    // else use keys / values
-    protected List<String> keys;
+    // else use keys / values, in insertion order
+    // a removed entry leaves a null key until the arrays are compacted
+    protected String[] keys;
+
+    protected Serializable[] values;
+
+    // number of positions used in keys / values, including removed entries
+    protected int used;
+
+    // number of entries
+    protected int size;
 
-    protected List<Serializable> values;
+    // hash index on keys, when there are more than ARRAY_MAX positions
+    // each slot holds a position + 1, or 0 if free
+    protected int[] index;
 
     /**
      * Private constructor with explicit map.
@@ -194,12 +214,14 @@ public class State implements StateAccessor, Serializable {
     public State(int size, boolean threadSafe) {
         if (threadSafe) {
             map = new ConcurrentHashMap<String, Serializable>(initialCapacity(size));
+        } else if (size == 0) {
+            keys = EMPTY_STRING_ARRAY;
+            values = EMPTY_VALUES;
         } else {
+            keys = new String[size];
+            values = new Serializable[size];
             if (size > ARRAY_MAX) {
-                map = new HashMap<>(initialCapacity(size));
-            } else {
-                keys = new ArrayList<String>(size);
-                values = new ArrayList<Serializable>(size);
+                index = new int[indexCapacity(size)];
             }
         }
     }
@@ -208,6 +230,100 @@ public class State implements StateAccessor, Serializable {
         return Math.max((int) (size / HASHMAP_DEFAULT_LOAD_FACTOR) + 1, HASHMAP_DEFAULT_INITIAL_CAPACITY);
     }
 
+    /**
+     * Computes the size of the hash index for a given capacity: a power of two at least twice the capacity, so that
+     * there are always free slots.
+     */
+    protected static int indexCapacity(int capacity) {
+        return Integer.highestOneBit(Math.max(capacity, 1) * 2 - 1) << 1;
+    }
+
+    protected static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Interns a key, so that all states share the same key strings.
+     */
+    protected static String internKey(String key) {
+        String interned = INTERNED_KEYS.get(key);
+        if (interned != null) {
+            return interned;
+        }
+        if (INTERNED_KEYS.size() >= INTERNED_KEYS_MAX) {
+            return key;
+        }
+        interned = INTERNED_KEYS.putIfAbsent(key, key);
+        return interned == null ? key : interned;
+    }
+
+    /**
+     * Finds the position of a key in the keys / values arrays, or -1 if absent.
+     */
+    protected int position(Object key) {
+        if (key == null) {
+            return -1;
+        }
+        if (index == null) {
+            for (int i = 0; i < used; i++) {
+                String k = keys[i];
+                if (k == key || k != null && k.equals(key)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        int mask = index.length - 1;
+        for (int h = hash(key) & mask;; h = (h + 1) & mask) {
+            int i = index[h] - 1;
+            if (i < 0) {
+                return -1;
+            }
+            String k = keys[i];
+            if (k == key || k != null && k.equals(key)) {
+                return i;
+            }
+        }
+    }
+
+    protected void addToIndex(String key, int i) {
+        int mask = index.length - 1;
+        int h = hash(key) & mask;
+        while (index[h] != 0) {
+            h = (h + 1) & mask;
+        }
+        index[h] = i + 1;
+    }
+
+    /**
+     * Compacts the keys / values arrays and makes room for a new entry.
+     */
+    protected void grow() {
+        int capacity = Math.max(size + (size >> 1) + 1, 4);
+        String[] oldKeys = keys;
+        Serializable[] oldValues = values;
+        int oldUsed = used;
+        keys = new String[capacity];
+        values = new Serializable[capacity];
+        used = 0;
+        for (int i = 0; i < oldUsed; i++) {
+            if (oldKeys[i] != null) {
+                keys[used] = oldKeys[i];
+                values[used] = oldValues[i];
+                used++;
+            }
+        }
+        if (capacity > ARRAY_MAX) {
+            index = new int[indexCapacity(capacity)];
+            for (int i = 0; i < used; i++) {
+                addToIndex(keys[i], i);
+            }
+        } else {
+            index = null;
+        }
+    }
+
     /**
      * Gets the number of elements.
      */
@@ -215,7 +331,7 @@ public class State implements StateAccessor, Serializable {
         if (map != null) {
             return map.size();
         } else {
-            return keys.size();
+            return size;
         }
     }
 
@@ -226,7 +342,7 @@ public class State implements StateAccessor, Serializable {
         if (map != null) {
             return map.isEmpty();
         } else {
-            return keys.isEmpty();
+            return size == 0;
         }
     }
 
@@ -237,8 +353,8 @@ public class State implements StateAccessor, Serializable {
         if (map != null) {
             return map.get(key);
         } else {
-            int i = keys.indexOf(key);
-            return i >= 0 ? values.get(i) : null;
+            int i = position(key);
+            return i >= 0 ? values[i] : null;
         }
     }
 
@@ -253,12 +369,7 @@ public class State implements StateAccessor, Serializable {
             if (map != null) {
                 map.remove(key);
             } else {
-                int i = keys.indexOf(key);
-                if (i >= 0) {
-                    // cost is not trivial but we don't use this often, if at all
-                    keys.remove(i);
-                    values.remove(i);
-                }
+                remove(key);
             }
         } else {
             putEvenIfNull(key, value);
@@ -269,25 +380,23 @@ public class State implements StateAccessor, Serializable {
         if (map != null) {
             map.put(key, value);
         } else {
-            int i = keys.indexOf(key);
+            int i = position(key);
             if (i >= 0) {
                 // existing key
-                values.set(i, value);
+                values[i] = value;
             } else {
                 // new key
-                if (keys.size() < ARRAY_MAX) {
-                    keys.add(key);
-                    values.add(value);
-                } else {
-                    // upgrade to a full HashMap
-                    map = new HashMap<>(initialCapacity(keys.size() + 1));
-                    for (int j = 0; j < keys.size(); j++) {
-                        map.put(keys.get(j), values.get(j));
-                    }
-                    map.put(key, value);
-                    keys = null;
-                    values = null;
+                if (used == keys.length) {
+                    grow();
+                }
+                key = internKey(key);
+                keys[used] = key;
+                values[used] = value;
+                if (index != null) {
+                    addToIndex(key, used);
                 }
+                used++;
+                size++;
             }
         }
     }
@@ -301,24 +410,38 @@ public class State implements StateAccessor, Serializable {
         if (map != null) {
             return map.remove(key);
         } else {
-            int i = keys.indexOf(key);
-            if (i >= 0) {
-                keys.remove(i);
-                return values.remove(i);
-            } else {
+            int i = position(key);
+            if (i < 0) {
                 return null;
             }
+            Serializable value = values[i];
+            keys[i] = null;
+            values[i] = null;
+            size--;
+            if (size == 0) {
+                // reclaim all positions
+                used = 0;
+                if (index != null) {
+                    Arrays.fill(index, 0);
+                }
+            } else if (i == used - 1 && index == null) {
+                // reclaim last position, only possible without index as it may still reference it
+                used--;
+            }
+            return value;
         }
     }
 
     /**
      * Gets the key set. IT MUST NOT BE MODIFIED.
+     * <p>
+     * Except for thread-safe states, this is a copy, so the state may be modified while iterating on it.
      */
     public Set<String> keySet() {
         if (map != null) {
             return map.keySet();
         } else {
-            return ImmutableSet.copyOf(keys);
+            return Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(keyArray())));
         }
     }
 
@@ -329,7 +452,14 @@ public class State implements StateAccessor, Serializable {
         if (map != null) {
             return map.keySet().toArray(EMPTY_STRING_ARRAY);
         } else {
-            return keys.toArray(EMPTY_STRING_ARRAY);
+            String[] array = new String[size];
+            int j = 0;
+            for (int i = 0; i < used; i++) {
+                if (keys[i] != null) {
+                    array[j++] = keys[i];
+                }
+            }
+            return array;
         }
     }
 
@@ -340,7 +470,7 @@ public class State implements StateAccessor, Serializable {
         if (map != null) {
             return map.containsKey(key);
         } else {
-            return keys.contains(key);
+            return position(key) >= 0;
         }
     }
 
@@ -356,105 +486,76 @@ public class State implements StateAccessor, Serializable {
     }
 
     /** EntrySet optimized to just return a simple Iterator on the entries. */
-    protected class ArraysEntrySet implements Set<Entry<String, Serializable>> {
+    protected class ArraysEntrySet extends AbstractSet<Entry<String, Serializable>> {
 
         @Override
         public int size() {
-            return keys.size();
-        }
-
-        @Override
-        public boolean isEmpty() {
-            return keys.isEmpty();
+            return size;
         }
 
         @Override
         public Iterator<Entry<String, Serializable>> iterator() {
             return new ArraysEntryIterator();
         }
+    }
 
-        @Override
-        public boolean contains(Object o) {
-            throw new UnsupportedOperationException();
-        }
-
-        @Override
-        public Object[] toArray() {
-            throw new UnsupportedOperationException();
-        }
-
-        @Override
-        public <T> T[] toArray(T[] a) {
-            throw new UnsupportedOperationException();
-        }
-
-        @Override
-        public boolean add(Entry<String, Serializable> e) {
-            throw new UnsupportedOperationException();
-        }
-
-        @Override
-        public boolean remove(Object o) {
-            throw new UnsupportedOperationException();
-        }
+    /**
+     * Iterator on the entries present when it was created. Adding entries while iterating doesn't affect it, and
+     * entries removed while iterating are skipped.
+     */
+    public class ArraysEntryIterator implements Iterator<Entry<String, Serializable>> {
 
-        @Override
-        public boolean containsAll(Collection<?> c) {
-            throw new UnsupportedOperationException();
-        }
+        private final String[] keys = State.this.keys;
 
-        @Override
-        public boolean addAll(Collection<? extends Entry<String, Serializable>> c) {
-            throw new UnsupportedOperationException();
-        }
+        private final Serializable[] values = State.this.values;
 
-        @Override
-        public boolean retainAll(Collection<?> c) {
-            throw new UnsupportedOperationException();
-        }
+        private final int used = State.this.used;
 
-        @Override
-        public boolean removeAll(Collection<?> c) {
-            throw new UnsupportedOperationException();
-        }
+        private int index;
 
-        @Override
-        public void clear() {
-            throw new UnsupportedOperationException();
+        private void skipRemoved() {
+            while (index < used && keys[index] == null) {
+                index++;
+            }
         }
-    }
-
-    public class ArraysEntryIterator implements Iterator<Entry<String, Serializable>> {
-
-        private int index;
 
         @Override
         public boolean hasNext() {
-            return index < keys.size();
+            // entries may have been removed since the last call
+            skipRemoved();
+            return index < used;
         }
 
         @Override
         public Entry<String, Serializable> next() {
-            return new ArraysEntry(index++);
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Entry<String, Serializable> entry = new ArraysEntry(keys[index], values[index]);
+            index++;
+            return entry;
         }
     }
 
-    public class ArraysEntry implements Entry<String, Serializable> {
+    public static class ArraysEntry implements Entry<String, Serializable> {
+
+        private final String key;
 
-        private final int index;
+        private final Serializable value;
 
-        public ArraysEntry(int index) {
-            this.index = index;
+        public ArraysEntry(String key, Serializable value) {
+            this.key = key;
+            this.value = value;
         }
 
         @Override
         public String getKey() {
-            return keys.get(index);
+            return key;
         }
 
         @Override
         public Serializable getValue() {
-            return values.get(index);
+            return value;
         }
 
         @Override
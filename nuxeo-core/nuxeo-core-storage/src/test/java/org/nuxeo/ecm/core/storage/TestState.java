@@ -21,6 +21,7 @@ package org.nuxeo.ecm.core.storage;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.io.Serializable;
@@ -83,6 +84,83 @@ public class TestState {
         check(s, 6);
     }
 
+    @Test
+    public void testLargeState() {
+        State s = new State();
+        for (int i = 1; i <= 100; i++) {
+            s.put(String.valueOf(i), String.valueOf(i));
+        }
+        check(s, 100);
+        // remove and re-add keys, order is insertion order
+        for (int i = 1; i <= 100; i += 2) {
+            s.remove(String.valueOf(i));
+        }
+        assertEquals(50, s.size());
+        assertNull(s.get("1"));
+        assertEquals("2", s.get("2"));
+        s.put("1", "1");
+        String[] keys = s.keyArray();
+        assertEquals("2", keys[0]);
+        assertEquals("1", keys[keys.length - 1]);
+        // remove everything
+        for (int i = 1; i <= 100; i++) {
+            s.put(String.valueOf(i), null);
+        }
+        check(s, 0);
+        s.put("1", "1");
+        check(s, 1);
+    }
+
+    @Test
+    public void testAddWhileIterating() {
+        State s = new State();
+        s.put("1", "1");
+        s.put("2", "2");
+        for (String key : s.keySet()) {
+            // entries added while iterating are not seen by the iterator
+            s.put(key + "0", key);
+        }
+        assertEquals(4, s.size());
+        assertEquals("1", s.get("10"));
+        assertEquals("2", s.get("20"));
+    }
+
+    @Test
+    public void testRemoveWhileIterating() {
+        State s = new State();
+        for (int i = 1; i <= 100; i++) {
+            s.put(String.valueOf(i), String.valueOf(i));
+        }
+        Set<String> set = s.keySet();
+        for (String key : set) {
+            s.remove(key);
+        }
+        // the key set is a copy
+        assertEquals(100, set.size());
+        check(s, 0);
+
+        s.put("1", "1");
+        s.put("2", "2");
+        s.put("3", "3");
+        int n = 0;
+        for (Entry<String, Serializable> e : s.entrySet()) {
+            n++;
+            // removed entries are not seen by the iterator
+            s.remove("2");
+            assertFalse("2".equals(e.getKey()));
+        }
+        assertEquals(2, n);
+    }
+
+    @Test
+    public void testKeysInterned() {
+        State s1 = new State();
+        s1.put(new String("dc:title"), "foo");
+        State s2 = new State();
+        s2.put(new String("dc:title"), "bar");
+        assertSame(s1.keyArray()[0], s2.keyArray()[0]);
+    }
+
     protected static void check(State s, int n) {
         Set<String> set = s.keySet();
         Set<Entry<String, Serializable>> es = s.entrySet();
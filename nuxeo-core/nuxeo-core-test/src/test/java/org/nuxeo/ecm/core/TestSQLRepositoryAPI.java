@@ -4795,4 +4795,143 @@ public class TestSQLRepositoryAPI {
         }
     }
 
+    protected static Map<String, Object> newVignette(String label) {
+        Map<String, Object> vignette = new HashMap<>();
+        vignette.put("width", Long.valueOf(0));
+        vignette.put("height", Long.valueOf(0));
+        vignette.put("label", label);
+        return vignette;
+    }
+
+    protected static void setVignettes(DocumentModel doc, String... labels) {
+        List<Map<String, Object>> vignettes = new ArrayList<>();
+        for (String label : labels) {
+            vignettes.add(newVignette(label));
+        }
+        Map<String, Object> attachedFile = new HashMap<>();
+        attachedFile.put("name", "somename");
+        attachedFile.put("vignettes", vignettes);
+        doc.setPropertyValue("cmpf:attachedFile", (Serializable) attachedFile);
+    }
+
+    @Test
+    public void testOptimisticLockingSeveralDocuments() {
+        DocumentModel doc1 = session.createDocumentModel("/", "doc1", "File");
+        doc1.setPropertyValue("dc:title", "foo");
+        maybeCreateChangeToken(doc1);
+        doc1 = session.createDocument(doc1);
+        DocumentModel doc2 = session.createDocumentModel("/", "doc2", "ComplexDoc");
+        setVignettes(doc2, "a");
+        maybeCreateChangeToken(doc2);
+        doc2 = session.createDocument(doc2);
+        session.save();
+
+        // save several documents at once as user changes, twice, to check that the change tokens
+        // are correctly matched and updated even for a list change needing several database updates
+        for (int i = 0; i < 2; i++) {
+            doc1.setPropertyValue("dc:title", "bar" + i);
+            doc1.putContextData(CoreSession.USER_CHANGE, Boolean.TRUE);
+            maybeUpdateChangeToken(doc1);
+            doc1 = session.saveDocument(doc1);
+            // change an element of the list and append another one
+            String[] labels = new String[i + 2];
+            labels[0] = "b" + i;
+            for (int j = 1; j < labels.length; j++) {
+                labels[j] = "c" + j;
+            }
+            setVignettes(doc2, labels);
+            doc2.putContextData(CoreSession.USER_CHANGE, Boolean.TRUE);
+            maybeUpdateChangeToken(doc2);
+            doc2 = session.saveDocument(doc2);
+            session.save();
+            nextTransaction();
+        }
+        reopenSession();
+
+        doc1 = session.getDocument(doc1.getRef());
+        assertEquals("bar1", doc1.getPropertyValue("dc:title"));
+        doc2 = session.getDocument(doc2.getRef());
+        assertEquals("b1", doc2.getPropertyValue("cmpf:attachedFile/vignettes/vignette[0]/label"));
+        assertEquals("c2", doc2.getPropertyValue("cmpf:attachedFile/vignettes/vignette[2]/label"));
+    }
+
+    @Test
+    public void testOptimisticLockingSeveralDocumentsWithParallelChange() throws Exception {
+        DocumentModel doc1 = session.createDocumentModel("/", "doc1", "File");
+        doc1.setPropertyValue("dc:title", "foo");
+        maybeCreateChangeToken(doc1);
+        doc1 = session.createDocument(doc1);
+        DocumentModel doc2 = session.createDocumentModel("/", "doc2", "ComplexDoc");
+        setVignettes(doc2, "a");
+        maybeCreateChangeToken(doc2);
+        doc2 = session.createDocument(doc2);
+        DocumentModel doc3 = session.createDocumentModel("/", "doc3", "File");
+        doc3.setPropertyValue("dc:title", "foo");
+        doc3 = session.createDocument(doc3);
+        session.save();
+
+        // re-start a new transaction that hasn't done any writes
+        nextTransaction();
+        waitForAsyncCompletion();
+        reopenSession();
+
+        doc1 = session.getDocument(doc1.getRef());
+        doc2 = session.getDocument(doc2.getRef());
+        doc3 = session.getDocument(doc3.getRef());
+
+        // in other thread, update doc1 as a user change
+        DocumentRef docRef = doc1.getRef();
+        MutableObject<RuntimeException> me = new MutableObject<>();
+        Thread thread = new Thread(() -> {
+            TransactionHelper.runInTransaction(() -> {
+                try (CloseableCoreSession session2 = CoreInstance.openCoreSession(coreFeature.getRepositoryName())) {
+                    DocumentModel doc = session2.getDocument(docRef);
+                    doc.setPropertyValue("dc:title", "bar parallel");
+                    doc.putContextData(CoreSession.USER_CHANGE, Boolean.TRUE);
+                    maybeUpdateChangeToken(doc);
+                    session2.saveDocument(doc);
+                    session2.save(); // save succeeds
+                } catch (RuntimeException e) {
+                    me.setValue(e);
+                }
+            });
+        });
+        thread.start();
+        thread.join();
+        if (me.getValue() != null) {
+            throw me.getValue();
+        }
+
+        // now save all the documents at once, doc1 and doc2 as user changes
+        doc1.setPropertyValue("dc:title", "bar");
+        doc1.putContextData(CoreSession.USER_CHANGE, Boolean.TRUE);
+        maybeUpdateChangeToken(doc1);
+        session.saveDocument(doc1);
+        setVignettes(doc2, "b", "c");
+        doc2.putContextData(CoreSession.USER_CHANGE, Boolean.TRUE);
+        maybeUpdateChangeToken(doc2);
+        session.saveDocument(doc2);
+        doc3.setPropertyValue("dc:title", "bar");
+        session.saveDocument(doc3);
+        try {
+            session.save();
+            if (isChangeTokenEnabled()) { // not failing for manual change tokens
+                fail("save should fail because of concurrent update in other transaction");
+            }
+        } catch (ConcurrentUpdateException e) {
+            if (!isChangeTokenEnabled()) {
+                // no exception expected for manual change token
+                throw e;
+            }
+            TransactionHelper.setTransactionRollbackOnly();
+            if (isDBS()) {
+                // only the concurrently updated document is reported
+                String message = e.getMessage();
+                assertTrue(message, message.contains(doc1.getId()));
+                assertFalse(message, message.contains(doc2.getId()));
+                assertFalse(message, message.contains(doc3.getId()));
+            }
+        }
+    }
+
 }
@@ -26,6 +26,7 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
 import static org.nuxeo.ecm.core.api.security.Access.DENY;
 import static org.nuxeo.ecm.core.api.security.Access.GRANT;
 import static org.nuxeo.ecm.core.api.security.Access.UNKNOWN;
@@ -43,6 +44,8 @@ import static org.nuxeo.ecm.core.api.security.SecurityConstants.WRITE_SECURITY;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -55,6 +58,7 @@ import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.nuxeo.ecm.core.api.AbstractSession;
 import org.nuxeo.ecm.core.api.CloseableCoreSession;
 import org.nuxeo.ecm.core.api.CoreInstance;
 import org.nuxeo.ecm.core.api.CoreSession;
@@ -75,7 +79,15 @@ import org.nuxeo.ecm.core.api.security.impl.ACLImpl;
 import org.nuxeo.ecm.core.api.security.impl.ACPImpl;
 import org.nuxeo.ecm.core.api.security.impl.UserEntryImpl;
 import org.nuxeo.ecm.core.event.EventService;
+import org.nuxeo.ecm.core.model.Repository;
+import org.nuxeo.ecm.core.repository.RepositoryService;
 import org.nuxeo.ecm.core.security.SecurityService;
+import org.nuxeo.ecm.core.storage.State;
+import org.nuxeo.ecm.core.storage.State.StateDiff;
+import org.nuxeo.ecm.core.storage.dbs.DBSDocument;
+import org.nuxeo.ecm.core.storage.dbs.DBSRepository;
+import org.nuxeo.ecm.core.storage.dbs.DBSSession;
+import org.nuxeo.ecm.core.storage.dbs.DBSTransactionState;
 import org.nuxeo.ecm.core.storage.sql.coremodel.SQLSession;
 import org.nuxeo.ecm.core.test.CoreFeature;
 import org.nuxeo.ecm.core.test.annotations.Granularity;
@@ -869,6 +881,133 @@ public class TestSQLRepositorySecurity {
         }
     }
 
+    @Test
+    public void testReadAclOnLargeTreeTopDown() {
+        assumeTrue("top-down Read ACLs are only implemented for DBS", coreFeature.getStorageConfiguration().isDBS());
+        String enabledProp = "nuxeo.core.readacl.async.enabled";
+        String thresholdProp = "nuxeo.core.readacl.async.threshold";
+        String topDownProp = DBSTransactionState.READ_ACL_ASYNC_TOPDOWN_PROPERTY;
+        Framework.getProperties().put(enabledProp, "true");
+        Framework.getProperties().put(thresholdProp, "10");
+        Framework.getProperties().put(topDownProp, "true");
+        try {
+            doTestReadAclOnLargeTree();
+        } finally {
+            Framework.getProperties().remove(enabledProp);
+            Framework.getProperties().remove(thresholdProp);
+            Framework.getProperties().remove(topDownProp);
+        }
+    }
+
+    @Test
+    public void testReadAclTopDown() {
+        doTestReadAclTopDown(false);
+    }
+
+    @Test
+    public void testReadAclTopDownSplit() {
+        doTestReadAclTopDown(true);
+    }
+
+    /**
+     * Checks that the top-down computation gives for each document the same Read ACL as the computation walking up
+     * the ancestors of each document.
+     */
+    protected void doTestReadAclTopDown(boolean split) {
+        assumeTrue("top-down Read ACLs are only implemented for DBS", coreFeature.getStorageConfiguration().isDBS());
+        DocumentModel root = session.createDocument(session.createDocumentModel("/", "root", "Folder"));
+        setACEs(root, new ACE("mickey", READ, true));
+        // blocking inheritance, with a nested ACP granting more below
+        DocumentModel blocked = session.createDocument(session.createDocumentModel("/root", "blocked", "Folder"));
+        setACEs(blocked, new ACE("minnie", READ, true), new ACE(EVERYONE, EVERYTHING, false));
+        DocumentModel nested = session.createDocument(session.createDocumentModel("/root/blocked", "nested", "Folder"));
+        setACEs(nested, new ACE("donald", BROWSE, true));
+        createFiles("/root/blocked/nested", "file", 3);
+        // granting, with a blocking document and a non-Everyone deny below
+        DocumentModel granted = session.createDocument(session.createDocumentModel("/root", "granted", "Folder"));
+        setACEs(granted, new ACE("goofy", READ, true));
+        DocumentModel doc = session.createDocument(session.createDocumentModel("/root/granted", "blockedfile", "File"));
+        setACEs(doc, new ACE("daisy", READ, true), new ACE(EVERYONE, EVERYTHING, false));
+        doc = session.createDocument(session.createDocumentModel("/root/granted", "deniedfile", "File"));
+        setACEs(doc, new ACE("pluto", READ, false));
+        // more than a batch of descendants, without ACP
+        session.createDocument(session.createDocumentModel("/root/granted", "many", "Folder"));
+        createFiles("/root/granted/many", "file", 510);
+        session.save();
+        List<String> ids = new ArrayList<>();
+        ids.add(root.getId());
+        for (DocumentModel d : session.query("SELECT * FROM Document WHERE ecm:ancestorId = '" + root.getId() + "'")) {
+            ids.add(d.getId());
+        }
+
+        DBSRepository repository = getDBSRepository();
+        try (CloseableCoreSession systemSession = CoreInstance.openCoreSessionSystem(session.getRepositoryName())) {
+            DBSSession dbsSession = (DBSSession) ((AbstractSession) systemSession).getSession();
+
+            // expected Read ACLs, computed document by document
+            resetReadAcls(repository, ids);
+            dbsSession.updateReadACLs(ids);
+            Map<String, List<Object>> expected = getReadAcls(repository, ids);
+            assertTrue(expected.get(root.getId()).contains("mickey"));
+            assertEquals(Arrays.asList("minnie"), expected.get(blocked.getId()));
+            assertEquals(Arrays.asList("donald", "minnie"), expected.get(nested.getId()));
+
+            // top-down
+            resetReadAcls(repository, ids);
+            if (split) {
+                dbsSession.updateTreeReadAclsTopDown(root.getId(), null, (childId, parentReadAcl) -> dbsSession
+                        .updateTreeReadAclsTopDown(childId, parentReadAcl, null, count -> {
+                        }), count -> {
+                        });
+            } else {
+                dbsSession.updateTreeReadAclsTopDown(root.getId(), null, null, count -> {
+                });
+            }
+            Map<String, List<Object>> actual = getReadAcls(repository, ids);
+            for (String id : ids) {
+                assertEquals(id, expected.get(id), actual.get(id));
+            }
+        }
+    }
+
+    protected void setACEs(DocumentModel doc, ACE... aces) {
+        ACP acp = new ACPImpl();
+        for (ACE ace : aces) {
+            acp.addACE(ACL.LOCAL_ACL, ace);
+        }
+        doc.setACP(acp, true);
+    }
+
+    protected void createFiles(String parentPath, String prefix, int count) {
+        for (int i = 0; i < count; i++) {
+            session.createDocument(session.createDocumentModel(parentPath, prefix + i, "File"));
+        }
+    }
+
+    protected DBSRepository getDBSRepository() {
+        RepositoryService repositoryService = Framework.getService(RepositoryService.class);
+        Repository repository = repositoryService.getRepository(session.getRepositoryName());
+        return (DBSRepository) repository;
+    }
+
+    protected void resetReadAcls(DBSRepository repository, List<String> ids) {
+        for (String id : ids) {
+            StateDiff diff = new StateDiff();
+            diff.put(DBSDocument.KEY_READ_ACL, new String[] { "bogus" });
+            repository.updateState(id, diff, null);
+        }
+    }
+
+    protected Map<String, List<Object>> getReadAcls(DBSRepository repository, List<String> ids) {
+        Map<String, List<Object>> readAcls = new HashMap<>();
+        for (String id : ids) {
+            State state = repository.readState(id);
+            Object[] readAcl = (Object[]) state.get(DBSDocument.KEY_READ_ACL);
+            readAcls.put(id, readAcl == null ? Collections.emptyList() : Arrays.asList(readAcl));
+        }
+        return readAcls;
+    }
+
     protected void doTestReadAclOnLargeTree() {
         DocumentModel rootFolder = session.createDocumentModel("/", "folder", "Folder");
         rootFolder = session.createDocument(rootFolder);
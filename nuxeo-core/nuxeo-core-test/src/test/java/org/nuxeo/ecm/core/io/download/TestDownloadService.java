@@ -25,13 +25,18 @@ import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.atLeast;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
@@ -124,6 +129,97 @@ public class TestDownloadService {
         assertEquals(blobValue, out.toString(encoding));
     }
 
+    @Test
+    public void testFileBlobByteRangeDownload() throws Exception {
+        // blob backed by a file
+        String blobValue = "Hello World";
+        Blob blob = new FileBlob(new ByteArrayInputStream(blobValue.getBytes()));
+        blob.setFilename("myFile.txt");
+        blob.setDigest("12345");
+
+        // prepare mocks
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getMethod()).thenReturn("GET");
+        when(request.getHeader("Range")).thenReturn("bytes=6-");
+
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        ServletOutputStream sos = new DummyServletOutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+            }
+        };
+        when(response.getOutputStream()).thenReturn(sos);
+
+        // send download request
+        downloadService.downloadBlob(request, response, null, null, blob, null, null);
+
+        // check that the byte range gets returned
+        assertEquals("World", out.toString());
+        verify(response).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        verify(response).setHeader("Content-Range", "bytes 6-10/11");
+
+        // full download
+        out.reset();
+        when(request.getHeader("Range")).thenReturn(null);
+        downloadService.downloadBlob(request, response, null, null, blob, null, null);
+        assertEquals(blobValue, out.toString());
+    }
+
+    @Test
+    public void testFileBlobSendFile() throws Exception {
+        // blob backed by a file, large enough for sendfile
+        byte[] bytes = new byte[100_000];
+        FileBlob blob = new FileBlob(new ByteArrayInputStream(bytes));
+        blob.setFilename("myFile.bin");
+        blob.setDigest("12345");
+
+        // prepare mocks, for a container supporting sendfile
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getMethod()).thenReturn("GET");
+        when(request.getAttribute(DownloadServiceImpl.SENDFILE_SUPPORT_ATTR)).thenReturn(TRUE);
+        when(request.getHeader("Range")).thenReturn("bytes=1000-1999");
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        ServletOutputStream sos = new DummyServletOutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+            }
+        };
+        when(response.getOutputStream()).thenReturn(sos);
+
+        // byte range, the container sends the file
+        downloadService.downloadBlob(request, response, null, null, blob, null, null);
+        String path = blob.getFile().getAbsolutePath();
+        verify(request).setAttribute(DownloadServiceImpl.SENDFILE_FILENAME_ATTR, path);
+        verify(request).setAttribute(DownloadServiceImpl.SENDFILE_START_ATTR, Long.valueOf(1000));
+        verify(request).setAttribute(DownloadServiceImpl.SENDFILE_END_ATTR, Long.valueOf(2000));
+        verify(response).setContentLengthLong(1000);
+        assertEquals(0, out.size());
+
+        // full download
+        when(request.getHeader("Range")).thenReturn(null);
+        downloadService.downloadBlob(request, response, null, null, blob, null, null);
+        verify(request).setAttribute(DownloadServiceImpl.SENDFILE_START_ATTR, Long.valueOf(0));
+        verify(request).setAttribute(DownloadServiceImpl.SENDFILE_END_ATTR, Long.valueOf(bytes.length));
+        assertEquals(0, out.size());
+
+        // small range, copied
+        when(request.getHeader("Range")).thenReturn("bytes=0-9");
+        downloadService.downloadBlob(request, response, null, null, blob, null, null);
+        assertEquals(10, out.size());
+
+        // no sendfile support in the container, copied
+        HttpServletRequest request2 = mock(HttpServletRequest.class);
+        when(request2.getMethod()).thenReturn("GET");
+        downloadService.downloadBlob(request2, response, null, null, blob, null, null);
+        verify(request2, never()).setAttribute(eq(DownloadServiceImpl.SENDFILE_FILENAME_ATTR), any());
+        assertEquals(10 + bytes.length, out.size());
+        assertTrue(blob.getFile().exists());
+    }
+
     @Test
     public void testETagHeaderNone() throws Exception {
         doTestETagHeader(null);
@@ -1122,6 +1122,13 @@ public abstract class AbstractSession implements CoreSession, Serializable {
         return query(query, queryType, filter, limit, offset, countUpTo);
     }
 
+    @Override
+    public DocumentModelList query(String query, String queryType, Filter filter, long limit, long offset,
+            boolean countTotal, String[] schemas) {
+        long countUpTo = computeCountUpTo(countTotal);
+        return query(query, queryType, filter, limit, offset, countUpTo, schemas);
+    }
+
     /**
      * @return the appropriate countUpTo value depending on input {@code countTotal} and configuration.
      */
@@ -1169,6 +1176,12 @@ public abstract class AbstractSession implements CoreSession, Serializable {
     @Override
     public DocumentModelList query(String query, String queryType, Filter filter, long limit, long offset,
             long countUpTo) {
+        return query(query, queryType, filter, limit, offset, countUpTo, null);
+    }
+
+    @Override
+    public DocumentModelList query(String query, String queryType, Filter filter, long limit, long offset,
+            long countUpTo, String[] schemas) {
         SecurityService securityService = getSecurityService();
         Principal principal = getPrincipal();
         try {
@@ -1183,7 +1196,7 @@ public abstract class AbstractSession implements CoreSession, Serializable {
 
             QueryFilter queryFilter = new QueryFilter(principal, principals, permissions,
                     filter instanceof FacetFilter ? (FacetFilter) filter : null, transformers, postFilter ? 0 : limit,
-                    postFilter ? 0 : offset);
+                    postFilter ? 0 : offset, schemas);
 
             // get document list with total size
             PartialList<Document> pl = getSession().query(query, queryType, queryFilter, postFilter ? -1 : countUpTo);
@@ -1191,7 +1204,8 @@ public abstract class AbstractSession implements CoreSession, Serializable {
             DocumentModelListImpl dms = new DocumentModelListImpl(pl.size());
             dms.setTotalSize(pl.totalSize());
             for (Document doc : pl) {
-                dms.add(readModel(doc));
+                dms.add(schemas == null ? readModel(doc)
+                        : DocumentModelFactory.createDocumentModel(doc, getSessionId(), schemas));
             }
 
             if (!postFilter) {
@@ -20,10 +20,15 @@ package org.nuxeo.ecm.core.blob;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Deque;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -54,6 +59,16 @@ public class DocumentBlobManagerComponent extends DefaultComponent implements Do
 
     protected static final String XP = "configuration";
 
+    /**
+     * Framework property for the number of repositories whose referenced binaries are marked in parallel during a
+     * binaries GC. All the garbage collectors must then accept concurrent marks.
+     *
+     * @since 10.2
+     */
+    public static final String GC_MARK_THREADS_PROP = "nuxeo.binary.gc.mark.threads";
+
+    public static final String DEFAULT_GC_MARK_THREADS = "1";
+
     protected static BlobDispatcher DEFAULT_BLOB_DISPATCHER = new DefaultBlobDispatcher();
 
     protected Deque<BlobDispatcherDescriptor> blobDispatcherDescriptorsRegistry = new LinkedList<>();
@@ -246,11 +261,7 @@ public class DocumentBlobManagerComponent extends DefaultComponent implements Do
         }
         // in all repositories, mark referenced binaries
         // the marking itself will call back into the appropriate gc's mark method
-        RepositoryService repositoryService = Framework.getService(RepositoryService.class);
-        for (String repositoryName : repositoryService.getRepositoryNames()) {
-            Repository repository = repositoryService.getRepository(repositoryName);
-            repository.markReferencedBinaries();
-        }
+        markReferencedBinaries();
         // stop gc
         BinaryManagerStatus globalStatus = new BinaryManagerStatus();
         for (BinaryGarbageCollector gc : gcs) {
@@ -260,11 +271,53 @@ public class DocumentBlobManagerComponent extends DefaultComponent implements Do
             globalStatus.sizeBinaries += status.sizeBinaries;
             globalStatus.numBinariesGC += status.numBinariesGC;
             globalStatus.sizeBinariesGC += status.sizeBinariesGC;
+            globalStatus.numDirectories += status.numDirectories;
+            globalStatus.numDirectoriesSwept += status.numDirectoriesSwept;
         }
         globalStatus.gcDuration = System.currentTimeMillis() - start;
         return globalStatus;
     }
 
+    /**
+     * Marks the referenced binaries of all the repositories, in parallel if configured.
+     *
+     * @since 10.2
+     */
+    protected void markReferencedBinaries() {
+        RepositoryService repositoryService = Framework.getService(RepositoryService.class);
+        List<String> repositoryNames = repositoryService.getRepositoryNames();
+        int threads = Math.min(repositoryNames.size(),
+                Integer.parseInt(Framework.getProperty(GC_MARK_THREADS_PROP, DEFAULT_GC_MARK_THREADS)));
+        if (threads <= 1) {
+            for (String repositoryName : repositoryNames) {
+                repositoryService.getRepository(repositoryName).markReferencedBinaries();
+            }
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "Nuxeo-BinaryGC-Mark");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>(repositoryNames.size());
+            for (String repositoryName : repositoryNames) {
+                Repository repository = repositoryService.getRepository(repositoryName);
+                futures.add(executor.submit(repository::markReferencedBinaries));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NuxeoException(e);
+        } catch (ExecutionException e) {
+            throw new NuxeoException("Failed to mark binaries", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     @Override
     public void markReferencedBinary(String key, String repositoryName) {
         BlobProvider blobProvider = getBlobProvider(key, repositoryName);
@@ -51,6 +51,7 @@ import org.nuxeo.ecm.platform.query.api.PageProviderService;
 import org.nuxeo.ecm.platform.query.api.QuickFilter;
 import org.nuxeo.ecm.platform.query.nxql.CoreQueryDocumentPageProvider;
 import org.nuxeo.ecm.restapi.server.jaxrs.adapters.SearchAdapter;
+import org.nuxeo.ecm.webengine.jaxrs.coreiodelegate.RenderingContextWebUtils;
 import org.nuxeo.ecm.webengine.model.exceptions.IllegalParameterException;
 import org.nuxeo.ecm.webengine.model.impl.AbstractResource;
 import org.nuxeo.ecm.webengine.model.impl.ResourceTypeImpl;
@@ -273,6 +274,8 @@ public abstract class QueryExecutor extends AbstractResource<ResourceTypeImpl> {
     protected Map<String, Serializable> getProperties() {
         Map<String, Serializable> props = new HashMap<>();
         props.put(CoreQueryDocumentPageProvider.CORE_SESSION_PROPERTY, (Serializable) ctx.getCoreSession());
+        props.put(CoreQueryDocumentPageProvider.PREFETCH_SCHEMAS_PROPERTY,
+                RenderingContextWebUtils.getRequestedSchemas(ctx.getRequest()));
         return props;
     }
 
@@ -35,6 +35,7 @@ import org.nuxeo.ecm.platform.query.api.PageProvider;
 import org.nuxeo.ecm.platform.query.api.PageProviderDefinition;
 import org.nuxeo.ecm.platform.query.api.PageProviderService;
 import org.nuxeo.ecm.platform.query.nxql.CoreQueryDocumentPageProvider;
+import org.nuxeo.ecm.webengine.jaxrs.coreiodelegate.RenderingContextWebUtils;
 import org.nuxeo.ecm.webengine.model.impl.DefaultAdapter;
 import org.nuxeo.runtime.api.Framework;
 
@@ -114,6 +115,8 @@ public abstract class PaginableAdapter<T> extends DefaultAdapter {
         PageProviderService pps = Framework.getService(PageProviderService.class);
         Map<String, Serializable> props = new HashMap<>();
         props.put(CoreQueryDocumentPageProvider.CORE_SESSION_PROPERTY, (Serializable) ctx.getCoreSession());
+        props.put(CoreQueryDocumentPageProvider.PREFETCH_SCHEMAS_PROPERTY,
+                RenderingContextWebUtils.getRequestedSchemas(ctx.getRequest()));
         PageProvider<T> pp = (PageProvider<T>) pps.getPageProvider("", ppDefinition, getSearchDocument(), null,
                 pageSize, currentPageIndex, props, getParams());
         if (!StringUtils.isBlank(sortBy)) {
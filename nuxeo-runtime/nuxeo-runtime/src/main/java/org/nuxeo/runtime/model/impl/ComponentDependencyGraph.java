@@ -0,0 +1,379 @@
+/*
+ * (C) Copyright 2018 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.runtime.model.impl;
+
+import java.io.PrintStream;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.nuxeo.runtime.model.ComponentName;
+import org.nuxeo.runtime.model.Extension;
+import org.nuxeo.runtime.model.RegistrationInfo;
+
+/**
+ * Dependency graph of components, used to activate or start independent components concurrently.
+ * <p>
+ * The nodes are added in the order in which they would be processed sequentially, and a node can only depend on a
+ * node added before it, so the graph has no cycles and processing it respects the sequential order for all the
+ * declared dependencies. Nodes are also grouped in consecutive levels: a level is processed only once all the previous
+ * levels are done.
+ * <p>
+ * Once run, the graph can report its critical path, which is the chain of components that determined the total
+ * duration.
+ *
+ * @since 10.2
+ */
+public class ComponentDependencyGraph {
+
+    protected final List<RegistrationInfo> nodes = new ArrayList<>();
+
+    protected final Map<RegistrationInfo, Integer> indexes = new IdentityHashMap<>();
+
+    protected final List<Integer> levels = new ArrayList<>();
+
+    protected final List<Set<Integer>> dependencies = new ArrayList<>();
+
+    protected final List<Set<Integer>> dependents = new ArrayList<>();
+
+    // execution state, guarded by the monitor passed to run
+
+    protected int[] remaining;
+
+    protected int[] levelRemaining;
+
+    protected int currentLevel;
+
+    protected int running;
+
+    protected int completed;
+
+    protected Throwable failure;
+
+    protected long[] startTimes;
+
+    protected long[] endTimes;
+
+    protected long t0;
+
+    protected long t1;
+
+    protected int threads;
+
+    /**
+     * Builds the graph used to activate components.
+     * <p>
+     * A component depends on the components it requires. In addition, a component, the components contributing to it
+     * and the components contributing to the same target are processed in their sequential order, so that the
+     * contributions of a target are registered in the same order as in a sequential activation.
+     *
+     * @param ris the components, in activation order
+     * @param registry the registry, used to resolve the component names
+     */
+    public static ComponentDependencyGraph forActivation(List<RegistrationInfo> ris, ComponentRegistry registry) {
+        ComponentDependencyGraph graph = new ComponentDependencyGraph();
+        for (RegistrationInfo ri : ris) {
+            graph.addNode(ri, 0);
+        }
+        // last component activated or contributing, per target
+        Map<Object, RegistrationInfo> lastTouched = new HashMap<>();
+        for (RegistrationInfo ri : ris) {
+            for (ComponentName name : ri.getRequiredComponents()) {
+                graph.addDependency(ri, registry.getComponent(name));
+            }
+            Set<Object> targets = new LinkedHashSet<>();
+            targets.add(ri);
+            Extension[] extensions = ri.getExtensions();
+            if (extensions != null) {
+                for (Extension xt : extensions) {
+                    ComponentName name = xt.getTargetComponent();
+                    RegistrationInfo target = registry.getComponent(name);
+                    targets.add(target == null ? name : target);
+                }
+            }
+            for (Object target : targets) {
+                graph.addDependency(ri, lastTouched.put(target, ri));
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * Builds the graph used to start components.
+     * <p>
+     * Components with a different start order are in different levels, so a component is started only once all the
+     * components with a lower start order are started. Components with the same start order are started after the
+     * components they require.
+     *
+     * @param ris the components, sorted by start order
+     * @param registry the registry, used to resolve the component names
+     */
+    public static ComponentDependencyGraph forStart(List<RegistrationInfo> ris, ComponentRegistry registry) {
+        ComponentDependencyGraph graph = new ComponentDependencyGraph();
+        int level = -1;
+        int order = 0;
+        for (RegistrationInfo ri : ris) {
+            int o = ri.getApplicationStartedOrder();
+            if (level < 0 || o != order) {
+                level++;
+                order = o;
+            }
+            graph.addNode(ri, level);
+        }
+        for (RegistrationInfo ri : ris) {
+            for (ComponentName name : ri.getRequiredComponents()) {
+                graph.addDependency(ri, registry.getComponent(name));
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * Adds a node. Its level must not be lower than the level of the previous node.
+     */
+    public void addNode(RegistrationInfo ri, int level) {
+        if (!levels.isEmpty() && level < levels.get(levels.size() - 1)) {
+            throw new IllegalArgumentException("Level " + level + " lower than previous level for: " + ri.getName());
+        }
+        indexes.put(ri, Integer.valueOf(nodes.size()));
+        nodes.add(ri);
+        levels.add(Integer.valueOf(level));
+        dependencies.add(new LinkedHashSet<>());
+        dependents.add(new LinkedHashSet<>());
+    }
+
+    /**
+     * Adds a dependency between two nodes.
+     * <p>
+     * The dependency is ignored if the dependency is not a node added before the dependent node in the same level.
+     *
+     * @return {@code true} if the dependency was added
+     */
+    public boolean addDependency(RegistrationInfo ri, RegistrationInfo dependency) {
+        if (dependency == null) {
+            return false;
+        }
+        Integer i = indexes.get(ri);
+        Integer d = indexes.get(dependency);
+        if (i == null || d == null || d.intValue() >= i.intValue() || !levels.get(i).equals(levels.get(d))) {
+            return false;
+        }
+        dependencies.get(i).add(d);
+        dependents.get(d).add(i);
+        return true;
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * Runs an action on all the nodes, running it concurrently on the nodes that don't depend on each other.
+     * <p>
+     * The calling thread waits on the given monitor, which is released while waiting. If the action fails for a node,
+     * no new action is started and the failure is rethrown once the running ones are done.
+     *
+     * @param threads the maximum number of concurrent actions
+     * @param threadName the prefix of the name of the threads
+     * @param action the action
+     * @param monitor the monitor guarding the execution state
+     */
+    public void run(int threads, String threadName, Consumer<RegistrationInfo> action, Object monitor)
+            throws InterruptedException {
+        int n = nodes.size();
+        this.threads = Math.max(1, threads);
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(this.threads, runnable -> {
+            Thread thread = new Thread(runnable, threadName + "-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setContextClassLoader(classLoader);
+            return thread;
+        });
+        try {
+            synchronized (monitor) {
+                remaining = new int[n];
+                startTimes = new long[n];
+                endTimes = new long[n];
+                int levelCount = n == 0 ? 0 : levels.get(n - 1).intValue() + 1;
+                levelRemaining = new int[levelCount];
+                for (int i = 0; i < n; i++) {
+                    remaining[i] = dependencies.get(i).size();
+                    levelRemaining[levels.get(i).intValue()]++;
+                }
+                currentLevel = 0;
+                running = 0;
+                completed = 0;
+                failure = null;
+                t0 = System.nanoTime();
+                submitLevel(executor, action, monitor);
+                while (completed < n && failure == null) {
+                    monitor.wait();
+                }
+                while (running > 0) {
+                    monitor.wait();
+                }
+                t1 = System.nanoTime();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+    }
+
+    protected void submitLevel(ExecutorService executor, Consumer<RegistrationInfo> action, Object monitor) {
+        for (int i = 0; i < nodes.size(); i++) {
+            if (levels.get(i).intValue() == currentLevel && remaining[i] == 0) {
+                submit(i, executor, action, monitor);
+            }
+        }
+    }
+
+    protected void submit(int i, ExecutorService executor, Consumer<RegistrationInfo> action, Object monitor) {
+        running++;
+        executor.execute(() -> execute(i, executor, action, monitor));
+    }
+
+    protected void execute(int i, ExecutorService executor, Consumer<RegistrationInfo> action, Object monitor) {
+        long start = System.nanoTime();
+        Throwable error = null;
+        try {
+            action.accept(nodes.get(i));
+        } catch (RuntimeException | Error e) {
+            error = e;
+        }
+        long end = System.nanoTime();
+        synchronized (monitor) {
+            startTimes[i] = start;
+            endTimes[i] = end;
+            running--;
+            completed++;
+            if (error != null && failure == null) {
+                failure = error;
+            }
+            if (failure == null) {
+                // dependencies are always in the same level
+                for (int d : dependents.get(i)) {
+                    if (--remaining[d] == 0) {
+                        submit(d, executor, action, monitor);
+                    }
+                }
+                if (--levelRemaining[levels.get(i).intValue()] == 0 && currentLevel < levelRemaining.length - 1) {
+                    currentLevel++;
+                    submitLevel(executor, action, monitor);
+                }
+            }
+            monitor.notifyAll();
+        }
+    }
+
+    /**
+     * Gets the critical path of the last run, which is the chain of components that ended last, each one being the
+     * node that ended last among the nodes it waited for.
+     *
+     * @return the critical path, in execution order
+     */
+    public List<RegistrationInfo> getCriticalPath() {
+        List<RegistrationInfo> path = new ArrayList<>();
+        if (endTimes == null || nodes.isEmpty()) {
+            return path;
+        }
+        int n = nodes.size();
+        // last node ended in each level
+        int levelCount = levels.get(n - 1).intValue() + 1;
+        int[] lastOfLevel = new int[levelCount];
+        Arrays.fill(lastOfLevel, -1);
+        for (int i = 0; i < n; i++) {
+            int level = levels.get(i).intValue();
+            if (lastOfLevel[level] < 0 || endTimes[i] > endTimes[lastOfLevel[level]]) {
+                lastOfLevel[level] = i;
+            }
+        }
+        int i = lastOfLevel[levelCount - 1];
+        while (i >= 0) {
+            path.add(nodes.get(i));
+            int predecessor = -1;
+            for (int d : dependencies.get(i)) {
+                if (predecessor < 0 || endTimes[d] > endTimes[predecessor]) {
+                    predecessor = d;
+                }
+            }
+            int level = levels.get(i).intValue();
+            if (level > 0) {
+                int last = lastOfLevel[level - 1];
+                if (predecessor < 0 || endTimes[last] > endTimes[predecessor]) {
+                    predecessor = last;
+                }
+            }
+            i = predecessor;
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    /**
+     * Gets the duration of the critical path of the last run, in nanoseconds.
+     */
+    public long getCriticalPathDuration() {
+        long duration = 0;
+        for (RegistrationInfo ri : getCriticalPath()) {
+            int i = indexes.get(ri).intValue();
+            duration += endTimes[i] - startTimes[i];
+        }
+        return duration;
+    }
+
+    /**
+     * Gets the total duration of the last run, in nanoseconds.
+     */
+    public long getDuration() {
+        return t1 - t0;
+    }
+
+    /**
+     * Prints the critical path of the last run.
+     */
+    public void printCriticalPath(PrintStream ps) {
+        DecimalFormat format = new DecimalFormat("0.000");
+        ps.println("Critical path: " + format.format(getCriticalPathDuration() / 1e9) + " sec. (total: "
+                + format.format(getDuration() / 1e9) + " sec., components: " + nodes.size() + ", threads: " + threads
+                + ")");
+        for (RegistrationInfo ri : getCriticalPath()) {
+            int i = indexes.get(ri).intValue();
+            ps.println(ri.getName().getName() + ": " + format.format((endTimes[i] - startTimes[i]) / 1e9)
+                    + " sec. (started at " + format.format((startTimes[i] - t0) / 1e9) + " sec.)");
+        }
+    }
+
+}
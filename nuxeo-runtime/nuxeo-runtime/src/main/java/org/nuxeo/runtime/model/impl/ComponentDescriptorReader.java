@@ -35,10 +35,17 @@ import org.nuxeo.runtime.model.RuntimeContext;
  */
 public class ComponentDescriptorReader {
 
-    private final XMap xmap;
+    // the mapping is the same for all the readers, scan it only once
+    private static final XMap xmap = createXMap();
 
     public ComponentDescriptorReader() {
-        xmap = new XMap();
+    }
+
+    /**
+     * @since 10.2
+     */
+    protected static XMap createXMap() {
+        XMap xmap = new XMap();
         xmap.setValueFactory(ComponentName.class, new XValueFactory() {
             @Override
             public Object deserialize(Context context, String value) {
@@ -68,6 +75,7 @@ public class ComponentDescriptorReader {
             }
         });
         xmap.register(RegistrationInfoImpl.class);
+        return xmap;
     }
 
     public RegistrationInfoImpl read(RuntimeContext ctx, InputStream in) throws IOException {
@@ -42,6 +42,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -68,6 +69,20 @@ public class ComponentManagerImpl implements ComponentManager {
 
     private static final Log infoLog = LogFactory.getLog(ComponentManager.class);
 
+    /**
+     * Property enabling the activation and start of independent components in parallel.
+     *
+     * @since 10.2
+     */
+    public static final String PARALLEL_PROP = "org.nuxeo.runtime.component.parallel";
+
+    /**
+     * Property for the number of threads used to activate and start components in parallel.
+     *
+     * @since 10.2
+     */
+    public static final String PARALLEL_THREADS_PROP = "org.nuxeo.runtime.component.parallel.threads";
+
     // must use an ordered Set to avoid loosing the order of the pending
     // extensions
     protected final ConcurrentMap<ComponentName, Set<Extension>> pendingExtensions;
@@ -130,6 +145,18 @@ public class ComponentManagerImpl implements ComponentManager {
      */
     protected volatile boolean changed = false;
 
+    /**
+     * The snapshot of parsed registrations, if enabled.
+     *
+     * @since 10.2
+     */
+    protected ComponentRegistrationSnapshot registrationSnapshot;
+
+    /**
+     * @since 10.2
+     */
+    protected boolean registrationSnapshotInitialized;
+
     public ComponentManagerImpl(RuntimeService runtime) {
         registry = new ComponentRegistry();
         pendingExtensions = new ConcurrentHashMap<>();
@@ -509,20 +536,26 @@ public class ComponentManagerImpl implements ComponentManager {
      * @since 9.2
      */
     protected List<RegistrationInfo> activateComponents() {
-        Watch watch = new Watch();
+        Watch watch = newWatch();
         watch.start();
         listeners.beforeActivation();
         // make sure we start with a clean pending registry
         pendingExtensions.clear();
 
         List<RegistrationInfo> ris = new ArrayList<>();
-        // first activate resolved components
-        for (RegistrationInfo ri : registry.getResolvedRegistrationInfo()) {
-            // TODO catch and handle errors
-            watch.start(ri.getName().getName());
-            activateComponent(ri);
-            ris.add(ri);
-            watch.stop(ri.getName().getName());
+        if (isParallel()) {
+            ris.addAll(registry.getResolvedRegistrationInfo());
+            ComponentDependencyGraph graph = ComponentDependencyGraph.forActivation(ris, registry);
+            runInParallel(graph, watch, this::activateComponent, "activate");
+        } else {
+            // first activate resolved components
+            for (RegistrationInfo ri : registry.getResolvedRegistrationInfo()) {
+                // TODO catch and handle errors
+                watch.start(ri.getName().getName());
+                activateComponent(ri);
+                ris.add(ri);
+                watch.stop(ri.getName().getName());
+            }
         }
         listeners.afterActivation();
         watch.stop();
@@ -681,13 +714,18 @@ public class ComponentManagerImpl implements ComponentManager {
      * @since 9.2
      */
     protected void startComponents(List<RegistrationInfo> ris, boolean isResume) {
-        Watch watch = new Watch();
+        Watch watch = newWatch();
         watch.start();
         listeners.beforeStart(isResume);
-        for (RegistrationInfo ri : ris) {
-            watch.start(ri.getName().getName());
-            startComponent(ri);
-            watch.stop(ri.getName().getName());
+        if (isParallel()) {
+            ComponentDependencyGraph graph = ComponentDependencyGraph.forStart(ris, registry);
+            runInParallel(graph, watch, this::startComponent, "start");
+        } else {
+            for (RegistrationInfo ri : ris) {
+                watch.start(ri.getName().getName());
+                startComponent(ri);
+                watch.stop(ri.getName().getName());
+            }
         }
         this.started = ris;
         listeners.afterStart(isResume);
@@ -791,6 +829,8 @@ public class ComponentManagerImpl implements ComponentManager {
         // then start activated components
         startComponents(ris, false);
 
+        saveRegistrationSnapshot();
+
         return true;
     }
 
@@ -1050,6 +1090,116 @@ public class ComponentManagerImpl implements ComponentManager {
 
     }
 
+    /**
+     * Gets the snapshot of parsed registrations.
+     *
+     * @return the snapshot, or {@code null} if not enabled
+     * @since 10.2
+     */
+    public synchronized ComponentRegistrationSnapshot getRegistrationSnapshot() {
+        if (!registrationSnapshotInitialized) {
+            registrationSnapshotInitialized = true;
+            String path = Framework.getProperty(ComponentRegistrationSnapshot.SNAPSHOT_PROP);
+            if (path != null && !path.trim().isEmpty()) {
+                registrationSnapshot = new ComponentRegistrationSnapshot(new File(path.trim()));
+            }
+        }
+        return registrationSnapshot;
+    }
+
+    /**
+     * @since 10.2
+     */
+    protected void saveRegistrationSnapshot() {
+        ComponentRegistrationSnapshot snapshot = registrationSnapshot;
+        if (snapshot == null) {
+            return;
+        }
+        if (infoLog.isInfoEnabled()) {
+            infoLog.info("Components read from registration snapshot: " + snapshot.getHits() + ", parsed: "
+                    + snapshot.getMisses());
+        }
+        snapshot.save();
+    }
+
+    /**
+     * Checks if independent components are activated and started in parallel.
+     *
+     * @since 10.2
+     */
+    protected boolean isParallel() {
+        return Framework.isBooleanPropertyTrue(PARALLEL_PROP);
+    }
+
+    /**
+     * @since 10.2
+     */
+    protected int getParallelThreads() {
+        String threads = Framework.getProperty(PARALLEL_THREADS_PROP);
+        if (threads == null || threads.trim().isEmpty()) {
+            return Runtime.getRuntime().availableProcessors();
+        }
+        return Integer.parseInt(threads.trim());
+    }
+
+    /**
+     * @since 10.2
+     */
+    protected Watch newWatch() {
+        // the intervals are recorded concurrently when in parallel mode
+        return isParallel() ? new Watch(new ConcurrentHashMap<>()) : new Watch();
+    }
+
+    /**
+     * Runs an action on the components of a dependency graph in parallel, then reports the critical path.
+     * <p>
+     * This is called while holding the lock on this manager, which is released while waiting for the components so
+     * that they can call back synchronized methods of the manager (to register extensions for instance).
+     *
+     * @since 10.2
+     */
+    protected void runInParallel(ComponentDependencyGraph graph, Watch watch, Consumer<RegistrationInfo> action,
+            String type) {
+        try {
+            graph.run(getParallelThreads(), "Nuxeo-Components-" + type, ri -> {
+                String name = ri.getName().getName();
+                watch.start(name);
+                try {
+                    action.accept(ri);
+                } finally {
+                    watch.stop(name);
+                }
+            }, this);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while running components: " + type, e);
+        }
+        writeCriticalPath(graph, type);
+    }
+
+    /**
+     * Logs the critical path of a parallel activation or start, and writes its details to a file.
+     *
+     * @since 10.2
+     */
+    protected void writeCriticalPath(ComponentDependencyGraph graph, String type) {
+        if (infoLog.isInfoEnabled()) {
+            infoLog.info(String.format("Components %s critical path: %.3f sec. for %d components", type,
+                    graph.getCriticalPathDuration() / 1e9, graph.getCriticalPath().size()));
+        }
+        Environment env = Environment.getDefault();
+        if (env == null || env.getTemp() == null) {
+            return;
+        }
+        File file = new File(env.getTemp(), type + "-critical-path.txt");
+        try (PrintStream ps = new PrintStream(new FileOutputStream(file), false, "UTF-8")) {
+            graph.printCriticalPath(ps);
+            ps.flush();
+        } catch (IOException e) {
+            log.error("Failed to write critical path file: " + file, e);
+        }
+    }
+
     protected void writeDevMetrics(Watch watch, String type) {
         if (!Framework.isDevModeSet()) {
             return;
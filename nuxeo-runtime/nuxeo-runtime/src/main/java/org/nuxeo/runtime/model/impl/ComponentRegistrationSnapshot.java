@@ -0,0 +1,352 @@
+/*
+ * (C) Copyright 2018 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.runtime.model.impl;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.runtime.Version;
+import org.nuxeo.runtime.model.ComponentName;
+import org.nuxeo.runtime.model.Property;
+
+/**
+ * Snapshot of the parsed component registrations, saved in a binary file so that the component XML files don't have to
+ * be parsed and mapped again at the next startup.
+ * <p>
+ * Each registration is keyed by the URL of its XML, the size and last modification time of the bundle JAR or file
+ * holding it, and a digest of the framework properties used for variable expansion. The XML of an unchanged bundle is
+ * therefore not read at all, and it is parsed again when the bundle or a framework property changes. Extension
+ * elements are stored already parsed. The contributions themselves are still parsed by the target components when
+ * they are registered, as they depend on the classes and state of these components.
+ * <p>
+ * Only the classes of the registration model are accepted when reading the snapshot.
+ * <p>
+ * The registrations that were not used since the snapshot was loaded are dropped when it is saved. The snapshot is
+ * discarded if it was written by a different version of the runtime.
+ *
+ * @since 10.2
+ */
+public class ComponentRegistrationSnapshot {
+
+    private static final Log log = LogFactory.getLog(ComponentRegistrationSnapshot.class);
+
+    /** Property holding the path of the snapshot file. The snapshot is not used if the property is not set. */
+    public static final String SNAPSHOT_PROP = "org.nuxeo.runtime.registration.snapshot";
+
+    protected static final int MAGIC = 0x4e585253; // NXRS
+
+    protected static final int FORMAT_VERSION = 2;
+
+    /** The classes accepted when reading a registration. */
+    protected static final Set<String> ALLOWED_CLASSES = new HashSet<>(Arrays.asList( //
+            RegistrationInfoImpl.class.getName(), //
+            ExtensionImpl.class.getName(), //
+            ExtensionImpl.ElementData.class.getName(), //
+            ExtensionPointImpl.class.getName(), //
+            ServiceDescriptor.class.getName(), //
+            Property.class.getName(), //
+            ComponentName.class.getName(), //
+            Version.class.getName(), //
+            URL.class.getName(), //
+            String.class.getName(), //
+            Boolean.class.getName(), //
+            Byte.class.getName(), //
+            Character.class.getName(), //
+            Short.class.getName(), //
+            Integer.class.getName(), //
+            Long.class.getName(), //
+            Float.class.getName(), //
+            Double.class.getName(), //
+            Number.class.getName(), //
+            HashSet.class.getName(), //
+            HashMap.class.getName(), //
+            ArrayList.class.getName(), //
+            Serializable.class.getName()));
+
+    protected final File file;
+
+    protected final String runtimeVersion;
+
+    /** Serialized registrations read from the file. */
+    protected final Map<String, byte[]> loaded = new ConcurrentHashMap<>();
+
+    /** Serialized registrations used or added since loaded. */
+    protected final Map<String, byte[]> used = new ConcurrentHashMap<>();
+
+    protected final AtomicInteger hits = new AtomicInteger();
+
+    protected final AtomicInteger misses = new AtomicInteger();
+
+    /** The framework properties for which {@link #propertiesDigest} was computed. */
+    protected Map<Object, Object> digestedProperties;
+
+    protected String propertiesDigest;
+
+    public ComponentRegistrationSnapshot(File file) {
+        this.file = file;
+        runtimeVersion = String.valueOf(RegistrationInfoImpl.class.getPackage().getImplementationVersion());
+        load();
+    }
+
+    /**
+     * Computes the key of a component XML without reading it.
+     *
+     * @param url the URL of the component XML
+     * @param properties the framework properties used to expand its variables
+     * @return the key, or {@code null} if the XML is not in a file or JAR
+     */
+    public String getKey(URL url, Properties properties) {
+        File file = url == null ? null : getFile(url);
+        if (file == null || !file.exists()) {
+            return null;
+        }
+        String propertiesDigest = getPropertiesDigest(properties);
+        return digest(url + "\n" + file.length() + "\n" + file.lastModified() + "\n" + propertiesDigest);
+    }
+
+    /**
+     * Gets the file holding a component XML: the bundle JAR, or the XML itself when the bundle is a directory.
+     */
+    protected static File getFile(URL url) {
+        if ("jar".equals(url.getProtocol())) {
+            // jar:file:/path/to/bundle.jar!/OSGI-INF/component.xml
+            String spec = url.getFile();
+            int i = spec.indexOf("!/");
+            if (i < 0) {
+                return null;
+            }
+            try {
+                url = new URL(spec.substring(0, i));
+            } catch (MalformedURLException e) {
+                return null;
+            }
+        }
+        return FileUtils.toFile(url);
+    }
+
+    /**
+     * Gets the digest of the properties, computed again only when they changed.
+     */
+    protected synchronized String getPropertiesDigest(Properties properties) {
+        if (!properties.equals(digestedProperties)) {
+            digestedProperties = new HashMap<>(properties);
+            Map<String, String> sorted = new TreeMap<>();
+            for (Map.Entry<Object, Object> es : digestedProperties.entrySet()) {
+                sorted.put(String.valueOf(es.getKey()), String.valueOf(es.getValue()));
+            }
+            StringBuilder sb = new StringBuilder();
+            for (Map.Entry<String, String> es : sorted.entrySet()) {
+                sb.append(es.getKey()).append('=').append(es.getValue()).append('\n');
+            }
+            propertiesDigest = digest(sb.toString());
+        }
+        return propertiesDigest;
+    }
+
+    protected static String digest(String string) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(string.getBytes(UTF_8));
+            StringBuilder sb = new StringBuilder(2 * digest.length);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+                sb.append(Character.forDigit(b & 0xf, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Gets a new registration from the snapshot.
+     *
+     * @param key the key of the component XML
+     * @return a new registration, or {@code null} if not in the snapshot
+     */
+    public RegistrationInfoImpl get(String key) {
+        byte[] bytes = used.get(key);
+        if (bytes == null) {
+            bytes = loaded.get(key);
+        }
+        if (bytes != null) {
+            try (ObjectInputStream in = new RegistrationInputStream(new ByteArrayInputStream(bytes))) {
+                RegistrationInfoImpl ri = (RegistrationInfoImpl) in.readObject();
+                used.put(key, bytes);
+                hits.incrementAndGet();
+                return ri;
+            } catch (IOException | ClassNotFoundException | ClassCastException e) {
+                log.debug("Cannot read registration from snapshot, parsing it", e);
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Adds to the snapshot a registration that was just parsed.
+     * <p>
+     * Registrations holding values that can't be serialized are not added.
+     *
+     * @param key the key of the component XML
+     * @param ri the registration
+     */
+    public void put(String key, RegistrationInfoImpl ri) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(baos)) {
+            out.writeObject(ri);
+        } catch (IOException e) {
+            log.debug("Cannot add registration to snapshot: " + ri.getName(), e);
+            return;
+        }
+        used.put(key, baos.toByteArray());
+    }
+
+    public int getHits() {
+        return hits.get();
+    }
+
+    public int getMisses() {
+        return misses.get();
+    }
+
+    protected void load() {
+        if (!file.exists()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || !runtimeVersion.equals(in.readUTF())) {
+                log.info("Ignoring registration snapshot written by another version: " + file);
+                return;
+            }
+            Map<String, byte[]> map = new HashMap<>();
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                String key = in.readUTF();
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                map.put(key, bytes);
+            }
+            loaded.putAll(map);
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable registration snapshot: " + file, e);
+        }
+    }
+
+    /**
+     * Saves the snapshot, if it changed since it was loaded.
+     */
+    public synchronized void save() {
+        if (used.size() == loaded.size() && used.keySet().equals(loaded.keySet())) {
+            return;
+        }
+        Map<String, byte[]> map = new HashMap<>(used);
+        Path path = file.toPath().toAbsolutePath();
+        try {
+            Files.createDirectories(path.getParent());
+            Path tmp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(runtimeVersion);
+                out.writeInt(map.size());
+                for (Map.Entry<String, byte[]> es : map.entrySet()) {
+                    out.writeUTF(es.getKey());
+                    out.writeInt(es.getValue().length);
+                    out.write(es.getValue());
+                }
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.error("Cannot save registration snapshot: " + file, e);
+            return;
+        }
+        loaded.clear();
+        loaded.putAll(map);
+        log.info("Saved registration snapshot with " + map.size() + " components: " + file);
+    }
+
+    /**
+     * Reads a registration, refusing the classes that are not part of the registration model.
+     */
+    protected static class RegistrationInputStream extends ObjectInputStream {
+
+        public RegistrationInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            String name = desc.getName();
+            // arrays of allowed classes or of primitives: [[Lxxx; or [[I
+            int dims = 0;
+            while (name.charAt(dims) == '[') {
+                dims++;
+            }
+            String componentName = name;
+            if (dims > 0) {
+                componentName = name.charAt(dims) == 'L' ? name.substring(dims + 1, name.length() - 1) : null;
+            }
+            if (componentName != null && !ALLOWED_CLASSES.contains(componentName)) {
+                throw new InvalidClassException(name, "Not allowed in a registration snapshot");
+            }
+            return super.resolveClass(desc);
+        }
+
+        @Override
+        protected Class<?> resolveProxyClass(String[] interfaces) throws IOException, ClassNotFoundException {
+            throw new InvalidClassException("Proxy", "Not allowed in a registration snapshot");
+        }
+
+    }
+
+}
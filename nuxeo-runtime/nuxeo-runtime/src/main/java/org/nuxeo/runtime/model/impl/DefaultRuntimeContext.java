@@ -219,11 +219,39 @@ public class DefaultRuntimeContext implements RuntimeContext {
     }
 
     public RegistrationInfoImpl createRegistrationInfo(StreamRef ref) throws IOException {
+        ComponentRegistrationSnapshot snapshot = getRegistrationSnapshot();
+        String key = null;
+        if (snapshot != null) {
+            // computed without reading the XML
+            key = snapshot.getKey(ref.asURL(), runtime.getProperties());
+            if (key != null) {
+                RegistrationInfoImpl ri = snapshot.get(key);
+                if (ri != null) {
+                    return ri;
+                }
+            }
+        }
         String source = IOUtils.toString(ref.getStream(), UTF_8);
         String expanded = Framework.expandVars(source);
+        RegistrationInfoImpl ri;
         try (InputStream in = new ByteArrayInputStream(expanded.getBytes())) {
-            return createRegistrationInfo(in);
+            ri = createRegistrationInfo(in);
+        }
+        if (key != null && ri != null && ri.name != null) {
+            snapshot.put(key, ri);
+        }
+        return ri;
+    }
+
+    /**
+     * @since 10.2
+     */
+    protected ComponentRegistrationSnapshot getRegistrationSnapshot() {
+        ComponentManager mgr = runtime == null ? null : runtime.getComponentManager();
+        if (mgr instanceof ComponentManagerImpl) {
+            return ((ComponentManagerImpl) mgr).getRegistrationSnapshot();
         }
+        return null;
     }
 
     public RegistrationInfoImpl createRegistrationInfo(InputStream in) throws IOException {
@@ -23,8 +23,16 @@ package org.nuxeo.runtime.model.impl;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.parsers.ParserConfigurationException;
 
 import org.nuxeo.common.xmap.DOMSerializer;
+import org.nuxeo.common.xmap.XMap;
 import org.nuxeo.common.xmap.annotation.XContent;
 import org.nuxeo.common.xmap.annotation.XNode;
 import org.nuxeo.common.xmap.annotation.XObject;
@@ -32,7 +40,11 @@ import org.nuxeo.runtime.model.ComponentInstance;
 import org.nuxeo.runtime.model.ComponentName;
 import org.nuxeo.runtime.model.Extension;
 import org.nuxeo.runtime.model.RuntimeContext;
+import org.w3c.dom.DOMImplementation;
+import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
 
 /**
  * @author <a href="mailto:bs@nuxeo.com">Bogdan Stefanescu</a>
@@ -62,6 +74,14 @@ public class ExtensionImpl implements Extension {
     @XNode("")
     transient Element element;
 
+    /**
+     * The content of the element when deserialized (see {@link ComponentRegistrationSnapshot}), turned into DOM on
+     * first use.
+     *
+     * @since 10.2
+     */
+    transient ElementData elementData;
+
     transient Object[] contributions;
 
     // declaring component
@@ -70,17 +90,35 @@ public class ExtensionImpl implements Extension {
     @Override
     public void dispose() {
         element = null;
+        elementData = null;
         contributions = null;
     }
 
     @Override
     public Element getElement() {
+        if (element == null && elementData != null) {
+            createElement();
+        }
         return element;
     }
 
+    /**
+     * @since 10.2
+     */
+    protected synchronized void createElement() {
+        if (element != null || elementData == null) {
+            return;
+        }
+        Document document = ElementData.DOM.createDocument(null, null, null);
+        element = elementData.toElement(document);
+        document.appendChild(element);
+        elementData = null;
+    }
+
     @Override
     public void setElement(Element element) {
         this.element = element;
+        elementData = null;
     }
 
     @Override
@@ -156,15 +194,102 @@ public class ExtensionImpl implements Extension {
     @Override
     public String toXML() {
         try {
-            return DOMSerializer.toStringOmitXml(element);
+            return DOMSerializer.toStringOmitXml(getElement());
         } catch (IOException e) {
             System.err.println("Failed to serialize extension " + e);
             return null;
         }
     }
 
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeObject(element != null ? new ElementData(element) : elementData);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        elementData = (ElementData) in.readObject();
+    }
+
     public static ExtensionImpl fromXML(RuntimeContext context, String xml) throws IOException {
         return reader.read(context, new ByteArrayInputStream(xml.getBytes()));
     }
 
+    /**
+     * The parsed content of an extension element, from which the DOM is created again without parsing the XML.
+     * <p>
+     * Only elements, attributes and text are kept, comments and processing instructions are not used by
+     * contributions.
+     *
+     * @since 10.2
+     */
+    protected static class ElementData implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        protected static final DOMImplementation DOM;
+
+        static {
+            try {
+                DOM = XMap.getFactory().newDocumentBuilder().getDOMImplementation();
+            } catch (ParserConfigurationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        protected final String namespaceURI;
+
+        protected final String name;
+
+        /** The namespace URI, qualified name and value of each attribute. */
+        protected final String[] attributes;
+
+        /** The text ({@link String}) and elements ({@link ElementData}) children, in document order. */
+        protected final Serializable[] children;
+
+        protected ElementData(Element element) {
+            namespaceURI = element.getNamespaceURI();
+            name = element.getTagName();
+            NamedNodeMap attrs = element.getAttributes();
+            attributes = new String[3 * attrs.getLength()];
+            for (int i = 0; i < attrs.getLength(); i++) {
+                Node attr = attrs.item(i);
+                attributes[3 * i] = attr.getNamespaceURI();
+                attributes[3 * i + 1] = attr.getNodeName();
+                attributes[3 * i + 2] = attr.getNodeValue();
+            }
+            List<Serializable> list = new ArrayList<>();
+            for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+                switch (child.getNodeType()) {
+                case Node.ELEMENT_NODE:
+                    list.add(new ElementData((Element) child));
+                    break;
+                case Node.TEXT_NODE:
+                case Node.CDATA_SECTION_NODE:
+                    list.add(child.getNodeValue());
+                    break;
+                default:
+                    break;
+                }
+            }
+            children = list.toArray(new Serializable[list.size()]);
+        }
+
+        protected Element toElement(Document document) {
+            Element element = document.createElementNS(namespaceURI, name);
+            for (int i = 0; i < attributes.length; i += 3) {
+                element.setAttributeNS(attributes[i], attributes[i + 1], attributes[i + 2]);
+            }
+            for (Serializable child : children) {
+                if (child instanceof ElementData) {
+                    element.appendChild(((ElementData) child).toElement(document));
+                } else {
+                    element.appendChild(document.createTextNode((String) child));
+                }
+            }
+            return element;
+        }
+
+    }
+
 }
@@ -21,8 +21,13 @@
 
 package org.nuxeo.runtime.model.impl;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.nuxeo.common.xmap.XMap;
 import org.nuxeo.common.xmap.XMapException;
 import org.nuxeo.common.xmap.annotation.XContent;
@@ -43,6 +48,8 @@ public class ExtensionPointImpl implements ExtensionPoint, Serializable {
 
     private static final long serialVersionUID = 3959978759388449332L;
 
+    private static final Log log = LogFactory.getLog(ExtensionPointImpl.class);
+
     @XNode("@name")
     public String name;
 
@@ -60,11 +67,42 @@ public class ExtensionPointImpl implements ExtensionPoint, Serializable {
     @XParent
     public transient RegistrationInfo ri;
 
+    /**
+     * The contribution class names when deserialized (see {@link ComponentRegistrationSnapshot}), loaded on first use.
+     *
+     * @since 10.2
+     */
+    protected transient String[] contributionClassNames;
+
     @Override
     public Class<?>[] getContributions() {
+        if (contributions == null && contributionClassNames != null) {
+            loadContributionClasses();
+        }
         return contributions;
     }
 
+    protected synchronized void loadContributionClasses() {
+        if (contributions != null || contributionClassNames == null) {
+            return;
+        }
+        Class<?>[] classes = new Class<?>[contributionClassNames.length];
+        for (int i = 0; i < classes.length; i++) {
+            String className = contributionClassNames[i];
+            if (className == null) {
+                continue;
+            }
+            try {
+                classes[i] = ri.getContext().loadClass(className);
+            } catch (ClassNotFoundException e) {
+                // same as when parsed, reported when loading the contributions
+                log.error("Cannot load contribution class: " + className + " for extension point: " + name, e);
+            }
+        }
+        contributions = classes;
+        contributionClassNames = null;
+    }
+
     @Override
     public String getName() {
         return name;
@@ -91,10 +129,11 @@ public class ExtensionPointImpl implements ExtensionPoint, Serializable {
             return contribs;
         }
         // should compute now the contributions
-        if (contributions != null) {
+        Class<?>[] classes = getContributions();
+        if (classes != null) {
             if (xmap == null) {
                 xmap = new XMap();
-                for (Class<?> contrib : contributions) {
+                for (Class<?> contrib : classes) {
                     if (contrib != null) {
                         xmap.register(contrib);
                     } else {
@@ -115,4 +154,21 @@ public class ExtensionPointImpl implements ExtensionPoint, Serializable {
         return contribs;
     }
 
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        String[] classNames = contributionClassNames;
+        if (contributions != null) {
+            classNames = new String[contributions.length];
+            for (int i = 0; i < contributions.length; i++) {
+                classNames[i] = contributions[i] == null ? null : contributions[i].getName();
+            }
+        }
+        out.writeObject(classNames);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        contributionClassNames = (String[]) in.readObject();
+    }
+
 }
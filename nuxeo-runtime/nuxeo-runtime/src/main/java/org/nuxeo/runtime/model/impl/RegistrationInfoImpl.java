@@ -18,6 +18,8 @@
  */
 package org.nuxeo.runtime.model.impl;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -632,4 +634,12 @@ public class RegistrationInfoImpl implements RegistrationInfo {
         return true;
     }
 
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        // the parent is not serialized
+        for (ExtensionPointImpl xp : extensionPoints) {
+            xp.ri = this;
+        }
+    }
+
 }
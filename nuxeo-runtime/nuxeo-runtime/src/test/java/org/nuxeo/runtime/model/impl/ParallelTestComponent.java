@@ -0,0 +1,57 @@
+/*
+ * (C) Copyright 2018 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.runtime.model.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.nuxeo.runtime.model.ComponentContext;
+import org.nuxeo.runtime.model.DefaultComponent;
+import org.nuxeo.runtime.model.Extension;
+
+/**
+ * Component recording its activation, start and contributions, used to check parallel activation.
+ */
+public class ParallelTestComponent extends DefaultComponent {
+
+    public static final List<String> EVENTS = Collections.synchronizedList(new ArrayList<>());
+
+    protected final List<String> contributors = Collections.synchronizedList(new ArrayList<>());
+
+    @Override
+    public void activate(ComponentContext context) {
+        EVENTS.add("activate " + context.getPropertyValue("name"));
+    }
+
+    @Override
+    public void start(ComponentContext context) {
+        EVENTS.add("start " + context.getPropertyValue("name"));
+    }
+
+    @Override
+    public void registerExtension(Extension extension) {
+        contributors.add(extension.getComponent().getName().getName());
+    }
+
+    public List<String> getContributors() {
+        return contributors;
+    }
+
+}
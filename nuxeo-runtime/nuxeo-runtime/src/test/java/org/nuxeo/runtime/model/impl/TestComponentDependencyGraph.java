@@ -0,0 +1,154 @@
+/*
+ * (C) Copyright 2018 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.runtime.model.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.nuxeo.runtime.model.ComponentName;
+import org.nuxeo.runtime.model.RegistrationInfo;
+
+public class TestComponentDependencyGraph {
+
+    protected static RegistrationInfo newRegistrationInfo(String name) {
+        return new RegistrationInfoImpl(new ComponentName(name));
+    }
+
+    protected static List<String> run(ComponentDependencyGraph graph, int threads) throws InterruptedException {
+        List<String> done = Collections.synchronizedList(new ArrayList<>());
+        graph.run(threads, "test", ri -> done.add(ri.getName().getName()), new Object());
+        return done;
+    }
+
+    @Test
+    public void testDependencies() throws Exception {
+        RegistrationInfo a = newRegistrationInfo("a");
+        RegistrationInfo b = newRegistrationInfo("b");
+        RegistrationInfo c = newRegistrationInfo("c");
+        RegistrationInfo d = newRegistrationInfo("d");
+        ComponentDependencyGraph graph = new ComponentDependencyGraph();
+        for (RegistrationInfo ri : Arrays.asList(a, b, c, d)) {
+            graph.addNode(ri, 0);
+        }
+        assertTrue(graph.addDependency(c, a));
+        assertTrue(graph.addDependency(d, b));
+        assertTrue(graph.addDependency(d, c));
+        // only dependencies on previous nodes are allowed
+        assertFalse(graph.addDependency(a, d));
+
+        for (int n = 0; n < 20; n++) {
+            List<String> done = run(graph, 4);
+            assertEquals(4, done.size());
+            assertTrue(done.toString(), done.indexOf("a") < done.indexOf("c"));
+            assertTrue(done.toString(), done.indexOf("c") < done.indexOf("d"));
+            assertTrue(done.toString(), done.indexOf("b") < done.indexOf("d"));
+        }
+    }
+
+    @Test
+    public void testIndependentNodesRunConcurrently() throws Exception {
+        ComponentDependencyGraph graph = new ComponentDependencyGraph();
+        graph.addNode(newRegistrationInfo("a"), 0);
+        graph.addNode(newRegistrationInfo("b"), 0);
+        CountDownLatch latch = new CountDownLatch(2);
+        List<Boolean> concurrent = Collections.synchronizedList(new ArrayList<>());
+        graph.run(2, "test", ri -> {
+            latch.countDown();
+            try {
+                concurrent.add(Boolean.valueOf(latch.await(10, TimeUnit.SECONDS)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, new Object());
+        assertEquals(Arrays.asList(Boolean.TRUE, Boolean.TRUE), concurrent);
+    }
+
+    @Test
+    public void testLevelsAndCriticalPath() throws Exception {
+        RegistrationInfo a = newRegistrationInfo("a");
+        RegistrationInfo b = newRegistrationInfo("b");
+        RegistrationInfo c = newRegistrationInfo("c");
+        ComponentDependencyGraph graph = new ComponentDependencyGraph();
+        graph.addNode(a, 0);
+        graph.addNode(b, 0);
+        graph.addNode(c, 1);
+        // dependencies across levels are implied
+        assertFalse(graph.addDependency(c, a));
+        List<String> done = Collections.synchronizedList(new ArrayList<>());
+        Object monitor = new Object();
+        CountDownLatch aStarted = new CountDownLatch(1);
+        graph.run(3, "test", ri -> {
+            try {
+                if (ri == a) {
+                    aStarted.countDown();
+                    // a ends once b is completed, so a is on the critical path
+                    synchronized (monitor) {
+                        while (graph.completed == 0) {
+                            monitor.wait();
+                        }
+                    }
+                } else if (ri == b) {
+                    // a and b run concurrently
+                    assertTrue(aStarted.await(10, TimeUnit.SECONDS));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            done.add(ri.getName().getName());
+        }, monitor);
+        assertEquals(Arrays.asList("b", "a", "c"), done);
+        assertEquals(Arrays.asList(a, c), graph.getCriticalPath());
+        assertTrue(graph.getCriticalPathDuration() > 0);
+        assertTrue(graph.getDuration() >= graph.getCriticalPathDuration());
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        RegistrationInfo a = newRegistrationInfo("a");
+        RegistrationInfo b = newRegistrationInfo("b");
+        ComponentDependencyGraph graph = new ComponentDependencyGraph();
+        graph.addNode(a, 0);
+        graph.addNode(b, 0);
+        graph.addDependency(b, a);
+        List<String> done = Collections.synchronizedList(new ArrayList<>());
+        try {
+            graph.run(2, "test", ri -> {
+                if (ri == a) {
+                    throw new IllegalStateException("boom");
+                }
+                done.add(ri.getName().getName());
+            }, new Object());
+            fail("should throw");
+        } catch (IllegalStateException e) {
+            assertEquals("boom", e.getMessage());
+        }
+        assertEquals(Collections.emptyList(), done);
+    }
+
+}
@@ -0,0 +1,262 @@
+/*
+ * (C) Copyright 2018 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.runtime.model.impl;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.ObjectOutputStream;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Properties;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.nuxeo.common.Environment;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.model.ComponentManager;
+import org.nuxeo.runtime.model.ComponentName;
+import org.nuxeo.runtime.model.Extension;
+import org.nuxeo.runtime.model.URLStreamRef;
+import org.nuxeo.runtime.util.SimpleRuntime;
+import org.w3c.dom.Element;
+
+public class TestComponentRegistrationSnapshot {
+
+    protected static final String XML = "<?xml version=\"1.0\"?>\n" //
+            + "<component name=\"my.comp\" version=\"1.0.0\">\n" //
+            + "  <alias>my.alias</alias>\n" //
+            + "  <require>my.other</require>\n" //
+            + "  <implementation class=\"my.Component\" />\n" //
+            + "  <property name=\"count\" type=\"Integer\" value=\"42\" />\n" //
+            + "  <extension-point name=\"xp\">\n" //
+            + "    <object class=\"org.nuxeo.runtime.model.ComponentName\" />\n" //
+            + "  </extension-point>\n" //
+            + "  <extension target=\"my.target\" point=\"xp1\" xmlns:my=\"http://example.com/my\">\n" //
+            + "    <my:printer>\n" //
+            + "      <message>  Hello World!  </message>\n" //
+            + "    </my:printer>\n" //
+            + "  </extension>\n" //
+            + "</component>\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void setUp() throws Exception {
+        Environment env = new Environment(folder.newFolder());
+        Environment.setDefault(env);
+        env.setServerHome(env.getHome());
+        env.init();
+        // properties are expanded when parsing
+        Framework.initialize(new SimpleRuntime(folder.newFolder()));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (Framework.isInitialized()) {
+            Framework.shutdown();
+        }
+    }
+
+    protected void startRuntime(File snapshotFile) throws Exception {
+        if (Framework.isInitialized()) {
+            Framework.shutdown();
+        }
+        Framework.initialize(new SimpleRuntime(folder.newFolder()));
+        Framework.getProperties().setProperty(ComponentRegistrationSnapshot.SNAPSHOT_PROP, snapshotFile.getPath());
+    }
+
+    protected static ComponentRegistrationSnapshot getSnapshot() {
+        return ((ComponentManagerImpl) Framework.getRuntime().getComponentManager()).getRegistrationSnapshot();
+    }
+
+    protected static RegistrationInfoImpl parse(DefaultRuntimeContext ctx, String xml) throws Exception {
+        return ctx.createRegistrationInfo(new ByteArrayInputStream(xml.getBytes(UTF_8)));
+    }
+
+    @Test
+    public void testSnapshot() throws Exception {
+        DefaultRuntimeContext ctx = new DefaultRuntimeContext(null);
+        File file = new File(folder.getRoot(), "registrations.snapshot");
+        String key = "key";
+
+        ComponentRegistrationSnapshot snapshot = new ComponentRegistrationSnapshot(file);
+        assertNull(snapshot.get(key));
+        RegistrationInfoImpl parsed = parse(ctx, XML);
+        snapshot.put(key, parsed);
+        snapshot.save();
+        assertTrue(file.exists());
+
+        // as at the next startup
+        snapshot = new ComponentRegistrationSnapshot(file);
+        RegistrationInfoImpl ri = snapshot.get(key);
+        assertNotNull(ri);
+        assertEquals(1, snapshot.getHits());
+        assertNotSame(ri, snapshot.get(key));
+        ri.context = ctx;
+
+        assertEquals(new ComponentName("my.comp"), ri.getName());
+        assertEquals(Collections.singleton(new ComponentName("my.alias")), ri.getAliases());
+        assertEquals(Collections.singleton(new ComponentName("my.other")), ri.getRequiredComponents());
+        assertEquals("my.Component", ri.getImplementation());
+        assertEquals(parsed.getVersion(), ri.getVersion());
+        assertEquals(Integer.valueOf(42), ri.getProperties().get("count").getValue());
+
+        assertEquals(1, ri.getExtensionPoints().length);
+        ExtensionPointImpl xp = (ExtensionPointImpl) ri.getExtensionPoints()[0];
+        assertEquals("xp", xp.getName());
+        assertArrayEquals(new Class<?>[] { ComponentName.class }, xp.getContributions());
+
+        assertEquals(1, ri.getExtensions().length);
+        Extension xt = ri.getExtensions()[0];
+        assertEquals(new ComponentName("my.target"), xt.getTargetComponent());
+        assertEquals("xp1", xt.getExtensionPoint());
+        Element printer = (Element) xt.getElement().getElementsByTagNameNS("http://example.com/my", "printer").item(0);
+        assertNotNull(printer);
+        assertEquals("  Hello World!  ", printer.getElementsByTagName("message").item(0).getTextContent());
+    }
+
+    @Test
+    public void testKey() throws Exception {
+        ComponentRegistrationSnapshot snapshot = new ComponentRegistrationSnapshot(
+                new File(folder.getRoot(), "registrations.snapshot"));
+        File xml = folder.newFile("comp.xml");
+        FileUtils.writeStringToFile(xml, XML, UTF_8);
+        URL url = xml.toURI().toURL();
+        Properties properties = new Properties();
+        properties.setProperty("foo", "bar");
+
+        String key = snapshot.getKey(url, properties);
+        assertNotNull(key);
+        assertEquals(key, snapshot.getKey(url, properties));
+        // in a bundle JAR, the JAR is checked
+        File jar = folder.newFile("bundle.jar");
+        URL jarUrl = new URL("jar:" + jar.toURI().toURL() + "!/OSGI-INF/comp.xml");
+        assertNotNull(snapshot.getKey(jarUrl, properties));
+        assertNotEquals(key, snapshot.getKey(jarUrl, properties));
+        // not in a file
+        assertNull(snapshot.getKey(new URL("http://example.com/comp.xml"), properties));
+
+        // a changed property or file gives a new key
+        properties.setProperty("foo", "baz");
+        String key2 = snapshot.getKey(url, properties);
+        assertNotEquals(key, key2);
+        assertTrue(xml.setLastModified(xml.lastModified() - 10_000));
+        assertNotEquals(key2, snapshot.getKey(url, properties));
+    }
+
+    @Test
+    public void testOnlyRegistrationClassesAreRead() throws Exception {
+        ComponentRegistrationSnapshot snapshot = new ComponentRegistrationSnapshot(
+                new File(folder.getRoot(), "registrations.snapshot"));
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(baos)) {
+            out.writeObject(new Date());
+        }
+        snapshot.used.put("key", baos.toByteArray());
+        assertNull(snapshot.get("key"));
+        assertEquals(0, snapshot.getHits());
+        assertEquals(1, snapshot.getMisses());
+    }
+
+    @Test
+    public void testDeployWithSnapshot() throws Exception {
+        File file = new File(folder.getRoot(), "registrations.snapshot");
+        File xml = folder.newFile("MyComp1.xml");
+        FileUtils.copyURLToFile(getClass().getClassLoader().getResource("MyComp1.xml"), xml);
+        URL url = xml.toURI().toURL();
+
+        startRuntime(file);
+        DefaultRuntimeContext ctx = new DefaultRuntimeContext(Framework.getRuntime());
+        assertNotNull(ctx.deploy(url));
+        assertEquals(0, getSnapshot().getHits());
+        assertEquals(1, getSnapshot().getMisses());
+        getSnapshot().save();
+
+        // as at the next startup
+        startRuntime(file);
+        ctx = new DefaultRuntimeContext(Framework.getRuntime());
+        RegistrationInfoImpl restored = ctx.createRegistrationInfo(new URLStreamRef(url));
+        assertEquals(1, getSnapshot().getHits());
+        assertEquals(0, getSnapshot().getMisses());
+        assertEquals(new ComponentName("my.comp1"), restored.getName());
+        assertNull(restored.getContext());
+        assertEquals(1, restored.getExtensions().length);
+        assertEquals(new ComponentName("my.comp2"), restored.getExtensions()[0].getTargetComponent());
+
+        // deploying sets the context and location of the restored registration
+        RegistrationInfoImpl ri = (RegistrationInfoImpl) ctx.deploy(url);
+        assertEquals(2, getSnapshot().getHits());
+        assertNotSame(restored, ri);
+        assertSame(ctx, ri.getContext());
+        assertEquals(url.toString(), ri.getSourceId());
+        assertEquals(url, ri.getXmlFileUrl());
+        ComponentManager mgr = Framework.getRuntime().getComponentManager();
+        assertTrue(mgr.hasComponentFromLocation(url.toString()));
+        assertSame(ri, mgr.getRegistrationInfo(new ComponentName("my.comp1")));
+        getSnapshot().save();
+
+        // a modified file is parsed again
+        startRuntime(file);
+        assertTrue(xml.setLastModified(xml.lastModified() - 10_000));
+        ctx = new DefaultRuntimeContext(Framework.getRuntime());
+        assertNotNull(ctx.createRegistrationInfo(new URLStreamRef(url)));
+        assertEquals(0, getSnapshot().getHits());
+        assertEquals(1, getSnapshot().getMisses());
+    }
+
+    @Test
+    public void testUnusedRegistrationsAreDropped() throws Exception {
+        DefaultRuntimeContext ctx = new DefaultRuntimeContext(null);
+        File file = new File(folder.getRoot(), "registrations.snapshot");
+        String xml2 = XML.replace("my.comp", "my.comp2");
+        String key1 = "key1";
+        String key2 = "key2";
+
+        ComponentRegistrationSnapshot snapshot = new ComponentRegistrationSnapshot(file);
+        snapshot.put(key1, parse(ctx, XML));
+        snapshot.put(key2, parse(ctx, xml2));
+        snapshot.save();
+
+        snapshot = new ComponentRegistrationSnapshot(file);
+        assertNotNull(snapshot.get(key2));
+        snapshot.save();
+
+        snapshot = new ComponentRegistrationSnapshot(file);
+        assertNull(snapshot.get(key1));
+        assertNotNull(snapshot.get(key2));
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * (C) Copyright 2018 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.runtime.model.impl;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.nuxeo.common.Environment;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.model.ComponentManager;
+import org.nuxeo.runtime.model.ComponentName;
+import org.nuxeo.runtime.model.RegistrationInfo;
+import org.nuxeo.runtime.util.SimpleRuntime;
+
+public class TestParallelComponentManager {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void setUp() throws Exception {
+        ParallelTestComponent.EVENTS.clear();
+        Environment env = new Environment(folder.newFolder());
+        Environment.setDefault(env);
+        env.setServerHome(env.getHome());
+        env.init();
+        Framework.initialize(new SimpleRuntime(folder.newFolder()));
+        Framework.getProperties().setProperty(ComponentManagerImpl.PARALLEL_PROP, "true");
+        Framework.getProperties().setProperty(ComponentManagerImpl.PARALLEL_THREADS_PROP, "4");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (Framework.isInitialized()) {
+            Framework.shutdown();
+        }
+    }
+
+    protected void deploy(DefaultRuntimeContext ctx, String name, String content) throws Exception {
+        String xml = "<?xml version=\"1.0\"?>\n<component name=\"" + name + "\">\n" + content + "</component>\n";
+        File file = folder.newFile(name + ".xml");
+        FileUtils.writeStringToFile(file, xml, UTF_8);
+        ctx.deploy(file.toURI().toURL());
+    }
+
+    protected static String implementation(String name) {
+        return "  <implementation class=\"" + ParallelTestComponent.class.getName() + "\" />\n" //
+                + "  <property name=\"name\" value=\"" + name + "\" />\n";
+    }
+
+    protected static String contribution() {
+        return "  <extension target=\"test.parallel.a\" point=\"xp\">\n" //
+                + "    <contribution />\n" //
+                + "  </extension>\n";
+    }
+
+    @Test
+    public void testParallelActivationAndStart() throws Exception {
+        DefaultRuntimeContext ctx = new DefaultRuntimeContext(Framework.getRuntime());
+        deploy(ctx, "test.parallel.a", implementation("a") + "  <extension-point name=\"xp\" />\n");
+        deploy(ctx, "test.parallel.b", "  <require>test.parallel.a</require>\n" + implementation("b"));
+        deploy(ctx, "test.parallel.c", implementation("c"));
+        deploy(ctx, "test.parallel.contrib1", contribution());
+        deploy(ctx, "test.parallel.contrib2", contribution());
+
+        ComponentManager mgr = Framework.getRuntime().getComponentManager();
+        assertTrue(mgr.start());
+
+        List<String> names = Arrays.asList("a", "b", "c", "contrib1", "contrib2");
+        for (String name : names) {
+            RegistrationInfo ri = mgr.getRegistrationInfo(new ComponentName("test.parallel." + name));
+            assertEquals(name, RegistrationInfo.STARTED, ri.getState());
+        }
+        List<String> events = ParallelTestComponent.EVENTS;
+        assertEquals(events.toString(), 6, events.size());
+        // required components are activated and started first
+        assertTrue(events.toString(), events.indexOf("activate a") < events.indexOf("activate b"));
+        assertTrue(events.toString(), events.indexOf("start a") < events.indexOf("start b"));
+        // all the components are activated before being started
+        for (String name : Arrays.asList("a", "b", "c")) {
+            assertTrue(events.toString(), events.indexOf("activate " + name) >= 0);
+            assertTrue(events.toString(), events.indexOf("start " + name) >= 3);
+        }
+        // contributions are registered in the sequential order
+        ParallelTestComponent a = (ParallelTestComponent) Framework.getRuntime().getComponent("test.parallel.a");
+        assertEquals(Arrays.asList("test.parallel.contrib1", "test.parallel.contrib2"), a.getContributors());
+    }
+
+}
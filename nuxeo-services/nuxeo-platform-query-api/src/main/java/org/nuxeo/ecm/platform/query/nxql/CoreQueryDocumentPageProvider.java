@@ -33,6 +33,7 @@ import org.nuxeo.ecm.core.api.DocumentModelList;
 import org.nuxeo.ecm.core.api.Filter;
 import org.nuxeo.ecm.core.api.NuxeoException;
 import org.nuxeo.ecm.core.api.SortInfo;
+import org.nuxeo.ecm.core.query.sql.NXQL;
 import org.nuxeo.ecm.platform.query.api.AbstractPageProvider;
 import org.nuxeo.ecm.platform.query.api.PageProviderDefinition;
 import org.nuxeo.ecm.platform.query.api.PageSelections;
@@ -53,6 +54,9 @@ import org.nuxeo.runtime.services.config.ConfigurationService;
  * Since 6.0, the page provider property named {@link #USE_UNRESTRICTED_SESSION_PROPERTY} allows specifying whether the
  * query should be run as unrestricted. When such a property is set to "true", the additional property
  * {@link #DETACH_DOCUMENTS_PROPERTY} is used to detach documents (defaults to true when session is unrestricted).
+ * <p>
+ * Since 10.2, the page provider property named {@link #PREFETCH_SCHEMAS_PROPERTY} lists the schemas that will be read
+ * on the documents of the page, so that they are loaded for the whole page at once.
  *
  * @author Anahide Tchertchian
  * @since 5.4
@@ -92,6 +96,17 @@ public class CoreQueryDocumentPageProvider extends AbstractPageProvider<Document
      */
     public static final String DETACH_DOCUMENTS_PROPERTY = "detachDocuments";
 
+    /**
+     * Property holding the schemas to prefetch for the documents of the page, as a {@code String[]} or as a
+     * comma-separated string.
+     * <p>
+     * This is typically filled with the schemas displayed by the columns of a content view, or with the schemas
+     * requested through the REST {@code properties} header.
+     *
+     * @since 10.2
+     */
+    public static final String PREFETCH_SCHEMAS_PROPERTY = "prefetchSchemas";
+
     private static final Log log = LogFactory.getLog(CoreQueryDocumentPageProvider.class);
 
     private static final long serialVersionUID = 1L;
@@ -138,25 +153,28 @@ public class CoreQueryDocumentPageProvider extends AbstractPageProvider<Document
                 final boolean useUnrestricted = useUnrestrictedSession();
 
                 final boolean detachDocs = detachDocuments();
+                final String[] prefetchSchemas = getPrefetchSchemas();
                 if (maxResults > 0) {
                     if (useUnrestricted) {
                         CoreQueryUnrestrictedSessionRunner r = new CoreQueryUnrestrictedSessionRunner(coreSession,
-                                query, filter, minMaxPageSize, offset, false, maxResults, detachDocs);
+                                query, filter, minMaxPageSize, offset, false, maxResults, detachDocs, prefetchSchemas);
                         r.runUnrestricted();
                         docs = r.getDocs();
                     } else {
-                        docs = coreSession.query(query, getFilter(), minMaxPageSize, offset, maxResults);
+                        docs = coreSession.query(query, NXQL.NXQL, getFilter(), minMaxPageSize, offset, maxResults,
+                                prefetchSchemas);
                     }
                 } else {
                     // use a totalCount=true instead of countUpTo=-1 to
                     // enable global limitation described in NXP-9381
                     if (useUnrestricted) {
                         CoreQueryUnrestrictedSessionRunner r = new CoreQueryUnrestrictedSessionRunner(coreSession,
-                                query, filter, minMaxPageSize, offset, true, maxResults, detachDocs);
+                                query, filter, minMaxPageSize, offset, true, maxResults, detachDocs, prefetchSchemas);
                         r.runUnrestricted();
                         docs = r.getDocs();
                     } else {
-                        docs = coreSession.query(query, getFilter(), minMaxPageSize, offset, true);
+                        docs = coreSession.query(query, NXQL.NXQL, getFilter(), minMaxPageSize, offset, true,
+                                prefetchSchemas);
                     }
                 }
 
@@ -272,6 +290,25 @@ public class CoreQueryDocumentPageProvider extends AbstractPageProvider<Document
         return getBooleanProperty(DETACH_DOCUMENTS_PROPERTY, true);
     }
 
+    /**
+     * Gets the schemas to prefetch for the documents of the page, from the property {@link #PREFETCH_SCHEMAS_PROPERTY}.
+     *
+     * @return the schemas, or {@code null} for the default prefetch
+     * @since 10.2
+     */
+    protected String[] getPrefetchSchemas() {
+        Serializable value = getProperties().get(PREFETCH_SCHEMAS_PROPERTY);
+        String[] schemas;
+        if (value instanceof String[]) {
+            schemas = (String[]) value;
+        } else if (value instanceof String) {
+            schemas = StringUtils.split((String) value, ", ");
+        } else {
+            return null;
+        }
+        return schemas.length == 0 ? null : schemas;
+    }
+
     protected CoreSession getCoreSession() {
         Map<String, Serializable> props = getProperties();
         CoreSession coreSession = (CoreSession) props.get(CORE_SESSION_PROPERTY);
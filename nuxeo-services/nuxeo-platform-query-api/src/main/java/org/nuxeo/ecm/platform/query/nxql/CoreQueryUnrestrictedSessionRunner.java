@@ -23,6 +23,7 @@ import org.nuxeo.ecm.core.api.DocumentModel;
 import org.nuxeo.ecm.core.api.DocumentModelList;
 import org.nuxeo.ecm.core.api.Filter;
 import org.nuxeo.ecm.core.api.UnrestrictedSessionRunner;
+import org.nuxeo.ecm.core.query.sql.NXQL;
 
 /**
  * Unrestricted session runner providing API for retrieving the result documents list.
@@ -45,10 +46,22 @@ public class CoreQueryUnrestrictedSessionRunner extends UnrestrictedSessionRunne
 
     protected final boolean detachDocuments;
 
+    /** @since 10.2 */
+    protected final String[] prefetchSchemas;
+
     protected DocumentModelList docs;
 
     public CoreQueryUnrestrictedSessionRunner(CoreSession session, String query, Filter filter, long limit,
             long offset, boolean countTotal, long countUpTo, boolean detachDocuments) {
+        this(session, query, filter, limit, offset, countTotal, countUpTo, detachDocuments, null);
+    }
+
+    /**
+     * @param prefetchSchemas the schemas to prefetch for the returned documents, or {@code null}
+     * @since 10.2
+     */
+    public CoreQueryUnrestrictedSessionRunner(CoreSession session, String query, Filter filter, long limit,
+            long offset, boolean countTotal, long countUpTo, boolean detachDocuments, String[] prefetchSchemas) {
         super(session);
         this.query = query;
         this.filter = filter;
@@ -57,14 +70,15 @@ public class CoreQueryUnrestrictedSessionRunner extends UnrestrictedSessionRunne
         this.countTotal = countTotal;
         this.countUpTo = countUpTo;
         this.detachDocuments = detachDocuments;
+        this.prefetchSchemas = prefetchSchemas;
     }
 
     @Override
     public void run() {
         if (countTotal) {
-            docs = session.query(query, filter, limit, offset, countTotal);
+            docs = session.query(query, NXQL.NXQL, filter, limit, offset, countTotal, prefetchSchemas);
         } else {
-            docs = session.query(query, filter, limit, offset, countUpTo);
+            docs = session.query(query, NXQL.NXQL, filter, limit, offset, countUpTo, prefetchSchemas);
         }
         if (docs != null && detachDocuments) {
             for (DocumentModel doc : docs) {
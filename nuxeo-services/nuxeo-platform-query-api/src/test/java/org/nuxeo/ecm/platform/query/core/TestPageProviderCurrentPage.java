@@ -20,6 +20,7 @@ package org.nuxeo.ecm.platform.query.core;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.Serializable;
 import java.util.HashMap;
@@ -32,6 +33,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.nuxeo.ecm.core.api.CoreSession;
 import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.api.impl.DocumentModelImpl;
 import org.nuxeo.ecm.core.test.CoreFeature;
 import org.nuxeo.ecm.core.test.annotations.Granularity;
 import org.nuxeo.ecm.core.test.annotations.RepositoryConfig;
@@ -131,4 +133,20 @@ public class TestPageProviderCurrentPage {
         assertEquals(prevId, ((DocumentModel)page.get(0)).getId());
     }
 
+    @Test
+    public void testPageProviderPrefetchSchemas() {
+        PageProviderDefinition ppd = pps.getPageProviderDefinition(DUMMY_FETCH_DOCUMENTS);
+        HashMap<String, Serializable> props = new HashMap<String, Serializable>();
+        props.put(CoreQueryDocumentPageProvider.CORE_SESSION_PROPERTY, (Serializable) session);
+        props.put(CoreQueryDocumentPageProvider.PREFETCH_SCHEMAS_PROPERTY, "dublincore, file");
+        PageProvider<?> pp = pps.getPageProvider(DUMMY_FETCH_DOCUMENTS, ppd, null, null, ppd.getMaxPageSize(), 0L,
+            props);
+        List<?> page = pp.getCurrentPage();
+        assertEquals(pp.getMaxPageSize(), page.size());
+        for (Object doc : page) {
+            assertTrue(((DocumentModelImpl) doc).isSchemaLoaded("dublincore"));
+            assertTrue(((DocumentModelImpl) doc).isSchemaLoaded("file"));
+        }
+    }
+
 }
@@ -19,9 +19,12 @@
 
 package org.nuxeo.ecm.webengine.jaxrs.coreiodelegate;
 
+import static org.nuxeo.ecm.core.io.registry.MarshallingConstants.WILDCARD_VALUE;
+
 import java.util.Enumeration;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
 import javax.servlet.ServletRequest;
 import javax.servlet.http.HttpServletRequest;
@@ -66,6 +69,26 @@ public final class RenderingContextWebUtils {
         return ctx;
     }
 
+    /**
+     * Gets the schemas explicitly requested for the documents through the "properties" parameter or header of the
+     * current {@link HttpServletRequest}.
+     * <p>
+     * This doesn't register a context in the request, so that the context used for the marshalling still sees
+     * everything put in the request later on.
+     *
+     * @return the schemas, or {@code null} if no schema or all of them are requested
+     * @since 10.2
+     */
+    public static String[] getRequestedSchemas(ServletRequest request) {
+        Object stored = request.getAttribute(getContextKey());
+        RenderingContext ctx = stored != null ? (RenderingContext) stored : getBuilder(request).get();
+        Set<String> properties = ctx.getProperties();
+        if (properties.isEmpty() || properties.contains(WILDCARD_VALUE)) {
+            return null;
+        }
+        return properties.toArray(new String[properties.size()]);
+    }
+
     /**
      * Register the given context as the context to use to manage the marshalling.
      *